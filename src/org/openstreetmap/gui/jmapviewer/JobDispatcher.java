@@ -1,11 +1,18 @@
 // License: GPL. For details, see Readme.txt file.
 package org.openstreetmap.gui.jmapviewer;
 
-import java.util.concurrent.BlockingDeque;
-import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.TimeUnit;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 import org.openstreetmap.gui.jmapviewer.interfaces.TileJob;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileJobPriority;
 
 /**
  * A generic class that processes a list of {@link Runnable} one-by-one using
@@ -13,6 +20,14 @@ import org.openstreetmap.gui.jmapviewer.interfaces.TileJob;
  * 1 and {@link #workerThreadMaxCount} (default: 8). If an instance is idle
  * more than {@link #workerThreadTimeout} seconds (default: 30), the instance
  * ends itself.
+ * <p>
+ * Each client given with {@link #addJob(TileJob, TileJobPriority)} has a
+ * queue of its own, and the clients are served in turn, so that a layer cannot
+ * starve another one. Within a queue, the job with the lowest priority is run
+ * first; the priorities are asked when a job is chosen, and the jobs of tiles
+ * which are not needed anymore are cancelled. At most
+ * {@link #workerThreadMaxCountPerHost} jobs run at the same time for the tiles
+ * of one host.
  *
  * @author Jan Peter Stotz
  */
@@ -27,14 +42,17 @@ public class JobDispatcher {
         return instance;
     }
 
-    private JobDispatcher() {
+    JobDispatcher() {
         addWorkerThread().firstThread = true;
     }
 
-    protected BlockingDeque<TileJob> jobQueue = new LinkedBlockingDeque<>();
-
     protected static int workerThreadMaxCount = 8;
 
+    /**
+     * Maximal number of jobs running at the same time for the tiles of one host.
+     */
+    protected static int workerThreadMaxCountPerHost = 8;
+
     /**
      * Specifies the time span in seconds that a worker thread waits for new
      * jobs to perform. If the time span has elapsed the worker thread
@@ -44,7 +62,8 @@ public class JobDispatcher {
     protected static int workerThreadTimeout = 30;
 
     /**
-     * Type of queue, FIFO if <code>false</code>, LIFO if <code>true</code>
+     * Type of queue of the jobs added without priority, FIFO if
+     * <code>false</code>, LIFO if <code>true</code>
      */
     protected boolean modeLIFO = false;
 
@@ -63,11 +82,90 @@ public class JobDispatcher {
      */
     protected int workerThreadId = 0;
 
+    /** The queues of the clients, served in turn */
+    private final List<JobQueue> queues = new ArrayList<>();
+    /** The queue of the jobs added without priority */
+    private final JobQueue defaultQueue = new JobQueue(null);
+    /** The index of the next queue to serve */
+    private int nextQueue;
+    /** The tiles of the queued jobs */
+    private final Map<Tile, Entry> queuedTiles = new IdentityHashMap<>();
+    /** The number of running jobs per host */
+    private final Map<String, Integer> runningPerHost = new HashMap<>();
+    private long sequence;
+
+    /**
+     * A queued job.
+     */
+    private static final class Entry {
+        final TileJob job;
+        final JobQueue queue;
+        final String host;
+        final long sequence;
+
+        Entry(TileJob job, JobQueue queue, String host, long sequence) {
+            this.job = job;
+            this.queue = queue;
+            this.host = host;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * The jobs of one client.
+     */
+    private static final class JobQueue {
+        final TileJobPriority priority;
+        final List<Entry> entries = new ArrayList<>();
+
+        JobQueue(TileJobPriority priority) {
+            this.priority = priority;
+        }
+    }
+
     /**
      * Removes all jobs from the queue that are currently not being processed.
      */
     public void cancelOutstandingJobs() {
-        jobQueue.clear();
+        List<Entry> cancelled = new ArrayList<>();
+        synchronized (this) {
+            for (JobQueue queue : queues) {
+                cancelled.addAll(queue.entries);
+                queue.entries.clear();
+            }
+            queues.clear();
+            queuedTiles.clear();
+        }
+        notifyCancelled(cancelled);
+    }
+
+    /**
+     * Removes the jobs of a client that are currently not being processed.
+     *
+     * @param priority the client, as given to {@link #addJob(TileJob, TileJobPriority)}
+     */
+    public void cancelOutstandingJobs(TileJobPriority priority) {
+        List<Entry> cancelled = new ArrayList<>();
+        synchronized (this) {
+            JobQueue queue = findQueue(priority);
+            if (queue != null) {
+                for (Entry e : queue.entries) {
+                    queuedTiles.remove(e.job.getTile());
+                }
+                cancelled.addAll(queue.entries);
+                queue.entries.clear();
+                queues.remove(queue);
+            }
+        }
+        notifyCancelled(cancelled);
+    }
+
+    private static void notifyCancelled(List<Entry> cancelled) {
+        for (Entry e : cancelled) {
+            if (e.queue.priority != null) {
+                e.queue.priority.jobCancelled(e.job);
+            }
+        }
     }
 
     /**
@@ -77,6 +175,14 @@ public class JobDispatcher {
         workerThreadMaxCount = workers;
     }
 
+    /**
+     * Function to set the maximum number of workers loading tiles from the
+     * same host at the same time.
+     */
+    static public void setMaxWorkersPerHost(int workers) {
+        workerThreadMaxCountPerHost = Math.max(1, workers);
+    }
+
     /**
      * Function to set the LIFO/FIFO mode for tile loading job.
      *
@@ -89,23 +195,177 @@ public class JobDispatcher {
     /**
      * Adds a job to the queue.
      * Jobs for tiles already contained in the are ignored (using a <code>null</code> tile
-     * prevents skipping).
+     * prevents skipping). A job added while running a job of a client is added
+     * to the queue of the same client.
      *
      * @param job the the job to be added
      */
     public void addJob(TileJob job) {
+        Thread current = Thread.currentThread();
+        if (current instanceof JobThread && ((JobThread) current).entry != null) {
+            addJob(job, ((JobThread) current).entry.queue.priority);
+        } else {
+            addJob(job, null);
+        }
+    }
+
+    /**
+     * Adds a job to the queue of a client.
+     * Jobs for tiles already contained in the are ignored (using a <code>null</code> tile
+     * prevents skipping).
+     *
+     * @param job the the job to be added
+     * @param priority the client, ordering its jobs; <code>null</code> for the
+     *        queue of the jobs without priority
+     */
+    public void addJob(TileJob job, TileJobPriority priority) {
+        Tile tile = job.getTile();
+        String host = tile != null ? getHost(tile) : null;
+        synchronized (this) {
+            if (tile != null && queuedTiles.containsKey(tile))
+                return;
+            JobQueue queue = priority != null ? findQueue(priority) : defaultQueue;
+            if (queue == null) {
+                queue = new JobQueue(priority);
+            }
+            if (queue.entries.isEmpty()) {
+                queues.add(queue);
+            }
+            Entry entry = new Entry(job, queue, host, sequence++);
+            queue.entries.add(entry);
+            if (tile != null) {
+                queuedTiles.put(tile, entry);
+            }
+            notifyAll();
+            if (workerThreadIdleCount < getQueuedJobCount() && workerThreadCount < workerThreadMaxCount)
+                addWorkerThread();
+        }
+    }
+
+    private int getQueuedJobCount() {
+        int count = 0;
+        for (JobQueue queue : queues) {
+            count += queue.entries.size();
+        }
+        return count;
+    }
+
+    private static String getHost(Tile tile) {
         try {
-            if(job.getTile() != null) {
-                for(TileJob oldJob : jobQueue) {
-                    if(oldJob.getTile() == job.getTile()) {
-                        return;
+            String url = tile.getUrl();
+            return url != null ? new URL(url).getHost() : null;
+        } catch (MalformedURLException e) {
+            return null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Replies the queue of a client, <code>null</code> if it has no queued job.
+     */
+    private JobQueue findQueue(TileJobPriority priority) {
+        for (JobQueue queue : queues) {
+            if (queue.priority == priority)
+                return queue;
+        }
+        return null;
+    }
+
+    /**
+     * Removes the next job to run from the queues, serving the clients in
+     * turn, or replies <code>null</code> if none can run.
+     */
+    private Entry nextJob(List<Entry> cancelled) {
+        for (int n = queues.size(); n > 0 && !queues.isEmpty(); n--) {
+            if (nextQueue >= queues.size()) {
+                nextQueue = 0;
+            }
+            JobQueue queue = queues.get(nextQueue);
+            Entry best = null;
+            double bestPriority = 0;
+            for (Iterator<Entry> it = queue.entries.iterator(); it.hasNext();) {
+                Entry e = it.next();
+                double p;
+                if (queue.priority == null || e.job.getTile() == null) {
+                    p = modeLIFO ? -e.sequence : e.sequence;
+                } else {
+                    p = queue.priority.getPriority(e.job.getTile());
+                    if (Double.isNaN(p) || p == Double.POSITIVE_INFINITY) {
+                        it.remove();
+                        queuedTiles.remove(e.job.getTile());
+                        cancelled.add(e);
+                        continue;
                     }
                 }
+                if (e.host != null && getRunning(e.host) >= workerThreadMaxCountPerHost)
+                    continue;
+                if (best == null || p < bestPriority || (p == bestPriority && (modeLIFO
+                        ? e.sequence > best.sequence : e.sequence < best.sequence))) {
+                    best = e;
+                    bestPriority = p;
+                }
             }
-            jobQueue.put(job);
-            if (workerThreadIdleCount == 0 && workerThreadCount < workerThreadMaxCount)
-                addWorkerThread();
-        } catch (InterruptedException e) {
+            if (best != null) {
+                queue.entries.remove(best);
+                if (best.job.getTile() != null) {
+                    queuedTiles.remove(best.job.getTile());
+                }
+                if (best.host != null) {
+                    runningPerHost.put(best.host, getRunning(best.host) + 1);
+                }
+            }
+            if (queue.entries.isEmpty()) {
+                queues.remove(nextQueue);
+            } else {
+                nextQueue++;
+            }
+            if (best != null)
+                return best;
+        }
+        return null;
+    }
+
+    private int getRunning(String host) {
+        Integer running = runningPerHost.get(host);
+        return running != null ? running : 0;
+    }
+
+    private synchronized void jobFinished(Entry entry) {
+        if (entry.host != null) {
+            int running = getRunning(entry.host) - 1;
+            if (running > 0) {
+                runningPerHost.put(entry.host, running);
+            } else {
+                runningPerHost.remove(entry.host);
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Waits for the next job to run.
+     *
+     * @param timeout the maximal time to wait in milliseconds, 0 to wait forever
+     * @return the next job, or <code>null</code> if none is available after the timeout
+     */
+    private Entry takeJob(long timeout) throws InterruptedException {
+        long end = System.currentTimeMillis() + timeout;
+        while (true) {
+            Entry entry;
+            List<Entry> cancelled = new ArrayList<>();
+            synchronized (this) {
+                entry = nextJob(cancelled);
+                if (entry == null && cancelled.isEmpty()) {
+                    long wait = timeout > 0 ? end - System.currentTimeMillis() : 0;
+                    if (timeout > 0 && wait <= 0)
+                        return null;
+                    wait(wait);
+                }
+            }
+            notifyCancelled(cancelled);
+            if (entry != null)
+                return entry;
         }
     }
 
@@ -121,6 +381,7 @@ public class JobDispatcher {
     public class JobThread extends Thread {
 
         Runnable job;
+        Entry entry;
         boolean firstThread = false;
 
         public JobThread(int threadId) {
@@ -132,7 +393,7 @@ public class JobDispatcher {
         @Override
         public void run() {
             executeJobs();
-            synchronized (instance) {
+            synchronized (JobDispatcher.this) {
                 workerThreadCount--;
             }
         }
@@ -140,34 +401,28 @@ public class JobDispatcher {
         protected void executeJobs() {
             while (!isInterrupted()) {
                 try {
-                    synchronized (instance) {
+                    synchronized (JobDispatcher.this) {
                         workerThreadIdleCount++;
                     }
-                    if(modeLIFO) {
-                        if (firstThread)
-                            job = jobQueue.takeLast();
-                        else
-                            job = jobQueue.pollLast(workerThreadTimeout, TimeUnit.SECONDS);
-                    } else {
-                        if (firstThread)
-                            job = jobQueue.take();
-                        else
-                            job = jobQueue.poll(workerThreadTimeout, TimeUnit.SECONDS);
-                    }
+                    entry = takeJob(firstThread ? 0 : workerThreadTimeout * 1000L);
                 } catch (InterruptedException e1) {
                     return;
                 } finally {
-                    synchronized (instance) {
+                    synchronized (JobDispatcher.this) {
                         workerThreadIdleCount--;
                     }
                 }
-                if (job == null)
+                if (entry == null)
                     return;
+                job = entry.job;
                 try {
                     job.run();
-                    job = null;
                 } catch (Exception e) {
                     e.printStackTrace();
+                } finally {
+                    jobFinished(entry);
+                    job = null;
+                    entry = null;
                 }
             }
         }
@@ -1,6 +1,8 @@
 // License: GPL. For details, see Readme.txt file.
 package org.openstreetmap.gui.jmapviewer;
 
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Logger;
@@ -12,6 +14,13 @@ import org.openstreetmap.gui.jmapviewer.interfaces.TileSource;
  * {@link TileCache} implementation that stores all {@link Tile} objects in
  * memory up to a certain limit ({@link #getCacheSize()}). If the limit is
  * exceeded the least recently used {@link Tile} objects will be deleted.
+ * <p>
+ * The memory used by the tiles can be limited too, see
+ * {@link #setMaxBytes(long, long)}. The decoded images of the least recently
+ * used tiles are released beyond the first limit: these tiles only keep their
+ * encoded image. Once retrieved, they are no longer loaded, so that the tile
+ * loader decodes them again, see {@link Tile#restoreImage()}. Beyond the
+ * second limit, the least recently used of these tiles are deleted.
  *
  * @author Jan Peter Stotz
  */
@@ -24,6 +33,27 @@ public class MemoryTileCache implements TileCache {
      */
     protected int cacheSize = 200;
 
+    /**
+     * Maximal size of the decoded images, in bytes
+     */
+    protected long maxBytes = Long.MAX_VALUE;
+
+    /**
+     * Maximal size of the encoded images of the tiles whose decoded image has
+     * been released, in bytes
+     */
+    protected long maxCompressedBytes = 0;
+
+    /**
+     * Size of the decoded images, as last seen
+     */
+    protected long bytes;
+
+    /**
+     * Size of the encoded images of the released tiles
+     */
+    protected long compressedBytes;
+
     protected final Map<String, CacheEntry> hash;
 
     /**
@@ -36,14 +66,37 @@ public class MemoryTileCache implements TileCache {
         lruTiles = new CacheLinkedListElement();
     }
 
+    /**
+     * Creates a cache limited by the memory used by the tiles, instead of
+     * their number.
+     *
+     * @param maxBytes the maximal size of the decoded images, in bytes
+     * @param maxCompressedBytes the maximal size of the encoded images of the
+     *            tiles whose decoded image has been released, in bytes
+     */
+    public MemoryTileCache(long maxBytes, long maxCompressedBytes) {
+        this();
+        this.cacheSize = Integer.MAX_VALUE;
+        this.maxBytes = maxBytes;
+        this.maxCompressedBytes = maxCompressedBytes;
+    }
+
     @Override
     public synchronized void addTile(Tile tile) {
+        CacheEntry old = hash.get(tile.getKey());
+        if (old != null) {
+            removeEntry(old);
+        }
+        // the encoded images are only needed to release the decoded ones
+        tile.setKeepImageData(hasByteBudget());
         CacheEntry entry = createCacheEntry(tile);
-            hash.put(tile.getKey(), entry);
-            lruTiles.addFirst(entry);
-            if (hash.size() > cacheSize) {
-                removeOldEntries();
-            }
+        hash.put(tile.getKey(), entry);
+        lruTiles.addFirst(entry);
+        updateSize(entry);
+        if (hash.size() > cacheSize) {
+            removeOldEntries();
+        }
+        releaseImages();
     }
 
     @Override
@@ -51,11 +104,93 @@ public class MemoryTileCache implements TileCache {
         CacheEntry entry = hash.get(Tile.getTileKey(source, x, y, z));
         if (entry == null)
             return null;
+        Tile tile = entry.tile;
+        if (tile.isLoaded() && tile.image == null && tile.imageData != null) {
+            // decoded again by the tile loader
+            tile.loaded = false;
+        }
         // We don't care about placeholder tiles and hourglass image tiles, the
         // important tiles are the loaded ones
-        if (entry.tile.isLoaded())
+        if (tile.isLoaded())
             lruTiles.moveElementToFirstPos(entry);
-        return entry.tile;
+        // the image may have changed since the last access
+        if (updateSize(entry)) {
+            releaseImages();
+        }
+        return tile;
+    }
+
+    /**
+     * @return <code>true</code> if the cache is limited by the memory used by
+     *         the decoded images
+     */
+    protected boolean hasByteBudget() {
+        return maxBytes != Long.MAX_VALUE;
+    }
+
+    /**
+     * Updates the memory used by a tile.
+     *
+     * @return <code>true</code> if it has grown
+     */
+    private boolean updateSize(CacheEntry entry) {
+        Tile tile = entry.tile;
+        BufferedImage image = tile.image;
+        long decoded = image != null && image != Tile.LOADING_IMAGE && image != Tile.ERROR_IMAGE
+                ? getImageSize(image) : 0;
+        long compressed = image == null && tile.imageData != null ? tile.imageData.length : 0;
+        long growth = decoded - entry.bytes + compressed - entry.compressedBytes;
+        bytes += decoded - entry.bytes;
+        compressedBytes += compressed - entry.compressedBytes;
+        entry.bytes = decoded;
+        entry.compressedBytes = compressed;
+        return growth > 0;
+    }
+
+    /**
+     * Replies the memory used by an image.
+     *
+     * @param image the image
+     * @return the size of the image data, in bytes
+     */
+    protected static long getImageSize(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+
+    /**
+     * Releases the decoded images of the least recently used tiles beyond
+     * {@link #maxBytes}, then deletes the least recently used released tiles
+     * beyond {@link #maxCompressedBytes}.
+     */
+    protected void releaseImages() {
+        CacheEntry entry = lruTiles.getLastElement();
+        while (bytes > maxBytes && entry != null) {
+            CacheEntry prev = entry.prev;
+            if (entry.bytes > 0) {
+                Tile tile = entry.tile;
+                if (tile.isLoaded() && tile.imageData != null) {
+                    tile.image = null;
+                } else if (tile.isLoaded()) {
+                    removeEntry(entry);
+                } else if (!tile.isLoading()) {
+                    // placeholder
+                    tile.image = Tile.LOADING_IMAGE;
+                }
+                if (hash.get(tile.getKey()) == entry) {
+                    updateSize(entry);
+                }
+            }
+            entry = prev;
+        }
+        entry = lruTiles.getLastElement();
+        while (compressedBytes > maxCompressedBytes && entry != null) {
+            CacheEntry prev = entry.prev;
+            if (entry.compressedBytes > 0) {
+                removeEntry(entry);
+            }
+            entry = prev;
+        }
     }
 
     /**
@@ -74,6 +209,10 @@ public class MemoryTileCache implements TileCache {
     protected synchronized void removeEntry(CacheEntry entry) {
         hash.remove(entry.tile.getKey());
         lruTiles.removeEntry(entry);
+        bytes -= entry.bytes;
+        compressedBytes -= entry.compressedBytes;
+        entry.bytes = 0;
+        entry.compressedBytes = 0;
     }
 
     protected CacheEntry createCacheEntry(Tile tile) {
@@ -86,6 +225,8 @@ public class MemoryTileCache implements TileCache {
     public synchronized void clear() {
         hash.clear();
         lruTiles.clear();
+        bytes = 0;
+        compressedBytes = 0;
     }
 
     @Override
@@ -109,6 +250,37 @@ public class MemoryTileCache implements TileCache {
             removeOldEntries();
     }
 
+    /**
+     * Changes the maximum memory used by the tiles.
+     *
+     * @param maxBytes the maximal size of the decoded images, in bytes
+     * @param maxCompressedBytes the maximal size of the encoded images of the
+     *            tiles whose decoded image has been released, in bytes
+     */
+    public synchronized void setMaxBytes(long maxBytes, long maxCompressedBytes) {
+        this.maxBytes = maxBytes;
+        this.maxCompressedBytes = maxCompressedBytes;
+        for (CacheEntry entry : hash.values()) {
+            entry.tile.setKeepImageData(hasByteBudget());
+        }
+        releaseImages();
+    }
+
+    /**
+     * @return the size of the decoded images held by the cache, in bytes
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the size of the encoded images of the tiles whose decoded image
+     *         has been released, in bytes
+     */
+    public synchronized long getCompressedBytes() {
+        return compressedBytes;
+    }
+
     /**
      * Linked list element holding the {@link Tile} and links to the
      * {@link #next} and {@link #prev} item in the list.
@@ -116,6 +288,11 @@ public class MemoryTileCache implements TileCache {
     protected static class CacheEntry {
         Tile tile;
 
+        /** Size of the decoded image, as last seen */
+        long bytes;
+        /** Size of the encoded image, if the decoded one has been released */
+        long compressedBytes;
+
         CacheEntry next;
         CacheEntry prev;
 
@@ -2,7 +2,6 @@
 package org.openstreetmap.gui.jmapviewer;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -154,6 +153,11 @@ public class OsmFileCacheTileLoader extends OsmTileLoader implements CachedTileL
                 tile.error = false;
                 tile.loading = true;
             }
+            if (tile.restoreImage()) {
+                tile.finishLoading();
+                listener.tileLoadingFinished(tile, true);
+                return;
+            }
             tileCacheDir = getSourceCacheDir(tile.getSource());
             if (loadTileFromFile()) {
                 return;
@@ -236,7 +240,7 @@ public class OsmFileCacheTileLoader extends OsmTileLoader implements CachedTileL
                         }
                         byte[] buffer = loadTileInBuffer(urlConn);
                         if (buffer != null) {
-                            tile.loadImage(new ByteArrayInputStream(buffer));
+                            tile.loadImage(buffer);
                             tile.setLoaded(true);
                             listener.tileLoadingFinished(tile, true);
                             saveTileToFile(buffer);
@@ -49,6 +49,11 @@ public class OsmTileLoader implements TileLoader {
                     tile.error = false;
                     tile.loading = true;
                 }
+                if (tile.restoreImage()) {
+                    tile.finishLoading();
+                    listener.tileLoadingFinished(tile, true);
+                    return;
+                }
                 try {
                     URLConnection conn = loadTileFromOsm(tile);
                     loadTileMetadata(tile, conn);
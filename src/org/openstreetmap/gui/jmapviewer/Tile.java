@@ -5,6 +5,8 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
@@ -44,6 +46,15 @@ public class Tile {
     protected int ytile;
     protected int zoom;
     protected BufferedImage image;
+    /**
+     * The encoded image, kept to decode it again after the image has been
+     * released by the cache, or <code>null</code>
+     */
+    protected byte[] imageData;
+    /**
+     * Whether the encoded image is kept, see {@link #setKeepImageData(boolean)}
+     */
+    protected boolean keepImageData = false;
     protected String key;
     protected boolean loaded = false;
     protected boolean loading = false;
@@ -82,9 +93,14 @@ public class Tile {
      * been loaded.
      */
     public void loadPlaceholderFromCache(TileCache cache) {
-        BufferedImage tmpImage = new BufferedImage(source.getTileSize(), source.getTileSize(), BufferedImage.TYPE_INT_RGB);
-        Graphics2D g = (Graphics2D) tmpImage.getGraphics();
-        // g.drawImage(image, 0, 0, null);
+        BufferedImage placeholder = createPlaceholder(cache);
+        if (placeholder != null) {
+            image = placeholder;
+        }
+    }
+
+    private BufferedImage createPlaceholder(TileCache cache) {
+        int tileSize = source.getTileSize();
         for (int zoomDiff = 1; zoomDiff < 5; zoomDiff++) {
             // first we check if there are already the 2^x tiles
             // of a higher detail level
@@ -93,21 +109,26 @@ public class Tile {
                 int factor = 1 << zoomDiff;
                 int xtile_high = xtile << zoomDiff;
                 int ytile_high = ytile << zoomDiff;
-                double scale = 1.0 / factor;
-                g.setTransform(AffineTransform.getScaleInstance(scale, scale));
+                Tile[] tiles = new Tile[factor * factor];
                 int paintedTileCount = 0;
                 for (int x = 0; x < factor; x++) {
                     for (int y = 0; y < factor; y++) {
                         Tile tile = cache.getTile(source, xtile_high + x, ytile_high + y, zoom_high);
-                        if (tile != null && tile.isLoaded()) {
-                            paintedTileCount++;
-                            tile.paint(g, x * source.getTileSize(), y * source.getTileSize());
+                        if (tile != null && tile.isLoaded() && tile.image != null) {
+                            tiles[paintedTileCount++] = tile;
                         }
                     }
                 }
                 if (paintedTileCount == factor * factor) {
-                    image = tmpImage;
-                    return;
+                    BufferedImage tmpImage = new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_ARGB);
+                    Graphics2D g = tmpImage.createGraphics();
+                    double scale = 1.0 / factor;
+                    g.setTransform(AffineTransform.getScaleInstance(scale, scale));
+                    for (Tile tile : tiles) {
+                        tile.paint(g, (tile.xtile - xtile_high) * tileSize, (tile.ytile - ytile_high) * tileSize);
+                    }
+                    g.dispose();
+                    return tmpImage;
                 }
             }
 
@@ -115,21 +136,34 @@ public class Tile {
             if (zoom_low >= JMapViewer.MIN_ZOOM) {
                 int xtile_low = xtile >> zoomDiff;
                 int ytile_low = ytile >> zoomDiff;
-                int factor = (1 << zoomDiff);
-                double scale = factor;
-                AffineTransform at = new AffineTransform();
-                int translate_x = (xtile % factor) * source.getTileSize();
-                int translate_y = (ytile % factor) * source.getTileSize();
-                at.setTransform(scale, 0, 0, scale, -translate_x, -translate_y);
-                g.setTransform(at);
                 Tile tile = cache.getTile(source, xtile_low, ytile_low, zoom_low);
-                if (tile != null && tile.isLoaded()) {
+                if (tile != null && tile.isLoaded() && tile.image != null) {
+                    int factor = (1 << zoomDiff);
+                    double scale = factor;
+                    AffineTransform at = new AffineTransform();
+                    int translate_x = (xtile % factor) * tileSize;
+                    int translate_y = (ytile % factor) * tileSize;
+                    at.setTransform(scale, 0, 0, scale, -translate_x, -translate_y);
+                    BufferedImage tmpImage = new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_ARGB);
+                    Graphics2D g = tmpImage.createGraphics();
+                    g.setTransform(at);
                     tile.paint(g, 0, 0);
-                    image = tmpImage;
-                    return;
+                    g.dispose();
+                    return tmpImage;
                 }
             }
         }
+        return null;
+    }
+
+    /**
+     * Determines if the tile shows an image built from the tiles of other
+     * zoom levels, until it is loaded.
+     *
+     * @return <code>true</code> if the tile has a placeholder image
+     */
+    public boolean hasPlaceholder() {
+        return !loaded && image != null && image != LOADING_IMAGE && image != ERROR_IMAGE;
     }
 
     public TileSource getSource() {
@@ -163,10 +197,88 @@ public class Tile {
 
     public void setImage(BufferedImage image) {
         this.image = image;
+        this.imageData = null;
+    }
+
+    /**
+     * Replaces the decoded image by a processed one, keeping the encoded image.
+     * The processing has to be applied again when the encoded image is decoded,
+     * which the tile loader reports like a loaded tile, see {@link #restoreImage()}.
+     *
+     * @param image the processed image
+     */
+    public void setProcessedImage(BufferedImage image) {
+        this.image = image;
     }
 
     public void loadImage(InputStream input) throws IOException {
-        image = ImageIO.read(input);
+        if (!keepImageData) {
+            image = ImageIO.read(input);
+            imageData = null;
+            return;
+        }
+        ByteArrayOutputStream data = new ByteArrayOutputStream(Math.max(input.available(), 8192));
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = input.read(buffer)) >= 0) {
+            data.write(buffer, 0, read);
+        }
+        loadImage(data.toByteArray());
+    }
+
+    /**
+     * Decodes the image of the tile. The encoded image is kept if the cache
+     * of the tile asks for it, see {@link #setKeepImageData(boolean)}.
+     *
+     * @param data the encoded image
+     * @throws IOException if the image cannot be decoded
+     */
+    public void loadImage(byte[] data) throws IOException {
+        image = ImageIO.read(new ByteArrayInputStream(data));
+        imageData = image != null && keepImageData ? data : null;
+    }
+
+    /**
+     * Decodes again the encoded image, once the cache has released the
+     * decoded one. The tile loaders call it before loading the tile, so that
+     * the image is decoded on their thread.
+     *
+     * @return <code>true</code> if the image has been decoded, <code>false</code>
+     *         if the tile has to be loaded
+     */
+    public boolean restoreImage() {
+        byte[] data = imageData;
+        if (data == null || image != null)
+            return false;
+        try {
+            image = ImageIO.read(new ByteArrayInputStream(data));
+        } catch (IOException e) {
+            image = null;
+        }
+        if (image == null) {
+            imageData = null;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Sets whether the encoded image is kept when the tile is loaded, so that
+     * a cache limited by the memory of the images can release the decoded
+     * image and decode it again when needed.
+     *
+     * @param keepImageData <code>true</code> to keep the encoded image
+     */
+    public void setKeepImageData(boolean keepImageData) {
+        this.keepImageData = keepImageData;
+    }
+
+    /**
+     * @return the encoded image of the tile, or <code>null</code> if it is
+     *         not known
+     */
+    public byte[] getImageData() {
+        return imageData;
     }
 
     /**
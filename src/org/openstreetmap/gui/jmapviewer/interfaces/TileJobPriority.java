@@ -0,0 +1,30 @@
+// License: GPL. For details, see Readme.txt file.
+package org.openstreetmap.gui.jmapviewer.interfaces;
+
+import org.openstreetmap.gui.jmapviewer.JobDispatcher;
+import org.openstreetmap.gui.jmapviewer.Tile;
+
+/**
+ * Orders the jobs of one client of the {@link JobDispatcher}, usually a layer showing tiles.
+ * Each client has its own queue, and the clients are served in turn.
+ */
+public interface TileJobPriority {
+
+    /**
+     * Replies the priority of loading a tile. It is asked each time a job is
+     * chosen, from a worker thread, so that the order follows the view.
+     *
+     * @param tile the tile of a queued job
+     * @return the priority of the tile, the lowest is loaded first, or
+     *         {@link Double#POSITIVE_INFINITY} if the tile is not needed
+     *         anymore: its job is then cancelled
+     */
+    public double getPriority(Tile tile);
+
+    /**
+     * Notifies that a queued job has been cancelled, without being run.
+     *
+     * @param job the cancelled job
+     */
+    public void jobCancelled(TileJob job);
+}
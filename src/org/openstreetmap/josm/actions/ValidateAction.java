@@ -15,6 +15,7 @@ import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.validation.OsmValidator;
 import org.openstreetmap.josm.data.validation.Test;
 import org.openstreetmap.josm.data.validation.TestError;
+import org.openstreetmap.josm.data.validation.ValidationRunner;
 import org.openstreetmap.josm.data.validation.util.AggregatePrimitivesVisitor;
 import org.openstreetmap.josm.gui.PleaseWaitRunnable;
 import org.openstreetmap.josm.gui.preferences.validator.ValidatorPreference;
@@ -75,7 +76,7 @@ public class ValidateAction extends JosmAction {
         if (getSelectedItems) {
             selection = Main.main.getCurrentDataSet().getAllSelected();
             if (selection.isEmpty()) {
-                selection = Main.main.getCurrentDataSet().allNonDeletedPrimitives();
+                selection = Main.main.getCurrentDataSet().getSnapshot().allNonDeletedPrimitives();
                 lastSelection = null;
             } else {
                 AggregatePrimitivesVisitor v = new AggregatePrimitivesVisitor();
@@ -84,7 +85,7 @@ public class ValidateAction extends JosmAction {
             }
         } else {
             if (lastSelection == null) {
-                selection = Main.main.getCurrentDataSet().allNonDeletedPrimitives();
+                selection = Main.main.getCurrentDataSet().getSnapshot().allNonDeletedPrimitives();
             } else {
                 selection = lastSelection;
             }
@@ -156,21 +157,12 @@ public class ValidateAction extends JosmAction {
         OsmTransferException {
             if (tests == null || tests.isEmpty())
                 return;
-            errors = new ArrayList<>(200);
             getProgressMonitor().setTicksCount(tests.size() * validatedPrimitives.size());
-            int testCounter = 0;
-            for (Test test : tests) {
-                if (canceled)
-                    return;
-                testCounter++;
-                getProgressMonitor().setCustomText(tr("Test {0}/{1}: Starting {2}", testCounter, tests.size(),test.getName()));
-                test.setPartialSelection(formerValidatedPrimitives != null);
-                test.startTest(getProgressMonitor().createSubTaskMonitor(validatedPrimitives.size(), false));
-                test.visit(validatedPrimitives);
-                test.endTest();
-                errors.addAll(test.getErrors());
-            }
+            errors = ValidationRunner.runTests(tests, validatedPrimitives, false, formerValidatedPrimitives != null,
+                    getProgressMonitor());
             tests = null;
+            if (canceled)
+                return;
             if (Main.pref.getBoolean(ValidatorPreference.PREF_USE_IGNORE, true)) {
                 getProgressMonitor().subTask(tr("Updating ignored errors ..."));
                 for (TestError error : errors) {
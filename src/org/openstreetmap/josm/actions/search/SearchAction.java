@@ -50,6 +50,7 @@ import org.openstreetmap.josm.tools.GBC;
 import org.openstreetmap.josm.tools.Predicate;
 import org.openstreetmap.josm.tools.Property;
 import org.openstreetmap.josm.tools.Shortcut;
+import org.openstreetmap.josm.tools.SubclassFilteredCollection;
 import org.openstreetmap.josm.tools.Utils;
 
 
@@ -497,12 +498,23 @@ public class SearchAction extends JosmAction implements ParameterizedAction {
                 sel.clear();
             }
 
-            Collection<OsmPrimitive> all;
-            if(s.allElements) {
-                all = Main.main.getCurrentDataSet().allPrimitives();
-            } else {
-                all = Main.main.getCurrentDataSet().allNonDeletedCompletePrimitives();
+            final DataSet ds = Main.main.getCurrentDataSet();
+            final boolean allElements = s.allElements;
+            // Only the primitives having the searched tags may match, unless the non matching ones are searched
+            Collection<OsmPrimitive> candidates = s.mode != SearchMode.in_selection
+                    ? matcher.getCandidates(ds.getTagIndex()) : null;
+            if (candidates == null) {
+                // Search a snapshot, so that the search neither blocks nor is disturbed by concurrent edits.
+                // The snapshot is older than the dataset while it is being modified: primitives added in the
+                // meantime are missed, and the ones removed or deleted in the meantime are skipped below.
+                candidates = ds.getSnapshot().allPrimitives();
             }
+            Collection<OsmPrimitive> all = new SubclassFilteredCollection<>(candidates, new Predicate<OsmPrimitive>() {
+                @Override
+                public boolean evaluate(OsmPrimitive osm) {
+                    return osm.getDataSet() == ds && (allElements || OsmPrimitive.nonDeletedCompletePredicate.evaluate(osm));
+                }
+            });
             for (OsmPrimitive osm : all) {
                 if (s.mode == SearchMode.replace) {
                     if (matcher.match(osm)) {
@@ -9,8 +9,11 @@ import java.io.StringReader;
 import java.text.Normalizer;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -19,12 +22,15 @@ import org.openstreetmap.josm.Main;
 import org.openstreetmap.josm.actions.search.PushbackTokenizer.Range;
 import org.openstreetmap.josm.actions.search.PushbackTokenizer.Token;
 import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.osm.AbstractPrimitive;
+import org.openstreetmap.josm.data.osm.KeyValueVisitor;
 import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
 import org.openstreetmap.josm.data.osm.OsmUtils;
 import org.openstreetmap.josm.data.osm.Relation;
 import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.TagIndex;
 import org.openstreetmap.josm.data.osm.Way;
 import org.openstreetmap.josm.tools.Geometry;
 import org.openstreetmap.josm.tools.Predicate;
@@ -244,6 +250,62 @@ public class SearchCompiler {
         public final boolean evaluate(OsmPrimitive object) {
             return match(object);
         }
+
+        /**
+         * Replies the primitives which may match, looked up in the tag index of the dataset, so that only
+         * they have to be tested instead of all primitives. The candidates may include primitives which do
+         * not match, or which are not in the dataset anymore.
+         * @param index the tag index of the dataset
+         * @return the candidates, or {@code null} if all primitives have to be tested
+         */
+        public Collection<OsmPrimitive> getCandidates(TagIndex index) {
+            return null;
+        }
+    }
+
+    /**
+     * Replies the primitives of both collections, without duplicates.
+     */
+    private static Collection<OsmPrimitive> union(Collection<OsmPrimitive> c1, Collection<OsmPrimitive> c2) {
+        Set<OsmPrimitive> result = Collections.newSetFromMap(
+                new IdentityHashMap<OsmPrimitive, Boolean>(c1.size() + (c2 != null ? c2.size() : 0)));
+        result.addAll(c1);
+        if (c2 != null) {
+            result.addAll(c2);
+        }
+        return result;
+    }
+
+    /**
+     * Tests the tags of a primitive one by one, without creating a map of the tags.
+     */
+    private abstract static class TagMatcher implements KeyValueVisitor {
+        private boolean matched;
+
+        /**
+         * Tests a single tag.
+         * @param key the key
+         * @param value the value
+         * @return true if the tag matches
+         */
+        abstract boolean matches(String key, String value);
+
+        @Override
+        public void visitKeyValue(AbstractPrimitive primitive, String key, String value) {
+            if (!matched && matches(key, value)) {
+                matched = true;
+            }
+        }
+
+        /**
+         * Tests whether at least one tag of the given primitive matches.
+         * @param osm the primitive
+         * @return true if at least one tag matches
+         */
+        boolean anyTagMatches(OsmPrimitive osm) {
+            osm.visitKeys(this);
+            return matched;
+        }
     }
 
     /**
@@ -344,6 +406,10 @@ public class SearchCompiler {
             else
                 return ret;
         }
+        @Override
+        public Collection<OsmPrimitive> getCandidates(TagIndex index) {
+            return defaultValue ? null : index.getPrimitivesWithKey(key);
+        }
     }
 
     /**
@@ -357,6 +423,17 @@ public class SearchCompiler {
         @Override public String toString() {
             return lhs + " && " + rhs;
         }
+        @Override
+        public Collection<OsmPrimitive> getCandidates(TagIndex index) {
+            // the candidates of one side are enough, the other side is tested
+            Collection<OsmPrimitive> c1 = lhs.getCandidates(index);
+            Collection<OsmPrimitive> c2 = rhs.getCandidates(index);
+            if (c1 == null)
+                return c2;
+            if (c2 == null)
+                return c1;
+            return c1.size() <= c2.size() ? c1 : c2;
+        }
     }
 
     /**
@@ -370,6 +447,14 @@ public class SearchCompiler {
         @Override public String toString() {
             return lhs + " || " + rhs;
         }
+        @Override
+        public Collection<OsmPrimitive> getCandidates(TagIndex index) {
+            Collection<OsmPrimitive> c1 = lhs.getCandidates(index);
+            if (c1 == null)
+                return null;
+            Collection<OsmPrimitive> c2 = rhs.getCandidates(index);
+            return c2 != null ? union(c1, c2) : null;
+        }
     }
 
     /**
@@ -383,6 +468,14 @@ public class SearchCompiler {
         @Override public String toString() {
             return lhs + " ^ " + rhs;
         }
+        @Override
+        public Collection<OsmPrimitive> getCandidates(TagIndex index) {
+            Collection<OsmPrimitive> c1 = lhs.getCandidates(index);
+            if (c1 == null)
+                return null;
+            Collection<OsmPrimitive> c2 = rhs.getCandidates(index);
+            return c2 != null ? union(c1, c2) : null;
+        }
     }
 
     /**
@@ -491,20 +584,19 @@ public class SearchCompiler {
                  * and only then try to match against the value
                  */
 
-                for (String k: osm.keySet()) {
-                    String v = osm.get(k);
-
-                    Matcher matcherKey = keyPattern.matcher(k);
-                    boolean matchedKey = matcherKey.find();
+                return new TagMatcher() {
+                    @Override
+                    boolean matches(String k, String v) {
+                        Matcher matcherKey = keyPattern.matcher(k);
+                        boolean matchedKey = matcherKey.find();
 
-                    if (matchedKey) {
-                        Matcher matcherValue = valuePattern.matcher(v);
-                        boolean matchedValue = matcherValue.find();
-
-                        if (matchedValue)
-                            return true;
+                        if (matchedKey) {
+                            Matcher matcherValue = valuePattern.matcher(v);
+                            return matcherValue.find();
+                        }
+                        return false;
                     }
-                }
+                }.anyTagMatches(osm);
             } else {
                 String mv = null;
 
@@ -524,8 +616,12 @@ public class SearchCompiler {
                 v2 = Normalizer.normalize(v2, Normalizer.Form.NFC);
                 return v1.indexOf(v2) != -1;
             }
-
-            return false;
+        }
+        @Override
+        public Collection<OsmPrimitive> getCandidates(TagIndex index) {
+            if (keyPattern != null || "timestamp".equals(key))
+                return null;
+            return index.getPrimitivesWithKey(key);
         }
         @Override public String toString() {return key+"="+value;}
     }
@@ -556,6 +652,11 @@ public class SearchCompiler {
             }
             return compareMode < 0 ? compareResult < 0 : compareMode > 0 ? compareResult > 0 : compareResult == 0;
         }
+
+        @Override
+        public Collection<OsmPrimitive> getCandidates(TagIndex index) {
+            return index.getPrimitivesWithKey(key);
+        }
     }
 
     /**
@@ -649,39 +750,56 @@ public class SearchCompiler {
             case ANY_VALUE:
                 return osm.get(key) != null;
             case ANY_KEY:
-                for (String v:osm.getKeys().values()) {
-                    if (v.equals(value))
-                        return true;
-                }
-                return false;
+                return new TagMatcher() {
+                    @Override
+                    boolean matches(String k, String v) {
+                        return v.equals(value);
+                    }
+                }.anyTagMatches(osm);
             case EXACT:
                 return value.equals(osm.get(key));
             case ANY_KEY_REGEXP:
-                for (String v:osm.getKeys().values()) {
-                    if (valuePattern.matcher(v).matches())
-                        return true;
-                }
-                return false;
+                return new TagMatcher() {
+                    @Override
+                    boolean matches(String k, String v) {
+                        return valuePattern.matcher(v).matches();
+                    }
+                }.anyTagMatches(osm);
             case ANY_VALUE_REGEXP:
             case EXACT_REGEXP:
-                for (String key: osm.keySet()) {
-                    if (keyPattern.matcher(key).matches()) {
-                        if (mode == Mode.ANY_VALUE_REGEXP
-                                || valuePattern.matcher(osm.get(key)).matches())
-                            return true;
+                return new TagMatcher() {
+                    @Override
+                    boolean matches(String k, String v) {
+                        return keyPattern.matcher(k).matches()
+                                && (mode == Mode.ANY_VALUE_REGEXP || valuePattern.matcher(v).matches());
                     }
-                }
-                return false;
+                }.anyTagMatches(osm);
             case MISSING_KEY_REGEXP:
-                for (String k:osm.keySet()) {
-                    if (keyPattern.matcher(k).matches())
-                        return false;
-                }
-                return true;
+                return !new TagMatcher() {
+                    @Override
+                    boolean matches(String k, String v) {
+                        return keyPattern.matcher(k).matches();
+                    }
+                }.anyTagMatches(osm);
             }
             throw new AssertionError("Missed state");
         }
 
+        @Override
+        public Collection<OsmPrimitive> getCandidates(TagIndex index) {
+            switch (mode) {
+            case EXACT:
+                return index.getPrimitives(key, value);
+            case ANY_VALUE:
+                return index.getPrimitivesWithKey(key);
+            case ANY_KEY:
+                return union(index.getPrimitivesWithValue(value), null);
+            default:
+                // untagged primitives, missing keys and regular expressions are not indexed
+                return null;
+            }
+        }
+
         @Override
         public String toString() {
             return key + '=' + value;
@@ -722,33 +840,35 @@ public class SearchCompiler {
             if (!osm.hasKeys() && osm.getUser() == null)
                 return search.isEmpty();
 
-            for (String key: osm.keySet()) {
-                String value = osm.get(key);
-                if (searchRegex != null) {
+            return new TagMatcher() {
+                @Override
+                boolean matches(String key, String value) {
+                    if (searchRegex != null) {
 
-                    value = Normalizer.normalize(value, Normalizer.Form.NFC);
+                        value = Normalizer.normalize(value, Normalizer.Form.NFC);
 
-                    Matcher keyMatcher = searchRegex.matcher(key);
-                    Matcher valMatcher = searchRegex.matcher(value);
+                        Matcher keyMatcher = searchRegex.matcher(key);
+                        Matcher valMatcher = searchRegex.matcher(value);
 
-                    boolean keyMatchFound = keyMatcher.find();
-                    boolean valMatchFound = valMatcher.find();
+                        boolean keyMatchFound = keyMatcher.find();
+                        boolean valMatchFound = valMatcher.find();
 
-                    if (keyMatchFound || valMatchFound)
-                        return true;
-                } else {
-                    if (!caseSensitive) {
-                        key = key.toLowerCase();
-                        value = value.toLowerCase();
-                    }
+                        if (keyMatchFound || valMatchFound)
+                            return true;
+                    } else {
+                        if (!caseSensitive) {
+                            key = key.toLowerCase();
+                            value = value.toLowerCase();
+                        }
 
-                    value = Normalizer.normalize(value, Normalizer.Form.NFC);
+                        value = Normalizer.normalize(value, Normalizer.Form.NFC);
 
-                    if (key.indexOf(search) != -1 || value.indexOf(search) != -1)
-                        return true;
+                        if (key.indexOf(search) != -1 || value.indexOf(search) != -1)
+                            return true;
+                    }
+                    return false;
                 }
-            }
-            return false;
+            }.anyTagMatches(osm);
         }
         @Override public String toString() {
             return search;
@@ -945,7 +1065,7 @@ public class SearchCompiler {
 
         @Override
         protected Long getNumber(OsmPrimitive osm) {
-            return (long) osm.getKeys().size();
+            return (long) osm.getNumKeys();
         }
 
         @Override
@@ -1049,18 +1169,30 @@ public class SearchCompiler {
             super(m);
         }
         @Override public boolean match(OsmPrimitive osm) {
-            boolean isParent = false;
-
             if (osm instanceof Way) {
                 for (Node n : ((Way)osm).getNodes()) {
-                    isParent |= match.match(n);
+                    if (match.match(n))
+                        return true;
                 }
             } else if (osm instanceof Relation) {
                 for (RelationMember member : ((Relation)osm).getMembers()) {
-                    isParent |= match.match(member.getMember());
+                    if (match.match(member.getMember()))
+                        return true;
                 }
             }
-            return isParent;
+            return false;
+        }
+        @Override
+        public Collection<OsmPrimitive> getCandidates(TagIndex index) {
+            // the parents of the children which may match
+            Collection<OsmPrimitive> children = match.getCandidates(index);
+            if (children == null)
+                return null;
+            Set<OsmPrimitive> result = Collections.newSetFromMap(new IdentityHashMap<OsmPrimitive, Boolean>());
+            for (OsmPrimitive child : children) {
+                result.addAll(child.getReferrers());
+            }
+            return result;
         }
         @Override public String toString() {return "parent(" + match + ")";}
     }
@@ -1075,11 +1207,29 @@ public class SearchCompiler {
         }
 
         @Override public boolean match(OsmPrimitive osm) {
-            boolean isChild = false;
             for (OsmPrimitive p : osm.getReferrers()) {
-                isChild |= match.match(p);
+                if (match.match(p))
+                    return true;
+            }
+            return false;
+        }
+        @Override
+        public Collection<OsmPrimitive> getCandidates(TagIndex index) {
+            // the children of the parents which may match
+            Collection<OsmPrimitive> parents = match.getCandidates(index);
+            if (parents == null)
+                return null;
+            Set<OsmPrimitive> result = Collections.newSetFromMap(new IdentityHashMap<OsmPrimitive, Boolean>());
+            for (OsmPrimitive parent : parents) {
+                if (parent instanceof Way) {
+                    result.addAll(((Way) parent).getNodes());
+                } else if (parent instanceof Relation) {
+                    for (RelationMember member : ((Relation) parent).getMembers()) {
+                        result.add(member.getMember());
+                    }
+                }
             }
-            return isChild;
+            return result;
         }
         @Override public String toString() {return "child(" + match + ")";}
     }
@@ -37,6 +37,8 @@ import org.openstreetmap.josm.gui.Notification;
 import org.openstreetmap.josm.gui.layer.Layer;
 import org.openstreetmap.josm.gui.layer.OsmDataLayer;
 import org.openstreetmap.josm.gui.util.GuiHelper;
+import org.openstreetmap.josm.io.OsmBinaryExporter;
+import org.openstreetmap.josm.io.OsmBinaryImporter;
 import org.openstreetmap.josm.io.OsmExporter;
 import org.openstreetmap.josm.io.OsmImporter;
 
@@ -69,6 +71,10 @@ public class AutosaveTask extends TimerTask implements LayerChangeListener, List
     public static final IntegerProperty PROP_INDEX_LIMIT = new IntegerProperty("autosave.index-limit", 1000);
     /** Defines if a notification should be displayed after each autosave */
     public static final BooleanProperty PROP_NOTIFICATION = new BooleanProperty("autosave.notification", false);
+    /**
+     * Saves the layers in the compact binary format of JOSM, faster to write and to recover than XML.
+     */
+    public static final BooleanProperty PROP_BINARY = new BooleanProperty("autosave.binary", false);
 
     private static class AutosaveLayerInfo {
         OsmDataLayer layer;
@@ -152,7 +158,7 @@ public class AutosaveTask extends TimerTask implements LayerChangeListener, List
         Date now = new Date();
         while (true) {
             String filename = String.format("%1$s_%2$tY%2$tm%2$td_%2$tH%2$tM%3$s", layer.layerFileName, now, index == 0?"":"_" + index);
-            File result = new File(autosaveDir, filename+".osm");
+            File result = new File(autosaveDir, filename + (PROP_BINARY.get() ? ".osmbin" : ".osm"));
             try {
                 if (result.createNewFile()) {
                     File pidFile = new File(autosaveDir, filename+".pid");
@@ -184,7 +190,8 @@ public class AutosaveTask extends TimerTask implements LayerChangeListener, List
             File file = getNewLayerFile(info);
             if (file != null) {
                 info.backupFiles.add(file);
-                new OsmExporter().exportData(file, info.layer, true /* no backup with appended ~ */);
+                OsmExporter exporter = PROP_BINARY.get() ? new OsmBinaryExporter() : new OsmExporter();
+                exporter.exportData(file, info.layer, true /* no backup with appended ~ */);
             }
         }
         while (info.backupFiles.size() > PROP_FILES_PER_LAYER.get()) {
@@ -287,13 +294,18 @@ public class AutosaveTask extends TimerTask implements LayerChangeListener, List
     }
 
     /**
-     * Replies the list of .osm files still present in autosave dir, that are not currently managed by another instance of JOSM.
+     * Replies the list of .osm and .osmbin files still present in autosave dir, that are not currently managed by another instance of JOSM.
      * These files are hence unsaved layers from an old instance of JOSM that crashed and may be recovered by this instance.
-     * @return The list of .osm files still present in autosave dir, that are not currently managed by another instance of JOSM
+     * @return The list of .osm and .osmbin files still present in autosave dir, that are not currently managed by another instance of JOSM
      */
     public List<File> getUnsavedLayersFiles() {
         List<File> result = new ArrayList<>();
-        File[] files = autosaveDir.listFiles(OsmImporter.FILE_FILTER);
+        File[] files = autosaveDir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return OsmImporter.FILE_FILTER.accept(file) || OsmBinaryImporter.FILE_FILTER.accept(file);
+            }
+        });
         if (files == null)
             return result;
         for (File file: files) {
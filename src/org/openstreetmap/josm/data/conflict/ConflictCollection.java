@@ -3,11 +3,14 @@ package org.openstreetmap.josm.data.conflict;
 
 import static org.openstreetmap.josm.tools.I18n.tr;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -36,11 +39,107 @@ import org.openstreetmap.josm.tools.Utils;
  *   <li>{@link #addConflictListener(IConflictListener)}</li>
  *   <li>{@link #removeConflictListener(IConflictListener)}</li>
  * </ul>
+ *
+ * The conflicts are indexed by their "my" and "their" primitives, so that looking up the conflict
+ * of a primitive does not depend on the size of the collection.
  */
 public class ConflictCollection implements Iterable<Conflict<? extends OsmPrimitive>>{
     private final List<Conflict<? extends OsmPrimitive>> conflicts;
     private CopyOnWriteArrayList<IConflictListener> listeners;
 
+    /** The first conflict of each "my" primitive, by identity as in {@link Conflict#isMatchingMy} */
+    private final Map<OsmPrimitive, Conflict<?>> conflictsByMy = new IdentityHashMap<>();
+    /** The first conflict of each "their" primitive, by identity as in {@link Conflict#isMatchingTheir} */
+    private final Map<OsmPrimitive, Conflict<?>> conflictsByTheir = new IdentityHashMap<>();
+    /**
+     * Set if several conflicts share a primitive, which the list replied by {@link #get()} allows.
+     * The lookups then scan the list, as the indexes only know one conflict per primitive.
+     * Reset when the collection becomes empty.
+     */
+    private boolean shared;
+
+    /**
+     * The list of conflicts, keeping the indexes current whatever way it is modified.
+     */
+    private final class ConflictList extends AbstractList<Conflict<? extends OsmPrimitive>> {
+        private final List<Conflict<? extends OsmPrimitive>> list = new ArrayList<>();
+
+        @Override
+        public Conflict<? extends OsmPrimitive> get(int index) {
+            return list.get(index);
+        }
+
+        @Override
+        public int size() {
+            return list.size();
+        }
+
+        @Override
+        public Conflict<? extends OsmPrimitive> set(int index, Conflict<? extends OsmPrimitive> element) {
+            Conflict<? extends OsmPrimitive> old = list.set(index, element);
+            unindex(old);
+            index(element);
+            return old;
+        }
+
+        @Override
+        public void add(int index, Conflict<? extends OsmPrimitive> element) {
+            list.add(index, element);
+            index(element);
+            modCount++;
+        }
+
+        @Override
+        public Conflict<? extends OsmPrimitive> remove(int index) {
+            Conflict<? extends OsmPrimitive> old = list.remove(index);
+            unindex(old);
+            modCount++;
+            return old;
+        }
+
+        @Override
+        protected void removeRange(int fromIndex, int toIndex) {
+            List<Conflict<? extends OsmPrimitive>> range = list.subList(fromIndex, toIndex);
+            if (range.size() == list.size()) {
+                range.clear();
+                unindexAll();
+            } else {
+                List<Conflict<? extends OsmPrimitive>> removed = new ArrayList<>(range);
+                range.clear();
+                for (Conflict<? extends OsmPrimitive> c : removed) {
+                    unindex(c);
+                }
+            }
+            modCount++;
+        }
+
+        private void index(Conflict<?> c) {
+            shared |= put(conflictsByMy, c.getMy(), c) | put(conflictsByTheir, c.getTheir(), c);
+        }
+
+        private boolean put(Map<OsmPrimitive, Conflict<?>> index, OsmPrimitive p, Conflict<?> c) {
+            if (index.containsKey(p))
+                return true;
+            index.put(p, c);
+            return false;
+        }
+
+        private void unindex(Conflict<?> c) {
+            if (list.isEmpty()) {
+                unindexAll();
+            } else if (!shared) {
+                conflictsByMy.remove(c.getMy());
+                conflictsByTheir.remove(c.getTheir());
+            }
+        }
+
+        private void unindexAll() {
+            conflictsByMy.clear();
+            conflictsByTheir.clear();
+            shared = false;
+        }
+    }
+
     private static class FilterPredicate implements Predicate<Conflict<? extends OsmPrimitive>> {
 
         private final Class<? extends OsmPrimitive> c;
@@ -63,7 +162,7 @@ public class ConflictCollection implements Iterable<Conflict<? extends OsmPrimit
      * Constructs a new {@code ConflictCollection}.
      */
     public ConflictCollection() {
-        conflicts = new ArrayList<>();
+        conflicts = new ConflictList();
         listeners = new CopyOnWriteArrayList<>();
     }
 
@@ -107,9 +206,8 @@ public class ConflictCollection implements Iterable<Conflict<? extends OsmPrimit
     protected void addConflict(Conflict<?> conflict) throws IllegalStateException {
         if (hasConflictForMy(conflict.getMy()))
             throw new IllegalStateException(tr("Already registered a conflict for primitive ''{0}''.", conflict.getMy().toString()));
-        if (!conflicts.contains(conflict)) {
-            conflicts.add(conflict);
-        }
+        // an equal conflict would have the same "my" primitive
+        conflicts.add(conflict);
     }
 
     /**
@@ -167,12 +265,7 @@ public class ConflictCollection implements Iterable<Conflict<? extends OsmPrimit
      * @param my  the primitive
      */
     public void remove(OsmPrimitive my) {
-        Iterator<Conflict<?>> it = iterator();
-        while(it.hasNext()) {
-            if (it.next().isMatchingMy(my)) {
-                it.remove();
-            }
-        }
+        removeForMy(my);
         fireConflictRemoved();
     }
 
@@ -185,6 +278,8 @@ public class ConflictCollection implements Iterable<Conflict<? extends OsmPrimit
      * if no such conflict exists.
      */
     public Conflict<?> getConflictForMy(OsmPrimitive my) {
+        if (!shared)
+            return conflictsByMy.get(my);
         for(Conflict<?> c : conflicts) {
             if (c.isMatchingMy(my))
                 return c;
@@ -200,6 +295,8 @@ public class ConflictCollection implements Iterable<Conflict<? extends OsmPrimit
      * if no such conflict exists.
      */
     public Conflict<?> getConflictForTheir(OsmPrimitive their) {
+        if (!shared)
+            return conflictsByTheir.get(their);
         for(Conflict<?> c : conflicts) {
             if (c.isMatchingTheir(their))
                 return c;
@@ -243,6 +340,13 @@ public class ConflictCollection implements Iterable<Conflict<? extends OsmPrimit
      * @param my the primitive
      */
     public void removeForMy(OsmPrimitive my) {
+        if (!shared) {
+            Conflict<?> c = conflictsByMy.get(my);
+            if (c != null) {
+                conflicts.remove(c);
+            }
+            return;
+        }
         Iterator<Conflict<?>> it = iterator();
         while(it.hasNext()) {
             if (it.next().isMatchingMy(my)) {
@@ -257,6 +361,13 @@ public class ConflictCollection implements Iterable<Conflict<? extends OsmPrimit
      * @param their the primitive
      */
     public void removeForTheir(OsmPrimitive their) {
+        if (!shared) {
+            Conflict<?> c = conflictsByTheir.get(their);
+            if (c != null) {
+                conflicts.remove(c);
+            }
+            return;
+        }
         Iterator<Conflict<?>> it = iterator();
         while(it.hasNext()) {
             if (it.next().isMatchingTheir(their)) {
@@ -0,0 +1,265 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.gpx;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.openstreetmap.josm.data.ProjectionBounds;
+import org.openstreetmap.josm.data.coor.EastNorth;
+
+/**
+ * Level of detail index of a GPX line (a track segment or a route), used to draw large traces.
+ * <p>
+ * The projected coordinates of the points are kept in primitive arrays. Each point is ranked by the
+ * Douglas-Peucker tolerance up to which it is kept, and the points are arranged in levels, each level
+ * holding about half the points of the previous one. A view then only touches the points of the
+ * coarsest level which still shows the line within its pixel size.
+ * <p>
+ * The line is split where {@link WayPoint#drawLine} is not set, both ends of each part are always kept.
+ * Points without coordinates are left out of all levels. The index does not follow the changes of
+ * the points or of the projection, it has to be built again.
+ */
+public final class GpxLineIndex {
+
+    private final WayPoint[] points;
+    private final double[] east;
+    private final double[] north;
+    private final ProjectionBounds bounds;
+
+    /** The tolerance from which each level can be used, in ascending order */
+    private double[] thresholds;
+    /** The indexes of the points of each level, in line order */
+    private int[][] levels;
+
+    /**
+     * Builds the index of a line, with the current projection.
+     * @param line the points of the line
+     */
+    public GpxLineIndex(Collection<WayPoint> line) {
+        points = line.toArray(new WayPoint[line.size()]);
+        int n = points.length;
+        east = new double[n];
+        north = new double[n];
+        int[] valid = new int[n];
+        int m = 0;
+        ProjectionBounds b = null;
+        for (int i = 0; i < n; i++) {
+            WayPoint wpt = points[i];
+            if (wpt == null || Double.isNaN(wpt.getCoor().lat()) || Double.isNaN(wpt.getCoor().lon())) {
+                east[i] = north[i] = Double.NaN;
+                continue;
+            }
+            EastNorth en = wpt.getEastNorth();
+            east[i] = en.east();
+            north[i] = en.north();
+            if (Double.isNaN(east[i]) || Double.isNaN(north[i]))
+                continue;
+            valid[m++] = i;
+            if (b == null) {
+                b = new ProjectionBounds(en);
+            } else {
+                b.extend(en);
+            }
+        }
+        bounds = b;
+        buildLevels(rank(valid, m), valid, m);
+    }
+
+    /**
+     * Replies the Douglas-Peucker tolerance up to which each valid point is kept.
+     */
+    private float[] rank(int[] valid, int m) {
+        float[] tolerance = new float[m];
+        int[] stack = new int[64];
+        int start = 0;
+        for (int k = 1; k <= m; k++) {
+            if (k < m && points[valid[k]].drawLine)
+                continue;
+            // a part of the line from start to k-1
+            int end = k - 1;
+            tolerance[start] = tolerance[end] = Float.POSITIVE_INFINITY;
+            int top = 0;
+            stack[top++] = start;
+            stack[top++] = end;
+            while (top > 0) {
+                int b = stack[--top];
+                int a = stack[--top];
+                if (b - a < 2)
+                    continue;
+                double parent = Math.min(tolerance[a], tolerance[b]);
+                int split = -1;
+                double max = -1;
+                for (int j = a + 1; j < b; j++) {
+                    double d = distance(valid[j], valid[a], valid[b]);
+                    if (d > max) {
+                        max = d;
+                        split = j;
+                    }
+                }
+                // a point is never kept beyond the tolerance of the points splitting the line before it
+                tolerance[split] = (float) Math.min(max, parent);
+                if (top + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = a;
+                stack[top++] = split;
+                stack[top++] = split;
+                stack[top++] = b;
+            }
+            start = k;
+        }
+        return tolerance;
+    }
+
+    /**
+     * Replies the distance between the point i and the segment from a to b.
+     */
+    private double distance(int i, int a, int b) {
+        double dx = east[b] - east[a];
+        double dy = north[b] - north[a];
+        double px = east[i] - east[a];
+        double py = north[i] - north[a];
+        double l2 = dx * dx + dy * dy;
+        if (l2 > 0) {
+            double t = Math.max(0, Math.min(1, (px * dx + py * dy) / l2));
+            px -= t * dx;
+            py -= t * dy;
+        }
+        return Math.sqrt(px * px + py * py);
+    }
+
+    private void buildLevels(float[] tolerance, int[] valid, int m) {
+        float[] sorted = Arrays.copyOf(tolerance, m);
+        Arrays.sort(sorted);
+        double[] th = new double[32];
+        int[][] lv = new int[32][];
+        int count = 0;
+        int[] previous = null;
+        int previousSize = m;
+        for (int target = m / 2; target >= 2; target /= 2) {
+            float threshold = sorted[m - target];
+            if (threshold == Float.POSITIVE_INFINITY)
+                break;
+            if (count > 0 && threshold <= th[count - 1])
+                continue;
+            // the levels are nested, a level is built from the previous one
+            int[] level = new int[previous != null ? previous.length : m];
+            int size = 0;
+            if (previous != null) {
+                for (int k : previous) {
+                    if (tolerance[k] >= threshold) {
+                        level[size++] = k;
+                    }
+                }
+            } else {
+                for (int k = 0; k < m; k++) {
+                    if (tolerance[k] >= threshold) {
+                        level[size++] = k;
+                    }
+                }
+            }
+            // ties may keep most of the points, such a level would not save much
+            if (size > previousSize * 3 / 4)
+                continue;
+            if (count == lv.length) {
+                th = Arrays.copyOf(th, count * 2);
+                lv = Arrays.copyOf(lv, count * 2);
+            }
+            th[count] = threshold;
+            lv[count++] = Arrays.copyOf(level, size);
+            previous = lv[count - 1];
+            previousSize = size;
+        }
+        // at last, only the ends of the parts of the line, for any tolerance beyond the largest one
+        int ends = 0;
+        float largest = 0;
+        for (int k = 0; k < m; k++) {
+            if (tolerance[k] == Float.POSITIVE_INFINITY) {
+                ends++;
+            } else {
+                largest = Math.max(largest, tolerance[k]);
+            }
+        }
+        if (ends < previousSize) {
+            int[] level = new int[ends];
+            int size = 0;
+            for (int k = 0; k < m; k++) {
+                if (tolerance[k] == Float.POSITIVE_INFINITY) {
+                    level[size++] = k;
+                }
+            }
+            if (count == lv.length) {
+                th = Arrays.copyOf(th, count * 2);
+                lv = Arrays.copyOf(lv, count * 2);
+            }
+            th[count] = largest;
+            lv[count++] = level;
+        }
+        // the levels refer to the valid points, then to the points of the line
+        for (int l = 0; l < count; l++) {
+            int[] level = lv[l];
+            for (int k = 0; k < level.length; k++) {
+                level[k] = valid[level[k]];
+            }
+        }
+        thresholds = Arrays.copyOf(th, count);
+        levels = Arrays.copyOf(lv, count);
+    }
+
+    /**
+     * Replies the number of points of the line.
+     * @return the number of points of the line
+     */
+    public int size() {
+        return points.length;
+    }
+
+    /**
+     * Replies a point of the line.
+     * @param i the index of the point in the line
+     * @return the point
+     */
+    public WayPoint get(int i) {
+        return points[i];
+    }
+
+    /**
+     * Replies the projected east coordinate of a point.
+     * @param i the index of the point in the line
+     * @return the east coordinate, {@code NaN} if the point has no coordinates
+     */
+    public double getEast(int i) {
+        return east[i];
+    }
+
+    /**
+     * Replies the projected north coordinate of a point.
+     * @param i the index of the point in the line
+     * @return the north coordinate, {@code NaN} if the point has no coordinates
+     */
+    public double getNorth(int i) {
+        return north[i];
+    }
+
+    /**
+     * Replies the projected bounds of the line.
+     * @return the bounds, or {@code null} if no point has coordinates
+     */
+    public ProjectionBounds getBounds() {
+        return bounds;
+    }
+
+    /**
+     * Replies the points to draw the line within a tolerance, usually half the size of a pixel.
+     * The line joining these points does not stray farther than the tolerance from the whole line.
+     * @param tolerance the tolerance, in projected units
+     * @return the indexes of the points in line order, or {@code null} for all points
+     */
+    public int[] getLevel(double tolerance) {
+        int l = thresholds.length - 1;
+        while (l >= 0 && thresholds[l] > tolerance) {
+            l--;
+        }
+        return l >= 0 ? levels[l] : null;
+    }
+}
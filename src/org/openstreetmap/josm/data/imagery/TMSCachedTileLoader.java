@@ -0,0 +1,302 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.imagery;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openstreetmap.gui.jmapviewer.JobDispatcher;
+import org.openstreetmap.gui.jmapviewer.OsmFileCacheTileLoader;
+import org.openstreetmap.gui.jmapviewer.OsmTileLoader;
+import org.openstreetmap.gui.jmapviewer.Tile;
+import org.openstreetmap.gui.jmapviewer.interfaces.CachedTileLoader;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileClearController;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileJob;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileLoaderListener;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileSource;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileSource.TileUpdate;
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.preferences.BooleanProperty;
+import org.openstreetmap.josm.data.preferences.IntegerProperty;
+
+/**
+ * A tile loader caching the tiles in a {@link TileStore}, a single pack file with an index, instead of one file per
+ * tile like {@link OsmFileCacheTileLoader}.
+ * <p>
+ * The tiles are validated against the server when they expire, according to the {@code Cache-Control} and
+ * {@code Expires} headers sent with them, or after {@link #getMaxAge()} if there is none. The update method of the
+ * tile source is used, like by {@link OsmFileCacheTileLoader}: an expired tile is painted, then replaced if the
+ * server has a newer one.
+ */
+public class TMSCachedTileLoader extends OsmTileLoader implements CachedTileLoader {
+
+    /** Determines if the tiles are cached in a single pack file, instead of one file per tile */
+    public static final BooleanProperty PROP_ENABLED = new BooleanProperty("imagery.tms.cache.packed", true);
+    /** Maximal size of the cached tiles, in megabytes */
+    public static final IntegerProperty PROP_MAX_SIZE = new IntegerProperty("imagery.tms.cache.max-size", 512);
+
+    /** Minimal validity of a tile, whatever the server says */
+    private static final long MIN_AGE = 1000L * 60 * 60;
+    private static final Pattern MAX_AGE = Pattern.compile("max-age\\s*=\\s*(\\d+)");
+
+    protected final TileStore store;
+    protected long maxAge = OsmFileCacheTileLoader.FILE_AGE_ONE_WEEK;
+
+    /**
+     * Constructs a new {@code TMSCachedTileLoader}.
+     * @param listener the listener notified of the loaded tiles
+     * @param store the store of the cached tiles
+     */
+    public TMSCachedTileLoader(TileLoaderListener listener, TileStore store) {
+        super(listener);
+        this.store = store;
+    }
+
+    /**
+     * Constructs a new {@code TMSCachedTileLoader} using the shared store of the given directory, with the byte
+     * budget of {@link #PROP_MAX_SIZE}.
+     * @param listener the listener notified of the loaded tiles
+     * @param cacheDir the directory of the store
+     * @throws IOException if the store cannot be opened
+     */
+    public TMSCachedTileLoader(TileLoaderListener listener, File cacheDir) throws IOException {
+        this(listener, TileStore.getInstance(cacheDir, PROP_MAX_SIZE.get() * 1024L * 1024L));
+    }
+
+    /**
+     * Replies the validity of the tiles sent without expiration time.
+     * @return the validity of the tiles, in milliseconds
+     */
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * Sets the validity of the tiles sent without expiration time.
+     * @param maxAge the validity of the tiles, in milliseconds
+     */
+    public void setMaxAge(long maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Replies the store of the cached tiles.
+     * @return the store of the cached tiles
+     */
+    public TileStore getStore() {
+        return store;
+    }
+
+    @Override
+    public TileJob createTileLoaderJob(Tile tile) {
+        return new CachedLoadJob(tile);
+    }
+
+    /**
+     * Replies the time until which a downloaded tile is valid.
+     * @param urlConn the connection of the tile
+     * @param now the current time
+     * @return the expiration time of the tile
+     */
+    protected long getExpiration(URLConnection urlConn, long now) {
+        long expires = 0;
+        String cacheControl = urlConn.getHeaderField("Cache-Control");
+        if (cacheControl != null) {
+            Matcher m = MAX_AGE.matcher(cacheControl);
+            if (m.find()) {
+                try {
+                    expires = now + Long.parseLong(m.group(1)) * 1000;
+                } catch (NumberFormatException e) {
+                    expires = 0;
+                }
+            }
+        }
+        if (expires == 0) {
+            expires = urlConn.getExpiration();
+        }
+        if (expires == 0)
+            return now + maxAge;
+        return Math.max(expires, now + MIN_AGE);
+    }
+
+    protected class CachedLoadJob implements TileJob {
+        protected final Tile tile;
+
+        public CachedLoadJob(Tile tile) {
+            this.tile = tile;
+        }
+
+        @Override
+        public Tile getTile() {
+            return tile;
+        }
+
+        @Override
+        public void run() {
+            synchronized (tile) {
+                if ((tile.isLoaded() && !tile.hasError()) || tile.isLoading())
+                    return;
+                tile.initLoading();
+            }
+            if (tile.restoreImage()) {
+                tile.finishLoading();
+                listener.tileLoadingFinished(tile, true);
+                return;
+            }
+            final TileStore.Entry entry = store.get(tile.getKey());
+            if (entry != null && loadTileFromCache(entry)) {
+                if (!entry.isExpired(System.currentTimeMillis())) {
+                    tile.finishLoading();
+                    listener.tileLoadingFinished(tile, true);
+                    return;
+                }
+                // paint the expired tile while it is validated
+                listener.tileLoadingFinished(tile, true);
+                JobDispatcher.getInstance().addJob(new TileJob() {
+                    @Override
+                    public void run() {
+                        loadOrUpdateTile(entry);
+                    }
+
+                    @Override
+                    public Tile getTile() {
+                        return tile;
+                    }
+                });
+            } else {
+                loadOrUpdateTile(null);
+            }
+        }
+
+        protected boolean loadTileFromCache(TileStore.Entry entry) {
+            for (Map.Entry<String, String> e : entry.getMetadata().entrySet()) {
+                tile.putValue(e.getKey(), e.getValue());
+            }
+            if ("no-tile".equals(tile.getValue("tile-info"))) {
+                tile.setError("No tile at this zoom level");
+                return true;
+            }
+            try {
+                tile.loadImage(entry.getData());
+                return true;
+            } catch (IOException e) {
+                Main.warn("Invalid cached tile " + tile.getKey() + ": " + e.getMessage());
+                store.remove(tile.getKey());
+                return false;
+            }
+        }
+
+        protected void loadOrUpdateTile(TileStore.Entry entry) {
+            try {
+                TileUpdate update = tile.getSource().getTileUpdate();
+                if (entry != null) {
+                    String etag = entry.getMetadata().get("etag");
+                    if ((update == TileUpdate.LastModified && !isOsmTileNewer(entry.getStored()))
+                            || (update == TileUpdate.ETag && etag != null && hasOsmTileETag(etag))) {
+                        store.touch(tile.getKey(), System.currentTimeMillis() + maxAge);
+                        tile.setLoaded(true);
+                        return;
+                    }
+                }
+                URLConnection urlConn = loadTileFromOsm(tile);
+                if (entry != null) {
+                    String etag = entry.getMetadata().get("etag");
+                    if (update == TileUpdate.IfModifiedSince) {
+                        urlConn.setIfModifiedSince(entry.getStored());
+                    } else if (update == TileUpdate.IfNoneMatch && etag != null) {
+                        urlConn.addRequestProperty("If-None-Match", etag);
+                    }
+                }
+                long now = System.currentTimeMillis();
+                if (urlConn instanceof HttpURLConnection && ((HttpURLConnection) urlConn).getResponseCode() == 304) {
+                    // the cached tile is up to date
+                    store.touch(tile.getKey(), getExpiration(urlConn, now));
+                    tile.setLoaded(true);
+                    return;
+                }
+                if (update == TileUpdate.ETag || update == TileUpdate.IfNoneMatch) {
+                    tile.putValue("etag", urlConn.getHeaderField("ETag"));
+                }
+                loadTileMetadata(tile, urlConn);
+                long expires = getExpiration(urlConn, now);
+                if ("no-tile".equals(tile.getValue("tile-info"))) {
+                    tile.setError("No tile at this zoom level");
+                    listener.tileLoadingFinished(tile, true);
+                    store.put(tile.getKey(), new byte[0], tile.getMetadata(), expires);
+                } else {
+                    byte[] buffer = loadTileInBuffer(urlConn);
+                    if (buffer != null) {
+                        tile.loadImage(buffer);
+                        tile.setLoaded(true);
+                        listener.tileLoadingFinished(tile, true);
+                        store.put(tile.getKey(), buffer, tile.getMetadata(), expires);
+                    }
+                }
+            } catch (Exception e) {
+                tile.setError(e.getMessage());
+                listener.tileLoadingFinished(tile, false);
+                Main.warn("Failed loading " + tile.getKey() + ": " + e.getMessage());
+            } finally {
+                tile.finishLoading();
+            }
+        }
+
+        protected byte[] loadTileInBuffer(URLConnection urlConn) throws IOException {
+            try (InputStream input = urlConn.getInputStream()) {
+                ByteArrayOutputStream bout = new ByteArrayOutputStream(Math.max(input.available(), 8192));
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = input.read(buffer)) >= 0) {
+                    bout.write(buffer, 0, read);
+                }
+                return bout.size() == 0 ? null : bout.toByteArray();
+            }
+        }
+
+        protected HttpURLConnection headRequest() throws IOException {
+            HttpURLConnection urlConn = (HttpURLConnection) new URL(tile.getUrl()).openConnection();
+            prepareHttpUrlConnection(urlConn);
+            urlConn.setRequestMethod("HEAD");
+            urlConn.setReadTimeout(30000); // 30 seconds read timeout
+            return urlConn;
+        }
+
+        protected boolean isOsmTileNewer(long stored) throws IOException {
+            long lastModified = headRequest().getLastModified();
+            return lastModified == 0 || lastModified > stored;
+        }
+
+        protected boolean hasOsmTileETag(String etag) throws IOException {
+            String osmETag = headRequest().getHeaderField("ETag");
+            return osmETag == null || osmETag.equals(etag);
+        }
+    }
+
+    @Override
+    public void clearCache(TileSource source) {
+        clearCache(source, null);
+    }
+
+    @Override
+    public void clearCache(TileSource source, TileClearController controller) {
+        if (controller != null) {
+            controller.initClearDir(new File(TileStore.PACK_FILENAME));
+            controller.initClearFiles(new File[0]);
+        }
+        try {
+            store.clear("@" + source.getName());
+        } catch (IOException e) {
+            Main.error(e);
+        }
+        if (controller != null) {
+            controller.clearFinished();
+        }
+    }
+}
@@ -0,0 +1,659 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.imagery;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openstreetmap.josm.Main;
+
+/**
+ * A disk cache of tiles, stored in a single pack file.
+ * <p>
+ * The tiles are appended to the pack file {@code tiles.pack}, each in a record holding its key, metadata, expiration
+ * date and data. The index maps each key to the position of its record, in the order of the last access. It is kept
+ * in memory, and saved to {@code tiles.idx} regularly and when the store is closed. The records appended after the
+ * last save of the index are found again by scanning the end of the pack file, and the whole pack file is scanned if
+ * the index is missing or invalid.
+ * <p>
+ * When the size of the tiles exceeds the byte budget, the least recently used ones are evicted. The space of the
+ * evicted and replaced records is reclaimed by compacting the pack file, once it exceeds the space of the live records.
+ * <p>
+ * The pack file is locked: a directory is used by a single store, and by a single instance of JOSM.
+ */
+public class TileStore implements Closeable {
+
+    /** Name of the pack file */
+    public static final String PACK_FILENAME = "tiles.pack";
+    /** Name of the index file */
+    public static final String INDEX_FILENAME = "tiles.idx";
+
+    private static final int PACK_MAGIC = 0x4a54504b; // JTPK
+    private static final int INDEX_MAGIC = 0x4a544958; // JTIX
+    private static final int RECORD_MAGIC = 0x54494c45; // TILE
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    /** Number of changes after which the index is saved */
+    private static final int SAVE_INTERVAL = 256;
+    /** Size of dead records below which the pack file is never compacted */
+    private static final long MIN_COMPACTION = 4 * 1024 * 1024;
+
+    private static final Map<File, TileStore> STORES = new HashMap<>();
+
+    /**
+     * The value of a tile in the store.
+     */
+    public static final class Entry {
+        private final byte[] data;
+        private final Map<String, String> metadata;
+        private final long stored;
+        private final long expires;
+
+        private Entry(byte[] data, Map<String, String> metadata, long stored, long expires) {
+            this.data = data;
+            this.metadata = metadata;
+            this.stored = stored;
+            this.expires = expires;
+        }
+
+        /**
+         * Replies the data of the tile, usually an encoded image.
+         * @return the data of the tile
+         */
+        public byte[] getData() {
+            return data;
+        }
+
+        /**
+         * Replies the metadata of the tile.
+         * @return the metadata of the tile, never {@code null}
+         */
+        public Map<String, String> getMetadata() {
+            return metadata;
+        }
+
+        /**
+         * Replies the time when the tile was stored.
+         * @return the time when the tile was stored, in milliseconds since the epoch
+         */
+        public long getStored() {
+            return stored;
+        }
+
+        /**
+         * Replies the time after which the tile has to be validated against the server.
+         * @return the expiration time, in milliseconds since the epoch
+         */
+        public long getExpires() {
+            return expires;
+        }
+
+        /**
+         * Determines if the tile has expired.
+         * @param now the current time, in milliseconds since the epoch
+         * @return {@code true} if the tile has to be validated against the server
+         */
+        public boolean isExpired(long now) {
+            return now >= expires;
+        }
+    }
+
+    /**
+     * The position of a record in the pack file.
+     */
+    private static final class Slot {
+        private long offset;
+        private final int length;
+        private long expires;
+
+        private Slot(long offset, int length, long expires) {
+            this.offset = offset;
+            this.length = length;
+            this.expires = expires;
+        }
+    }
+
+    private final File packFile;
+    private final File indexFile;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final Thread shutdownHook;
+
+    /** The records, from the least to the most recently used */
+    private final LinkedHashMap<String, Slot> index = new LinkedHashMap<>(1024, 0.75f, true);
+    private long maxBytes;
+    private long liveBytes;
+    private long packLength;
+    private int unsaved;
+    private boolean closed;
+
+    /**
+     * Opens the store in the given directory, creating it if needed.
+     * @param dir the directory of the store
+     * @param maxBytes the maximal size of the tiles, in bytes
+     * @throws IOException if the store cannot be opened, or if it is used by another store
+     */
+    public TileStore(File dir, long maxBytes) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("Cannot create tile cache directory " + dir);
+        this.maxBytes = maxBytes;
+        this.packFile = new File(dir, PACK_FILENAME);
+        this.indexFile = new File(dir, INDEX_FILENAME);
+        this.raf = new RandomAccessFile(packFile, "rw");
+        this.channel = raf.getChannel();
+        FileLock l = null;
+        try {
+            l = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            l = null;
+        }
+        if (l == null) {
+            raf.close();
+            throw new IOException("Tile cache " + packFile + " is already in use");
+        }
+        this.lock = l;
+        try {
+            open();
+        } catch (IOException e) {
+            lock.release();
+            raf.close();
+            throw e;
+        }
+        shutdownHook = new Thread("tile-store-shutdown") {
+            @Override
+            public void run() {
+                synchronized (TileStore.this) {
+                    if (!closed) {
+                        try {
+                            saveIndex();
+                        } catch (IOException e) {
+                            Main.warn(e);
+                        }
+                    }
+                }
+            }
+        };
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Replies the shared store of the given directory, opening it if needed.
+     * @param dir the directory of the store
+     * @param maxBytes the maximal size of the tiles, in bytes
+     * @return the store of the directory
+     * @throws IOException if the store cannot be opened, for instance because another instance of JOSM uses it
+     */
+    public static synchronized TileStore getInstance(File dir, long maxBytes) throws IOException {
+        File key = dir.getAbsoluteFile();
+        TileStore store = STORES.get(key);
+        if (store == null || store.isClosed()) {
+            store = new TileStore(key, maxBytes);
+            STORES.put(key, store);
+        } else {
+            store.setMaxBytes(maxBytes);
+        }
+        return store;
+    }
+
+    private void open() throws IOException {
+        if (channel.size() < HEADER_SIZE || !checkHeader()) {
+            if (channel.size() > 0) {
+                Main.warn("Invalid tile cache " + packFile + ", starting over");
+            }
+            reset();
+        } else {
+            scan(loadIndex());
+        }
+        evict();
+        compactIfNeeded();
+    }
+
+    private boolean checkHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(header, 0);
+        return header.getInt(0) == PACK_MAGIC && header.getInt(4) == VERSION;
+    }
+
+    private void reset() throws IOException {
+        channel.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(PACK_MAGIC).putInt(VERSION).flip();
+        writeFully(header, 0);
+        index.clear();
+        liveBytes = 0;
+        packLength = HEADER_SIZE;
+        saveIndex();
+    }
+
+    /**
+     * Loads the index file.
+     * @return the length of the pack file covered by the index
+     */
+    private long loadIndex() throws IOException {
+        long size = channel.size();
+        if (indexFile.isFile()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+                if (in.readInt() != INDEX_MAGIC || in.readInt() != VERSION)
+                    throw new IOException("bad header");
+                long length = in.readLong();
+                int count = in.readInt();
+                if (length < HEADER_SIZE || length > size || count < 0)
+                    throw new IOException("bad length");
+                for (int i = 0; i < count; i++) {
+                    String key = in.readUTF();
+                    long offset = in.readLong();
+                    int recordLength = in.readInt();
+                    long expires = in.readLong();
+                    if (offset < HEADER_SIZE || recordLength < RECORD_HEADER_SIZE || offset + recordLength > length)
+                        throw new IOException("bad record position");
+                    putSlot(key, new Slot(offset, recordLength, expires));
+                }
+                return length;
+            } catch (IOException e) {
+                Main.warn("Invalid tile cache index " + indexFile + ", rebuilding it: " + e.getMessage());
+                index.clear();
+                liveBytes = 0;
+            }
+        }
+        return HEADER_SIZE;
+    }
+
+    /**
+     * Adds the records found after the given position of the pack file to the index. The pack file is truncated
+     * before the first invalid record, the remains of an interrupted write.
+     */
+    private void scan(long from) throws IOException {
+        long size = channel.size();
+        long position = from;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        while (position + RECORD_HEADER_SIZE <= size) {
+            header.clear();
+            readFully(header, position);
+            int length = RECORD_HEADER_SIZE + header.getInt(4);
+            if (header.getInt(0) != RECORD_MAGIC || length < RECORD_HEADER_SIZE || position + length > size)
+                break;
+            byte[] record = read(position, length);
+            try (DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(record, RECORD_HEADER_SIZE, length - RECORD_HEADER_SIZE))) {
+                String key = in.readUTF();
+                in.readLong();
+                long expires = in.readLong();
+                putSlot(key, new Slot(position, length, expires));
+            } catch (IOException e) {
+                break;
+            }
+            position += length;
+        }
+        if (position < size) {
+            Main.warn("Discarding " + (size - position) + " bytes at the end of the tile cache " + packFile);
+            channel.truncate(position);
+        }
+        packLength = position;
+        if (position > from) {
+            saveIndex();
+        }
+    }
+
+    private void putSlot(String key, Slot slot) {
+        Slot old = index.put(key, slot);
+        if (old != null) {
+            liveBytes -= old.length;
+        }
+        liveBytes += slot.length;
+    }
+
+    private void removeSlot(String key) {
+        Slot old = index.remove(key);
+        if (old != null) {
+            liveBytes -= old.length;
+        }
+    }
+
+    /**
+     * Replies the tile of the given key, and marks it as the most recently used.
+     * @param key the key of the tile
+     * @return the tile, or {@code null} if it is not in the store
+     */
+    public synchronized Entry get(String key) {
+        if (closed)
+            return null;
+        Slot slot = index.get(key);
+        if (slot == null)
+            return null;
+        try {
+            byte[] record = read(slot.offset, slot.length);
+            ByteBuffer header = ByteBuffer.wrap(record, 0, RECORD_HEADER_SIZE);
+            if (header.getInt() != RECORD_MAGIC || header.getInt() != slot.length - RECORD_HEADER_SIZE)
+                throw new IOException("bad record header");
+            try (DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(record, RECORD_HEADER_SIZE, slot.length - RECORD_HEADER_SIZE))) {
+                if (!key.equals(in.readUTF()))
+                    throw new IOException("bad record key");
+                long stored = in.readLong();
+                in.readLong();
+                int count = in.readUnsignedShort();
+                Map<String, String> metadata = new HashMap<>(count * 2);
+                for (int i = 0; i < count; i++) {
+                    metadata.put(in.readUTF(), in.readUTF());
+                }
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                return new Entry(data, metadata, stored, slot.expires);
+            }
+        } catch (IOException e) {
+            Main.warn("Invalid record of tile " + key + " in the tile cache " + packFile + ": " + e.getMessage());
+            removeSlot(key);
+            return null;
+        }
+    }
+
+    /**
+     * Determines if the store contains the tile of the given key, without changing the order of use.
+     * @param key the key of the tile
+     * @return {@code true} if the store contains the tile
+     */
+    public synchronized boolean contains(String key) {
+        return index.containsKey(key);
+    }
+
+    /**
+     * Stores a tile, replacing any previous value, and evicts the least recently used tiles if the byte budget is
+     * exceeded.
+     * @param key the key of the tile
+     * @param data the data of the tile, usually an encoded image
+     * @param metadata the metadata of the tile, can be {@code null}
+     * @param expires the time after which the tile has to be validated against the server
+     * @throws IOException if an I/O error occurs
+     */
+    public synchronized void put(String key, byte[] data, Map<String, String> metadata, long expires)
+            throws IOException {
+        if (closed)
+            throw new IOException("Tile cache " + packFile + " is closed");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length + 256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(RECORD_MAGIC);
+            out.writeInt(0);
+            out.writeUTF(key);
+            out.writeLong(System.currentTimeMillis());
+            out.writeLong(expires);
+            if (metadata == null) {
+                out.writeShort(0);
+            } else {
+                out.writeShort(metadata.size());
+                for (Map.Entry<String, String> e : metadata.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    out.writeUTF(e.getValue() != null ? e.getValue() : "");
+                }
+            }
+            out.writeInt(data.length);
+            out.write(data);
+        }
+        ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+        record.putInt(4, record.limit() - RECORD_HEADER_SIZE);
+        writeFully(record, packLength);
+        putSlot(key, new Slot(packLength, record.limit(), expires));
+        packLength += record.limit();
+        evict();
+        compactIfNeeded();
+        changed();
+    }
+
+    /**
+     * Sets the expiration time of a tile, after it has been validated against the server.
+     * @param key the key of the tile
+     * @param expires the time after which the tile has to be validated again
+     */
+    public synchronized void touch(String key, long expires) {
+        Slot slot = index.get(key);
+        if (slot != null) {
+            slot.expires = expires;
+            changed();
+        }
+    }
+
+    /**
+     * Removes a tile.
+     * @param key the key of the tile
+     */
+    public synchronized void remove(String key) {
+        if (index.containsKey(key)) {
+            removeSlot(key);
+            changed();
+        }
+    }
+
+    /**
+     * Removes the tiles whose key ends with the given suffix, for instance all the tiles of a source.
+     * @param keySuffix the end of the keys, {@code null} or empty to remove all the tiles
+     * @return the number of removed tiles
+     * @throws IOException if an I/O error occurs
+     */
+    public synchronized int clear(String keySuffix) throws IOException {
+        int removed = 0;
+        if (keySuffix == null || keySuffix.isEmpty()) {
+            removed = index.size();
+            reset();
+            return removed;
+        }
+        for (Iterator<Map.Entry<String, Slot>> it = index.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, Slot> e = it.next();
+            if (e.getKey().endsWith(keySuffix)) {
+                liveBytes -= e.getValue().length;
+                it.remove();
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            compactIfNeeded();
+            saveIndex();
+        }
+        return removed;
+    }
+
+    private void changed() {
+        if (++unsaved >= SAVE_INTERVAL) {
+            try {
+                saveIndex();
+            } catch (IOException e) {
+                Main.warn(e);
+            }
+        }
+    }
+
+    /**
+     * Evicts the least recently used tiles until the size of the tiles fits in the byte budget.
+     */
+    private void evict() {
+        Iterator<Slot> it = index.values().iterator();
+        while (liveBytes > maxBytes && it.hasNext()) {
+            liveBytes -= it.next().length;
+            it.remove();
+        }
+    }
+
+    private void compactIfNeeded() throws IOException {
+        long deadBytes = packLength - HEADER_SIZE - liveBytes;
+        if (deadBytes > Math.max(liveBytes, MIN_COMPACTION)) {
+            compact();
+        }
+    }
+
+    /**
+     * Moves the live records to the beginning of the pack file, in the order of the file, and truncates it.
+     */
+    synchronized void compact() throws IOException {
+        List<Slot> slots = new ArrayList<>(index.values());
+        Collections.sort(slots, new Comparator<Slot>() {
+            @Override
+            public int compare(Slot s1, Slot s2) {
+                return Long.compare(s1.offset, s2.offset);
+            }
+        });
+        long position = HEADER_SIZE;
+        for (Slot slot : slots) {
+            if (slot.offset != position) {
+                writeFully(ByteBuffer.wrap(read(slot.offset, slot.length)), position);
+                slot.offset = position;
+            }
+            position += slot.length;
+        }
+        channel.truncate(position);
+        packLength = position;
+        saveIndex();
+    }
+
+    /**
+     * Saves the index file. It is written to a temporary file first, so that a crash leaves a valid index.
+     * @throws IOException if an I/O error occurs
+     */
+    public synchronized void flush() throws IOException {
+        if (!closed) {
+            saveIndex();
+        }
+    }
+
+    private void saveIndex() throws IOException {
+        File tmp = new File(indexFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(packLength);
+            out.writeInt(index.size());
+            for (Map.Entry<String, Slot> e : index.entrySet()) {
+                Slot slot = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeLong(slot.offset);
+                out.writeInt(slot.length);
+                out.writeLong(slot.expires);
+            }
+        }
+        Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        unsaved = 0;
+    }
+
+    private byte[] read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        readFully(buffer, position);
+        return buffer.array();
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0)
+                throw new EOFException("Unexpected end of tile cache " + packFile);
+            position += n;
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Sets the byte budget, and evicts the least recently used tiles if it is exceeded.
+     * @param maxBytes the maximal size of the tiles, in bytes
+     */
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        if (liveBytes > maxBytes) {
+            evict();
+            try {
+                compactIfNeeded();
+            } catch (IOException e) {
+                Main.warn(e);
+            }
+        }
+    }
+
+    /**
+     * Replies the byte budget.
+     * @return the maximal size of the tiles, in bytes
+     */
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Replies the size of the stored tiles, with their keys and metadata.
+     * @return the size of the live records, in bytes
+     */
+    public synchronized long getLiveBytes() {
+        return liveBytes;
+    }
+
+    /**
+     * Replies the length of the pack file, including the replaced and evicted records not yet compacted.
+     * @return the length of the pack file, in bytes
+     */
+    public synchronized long getPackLength() {
+        return packLength;
+    }
+
+    /**
+     * Replies the number of stored tiles.
+     * @return the number of stored tiles
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * Determines if the store is closed.
+     * @return {@code true} if the store is closed
+     */
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed)
+            return;
+        try {
+            saveIndex();
+        } finally {
+            closed = true;
+            index.clear();
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // shutting down
+                Main.trace(e.getMessage());
+            }
+            try {
+                lock.release();
+            } finally {
+                raf.close();
+            }
+        }
+    }
+}
@@ -479,6 +479,21 @@ public abstract class AbstractPrimitive implements IPrimitive {
         return result;
     }
 
+    /**
+     * Calls the visitor for every key/value pair of this primitive.
+     * Unlike {@link #getKeys()}, this method does not allocate a map of the tags.
+     *
+     * @param visitor The visitor to call
+     */
+    public void visitKeys(KeyValueVisitor visitor) {
+        final String[] keys = this.keys;
+        if (keys != null) {
+            for (int i = 0; i < keys.length; i += 2) {
+                visitor.visitKeyValue(this, keys[i], keys[i + 1]);
+            }
+        }
+    }
+
     /**
      * Sets the keys of this primitives to the key/value pairs in <code>keys</code>.
      * Old key/value pairs are removed.
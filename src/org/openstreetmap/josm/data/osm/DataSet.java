@@ -18,7 +18,6 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.openstreetmap.josm.Main;
@@ -113,14 +112,21 @@ public final class DataSet implements Cloneable, ProjectionChangeListener {
     private int updateCount;
     // Events that occurred while dataset was locked but should be fired after write lock is released
     private final List<AbstractDatasetChangedEvent> cachedEvents = new ArrayList<>();
+    // Set if the events of the current update are replaced by a single DataChangedEvent
+    private boolean eventsCoalesced;
 
     private int highlightUpdateCount;
 
     private boolean uploadDiscouraged = false;
 
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
     private final Object selectionLock = new Object();
 
+    // Incremented on every modification of the dataset, guarded by the write lock
+    private volatile int modificationCount;
+    // Last snapshot taken from a consistent state of the dataset
+    private volatile DataSetSnapshot snapshot;
+
     public DataSet() {
         /*
          * Transparently register as projection change lister. No need to explicitly remove the
@@ -133,6 +139,41 @@ public final class DataSet implements Cloneable, ProjectionChangeListener {
         return lock.readLock();
     }
 
+    /**
+     * Replies an immutable snapshot of the primitives of this dataset, which can be iterated and searched
+     * without locking the dataset.
+     *
+     * The snapshot is shared and only recreated after the dataset has been modified. If another thread is
+     * modifying the dataset at the moment, this method does not wait for it but replies the snapshot of the
+     * last consistent state, unless no snapshot has been taken yet. Such a snapshot is stale: it misses the
+     * primitives added since, and still contains the ones removed since. Callers which act on the dataset with
+     * the content of a snapshot have to skip the primitives for which {@code p.getDataSet() != this} or
+     * {@link OsmPrimitive#isDeleted()}, or hold the {@link #getReadLock() read lock} while calling this method,
+     * which then replies an up-to-date snapshot.
+     *
+     * @return a snapshot of the primitives of this dataset
+     */
+    public DataSetSnapshot getSnapshot() {
+        DataSetSnapshot current = snapshot;
+        if (current != null && current.getModificationCount() == modificationCount)
+            return current;
+        Lock readLock = lock.readLock();
+        if (current == null) {
+            readLock.lock();
+        } else if (!readLock.tryLock())
+            return current;
+        try {
+            current = new DataSetSnapshot(modificationCount, nodes, ways, relations);
+            if (!lock.isWriteLockedByCurrentThread()) {
+                // Do not share a snapshot of a modification in progress
+                snapshot = current;
+            }
+            return current;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
     /**
      * This method can be used to detect changes in highlight state of primitives. If highlighting was changed
      * then the method will return different number.
@@ -176,6 +217,41 @@ public final class DataSet implements Cloneable, ProjectionChangeListener {
         return autocomplete;
     }
 
+    /**
+     * Index of the tags, to find the candidates of a search
+     */
+    private TagIndex tagIndex;
+
+    /**
+     * Prepared geometry, to test repeatedly which primitives lie inside others
+     */
+    private PreparedGeometryCache preparedGeometryCache;
+
+    /**
+     * Replies the index of the tags of this dataset. It is built on first use, then kept current.
+     * @return the index of the tags of this dataset
+     */
+    public synchronized TagIndex getTagIndex() {
+        if (tagIndex == null) {
+            tagIndex = new TagIndex(this);
+            addDataSetListener(tagIndex);
+        }
+        return tagIndex;
+    }
+
+    /**
+     * Replies the cache of the prepared geometry of the ways and multipolygons of this dataset.
+     * It is created on first use and then follows the changes of this dataset.
+     * @return the cache of the prepared geometry of this dataset
+     */
+    public synchronized PreparedGeometryCache getPreparedGeometryCache() {
+        if (preparedGeometryCache == null) {
+            preparedGeometryCache = new PreparedGeometryCache();
+            addDataSetListener(preparedGeometryCache);
+        }
+        return preparedGeometryCache;
+    }
+
     /**
      * The API version that created this data set, if any.
      */
@@ -276,7 +352,7 @@ public final class DataSet implements Cloneable, ProjectionChangeListener {
     /**
      * All relations/relationships
      */
-    private Collection<Relation> relations = new ArrayList<>();
+    private QuadBuckets<Relation> relations = new QuadBuckets<>();
 
     /**
      * Replies an unmodifiable collection of relations in this dataset
@@ -290,14 +366,7 @@ public final class DataSet implements Cloneable, ProjectionChangeListener {
     public List<Relation> searchRelations(BBox bbox) {
         lock.readLock().lock();
         try {
-            // QuadBuckets might be useful here (don't forget to do reindexing after some of rm is changed)
-            List<Relation> result = new ArrayList<>();
-            for (Relation r: relations) {
-                if (r.getBBox().intersects(bbox)) {
-                    result.add(r);
-                }
-            }
-            return result;
+            return relations.search(bbox);
         } finally {
             lock.readLock().unlock();
         }
@@ -850,7 +919,8 @@ public final class DataSet implements Cloneable, ProjectionChangeListener {
         Set<Relation> result = new HashSet<>();
         beginUpdate();
         try {
-            for (Relation relation : relations) {
+            // Work on a copy, modified relations are reindexed in the relation QuadBuckets
+            for (Relation relation : relations.toArrayList()) {
                 List<RelationMember> members = relation.getMembers();
 
                 Iterator<RelationMember> it = members.iterator();
@@ -940,7 +1010,11 @@ public final class DataSet implements Cloneable, ProjectionChangeListener {
 
     private void reindexRelation(Relation relation) {
         BBox before = relation.getBBox();
+        if (!relations.remove(relation))
+            throw new RuntimeException("Reindexing relation failed to remove");
         relation.updatePosition();
+        if (!relations.add(relation))
+            throw new RuntimeException("Reindexing relation failed to add");
         if (!before.equals(relation.getBBox())) {
             for (OsmPrimitive primitive: relation.getReferrers()) {
                 reindexRelation((Relation) primitive);
@@ -975,6 +1049,19 @@ public final class DataSet implements Cloneable, ProjectionChangeListener {
         updateCount++;
     }
 
+    /**
+     * Replaces the events of the current update by a single {@link DataChangedEvent} without details,
+     * fired by the last call to {@link #endUpdate()}. Meant for changes too large to be followed
+     * primitive by primitive, the listeners have to read the dataset again anyway.
+     * @see DataSet#beginUpdate()
+     */
+    void coalesceEvents() {
+        if (updateCount == 0)
+            throw new AssertionError("events can be coalesced only when dataset is locked");
+        eventsCoalesced = true;
+        cachedEvents.clear();
+    }
+
     /**
      * @see DataSet#beginUpdate()
      */
@@ -983,10 +1070,19 @@ public final class DataSet implements Cloneable, ProjectionChangeListener {
             updateCount--;
             if (updateCount == 0) {
                 List<AbstractDatasetChangedEvent> eventsCopy = new ArrayList<>(cachedEvents);
+                boolean coalesced = eventsCoalesced;
                 cachedEvents.clear();
+                eventsCoalesced = false;
                 lock.writeLock().unlock();
 
-                if (!eventsCopy.isEmpty()) {
+                if (coalesced) {
+                    lock.readLock().lock();
+                    try {
+                        fireEventToListeners(new DataChangedEvent(this));
+                    } finally {
+                        lock.readLock().unlock();
+                    }
+                } else if (!eventsCopy.isEmpty()) {
                     lock.readLock().lock();
                     try {
                         if (eventsCopy.size() < MAX_SINGLE_EVENTS) {
@@ -1019,7 +1115,8 @@ public final class DataSet implements Cloneable, ProjectionChangeListener {
     private void fireEvent(AbstractDatasetChangedEvent event) {
         if (updateCount == 0)
             throw new AssertionError("dataset events can be fired only when dataset is locked");
-        if (cachedEvents.size() < MAX_EVENTS) {
+        modificationCount++;
+        if (!eventsCoalesced && cachedEvents.size() < MAX_EVENTS) {
             cachedEvents.add(event);
         }
     }
@@ -1101,6 +1198,7 @@ public final class DataSet implements Cloneable, ProjectionChangeListener {
                     allPrimitives.remove(primitive);
                     primitive.setDataset(null);
                     changed = true;
+                    modificationCount++;
                     it.remove();
                 }
             }
@@ -1127,6 +1225,7 @@ public final class DataSet implements Cloneable, ProjectionChangeListener {
             ways.clear();
             relations.clear();
             allPrimitives.clear();
+            modificationCount++;
         } finally {
             endUpdate();
         }
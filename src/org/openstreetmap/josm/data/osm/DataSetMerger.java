@@ -12,7 +12,14 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.openstreetmap.josm.Main;
 import org.openstreetmap.josm.data.conflict.Conflict;
 import org.openstreetmap.josm.data.conflict.ConflictCollection;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
@@ -21,10 +28,24 @@ import org.openstreetmap.josm.tools.CheckParameterUtil;
 /**
  * A dataset merger which takes a target and a source dataset and merges the source data set
  * onto the target dataset.
- *
+ * <p>
+ * Large source datasets are merged concurrently: the source primitives of each type are first matched against
+ * the target dataset by several threads, then merged one after the other in their order, so that the result and
+ * the conflicts are the same as with a sequential merge. The target dataset then fires a single
+ * {@link org.openstreetmap.josm.data.osm.event.DataChangedEvent} instead of one event per change. Sequential merges
+ * can be forced by setting the preference {@code merger.numberOfThreads} to 1.
  */
 public class DataSetMerger {
 
+    /** Minimal number of source primitives of one type matched by one task of a concurrent merge */
+    private static final int MIN_CHUNK_SIZE = 1000;
+
+    private static final int NUMBER_OF_THREADS = Main.pref != null
+            ? Main.pref.getInteger("merger.numberOfThreads", Runtime.getRuntime().availableProcessors())
+            : Runtime.getRuntime().availableProcessors();
+
+    private static ExecutorService pool;
+
     /** the collection of conflicts created during merging */
     private final ConflictCollection conflicts;
 
@@ -44,6 +65,66 @@ public class DataSetMerger {
     private final Set<PrimitiveId> objectsWithChildrenToMerge;
     private final Set<OsmPrimitive> objectsToDelete;
 
+    /** The number of threads matching the primitives, 1 to merge sequentially. Package-private for tests */
+    int numberOfThreads = NUMBER_OF_THREADS;
+    /** Set during a concurrent merge */
+    private boolean concurrent;
+
+    /**
+     * The primitive of the target dataset matching a source primitive, found before merging the source primitive.
+     */
+    private static final class Match {
+        /** The target with the same id as the source, or the new target semantically equal to the new source */
+        private final OsmPrimitive target;
+        /** Whether the target is semantically equal to the source, {@code null} if not compared yet */
+        private Boolean equal;
+
+        Match(OsmPrimitive target) {
+            this.target = target;
+        }
+
+        boolean hasEqualSemanticAttributes(OsmPrimitive source) {
+            if (equal == null) {
+                equal = target.hasEqualSemanticAttributes(source);
+            }
+            return equal;
+        }
+    }
+
+    private static synchronized ExecutorService getPool() {
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(NUMBER_OF_THREADS, new ThreadFactory() {
+                private int count;
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "merger-" + (++count));
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return pool;
+    }
+
+    /**
+     * Runs the tasks on the pool and waits for them.
+     */
+    private static void invokeAll(List<Callable<Void>> tasks) {
+        try {
+            for (Future<Void> future : getPool().invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * constructor
      *
@@ -78,32 +159,85 @@ public class DataSetMerger {
      * @param candidates a set of possible candidates for a new primitive
      */
     protected void mergePrimitive(OsmPrimitive source, Collection<? extends OsmPrimitive> candidates) {
+        mergePrimitive(source, match(source, candidates));
+    }
+
+    /**
+     * Finds the target primitive a source primitive is merged onto, without modifying the datasets.
+     *
+     * @param source the primitive to merge
+     * @param candidates a set of possible candidates for a new primitive
+     * @return the match of the source primitive, its target being {@code null} if there is none
+     */
+    private Match match(OsmPrimitive source, Collection<? extends OsmPrimitive> candidates) {
+        if (!source.isNew()) {
+            Match match = new Match(targetDataSet.getPrimitiveById(source.getId(), source.getType()));
+            // mergeById only compares modified complete targets, compare them here while matching concurrently
+            if (concurrent && match.target != null && match.target.isModified()
+                    && !match.target.isIncomplete() && !source.isIncomplete()) {
+                match.hasEqualSemanticAttributes(source);
+            }
+            return match;
+        } else if (!source.isDeleted()) {
+            // try to merge onto a primitive  which has no id assigned
+            // yet but which is equal in its semantic attributes
+            //
+            for (OsmPrimitive target : candidates) {
+                if (target.isNew() && !target.isDeleted() && target.hasEqualSemanticAttributes(source))
+                    return new Match(target);
+            }
+        }
+        return new Match(null);
+    }
+
+    /**
+     * Matches source primitives concurrently.
+     *
+     * @param sources the primitives to merge
+     * @param candidates a set of possible candidates for new primitives
+     * @return the matches of the source primitives, in the same order
+     */
+    private Match[] matchConcurrently(final List<OsmPrimitive> sources, final Collection<? extends OsmPrimitive> candidates) {
+        final Match[] matches = new Match[sources.size()];
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, sources.size() / (4 * numberOfThreads));
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int from = 0; from < sources.size(); from += chunkSize) {
+            final int start = from;
+            final int end = Math.min(from + chunkSize, sources.size());
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int i = start; i < end; i++) {
+                        matches[i] = match(sources.get(i), candidates);
+                    }
+                    return null;
+                }
+            });
+        }
+        invokeAll(tasks);
+        return matches;
+    }
+
+    private void mergePrimitive(OsmPrimitive source, Match match) {
         if (!source.isNew() ) {
             // try to merge onto a matching primitive with the same defined id
             //
-            if (mergeById(source))
+            if (mergeById(source, match))
                 return;
         } else {
             // ignore deleted primitives from source
             if (source.isDeleted()) return;
 
-            // try to merge onto a primitive  which has no id assigned
-            // yet but which is equal in its semantic attributes
-            //
-            for (OsmPrimitive target : candidates) {
-                if (!target.isNew() || target.isDeleted()) {
-                    continue;
-                }
-                if (target.hasEqualSemanticAttributes(source)) {
-                    mergedMap.put(source.getPrimitiveId(), target.getPrimitiveId());
-                    // copy the technical attributes from other version
-                    target.setVisible(source.isVisible());
-                    target.setUser(source.getUser());
-                    target.setTimestamp(source.getTimestamp());
-                    target.setModified(source.isModified());
-                    objectsWithChildrenToMerge.add(source.getPrimitiveId());
-                    return;
-                }
+            OsmPrimitive target = match.target;
+            if (target != null) {
+                mergedMap.put(source.getPrimitiveId(), target.getPrimitiveId());
+                // copy the technical attributes from other version
+                target.setVisible(source.isVisible());
+                target.setUser(source.getUser());
+                target.setTimestamp(source.getTimestamp());
+                target.setModified(source.isModified());
+                objectsWithChildrenToMerge.add(source.getPrimitiveId());
+                return;
             }
         }
 
@@ -150,21 +284,78 @@ public class DataSetMerger {
      * data.
      */
     public void fixReferences() {
-        for (Way w : sourceDataSet.getWays()) {
+        List<Way> ways = new ArrayList<>(sourceDataSet.getWays());
+        OsmPrimitive[][] wayNodes = resolveChildrenConcurrently(ways);
+        for (int i = 0; i < ways.size(); i++) {
+            Way w = ways.get(i);
             if (!conflicts.hasConflictForTheir(w) && objectsWithChildrenToMerge.contains(w.getPrimitiveId())) {
-                mergeNodeList(w);
+                mergeNodeList(w, wayNodes != null ? wayNodes[i] : null);
                 fixIncomplete(w);
             }
         }
-        for (Relation r : sourceDataSet.getRelations()) {
+        List<Relation> relations = new ArrayList<>(sourceDataSet.getRelations());
+        OsmPrimitive[][] relationMembers = resolveChildrenConcurrently(relations);
+        for (int i = 0; i < relations.size(); i++) {
+            Relation r = relations.get(i);
             if (!conflicts.hasConflictForTheir(r) && objectsWithChildrenToMerge.contains(r.getPrimitiveId())) {
-                mergeRelationMembers(r);
+                mergeRelationMembers(r, relationMembers != null ? relationMembers[i] : null);
             }
         }
 
         deleteMarkedObjects();
     }
 
+    /**
+     * Replies the merge targets of the nodes of a source way or of the members of a source relation.
+     *
+     * @param source the source way or relation
+     * @return the merge targets of its children, {@code null} if one of them is missing
+     */
+    private OsmPrimitive[] resolveChildren(OsmPrimitive source) {
+        List<? extends OsmPrimitive> children = source instanceof Way
+                ? ((Way) source).getNodes() : ((Relation) source).getMemberPrimitivesList();
+        OsmPrimitive[] targets = new OsmPrimitive[children.size()];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = getMergeTarget(children.get(i));
+            if (targets[i] == null)
+                return null;
+        }
+        return targets;
+    }
+
+    /**
+     * Replies concurrently the merge targets of the children of the source primitives whose children are merged.
+     *
+     * @param sources the source ways or relations
+     * @return the merge targets of the children of each source primitive, in the same order, or {@code null}
+     * if the merge is not concurrent
+     */
+    private OsmPrimitive[][] resolveChildrenConcurrently(final List<? extends OsmPrimitive> sources) {
+        if (!concurrent || sources.size() < 2 * MIN_CHUNK_SIZE)
+            return null;
+        final OsmPrimitive[][] children = new OsmPrimitive[sources.size()][];
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, sources.size() / (4 * numberOfThreads));
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int from = 0; from < sources.size(); from += chunkSize) {
+            final int start = from;
+            final int end = Math.min(from + chunkSize, sources.size());
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int i = start; i < end; i++) {
+                        OsmPrimitive source = sources.get(i);
+                        if (objectsWithChildrenToMerge.contains(source.getPrimitiveId())) {
+                            children[i] = resolveChildren(source);
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        invokeAll(tasks);
+        return children;
+    }
+
     /**
      * Deleted objects in objectsToDelete set and create conflicts for objects that cannot
      * be deleted because they're referenced in the target dataset.
@@ -228,18 +419,21 @@ public class DataSetMerger {
      * Merges the node list of a source way onto its target way.
      *
      * @param source the source way
+     * @param targetNodes the merge targets of the nodes of the source way if already known, or {@code null}
      * @throws IllegalStateException thrown if no target way can be found for the source way
      * @throws IllegalStateException thrown if there isn't a target node for one of the nodes in the source way
      *
      */
-    private void mergeNodeList(Way source) throws IllegalStateException {
+    private void mergeNodeList(Way source, OsmPrimitive[] targetNodes) throws IllegalStateException {
         Way target = (Way)getMergeTarget(source);
         if (target == null)
             throw new IllegalStateException(tr("Missing merge target for way with id {0}", source.getUniqueId()));
 
-        List<Node> newNodes = new ArrayList<>(source.getNodesCount());
-        for (Node sourceNode : source.getNodes()) {
-            Node targetNode = (Node)getMergeTarget(sourceNode);
+        List<Node> sourceNodes = source.getNodes();
+        List<Node> newNodes = new ArrayList<>(sourceNodes.size());
+        for (int i = 0; i < sourceNodes.size(); i++) {
+            Node sourceNode = sourceNodes.get(i);
+            Node targetNode = (Node) (targetNodes != null ? targetNodes[i] : getMergeTarget(sourceNode));
             if (targetNode != null) {
                 newNodes.add(targetNode);
                 if (targetNode.isDeleted() && !conflicts.hasConflictForMy(targetNode)) {
@@ -255,17 +449,20 @@ public class DataSetMerger {
     /**
      * Merges the relation members of a source relation onto the corresponding target relation.
      * @param source the source relation
+     * @param targetMembers the merge targets of the members of the source relation if already known, or {@code null}
      * @throws IllegalStateException thrown if there is no corresponding target relation
      * @throws IllegalStateException thrown if there isn't a corresponding target object for one of the relation
      * members in source
      */
-    private void mergeRelationMembers(Relation source) throws IllegalStateException {
+    private void mergeRelationMembers(Relation source, OsmPrimitive[] targetMembers) throws IllegalStateException {
         Relation target = (Relation) getMergeTarget(source);
         if (target == null)
             throw new IllegalStateException(tr("Missing merge target for relation with id {0}", source.getUniqueId()));
         LinkedList<RelationMember> newMembers = new LinkedList<>();
-        for (RelationMember sourceMember : source.getMembers()) {
-            OsmPrimitive targetMember = getMergeTarget(sourceMember.getMember());
+        List<RelationMember> sourceMembers = source.getMembers();
+        for (int i = 0; i < sourceMembers.size(); i++) {
+            RelationMember sourceMember = sourceMembers.get(i);
+            OsmPrimitive targetMember = targetMembers != null ? targetMembers[i] : getMergeTarget(sourceMember.getMember());
             if (targetMember == null)
                 throw new IllegalStateException(tr("Missing merge target of type {0} with id {1}", sourceMember.getType(), sourceMember.getUniqueId()));
             RelationMember newMember = new RelationMember(sourceMember.getRole(), targetMember);
@@ -282,10 +479,11 @@ public class DataSetMerger {
      * Tries to merge a primitive <code>source</code> into an existing primitive with the same id.
      *
      * @param source  the source primitive which is to be merged into a target primitive
+     * @param match the match of the source primitive
      * @return true, if this method was able to merge <code>source</code> into a target object; false, otherwise
      */
-    private boolean mergeById(OsmPrimitive source) {
-        OsmPrimitive target = targetDataSet.getPrimitiveById(source.getId(), source.getType());
+    private boolean mergeById(OsmPrimitive source, Match match) {
+        OsmPrimitive target = match.target;
         // merge other into an existing primitive with the same id, if possible
         //
         if (target == null)
@@ -353,7 +551,7 @@ public class DataSetMerger {
         } else if (target.isModified() && ! source.isModified() && target.getVersion() == source.getVersion()) {
             // target is same as source but target is modified
             // => keep target and reset modified flag if target and source are semantically equal
-            if (target.hasEqualSemanticAttributes(source)) {
+            if (match.hasEqualSemanticAttributes(source)) {
                 target.setModified(false);
             }
         } else if (source.isDeleted() != target.isDeleted()) {
@@ -361,7 +559,7 @@ public class DataSetMerger {
             // this have to be resolved manually.
             //
             addConflict(target,source);
-        } else if (! target.hasEqualSemanticAttributes(source)) {
+        } else if (! match.hasEqualSemanticAttributes(source)) {
             // target is modified and is not semantically equal with source. Can't automatically
             // resolve the differences
             // =>  create a conflict
@@ -402,32 +600,16 @@ public class DataSetMerger {
         }
         targetDataSet.beginUpdate();
         try {
-            List<? extends OsmPrimitive> candidates = new ArrayList<>(targetDataSet.getNodes());
-            for (Node node: sourceDataSet.getNodes()) {
-                mergePrimitive(node, candidates);
-                if (progressMonitor != null) {
-                    progressMonitor.worked(1);
-                }
-            }
-            candidates.clear();
-            candidates = new ArrayList<>(targetDataSet.getWays());
-            for (Way way: sourceDataSet.getWays()) {
-                mergePrimitive(way, candidates);
-                if (progressMonitor != null) {
-                    progressMonitor.worked(1);
-                }
+            concurrent = numberOfThreads > 1 && sourceDataSet.allPrimitives().size() >= 2 * MIN_CHUNK_SIZE;
+            if (concurrent) {
+                targetDataSet.coalesceEvents();
             }
-            candidates.clear();
-            candidates = new ArrayList<>(targetDataSet.getRelations());
-            for (Relation relation: sourceDataSet.getRelations()) {
-                mergePrimitive(relation, candidates);
-                if (progressMonitor != null) {
-                    progressMonitor.worked(1);
-                }
-            }
-            candidates.clear();
+            mergePrimitives(sourceDataSet.getNodes(), targetDataSet.getNodes(), progressMonitor);
+            mergePrimitives(sourceDataSet.getWays(), targetDataSet.getWays(), progressMonitor);
+            mergePrimitives(sourceDataSet.getRelations(), targetDataSet.getRelations(), progressMonitor);
             fixReferences();
         } finally {
+            concurrent = false;
             targetDataSet.endUpdate();
         }
         if (progressMonitor != null) {
@@ -435,6 +617,30 @@ public class DataSetMerger {
         }
     }
 
+    /**
+     * Merges the source primitives of one type, matching them concurrently if the merge is concurrent.
+     *
+     * @param sources the source primitives
+     * @param targets the target primitives of the same type
+     * @param progressMonitor The progress monitor, or {@code null}
+     */
+    private void mergePrimitives(Collection<? extends OsmPrimitive> sources, Collection<? extends OsmPrimitive> targets,
+            ProgressMonitor progressMonitor) {
+        List<? extends OsmPrimitive> candidates = new ArrayList<>(targets);
+        List<OsmPrimitive> list = new ArrayList<>(sources);
+        Match[] matches = concurrent && list.size() >= 2 * MIN_CHUNK_SIZE ? matchConcurrently(list, candidates) : null;
+        for (int i = 0; i < list.size(); i++) {
+            if (matches != null) {
+                mergePrimitive(list.get(i), matches[i]);
+            } else {
+                mergePrimitive(list.get(i), candidates);
+            }
+            if (progressMonitor != null) {
+                progressMonitor.worked(1);
+            }
+        }
+    }
+
     /**
      * replies my dataset
      *
@@ -0,0 +1,92 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.openstreetmap.josm.tools.CompositeList;
+import org.openstreetmap.josm.tools.SubclassFilteredCollection;
+
+/**
+ * An immutable view of the primitives a {@link DataSet} contained at a given point in time.
+ *
+ * A snapshot can be read from any thread without locking the dataset, so long running readers
+ * (validator, search, background collectors) neither block edits nor are blocked by them. Note that only the
+ * set of primitives is frozen: the primitives themselves are the live objects of the dataset and may be
+ * modified concurrently, so readers that need their state to be consistent still have to lock the dataset.
+ *
+ * @see DataSet#getSnapshot()
+ */
+public final class DataSetSnapshot {
+
+    private final int modificationCount;
+    private final List<Node> nodes;
+    private final List<Way> ways;
+    private final List<Relation> relations;
+
+    DataSetSnapshot(int modificationCount, Collection<Node> nodes, Collection<Way> ways, Collection<Relation> relations) {
+        this.modificationCount = modificationCount;
+        this.nodes = Collections.unmodifiableList(Arrays.asList(nodes.toArray(new Node[nodes.size()])));
+        this.ways = Collections.unmodifiableList(Arrays.asList(ways.toArray(new Way[ways.size()])));
+        this.relations = Collections.unmodifiableList(Arrays.asList(relations.toArray(new Relation[relations.size()])));
+    }
+
+    /**
+     * Replies the modification count of the dataset at the time this snapshot has been taken.
+     * The count changes with every modification of the dataset.
+     * @return the modification count of the dataset at the time this snapshot has been taken
+     */
+    public int getModificationCount() {
+        return modificationCount;
+    }
+
+    /**
+     * Replies the nodes of this snapshot.
+     * @return an unmodifiable list of nodes
+     */
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Replies the ways of this snapshot.
+     * @return an unmodifiable list of ways
+     */
+    public List<Way> getWays() {
+        return ways;
+    }
+
+    /**
+     * Replies the relations of this snapshot.
+     * @return an unmodifiable list of relations
+     */
+    public List<Relation> getRelations() {
+        return relations;
+    }
+
+    /**
+     * Replies all primitives of this snapshot, nodes first, then ways, then relations.
+     * @return an unmodifiable list of all primitives
+     */
+    public List<OsmPrimitive> allPrimitives() {
+        return new CompositeList<OsmPrimitive>(new CompositeList<OsmPrimitive>(nodes, ways), relations);
+    }
+
+    /**
+     * Replies all primitives of this snapshot which are not deleted.
+     * @return an unmodifiable collection of all not-deleted primitives
+     */
+    public Collection<OsmPrimitive> allNonDeletedPrimitives() {
+        return new SubclassFilteredCollection<>(allPrimitives(), OsmPrimitive.nonDeletedPredicate);
+    }
+
+    /**
+     * Replies all primitives of this snapshot which are neither deleted nor incomplete.
+     * @return an unmodifiable collection of all not-deleted complete primitives
+     */
+    public Collection<OsmPrimitive> allNonDeletedCompletePrimitives() {
+        return new SubclassFilteredCollection<>(allPrimitives(), OsmPrimitive.nonDeletedCompletePredicate);
+    }
+}
@@ -0,0 +1,19 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+/**
+ * Visitor, that allows to iterate over the key/value pairs of a primitive without creating a map of its tags.
+ *
+ * @see AbstractPrimitive#visitKeys(KeyValueVisitor)
+ */
+public interface KeyValueVisitor {
+
+    /**
+     * Called for each key/value pair of the visited primitive.
+     *
+     * @param primitive the primitive the tag belongs to
+     * @param key the key, never null
+     * @param value the value, never null
+     */
+    void visitKeyValue(AbstractPrimitive primitive, String key, String value);
+}
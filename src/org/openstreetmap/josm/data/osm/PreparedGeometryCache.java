@@ -0,0 +1,299 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataSetListener;
+import org.openstreetmap.josm.data.osm.event.NodeMovedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesAddedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesRemovedEvent;
+import org.openstreetmap.josm.data.osm.event.RelationMembersChangedEvent;
+import org.openstreetmap.josm.data.osm.event.TagsChangedEvent;
+import org.openstreetmap.josm.data.osm.event.WayNodesChangedEvent;
+import org.openstreetmap.josm.data.projection.Projection;
+import org.openstreetmap.josm.tools.Geometry;
+import org.openstreetmap.josm.tools.Geometry.MultiPolygonMembers;
+import org.openstreetmap.josm.tools.Geometry.PolygonIntersection;
+import org.openstreetmap.josm.tools.PreparedPolygon;
+
+/**
+ * Cache of the prepared geometry of the ways and multipolygons of a {@link DataSet}, used to test repeatedly
+ * whether nodes and ways lie inside them or cross them, as the MapCSS element-of and crossing selectors do.
+ * <p>
+ * The tests give the same results as the corresponding methods of {@link Geometry}. The geometry of a way
+ * or a multipolygon is prepared on first use, and dropped when its nodes move, its nodes or members change,
+ * or the projection changes. The cache can be used by several threads.
+ * <p>
+ * The number of prepared ways and multipolygons is bounded by the preference {@code preparedgeometry.cache.size};
+ * the geometry used least recently is dropped first.
+ *
+ * @see DataSet#getPreparedGeometryCache()
+ */
+public final class PreparedGeometryCache implements DataSetListener {
+
+    /**
+     * The rings of a multipolygon, each outer ring with the inner rings inside it.
+     */
+    private static final class PreparedMultipolygon {
+        private final List<PreparedPolygon> outers = new ArrayList<>();
+        private final List<List<PreparedPolygon>> inners = new ArrayList<>();
+
+        PreparedMultipolygon(Relation multipolygon) {
+            final MultiPolygonMembers mpm = new MultiPolygonMembers(multipolygon);
+            final List<MultipolygonCreate.JoinedPolygon> outerRings;
+            final List<MultipolygonCreate.JoinedPolygon> innerRings;
+            try {
+                outerRings = MultipolygonCreate.joinWays(mpm.outers);
+                innerRings = MultipolygonCreate.joinWays(mpm.inners);
+            } catch (MultipolygonCreate.JoinedPolygonCreationException ex) {
+                Main.debug("Invalid multipolygon " + multipolygon);
+                return;
+            }
+            List<PreparedPolygon> preparedInners = new ArrayList<>(innerRings.size());
+            for (MultipolygonCreate.JoinedPolygon in : innerRings) {
+                preparedInners.add(new PreparedPolygon(in.nodes, in.area));
+            }
+            for (MultipolygonCreate.JoinedPolygon out : outerRings) {
+                PreparedPolygon outer = new PreparedPolygon(out.nodes, out.area);
+                List<PreparedPolygon> insideOuter = new ArrayList<>();
+                for (PreparedPolygon inner : preparedInners) {
+                    if (inner.intersection(outer) == PolygonIntersection.FIRST_INSIDE_SECOND) {
+                        insideOuter.add(inner);
+                    }
+                }
+                outers.add(outer);
+                inners.add(insideOuter);
+            }
+        }
+
+        /**
+         * Tests if the node or the polygon is inside, like {@link Geometry#isPolygonInsideMultiPolygon}.
+         */
+        boolean contains(Node node, PreparedPolygon polygon) {
+            for (int i = 0; i < outers.size(); i++) {
+                if (node != null
+                        ? outers.get(i).contains(node)
+                        : EnumSet.of(PolygonIntersection.FIRST_INSIDE_SECOND, PolygonIntersection.CROSSING).contains(
+                                polygon.intersection(outers.get(i)))) {
+                    boolean insideInner = false;
+                    for (PreparedPolygon inner : inners.get(i)) {
+                        if (node != null
+                                ? inner.contains(node)
+                                : polygon.intersection(inner) == PolygonIntersection.FIRST_INSIDE_SECOND) {
+                            insideInner = true;
+                            break;
+                        }
+                    }
+                    if (!insideInner)
+                        return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A map in access order which drops its eldest entry beyond the maximum size.
+     */
+    private static final class LruMap<K, V> extends LinkedHashMap<K, V> {
+        private final int maxSize;
+
+        LruMap(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maxSize;
+        }
+    }
+
+    // guarded by this
+    private final Map<Way, PreparedPolygon> polygons;
+    private final Map<Relation, PreparedMultipolygon> multipolygons;
+
+    /** The projection of the prepared geometry */
+    private volatile Projection projection;
+    /** Incremented on each invalidation, so that a geometry prepared meanwhile is not cached */
+    private volatile int version;
+
+    PreparedGeometryCache() {
+        // Created by the dataset
+        int maxSize = Main.pref.getInteger("preparedgeometry.cache.size", 4096);
+        polygons = new LruMap<>(maxSize);
+        multipolygons = new LruMap<>(maxSize);
+    }
+
+    /**
+     * Replies the current version, after dropping all geometry if the projection has changed.
+     */
+    private int getVersion() {
+        Projection current = Main.getProjection();
+        if (current != projection) {
+            synchronized (this) {
+                if (current != projection) {
+                    clear();
+                    projection = current;
+                }
+            }
+        }
+        return version;
+    }
+
+    private synchronized void clear() {
+        version++;
+        polygons.clear();
+        multipolygons.clear();
+    }
+
+    private PreparedPolygon getPolygon(Way w) {
+        int v = getVersion();
+        PreparedPolygon p;
+        synchronized (this) {
+            p = polygons.get(w);
+        }
+        if (p == null) {
+            p = new PreparedPolygon(w.getNodes());
+            synchronized (this) {
+                if (v == version) {
+                    polygons.put(w, p);
+                }
+            }
+        }
+        return p;
+    }
+
+    private PreparedMultipolygon getMultipolygon(Relation r) {
+        int v = getVersion();
+        PreparedMultipolygon p;
+        synchronized (this) {
+            p = multipolygons.get(r);
+        }
+        if (p == null) {
+            p = new PreparedMultipolygon(r);
+            synchronized (this) {
+                if (v == version) {
+                    multipolygons.put(r, p);
+                }
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Replies the number of prepared ways and multipolygons.
+     * @return the number of prepared ways and multipolygons
+     */
+    synchronized int size() {
+        return polygons.size() + multipolygons.size();
+    }
+
+    /**
+     * Tests if a node is inside a closed way, like {@link Geometry#nodeInsidePolygon(Node, List)}.
+     * @param node the node
+     * @param polygon the closed way
+     * @return true if the node is inside the way
+     */
+    public boolean isNodeInsidePolygon(Node node, Way polygon) {
+        return getPolygon(polygon).contains(node);
+    }
+
+    /**
+     * Tests how two ways intersect, like {@link Geometry#polygonIntersection(List, List)}.
+     * @param first the first way
+     * @param second the second way
+     * @return the intersection kind
+     */
+    public PolygonIntersection polygonIntersection(Way first, Way second) {
+        return getPolygon(first).intersection(getPolygon(second));
+    }
+
+    /**
+     * Tests if a node is inside a multipolygon, like {@link Geometry#isNodeInsideMultiPolygon} without predicate.
+     * @param node the node
+     * @param multipolygon the multipolygon relation
+     * @return true if the node is inside the multipolygon
+     */
+    public boolean isNodeInsideMultiPolygon(Node node, Relation multipolygon) {
+        return getMultipolygon(multipolygon).contains(node, null);
+    }
+
+    /**
+     * Tests if a way is inside a multipolygon, like {@link Geometry#isPolygonInsideMultiPolygon} without predicate.
+     * @param way the way
+     * @param multipolygon the multipolygon relation
+     * @return true if the way is inside the multipolygon
+     */
+    public boolean isPolygonInsideMultiPolygon(Way way, Relation multipolygon) {
+        if (way.getNodesCount() == 1)
+            return isNodeInsideMultiPolygon(way.getNode(0), multipolygon);
+        return getMultipolygon(multipolygon).contains(null, getPolygon(way));
+    }
+
+    private synchronized void invalidate(Way w) {
+        version++;
+        polygons.remove(w);
+        for (OsmPrimitive referrer : w.getReferrers()) {
+            if (referrer instanceof Relation) {
+                multipolygons.remove(referrer);
+            }
+        }
+    }
+
+    private synchronized void invalidate(Relation r) {
+        version++;
+        multipolygons.remove(r);
+    }
+
+    @Override
+    public void primitivesAdded(PrimitivesAddedEvent event) {/* ignored */}
+
+    @Override
+    public void primitivesRemoved(PrimitivesRemovedEvent event) {
+        for (OsmPrimitive p : event.getPrimitives()) {
+            if (p instanceof Way) {
+                invalidate((Way) p);
+            } else if (p instanceof Relation) {
+                invalidate((Relation) p);
+            }
+        }
+    }
+
+    @Override
+    public void tagsChanged(TagsChangedEvent event) {/* ignored */}
+
+    @Override
+    public void nodeMoved(NodeMovedEvent event) {
+        for (OsmPrimitive referrer : event.getNode().getReferrers()) {
+            if (referrer instanceof Way) {
+                invalidate((Way) referrer);
+            }
+        }
+    }
+
+    @Override
+    public void wayNodesChanged(WayNodesChangedEvent event) {
+        invalidate(event.getChangedWay());
+    }
+
+    @Override
+    public void relationMembersChanged(RelationMembersChangedEvent event) {
+        invalidate(event.getRelation());
+    }
+
+    @Override
+    public void otherDatasetChange(AbstractDatasetChangedEvent event) {/* ignored */}
+
+    @Override
+    public void dataChanged(DataChangedEvent event) {
+        clear();
+    }
+}
@@ -0,0 +1,260 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A map from {@link PrimitiveId} to values, intended for bookkeeping of millions of primitives.
+ *
+ * The ids of each primitive type are kept in an open addressing table backed by a {@code long} array,
+ * so unlike a {@code HashMap<PrimitiveId, V>} neither a key object nor an entry object is allocated per
+ * mapping. Keys handed out by {@link #entrySet()} or {@link #keySet()} are created on the fly.
+ *
+ * {@code null} values are not supported.
+ *
+ * @param <V> the type of the mapped values
+ */
+public class PrimitiveIdMap<V> extends AbstractMap<PrimitiveId, V> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final IdTable[] tables = new IdTable[OsmPrimitiveType.values().length];
+    private int size;
+
+    /**
+     * Open addressing table with linear probing mapping ids of one primitive type to values.
+     * A slot is free if its value is {@code null}.
+     */
+    private static final class IdTable {
+        private long[] ids = new long[DEFAULT_CAPACITY];
+        private Object[] values = new Object[DEFAULT_CAPACITY];
+        private int size;
+
+        private static int hash(long id) {
+            int h = (int) (id ^ (id >>> 32));
+            return h * 0x9E3779B9;
+        }
+
+        /**
+         * Replies the slot of {@code id}, or the free slot where it would have to be inserted.
+         */
+        private int slot(long id) {
+            int mask = ids.length - 1;
+            int i = hash(id) & mask;
+            while (values[i] != null && ids[i] != id) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        private Object get(long id) {
+            return values[slot(id)];
+        }
+
+        private Object put(long id, Object value) {
+            int i = slot(id);
+            Object old = values[i];
+            ids[i] = id;
+            values[i] = value;
+            if (old == null && ++size * 4 > ids.length * 3) {
+                resize(ids.length * 2);
+            }
+            return old;
+        }
+
+        private Object remove(long id) {
+            int i = slot(id);
+            Object old = values[i];
+            if (old == null)
+                return null;
+            // Backward shift deletion: move following entries of the same probe sequence into the gap
+            int mask = ids.length - 1;
+            int j = i;
+            while (true) {
+                j = (j + 1) & mask;
+                if (values[j] == null) {
+                    break;
+                }
+                int k = hash(ids[j]) & mask;
+                if (i <= j ? (i < k && k <= j) : (i < k || k <= j)) {
+                    continue;
+                }
+                ids[i] = ids[j];
+                values[i] = values[j];
+                i = j;
+            }
+            values[i] = null;
+            size--;
+            return old;
+        }
+
+        private void resize(int capacity) {
+            long[] oldIds = ids;
+            Object[] oldValues = values;
+            ids = new long[capacity];
+            values = new Object[capacity];
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldValues[i] != null) {
+                    int j = slot(oldIds[i]);
+                    ids[j] = oldIds[i];
+                    values[j] = oldValues[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Constructs a new, empty {@code PrimitiveIdMap}.
+     */
+    public PrimitiveIdMap() {
+    }
+
+    private IdTable getTable(OsmPrimitiveType type, boolean create) {
+        int idx = type.ordinal();
+        if (tables[idx] == null && create) {
+            tables[idx] = new IdTable();
+        }
+        return tables[idx];
+    }
+
+    /**
+     * Replies the value mapped to the given id.
+     * Unlike {@link #get(Object)}, this method does not need a {@link PrimitiveId} instance.
+     * @param id the unique id
+     * @param type the primitive type
+     * @return the value mapped to the given id, or {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long id, OsmPrimitiveType type) {
+        IdTable table = getTable(type, false);
+        return table == null ? null : (V) table.get(id);
+    }
+
+    /**
+     * Maps the given id to {@code value}.
+     * Unlike {@link #put(PrimitiveId, Object)}, this method does not need a {@link PrimitiveId} instance.
+     * @param id the unique id
+     * @param type the primitive type
+     * @param value the value, must not be null
+     * @return the value previously mapped to the given id, or {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long id, OsmPrimitiveType type, V value) {
+        if (value == null)
+            throw new NullPointerException("value");
+        V old = (V) getTable(type, true).put(id, value);
+        if (old == null) {
+            size++;
+        }
+        return old;
+    }
+
+    @Override
+    public V get(Object key) {
+        if (!(key instanceof PrimitiveId))
+            return null;
+        PrimitiveId id = (PrimitiveId) key;
+        return get(id.getUniqueId(), id.getType());
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public V put(PrimitiveId key, V value) {
+        return put(key.getUniqueId(), key.getType(), value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        if (!(key instanceof PrimitiveId))
+            return null;
+        PrimitiveId id = (PrimitiveId) key;
+        IdTable table = getTable(id.getType(), false);
+        V old = table == null ? null : (V) table.remove(id.getUniqueId());
+        if (old != null) {
+            size--;
+        }
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < tables.length; i++) {
+            tables[i] = null;
+        }
+        size = 0;
+    }
+
+    @Override
+    public Set<Entry<PrimitiveId, V>> entrySet() {
+        return new AbstractSet<Entry<PrimitiveId, V>>() {
+            @Override
+            public Iterator<Entry<PrimitiveId, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private class EntryIterator implements Iterator<Entry<PrimitiveId, V>> {
+        private int tableIdx;
+        private int slot = -1;
+
+        EntryIterator() {
+            advance();
+        }
+
+        private void advance() {
+            while (tableIdx < tables.length) {
+                IdTable table = tables[tableIdx];
+                if (table != null) {
+                    while (++slot < table.values.length) {
+                        if (table.values[slot] != null)
+                            return;
+                    }
+                }
+                tableIdx++;
+                slot = -1;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return tableIdx < tables.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Entry<PrimitiveId, V> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            IdTable table = tables[tableIdx];
+            PrimitiveId key = new SimplePrimitiveId(table.ids[slot], OsmPrimitiveType.values()[tableIdx]);
+            V value = (V) table.values[slot];
+            advance();
+            return new SimpleImmutableEntry<>(key, value);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
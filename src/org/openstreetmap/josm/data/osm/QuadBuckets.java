@@ -583,27 +583,30 @@ public class QuadBuckets<T extends OsmPrimitive> implements Collection<T> {
         List<T> ret = new ArrayList<>();
         // Doing this cuts down search cost on a real-life data set by about 25%
         boolean cache_searches = true;
+        // The search cache is only a hint shared by concurrent readers: work on a local copy,
+        // as another search may change it at any time
+        QBLevel<T> start = search_cache;
         if (cache_searches) {
-            if (search_cache == null) {
-                search_cache = root;
+            if (start == null) {
+                start = root;
             }
             // Walk back up the tree when the last search spot can not cover the current search
-            while (search_cache != null && !search_cache.bbox().bounds(search_bbox)) {
-                search_cache = search_cache.parent;
+            while (start != null && !start.bbox().bounds(search_bbox)) {
+                start = start.parent;
             }
 
-            if (search_cache == null) {
-                search_cache = root;
+            if (start == null) {
+                start = root;
                 Main.info("bbox: " + search_bbox + " is out of the world");
             }
         } else {
-            search_cache = root;
+            start = root;
         }
+        search_cache = start;
 
-        // Save parent because search_cache might change during search call
-        QBLevel<T> tmp = search_cache.parent;
+        QBLevel<T> tmp = start.parent;
 
-        search_cache.search(search_bbox, ret);
+        start.search(search_bbox, ret);
 
         // A way that spans this bucket may be stored in one
         // of the nodes which is a parent of the search cache
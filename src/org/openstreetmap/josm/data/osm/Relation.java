@@ -423,21 +423,13 @@ public final class Relation extends OsmPrimitive implements IRelation {
 
     @Override
     public BBox getBBox() {
-        RelationMember[] members = this.members;
-
-        if (members.length == 0)
-            return new BBox(0, 0, 0, 0);
-        if (getDataSet() == null)
-            return calculateBBox(new HashSet<PrimitiveId>());
-        else {
-            if (bbox == null) {
-                bbox = calculateBBox(new HashSet<PrimitiveId>());
-            }
-            if (bbox == null)
-                return new BBox(0, 0, 0, 0); // No real members
-            else
-                return new BBox(bbox);
-        }
+        if (getDataSet() != null && bbox != null)
+            return new BBox(bbox); // use cached value, it is the one the relation is indexed with in the dataset
+        BBox result = calculateBBox(new HashSet<PrimitiveId>());
+        if (result == null)
+            return new BBox(0, 0, 0, 0); // No real members
+        else
+            return result;
     }
 
     private BBox calculateBBox(Set<PrimitiveId> visitedRelations) {
@@ -467,13 +459,17 @@ public final class Relation extends OsmPrimitive implements IRelation {
     @Override
     public void updatePosition() {
         bbox = calculateBBox(new HashSet<PrimitiveId>());
+        if (bbox == null) {
+            bbox = new BBox(0, 0, 0, 0); // No real members
+        }
     }
 
     @Override
     public void setDataset(DataSet dataSet) {
         super.setDataset(dataSet);
         checkMembers();
-        bbox = null; // bbox might have changed if relation was in ds, was removed, modified, added back to dataset
+        // Do not reset bbox here: it is recalculated by DataSet.addPrimitive() and must stay in sync with the
+        // relation index of the dataset, otherwise the relation can't be found anymore when it is reindexed
     }
 
     private void checkMembers() throws DataIntegrityProblemException {
@@ -0,0 +1,218 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataSetListener;
+import org.openstreetmap.josm.data.osm.event.NodeMovedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesAddedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesRemovedEvent;
+import org.openstreetmap.josm.data.osm.event.RelationMembersChangedEvent;
+import org.openstreetmap.josm.data.osm.event.TagsChangedEvent;
+import org.openstreetmap.josm.data.osm.event.WayNodesChangedEvent;
+
+/**
+ * Inverted index of the tags of the primitives of a {@link DataSet}, from a key and a value to the primitives
+ * having this tag. It is built on first use and kept current through the dataset events.
+ * <p>
+ * The index is meant to find the candidates of a search: it may reply primitives which have been removed from
+ * the dataset or whose tags have changed in the meantime, so the replied primitives have to be tested again.
+ * It never misses a primitive of the dataset having the tag, once the events of its last change have been fired.
+ *
+ * @see DataSet#getTagIndex()
+ */
+public final class TagIndex implements DataSetListener {
+
+    private final DataSet ds;
+
+    /**
+     * The primitives by key and value. A value is mapped to a single primitive, or to an identity set of
+     * primitives if there are several.
+     */
+    private final Map<String, Map<String, Object>> index = new HashMap<>();
+
+    /** If the dirty flag is set, the index has to be built again. */
+    private boolean dirty = true;
+
+    TagIndex(DataSet ds) {
+        this.ds = ds;
+    }
+
+    private final KeyValueVisitor adder = new KeyValueVisitor() {
+        @Override
+        public void visitKeyValue(AbstractPrimitive primitive, String key, String value) {
+            add((OsmPrimitive) primitive, key, value);
+        }
+    };
+
+    private final KeyValueVisitor remover = new KeyValueVisitor() {
+        @Override
+        public void visitKeyValue(AbstractPrimitive primitive, String key, String value) {
+            remove((OsmPrimitive) primitive, key, value);
+        }
+    };
+
+    @SuppressWarnings("unchecked")
+    private void add(OsmPrimitive p, String key, String value) {
+        Map<String, Object> values = index.get(key);
+        if (values == null) {
+            values = new HashMap<>();
+            index.put(key, values);
+        }
+        Object primitives = values.get(value);
+        if (primitives == null) {
+            values.put(value, p);
+        } else if (primitives instanceof Set) {
+            ((Set<OsmPrimitive>) primitives).add(p);
+        } else if (primitives != p) {
+            Set<OsmPrimitive> set = Collections.newSetFromMap(new IdentityHashMap<OsmPrimitive, Boolean>(4));
+            set.add((OsmPrimitive) primitives);
+            set.add(p);
+            values.put(value, set);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void remove(OsmPrimitive p, String key, String value) {
+        Map<String, Object> values = index.get(key);
+        if (values == null)
+            return;
+        Object primitives = values.get(value);
+        if (primitives == p) {
+            values.remove(value);
+        } else if (primitives instanceof Set) {
+            Set<OsmPrimitive> set = (Set<OsmPrimitive>) primitives;
+            set.remove(p);
+            if (set.size() == 1) {
+                values.put(value, set.iterator().next());
+            }
+        }
+        if (values.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    private void ensureBuilt() {
+        if (dirty) {
+            index.clear();
+            for (OsmPrimitive p : ds.getSnapshot().allPrimitives()) {
+                p.visitKeys(adder);
+            }
+            dirty = false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void addTo(List<OsmPrimitive> result, Object primitives) {
+        if (primitives instanceof Set) {
+            result.addAll((Set<OsmPrimitive>) primitives);
+        } else if (primitives != null) {
+            result.add((OsmPrimitive) primitives);
+        }
+    }
+
+    /**
+     * Replies the primitives having the given tag.
+     * @param key the key
+     * @param value the value
+     * @return the primitives having the tag, without duplicates
+     */
+    public synchronized List<OsmPrimitive> getPrimitives(String key, String value) {
+        ensureBuilt();
+        List<OsmPrimitive> result = new ArrayList<>();
+        Map<String, Object> values = index.get(key);
+        if (values != null) {
+            addTo(result, values.get(value));
+        }
+        return result;
+    }
+
+    /**
+     * Replies the primitives having the given key, whatever its value.
+     * @param key the key
+     * @return the primitives having the key, without duplicates
+     */
+    public synchronized List<OsmPrimitive> getPrimitivesWithKey(String key) {
+        ensureBuilt();
+        List<OsmPrimitive> result = new ArrayList<>();
+        Map<String, Object> values = index.get(key);
+        if (values != null) {
+            // a primitive has a single value for a key
+            for (Object primitives : values.values()) {
+                addTo(result, primitives);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Replies the primitives having the given value, whatever its key.
+     * @param value the value
+     * @return the primitives having the value, possibly several times
+     */
+    public synchronized List<OsmPrimitive> getPrimitivesWithValue(String value) {
+        ensureBuilt();
+        List<OsmPrimitive> result = new ArrayList<>();
+        for (Map<String, Object> values : index.values()) {
+            addTo(result, values.get(value));
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void primitivesAdded(PrimitivesAddedEvent event) {
+        if (dirty)
+            return;
+        for (OsmPrimitive p : event.getPrimitives()) {
+            p.visitKeys(adder);
+        }
+    }
+
+    @Override
+    public synchronized void primitivesRemoved(PrimitivesRemovedEvent event) {
+        if (dirty)
+            return;
+        for (OsmPrimitive p : event.getPrimitives()) {
+            p.visitKeys(remover);
+        }
+    }
+
+    @Override
+    public synchronized void tagsChanged(TagsChangedEvent event) {
+        if (dirty)
+            return;
+        OsmPrimitive p = event.getPrimitive();
+        for (Entry<String, String> e : event.getOriginalKeys().entrySet()) {
+            if (!e.getValue().equals(p.get(e.getKey()))) {
+                remove(p, e.getKey(), e.getValue());
+            }
+        }
+        p.visitKeys(adder);
+    }
+
+    @Override
+    public void nodeMoved(NodeMovedEvent event) {/* ignored */}
+
+    @Override
+    public void wayNodesChanged(WayNodesChangedEvent event) {/* ignored */}
+
+    @Override
+    public void relationMembersChanged(RelationMembersChangedEvent event) {/* ignored */}
+
+    @Override
+    public void otherDatasetChange(AbstractDatasetChangedEvent event) {/* ignored */}
+
+    @Override
+    public synchronized void dataChanged(DataChangedEvent event) {
+        dirty = true;
+    }
+}
@@ -4,11 +4,11 @@ package org.openstreetmap.josm.data.osm;
 import static org.openstreetmap.josm.tools.I18n.tr;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.openstreetmap.josm.tools.Utils;
@@ -20,7 +20,7 @@ import org.openstreetmap.josm.tools.Utils;
  * a reference to an user object, and make sure that for each username there
  * is only one user object.
  *
- *
+ * The registry of users is thread-safe, users may be created by several threads at the same time.
  */
 public final class User {
 
@@ -29,7 +29,7 @@ public final class User {
     /**
      * the map of known users
      */
-    private static Map<Long,User> userMap = new HashMap<>();
+    private static ConcurrentMap<Long,User> userMap = new ConcurrentHashMap<>();
     private static final User anonymous = createLocalUser(tr("<anonymous>"));
 
     private static long getNextLocalUid() {
@@ -42,7 +42,7 @@ public final class User {
      * @param name the name
      * @return a new local user with the given name
      */
-    public static User createLocalUser(String name) {
+    public static synchronized User createLocalUser(String name) {
         for(long i = -1; i >= uidCounter.get(); --i)
         {
           User olduser = getById(i);
@@ -64,8 +64,10 @@ public final class User {
     public static User createOsmUser(long uid, String name) {
         User user = userMap.get(uid);
         if (user == null) {
-            user = new User(uid, name);
-            userMap.put(user.getId(), user);
+            User newUser = new User(uid, name);
+            user = userMap.putIfAbsent(uid, newUser);
+            if (user == null)
+                return newUser;
         }
         if (name != null) user.addName(name);
         return user;
@@ -128,7 +130,7 @@ public final class User {
      *
      * @return the user name. Never <code>null</code>, but may be the empty string
      */
-    public String getName() {
+    public synchronized String getName() {
         return Utils.join("/", names);
     }
 
@@ -137,7 +139,7 @@ public final class User {
      *
      * @return list of names
      */
-    public List<String> getNames() {
+    public synchronized List<String> getNames() {
         return new ArrayList<>(names);
     }
 
@@ -146,7 +148,7 @@ public final class User {
      *
      * @param name
      */
-    public void addName(String name) {
+    public synchronized void addName(String name) {
         names.add(name);
     }
 
@@ -156,7 +158,7 @@ public final class User {
      * @param name
      * @return <code>true</code> if the name is in the names list
      */
-    public boolean hasName(String name) {
+    public synchronized boolean hasName(String name) {
         return names.contains(name);
     }
 
@@ -218,7 +220,7 @@ public final class User {
     }
 
     @Override
-    public String toString() {
+    public synchronized String toString() {
         StringBuilder s = new StringBuilder();
         s.append("id:").append(uid);
         if (names.size() == 1) {
@@ -0,0 +1,578 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.visitor.paint;
+
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.Preferences.PreferenceChangeEvent;
+import org.openstreetmap.josm.data.Preferences.PreferenceChangedListener;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.BBox;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.WaySegment;
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataSetListener;
+import org.openstreetmap.josm.data.osm.event.NodeMovedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesAddedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesRemovedEvent;
+import org.openstreetmap.josm.data.osm.event.RelationMembersChangedEvent;
+import org.openstreetmap.josm.data.osm.event.TagsChangedEvent;
+import org.openstreetmap.josm.data.osm.event.WayNodesChangedEvent;
+import org.openstreetmap.josm.data.osm.visitor.paint.relations.MultipolygonCache;
+import org.openstreetmap.josm.data.projection.Projection;
+import org.openstreetmap.josm.gui.NavigatableComponent;
+import org.openstreetmap.josm.gui.mappaint.MapPaintStyles;
+
+/**
+ * Caches the output of the {@link StyledMapRenderer} for a data set in tiles.
+ *
+ * The tiles are anchored to the projected coordinates, so they stay valid while the map is panned.
+ * They are rendered for a given scale and projection and discarded as soon as one of them changes.
+ * Dataset events, selection and highlighting changes invalidate only the tiles covering the affected
+ * primitives, both at their current position and at the position they had when they were painted.
+ *
+ * Labels and virtual nodes are not cached, they are painted over the whole view on top of the cached tiles,
+ * so that labels are neither clipped nor repeated at the tile borders.
+ *
+ * An asynchronous cache renders the missing tiles on a background thread, so that painting never waits for
+ * the renderer: the latest finished tiles are painted instead, also the outdated ones of invalidated tiles,
+ * and a listener is notified when fresh tiles are available.
+ */
+public class RenderTileCache implements DataSetListener, PreferenceChangedListener {
+
+    /** The width and height of a tile in pixels */
+    public static final int TILE_SIZE = 512;
+
+    /**
+     * The number of pixels by which the rendered area of a tile exceeds the tile. Symbols and wide lines of
+     * primitives close to the tile border are painted if they do not extend further into the tile.
+     */
+    private static final int MARGIN = 128;
+
+    private static ExecutorService renderer;
+
+    private final DataSet data;
+    private final Runnable tileListener;
+
+    /** the cached tiles by tile index, in access order */
+    private final LinkedHashMap<Point, BufferedImage> tiles = new LinkedHashMap<>(16, 0.75f, true);
+    /** the invalidated tiles of an asynchronous cache, painted until they are rendered again, in access order */
+    private final LinkedHashMap<Point, BufferedImage> outdatedTiles = new LinkedHashMap<>(16, 0.75f, true);
+    /** the tiles being rendered in the background, with the token of the current request */
+    private final Map<Point, Object> pendingTiles = new HashMap<>();
+    /** the primitives painted into each cached tile */
+    private final Map<Point, Set<OsmPrimitive>> paintedPrimitives = new HashMap<>();
+
+    // the state the cached tiles have been rendered for
+    private double scale;
+    private Projection projection;
+    private boolean inactive;
+    private int styleCacheIdx;
+    private double dist100Pixel;
+    private Collection<OsmPrimitive> selection = Collections.emptyList();
+    private int highlightUpdateCount;
+    private Set<OsmPrimitive> highlighted = Collections.emptySet();
+
+    /**
+     * The viewport used to render a single tile. Its scale and the distance used to select zoom
+     * dependent styles are the ones of the whole cache.
+     */
+    private static class TileViewport extends NavigatableComponent {
+        private double scale;
+        private double dist100Pixel;
+
+        private TileViewport() {
+            setBounds(0, 0, TILE_SIZE + 2 * MARGIN, TILE_SIZE + 2 * MARGIN);
+        }
+
+        private void setTile(Point tile, double scale, double dist100Pixel) {
+            this.scale = scale;
+            this.center = new EastNorth((tile.x + 0.5) * TILE_SIZE * scale, (tile.y + 0.5) * TILE_SIZE * scale);
+            this.dist100Pixel = dist100Pixel;
+        }
+
+        @Override
+        public double getScale() {
+            return scale;
+        }
+
+        @Override
+        public double getDist100Pixel() {
+            return dist100Pixel;
+        }
+    }
+
+    private final TileViewport viewport = new TileViewport();
+
+    /**
+     * Constructs a new {@code RenderTileCache}, rendering the missing tiles while painting.
+     * The cache registers itself as listener of the data set and of the preferences, call {@link #destroy()}
+     * to unregister it.
+     * @param data the data set to render
+     */
+    public RenderTileCache(DataSet data) {
+        this(data, null);
+    }
+
+    /**
+     * Constructs a new {@code RenderTileCache}.
+     * The cache registers itself as listener of the data set and of the preferences, call {@link #destroy()}
+     * to unregister it.
+     * @param data the data set to render
+     * @param tileListener if not null, the missing tiles are rendered in the background, and this listener is
+     * called by the rendering thread once a tile has been rendered, to repaint the map
+     */
+    public RenderTileCache(DataSet data, Runnable tileListener) {
+        this.data = data;
+        this.tileListener = tileListener;
+        data.addDataSetListener(this);
+        Main.pref.addPreferenceChangeListener(this);
+    }
+
+    private static synchronized ExecutorService getRenderer() {
+        if (renderer == null) {
+            renderer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "render-tiles");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return renderer;
+    }
+
+    /**
+     * Unregisters this cache from the data set and the preferences and discards the cached tiles.
+     */
+    public void destroy() {
+        data.removeDataSetListener(this);
+        Main.pref.removePreferenceChangeListener(this);
+        clear();
+    }
+
+    /**
+     * Discards all cached tiles, and the multipolygons cached for rendering them.
+     */
+    public synchronized void clear() {
+        tiles.clear();
+        outdatedTiles.clear();
+        pendingTiles.clear();
+        paintedPrimitives.clear();
+        MultipolygonCache.getInstance().clear(viewport);
+    }
+
+    /**
+     * Replies the number of cached tiles.
+     * @return the number of cached tiles
+     */
+    public synchronized int getTileCount() {
+        return tiles.size();
+    }
+
+    /**
+     * Replies the number of primitives painted into the cached tiles, for which the cache keeps track of the tiles
+     * to invalidate.
+     * @return the number of primitives painted into the cached tiles
+     */
+    synchronized int getPaintedPrimitiveCount() {
+        Set<OsmPrimitive> painted = Collections.newSetFromMap(new IdentityHashMap<OsmPrimitive, Boolean>());
+        for (Set<OsmPrimitive> primitives : paintedPrimitives.values()) {
+            painted.addAll(primitives);
+        }
+        return painted.size();
+    }
+
+    /**
+     * Replies true if the missing tiles are rendered in the background.
+     * @return {@code true} if the missing tiles are rendered in the background
+     */
+    public boolean isAsynchronous() {
+        return tileListener != null;
+    }
+
+    /**
+     * Replies the number of tiles being rendered in the background.
+     * @return the number of tiles being rendered in the background
+     */
+    public synchronized int getPendingTileCount() {
+        return pendingTiles.size();
+    }
+
+    /**
+     * Paints the data set, using the cached tiles where possible.
+     * @param g the graphics context to paint to
+     * @param nc the map viewport
+     * @param inactive {@code true} to paint the data set in inactive mode
+     * @param virtual {@code true} to paint virtual nodes
+     */
+    public void paint(Graphics2D g, NavigatableComponent nc, boolean inactive, boolean virtual) {
+        // always lock the data set before the cache, dataset events are fired with the read lock held
+        data.getReadLock().lock();
+        try {
+            synchronized (this) {
+                paintLocked(g, nc, inactive, virtual);
+            }
+        } finally {
+            data.getReadLock().unlock();
+        }
+    }
+
+    private void paintLocked(Graphics2D g, NavigatableComponent nc, boolean inactive, boolean virtual) {
+        double s = nc.getScale();
+        int styleIdx = MapPaintStyles.getStyles().getCacheIdx();
+        if (s != scale || Main.getProjection() != projection || inactive != this.inactive || styleIdx != styleCacheIdx) {
+            clear();
+            scale = s;
+            projection = Main.getProjection();
+            this.inactive = inactive;
+            styleCacheIdx = styleIdx;
+            dist100Pixel = nc.getDist100Pixel();
+        }
+        int maxTiles = Main.pref.getInteger("mappaint.tilecache.size", 64);
+
+        // position of the projection origin on screen. Computed once, so that all tiles are aligned
+        long originX = Math.round(nc.getWidth() / 2.0 - nc.getCenter().east() / scale);
+        long originY = Math.round(nc.getHeight() / 2.0 + nc.getCenter().north() / scale);
+        int minX = (int) Math.floor(-originX / (double) TILE_SIZE);
+        int maxX = (int) Math.floor((nc.getWidth() - originX) / (double) TILE_SIZE);
+        int minY = (int) Math.floor((originY - nc.getHeight()) / (double) TILE_SIZE);
+        int maxY = (int) Math.floor(originY / (double) TILE_SIZE);
+        if ((maxX - minX + 1) * (maxY - minY + 1) > maxTiles) {
+            // the cache cannot even hold the visible tiles
+            clear();
+            new StyledMapRenderer(g, nc, inactive).render(data, virtual, nc.getRealBounds());
+            return;
+        }
+
+        updateSelectionAndHighlighting(nc);
+
+        Set<Point> visible = new HashSet<>();
+        for (int y = maxY; y >= minY; y--) {
+            for (int x = minX; x <= maxX; x++) {
+                Point tile = new Point(x, y);
+                visible.add(tile);
+                BufferedImage img = tiles.get(tile);
+                if (img == null && tileListener == null) {
+                    img = renderTile(tile, scale, dist100Pixel, inactive);
+                    tiles.put(tile, img);
+                    paintedPrimitives.put(tile, getPaintedPrimitives(viewport.getRealBounds()));
+                } else if (img == null) {
+                    if (!pendingTiles.containsKey(tile)) {
+                        renderTileLater(tile);
+                    }
+                    img = outdatedTiles.get(tile);
+                }
+                if (img != null) {
+                    g.drawImage(img, (int) (originX + (long) x * TILE_SIZE), (int) (originY - (long) (y + 1) * TILE_SIZE), null);
+                }
+            }
+        }
+        // the tiles which have been panned out of view before being rendered are skipped
+        pendingTiles.keySet().retainAll(visible);
+        Iterator<Point> it = outdatedTiles.keySet().iterator();
+        while (tiles.size() + outdatedTiles.size() > maxTiles && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+        it = tiles.keySet().iterator();
+        while (tiles.size() > maxTiles && it.hasNext()) {
+            paintedPrimitives.remove(it.next());
+            it.remove();
+        }
+
+        StyledMapRenderer labels = new StyledMapRenderer(g, nc, inactive);
+        labels.setLabelMode(StyledMapRenderer.LabelMode.LABELS_ONLY);
+        labels.render(data, false, nc.getRealBounds());
+        if (virtual) {
+            new StyledMapRenderer(g, nc, inactive).renderVirtualNodes(data, nc.getRealBounds());
+        }
+    }
+
+    /**
+     * Renders a tile in the background, with the current state of the cache. The result is discarded
+     * if the tile is invalidated or not visible anymore in the meantime.
+     */
+    private void renderTileLater(final Point tile) {
+        final Object token = new Object();
+        final double tileScale = scale;
+        final double tileDist100Pixel = dist100Pixel;
+        final boolean tileInactive = inactive;
+        pendingTiles.put(tile, token);
+        getRenderer().execute(new Runnable() {
+            @Override
+            public void run() {
+                data.getReadLock().lock();
+                try {
+                    synchronized (RenderTileCache.this) {
+                        if (pendingTiles.get(tile) != token)
+                            return;
+                    }
+                    // the viewport is only used by the rendering thread, the monitor is released while rendering
+                    BufferedImage img = renderTile(tile, tileScale, tileDist100Pixel, tileInactive);
+                    synchronized (RenderTileCache.this) {
+                        if (pendingTiles.get(tile) != token)
+                            return;
+                        pendingTiles.remove(tile);
+                        outdatedTiles.remove(tile);
+                        tiles.put(tile, img);
+                        paintedPrimitives.put(tile, getPaintedPrimitives(viewport.getRealBounds()));
+                    }
+                } finally {
+                    data.getReadLock().unlock();
+                }
+                tileListener.run();
+            }
+        });
+    }
+
+    private BufferedImage renderTile(Point tile, double tileScale, double tileDist100Pixel, boolean tileInactive) {
+        BufferedImage img = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        try {
+            g.translate(-MARGIN, -MARGIN);
+            viewport.setTile(tile, tileScale, tileDist100Pixel);
+            StyledMapRenderer renderer = new StyledMapRenderer(g, viewport, tileInactive);
+            renderer.setLabelMode(StyledMapRenderer.LabelMode.NO_LABELS);
+            renderer.render(data, false, viewport.getRealBounds());
+        } finally {
+            g.dispose();
+        }
+        return img;
+    }
+
+    private Set<OsmPrimitive> getPaintedPrimitives(Bounds bounds) {
+        BBox bbox = bounds.toBBox();
+        Set<OsmPrimitive> painted = Collections.newSetFromMap(new IdentityHashMap<OsmPrimitive, Boolean>());
+        painted.addAll(data.searchNodes(bbox));
+        painted.addAll(data.searchWays(bbox));
+        painted.addAll(data.searchRelations(bbox));
+        return painted;
+    }
+
+    /**
+     * Invalidates the tiles of primitives whose selection or highlighting state changed since the last paint.
+     */
+    private void updateSelectionAndHighlighting(NavigatableComponent nc) {
+        Collection<OsmPrimitive> newSelection = data.getAllSelected();
+        if (newSelection != selection) {
+            Set<OsmPrimitive> changed = new HashSet<>(selection);
+            for (OsmPrimitive p : newSelection) {
+                if (!changed.remove(p)) {
+                    changed.add(p);
+                }
+            }
+            for (OsmPrimitive p : changed) {
+                invalidate(p);
+            }
+            selection = newSelection;
+        }
+        if (data.getHighlightUpdateCount() != highlightUpdateCount) {
+            Set<OsmPrimitive> newHighlighted = new HashSet<>();
+            BBox bbox = nc.getRealBounds().toBBox();
+            for (Node n : data.searchNodes(bbox)) {
+                if (n.isHighlighted()) {
+                    newHighlighted.add(n);
+                }
+            }
+            for (Way w : data.searchWays(bbox)) {
+                if (w.isHighlighted()) {
+                    newHighlighted.add(w);
+                }
+            }
+            for (Relation r : data.searchRelations(bbox)) {
+                if (r.isHighlighted()) {
+                    newHighlighted.add(r);
+                }
+            }
+            for (WaySegment ws : data.getHighlightedWaySegments()) {
+                newHighlighted.add(ws.way);
+            }
+            for (OsmPrimitive p : highlighted) {
+                invalidate(p);
+            }
+            for (OsmPrimitive p : newHighlighted) {
+                invalidate(p);
+            }
+            highlighted = newHighlighted;
+            highlightUpdateCount = data.getHighlightUpdateCount();
+        }
+    }
+
+    /**
+     * Invalidates the tiles covering the given primitive and the relations and ways it is part of,
+     * as their rendering may depend on the primitive.
+     */
+    private void invalidateWithReferrers(OsmPrimitive p) {
+        invalidate(p);
+        for (OsmPrimitive referrer : p.getReferrers()) {
+            invalidate(referrer);
+            if (referrer instanceof Way) {
+                for (OsmPrimitive r : referrer.getReferrers()) {
+                    invalidate(r);
+                }
+            }
+        }
+    }
+
+    /**
+     * Invalidates the tiles the given primitive has been painted into and the tiles covering its current bounds.
+     */
+    private synchronized void invalidate(OsmPrimitive p) {
+        if (tiles.isEmpty() && pendingTiles.isEmpty())
+            return;
+        List<Point> painted = new ArrayList<>();
+        for (Map.Entry<Point, Set<OsmPrimitive>> e : paintedPrimitives.entrySet()) {
+            if (e.getValue().contains(p)) {
+                painted.add(e.getKey());
+            }
+        }
+        for (Point tile : painted) {
+            invalidateTile(tile);
+        }
+        invalidate(p.getBBox());
+    }
+
+    private void invalidate(BBox bbox) {
+        EastNorth min = null;
+        EastNorth max = null;
+        for (LatLon ll : new LatLon[] {bbox.getTopLeft(), bbox.getBottomRight(),
+                new LatLon(bbox.getTopLeftLat(), bbox.getBottomRightLon()),
+                new LatLon(bbox.getBottomRightLat(), bbox.getTopLeftLon())}) {
+            EastNorth en = projection.latlon2eastNorth(ll);
+            min = min == null ? en : new EastNorth(Math.min(min.east(), en.east()), Math.min(min.north(), en.north()));
+            max = max == null ? en : new EastNorth(Math.max(max.east(), en.east()), Math.max(max.north(), en.north()));
+        }
+        if (!min.isValid() || !max.isValid()) {
+            for (Point tile : new ArrayList<>(tiles.keySet())) {
+                invalidateTile(tile);
+            }
+            pendingTiles.clear();
+            return;
+        }
+        double tileSize = TILE_SIZE * scale;
+        double margin = MARGIN * scale;
+        long minX = (long) Math.floor((min.east() - margin) / tileSize);
+        long maxX = (long) Math.floor((max.east() + margin) / tileSize);
+        long minY = (long) Math.floor((min.north() - margin) / tileSize);
+        long maxY = (long) Math.floor((max.north() + margin) / tileSize);
+        if ((maxX - minX + 1) * (maxY - minY + 1) > tiles.size() + pendingTiles.size()) {
+            List<Point> affected = new ArrayList<>();
+            for (Set<Point> keys : Arrays.asList(tiles.keySet(), pendingTiles.keySet())) {
+                for (Point tile : keys) {
+                    if (tile.x >= minX && tile.x <= maxX && tile.y >= minY && tile.y <= maxY) {
+                        affected.add(tile);
+                    }
+                }
+            }
+            for (Point tile : affected) {
+                invalidateTile(tile);
+            }
+        } else {
+            for (int x = (int) minX; x <= maxX; x++) {
+                for (int y = (int) minY; y <= maxY; y++) {
+                    invalidateTile(new Point(x, y));
+                }
+            }
+        }
+    }
+
+    /**
+     * Discards a tile, or keeps it as outdated tile if the cache is asynchronous, and the result of its rendering in progress.
+     */
+    private void invalidateTile(Point tile) {
+        paintedPrimitives.remove(tile);
+        BufferedImage img = tiles.remove(tile);
+        if (img != null && tileListener != null) {
+            outdatedTiles.put(tile, img);
+        }
+        pendingTiles.remove(tile);
+    }
+
+    private void invalidate(Collection<? extends OsmPrimitive> primitives) {
+        for (OsmPrimitive p : primitives) {
+            invalidateWithReferrers(p);
+        }
+    }
+
+    @Override
+    public void primitivesAdded(PrimitivesAddedEvent event) {
+        invalidate(event.getPrimitives());
+    }
+
+    @Override
+    public void primitivesRemoved(PrimitivesRemovedEvent event) {
+        invalidate(event.getPrimitives());
+    }
+
+    @Override
+    public void tagsChanged(TagsChangedEvent event) {
+        invalidate(event.getPrimitives());
+    }
+
+    @Override
+    public void nodeMoved(NodeMovedEvent event) {
+        invalidate(event.getPrimitives());
+    }
+
+    @Override
+    public void wayNodesChanged(WayNodesChangedEvent event) {
+        invalidate(event.getPrimitives());
+    }
+
+    @Override
+    public void relationMembersChanged(RelationMembersChangedEvent event) {
+        invalidate(event.getPrimitives());
+    }
+
+    @Override
+    public void otherDatasetChange(AbstractDatasetChangedEvent event) {
+        invalidate(event.getPrimitives());
+    }
+
+    @Override
+    public void dataChanged(DataChangedEvent event) {
+        List<AbstractDatasetChangedEvent> events = event.getEvents();
+        if (events == null) {
+            clear();
+        } else {
+            for (AbstractDatasetChangedEvent e : new ArrayList<>(events)) {
+                e.fire(this);
+            }
+        }
+    }
+
+    @Override
+    public void preferenceChanged(PreferenceChangeEvent e) {
+        // the preferences read by the renderer and its styles
+        String key = e.getKey();
+        if (key.startsWith("mappaint.") || key.startsWith("color.") || key.startsWith("draw.")) {
+            clear();
+        }
+    }
+}
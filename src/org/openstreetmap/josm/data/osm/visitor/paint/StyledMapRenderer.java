@@ -25,15 +25,14 @@ import java.awt.geom.Path2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 
 import javax.swing.AbstractButton;
 import javax.swing.FocusManager;
@@ -62,6 +61,7 @@ import org.openstreetmap.josm.gui.mappaint.BoxTextElemStyle.HorizontalTextAlignm
 import org.openstreetmap.josm.gui.mappaint.BoxTextElemStyle.VerticalTextAlignment;
 import org.openstreetmap.josm.gui.mappaint.ElemStyle;
 import org.openstreetmap.josm.gui.mappaint.ElemStyles;
+import org.openstreetmap.josm.gui.mappaint.LineTextElemStyle;
 import org.openstreetmap.josm.gui.mappaint.MapImage;
 import org.openstreetmap.josm.gui.mappaint.MapPaintStyles;
 import org.openstreetmap.josm.gui.mappaint.NodeElemStyle;
@@ -80,13 +80,23 @@ import org.openstreetmap.josm.tools.Utils;
 public class StyledMapRenderer extends AbstractMapRenderer {
 
     final public static int noThreads;
-    final public static ExecutorService styleCreatorPool;
+    final public static ForkJoinPool styleCreatorPool;
+
+    /**
+     * Minimal number of primitives processed by one style creation task.
+     */
+    private static final int MIN_STYLE_TASK_SIZE = 100;
+
+    /**
+     * Arrays smaller than this are sorted by a single thread.
+     */
+    private static final int MIN_SORT_TASK_SIZE = 1 << 13;
 
     static {
         noThreads = Main.pref.getInteger(
                 "mappaint.StyledMapRenderer.style_creation.numberOfThreads",
                 Runtime.getRuntime().availableProcessors());
-        styleCreatorPool = noThreads <= 1 ? null : Executors.newFixedThreadPool(noThreads);
+        styleCreatorPool = noThreads <= 1 ? null : new ForkJoinPool(noThreads);
     }
 
     /**
@@ -301,6 +311,20 @@ public class StyledMapRenderer extends AbstractMapRenderer {
     private boolean showIcons;
     private boolean  isOutlineOnly;
 
+    /**
+     * Selects the parts of the styles which are painted.
+     */
+    public enum LabelMode {
+        /** the primitives and their labels */
+        ALL,
+        /** the primitives, without their labels */
+        NO_LABELS,
+        /** only the labels */
+        LABELS_ONLY
+    }
+
+    private LabelMode labelMode = LabelMode.ALL;
+
     private Font orderFont;
 
     private boolean leftHandTraffic;
@@ -324,6 +348,20 @@ public class StyledMapRenderer extends AbstractMapRenderer {
         }
     }
 
+    /**
+     * Sets the parts of the styles which are painted. Used to paint the labels over a view assembled from tiles,
+     * so that they are neither clipped nor repeated at the tile borders.
+     * @param labelMode the parts of the styles which are painted
+     */
+    public void setLabelMode(LabelMode labelMode) {
+        this.labelMode = labelMode;
+    }
+
+    private static boolean isLabel(ElemStyle style) {
+        return style instanceof BoxTextElemStyle || style instanceof LineTextElemStyle
+                || (style instanceof AreaElemStyle && ((AreaElemStyle) style).text != null);
+    }
+
     private Polygon buildPolygon(Point center, int radius, int sides) {
         return buildPolygon(center, radius, sides, 0.0);
     }
@@ -417,7 +455,7 @@ public class StyledMapRenderer extends AbstractMapRenderer {
 
         Shape area = path.createTransformedShape(nc.getAffineTransform());
 
-        if (!isOutlineOnly) {
+        if (!isOutlineOnly && labelMode != LabelMode.LABELS_ONLY) {
             if (fillImage == null) {
                 if (isInactiveMode) {
                     g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.33f));
@@ -437,7 +475,7 @@ public class StyledMapRenderer extends AbstractMapRenderer {
             }
         }
 
-        if (text != null && isShowNames()) {
+        if (text != null && isShowNames() && labelMode != LabelMode.NO_LABELS) {
             // abort if we can't compose the label to be rendered
             if (text.labelCompositionStrategy == null) return;
             String name = text.labelCompositionStrategy.compose(osm);
@@ -490,7 +528,7 @@ public class StyledMapRenderer extends AbstractMapRenderer {
     }
 
     public void drawBoxText(Node n, BoxTextElemStyle bs) {
-        if (!isShowNames() || bs == null)
+        if (!isShowNames() || bs == null || labelMode == LabelMode.NO_LABELS)
             return;
 
         Point p = nc.getPoint(n);
@@ -1003,7 +1041,7 @@ public class StyledMapRenderer extends AbstractMapRenderer {
     }
 
     public void drawTextOnPath(Way way, TextElement text) {
-        if (way == null || text == null)
+        if (way == null || text == null || labelMode == LabelMode.NO_LABELS)
             return;
         String name = text.getString(way);
         if (name == null || name.isEmpty())
@@ -1315,7 +1353,15 @@ public class StyledMapRenderer extends AbstractMapRenderer {
         return null;
     }
 
-    private class ComputeStyleListWorker implements Callable<List<StyleRecord>>, Visitor {
+    /**
+     * Computes the styles of a range of primitives.
+     *
+     * As long as other threads of the pool are short of work, the task forks off the upper half of
+     * its remaining range and keeps the lower half. Ranges containing expensive primitives (e.g.
+     * complex multipolygons) are thus split further than cheap ones, and idle threads steal the
+     * forked halves. The output keeps the order of the input.
+     */
+    private class ComputeStyleListWorker extends RecursiveTask<List<StyleRecord>> implements Visitor {
         private final List<? extends OsmPrimitive> input;
         private final int from;
         private final int to;
@@ -1346,14 +1392,34 @@ public class StyledMapRenderer extends AbstractMapRenderer {
         }
 
         @Override
-        public List<StyleRecord> call() throws Exception {
-            for (int i = from; i<to; i++) {
+        protected List<StyleRecord> compute() {
+            List<ComputeStyleListWorker> forked = new ArrayList<>();
+            int end = to;
+            while (end - from > 2 * MIN_STYLE_TASK_SIZE && getSurplusQueuedTaskCount() <= 2) {
+                int mid = (from + end) >>> 1;
+                ComputeStyleListWorker right = new ComputeStyleListWorker(input, mid, end, new ArrayList<StyleRecord>(end - mid), data);
+                right.fork();
+                forked.add(right);
+                end = mid;
+            }
+            computeDirectly(end);
+            for (int i = forked.size() - 1; i >= 0; i--) {
+                output.addAll(forked.get(i).join());
+            }
+            return output;
+        }
+
+        /**
+         * Computes the styles of the primitives in the range <code>[from, end)</code> in the current thread.
+         * @param end last index + 1
+         */
+        public void computeDirectly(int end) {
+            for (int i = from; i<end; i++) {
                 OsmPrimitive osm = input.get(i);
                 if (osm.isDrawable()) {
                     osm.accept(this);
                 }
             }
-            return output;
         }
 
         @Override
@@ -1438,33 +1504,58 @@ public class StyledMapRenderer extends AbstractMapRenderer {
         }
 
         void process(List<? extends OsmPrimitive> prims) {
-            final List<ComputeStyleListWorker> tasks = new ArrayList<>();
-            final int bucketsize = Math.max(100, prims.size()/noThreads/3);
-            final int noBuckets = (prims.size() + bucketsize - 1) / bucketsize;
-            final boolean singleThread = noThreads == 1 || noBuckets == 1;
-            for (int i=0; i<noBuckets; i++) {
-                int from = i*bucketsize;
-                int to = Math.min((i+1)*bucketsize, prims.size());
-                List<StyleRecord> target = singleThread ? allStyleElems : new ArrayList<StyleRecord>(to - from);
-                tasks.add(new ComputeStyleListWorker(prims, from, to, target, data));
+            ComputeStyleListWorker task = new ComputeStyleListWorker(prims, 0, prims.size(), allStyleElems, data);
+            if (styleCreatorPool == null || prims.size() <= 2 * MIN_STYLE_TASK_SIZE) {
+                task.computeDirectly(prims.size());
+            } else {
+                styleCreatorPool.invoke(task);
             }
-            if (singleThread) {
-                try {
-                    for (ComputeStyleListWorker task : tasks) {
-                        task.call();
-                    }
-                } catch (Exception ex) {
-                    throw new RuntimeException(ex);
-                }
-            } else if (tasks.size() > 1) {
-                try {
-                    for (Future<List<StyleRecord>> future : styleCreatorPool.invokeAll(tasks)) {
-                            allStyleElems.addAll(future.get());
-                    }
-                } catch (InterruptedException | ExecutionException ex) {
-                    throw new RuntimeException(ex);
-                }
+        }
+
+        StyleRecord[] sort() {
+            StyleRecord[] records = allStyleElems.toArray(new StyleRecord[allStyleElems.size()]);
+            if (styleCreatorPool == null || records.length < 2 * MIN_SORT_TASK_SIZE) {
+                Arrays.sort(records);
+            } else {
+                styleCreatorPool.invoke(new MergeSortTask<>(records, new StyleRecord[records.length], 0, records.length));
+            }
+            return records;
+        }
+    }
+
+    /**
+     * Stable parallel merge sort: both halves are sorted concurrently, then merged.
+     * @param <T> the type of elements
+     */
+    private static class MergeSortTask<T extends Comparable<? super T>> extends RecursiveAction {
+        private final T[] a;
+        private final T[] tmp;
+        private final int from;
+        private final int to;
+
+        MergeSortTask(T[] a, T[] tmp, int from, int to) {
+            this.a = a;
+            this.tmp = tmp;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from < 2 * MIN_SORT_TASK_SIZE) {
+                Arrays.sort(a, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            ForkJoinTask.invokeAll(new MergeSortTask<>(a, tmp, from, mid), new MergeSortTask<>(a, tmp, mid, to));
+            if (a[mid - 1].compareTo(a[mid]) <= 0)
+                return;
+            System.arraycopy(a, from, tmp, from, mid - from);
+            int i = from, j = mid, k = from;
+            while (i < mid && j < to) {
+                a[k++] = a[j].compareTo(tmp[i]) < 0 ? a[j++] : tmp[i++];
             }
+            System.arraycopy(tmp, i, a, k, mid - i);
         }
     }
 
@@ -1477,12 +1568,7 @@ public class StyledMapRenderer extends AbstractMapRenderer {
         try {
             highlightWaySegments = data.getHighlightedWaySegments();
 
-            long timeStart=0, timePhase1=0, timeFinished;
-            if (Main.isTraceEnabled()) {
-                timeStart = System.currentTimeMillis();
-                System.err.print("BENCHMARK: rendering ");
-                Main.debug(null);
-            }
+            long timeStart = System.nanoTime();
 
             List<Node> nodes = data.searchNodes(bbox);
             List<Way> ways = data.searchWays(bbox);
@@ -1500,14 +1586,16 @@ public class StyledMapRenderer extends AbstractMapRenderer {
             helper.process(relations);
             helper.process(new CompositeList<>(nodes, ways));
 
-            if (Main.isTraceEnabled()) {
-                timePhase1 = System.currentTimeMillis();
-                System.err.print("phase 1 (calculate styles): " + (timePhase1 - timeStart) + " ms");
-            }
+            long timePhase1 = System.nanoTime();
 
-            Collections.sort(allStyleElems);
+            StyleRecord[] sorted = helper.sort();
 
-            for (StyleRecord r : allStyleElems) {
+            long timePhase2 = System.nanoTime();
+
+            for (StyleRecord r : sorted) {
+                if (labelMode == LabelMode.LABELS_ONLY && !isLabel(r.style)) {
+                    continue;
+                }
                 r.style.paintPrimitive(
                         r.osm,
                         paintSettings,
@@ -1518,8 +1606,11 @@ public class StyledMapRenderer extends AbstractMapRenderer {
             }
     
             if (Main.isTraceEnabled()) {
-                timeFinished = System.currentTimeMillis();
-                System.err.println("; phase 2 (draw): " + (timeFinished - timePhase1) + " ms; total: " + (timeFinished - timeStart) + " ms");
+                long timeFinished = System.nanoTime();
+                Main.trace(String.format("BENCHMARK: rendering %d styles; phase 1 (calculate styles): %d ms; phase 2 (sort): %d ms;"
+                        + " phase 3 (draw): %d ms; total: %d ms", sorted.length,
+                        (timePhase1 - timeStart) / 1000000, (timePhase2 - timePhase1) / 1000000,
+                        (timeFinished - timePhase2) / 1000000, (timeFinished - timeStart) / 1000000));
             }
     
             drawVirtualNodes(data, bbox);
@@ -1527,4 +1618,20 @@ public class StyledMapRenderer extends AbstractMapRenderer {
             data.getReadLock().unlock();
         }
     }
+
+    /**
+     * Renders only the virtual nodes of the given data set. Used when the styled primitives
+     * are painted from a {@link RenderTileCache}.
+     * @param data the data set
+     * @param bounds the bounds to render
+     */
+    public void renderVirtualNodes(DataSet data, Bounds bounds) {
+        getSettings(true);
+        data.getReadLock().lock();
+        try {
+            drawVirtualNodes(data, bounds.toBBox());
+        } finally {
+            data.getReadLock().unlock();
+        }
+    }
 }
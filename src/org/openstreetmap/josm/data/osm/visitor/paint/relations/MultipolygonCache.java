@@ -34,7 +34,7 @@ import org.openstreetmap.josm.gui.layer.Layer;
 import org.openstreetmap.josm.gui.layer.OsmDataLayer;
 
 /**
- * A memory cache for Multipolygon objects.
+ * A thread-safe memory cache for Multipolygon objects.
  * @since 4623
  */
 public final class MultipolygonCache implements DataSetListener, LayerChangeListener, ProjectionChangeListener, SelectionChangedListener {
@@ -61,11 +61,11 @@ public final class MultipolygonCache implements DataSetListener, LayerChangeList
         return INSTANCE;
     }
 
-    public final Multipolygon get(NavigatableComponent nc, Relation r) {
+    public final synchronized Multipolygon get(NavigatableComponent nc, Relation r) {
         return get(nc, r, false);
     }
 
-    public final Multipolygon get(NavigatableComponent nc, Relation r, boolean forceRefresh) {
+    public final synchronized Multipolygon get(NavigatableComponent nc, Relation r, boolean forceRefresh) {
         Multipolygon multipolygon = null;
         if (nc != null && r != null) {
             Map<DataSet, Map<Relation, Multipolygon>> map1 = cache.get(nc);
@@ -89,7 +89,7 @@ public final class MultipolygonCache implements DataSetListener, LayerChangeList
         return multipolygon;
     }
     
-    public final void clear(NavigatableComponent nc) {
+    public final synchronized void clear(NavigatableComponent nc) {
         Map<DataSet, Map<Relation, Multipolygon>> map = cache.remove(nc);
         if (map != null) {
             map.clear();
@@ -97,7 +97,7 @@ public final class MultipolygonCache implements DataSetListener, LayerChangeList
         }
     }
 
-    public final void clear(DataSet ds) {
+    public final synchronized void clear(DataSet ds) {
         for (Map<DataSet, Map<Relation, Multipolygon>> map1 : cache.values()) {
             Map<Relation, Multipolygon> map2 = map1.remove(ds);
             if (map2 != null) {
@@ -107,7 +107,7 @@ public final class MultipolygonCache implements DataSetListener, LayerChangeList
         }
     }
 
-    public final void clear() {
+    public final synchronized void clear() {
         cache.clear();
     }
     
@@ -199,32 +199,32 @@ public final class MultipolygonCache implements DataSetListener, LayerChangeList
     }
 
     @Override
-    public void primitivesAdded(PrimitivesAddedEvent event) {
+    public synchronized void primitivesAdded(PrimitivesAddedEvent event) {
         // Do nothing
     }
 
     @Override
-    public void primitivesRemoved(PrimitivesRemovedEvent event) {
+    public synchronized void primitivesRemoved(PrimitivesRemovedEvent event) {
         updateMultipolygonsReferringTo(event);
     }
 
     @Override
-    public void tagsChanged(TagsChangedEvent event) {
+    public synchronized void tagsChanged(TagsChangedEvent event) {
         // Do nothing
     }
 
     @Override
-    public void nodeMoved(NodeMovedEvent event) {
+    public synchronized void nodeMoved(NodeMovedEvent event) {
         updateMultipolygonsReferringTo(event);
     }
 
     @Override
-    public void wayNodesChanged(WayNodesChangedEvent event) {
+    public synchronized void wayNodesChanged(WayNodesChangedEvent event) {
         updateMultipolygonsReferringTo(event);
     }
 
     @Override
-    public void relationMembersChanged(RelationMembersChangedEvent event) {
+    public synchronized void relationMembersChanged(RelationMembersChangedEvent event) {
         updateMultipolygonsReferringTo(event);
     }
 
@@ -234,7 +234,7 @@ public final class MultipolygonCache implements DataSetListener, LayerChangeList
     }
 
     @Override
-    public void dataChanged(DataChangedEvent event) {
+    public synchronized void dataChanged(DataChangedEvent event) {
         // Do not call updateMultipolygonsReferringTo as getPrimitives() 
         // can return all the data set primitives for this event
         Collection<Map<Relation, Multipolygon>> maps = null;
@@ -266,19 +266,19 @@ public final class MultipolygonCache implements DataSetListener, LayerChangeList
     }
 
     @Override
-    public void layerRemoved(Layer oldLayer) {
+    public synchronized void layerRemoved(Layer oldLayer) {
         if (oldLayer instanceof OsmDataLayer) {
             clear(((OsmDataLayer) oldLayer).data);
         }
     }
 
     @Override
-    public void projectionChanged(Projection oldValue, Projection newValue) {
+    public synchronized void projectionChanged(Projection oldValue, Projection newValue) {
         clear();
     }
 
     @Override
-    public void selectionChanged(Collection<? extends OsmPrimitive> newSelection) {
+    public synchronized void selectionChanged(Collection<? extends OsmPrimitive> newSelection) {
         
         for (Iterator<PolyData> it = selectedPolyData.iterator(); it.hasNext();) {
             it.next().selected = false;
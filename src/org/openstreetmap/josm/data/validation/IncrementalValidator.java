@@ -0,0 +1,295 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.validation;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.swing.Timer;
+
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.osm.BBox;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataSetListener;
+import org.openstreetmap.josm.data.osm.event.NodeMovedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesAddedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesRemovedEvent;
+import org.openstreetmap.josm.data.osm.event.RelationMembersChangedEvent;
+import org.openstreetmap.josm.data.osm.event.TagsChangedEvent;
+import org.openstreetmap.josm.data.osm.event.WayNodesChangedEvent;
+import org.openstreetmap.josm.data.preferences.BooleanProperty;
+import org.openstreetmap.josm.gui.dialogs.validator.ValidatorTreePanel;
+import org.openstreetmap.josm.gui.layer.OsmDataLayer;
+import org.openstreetmap.josm.gui.preferences.validator.ValidatorPreference;
+import org.openstreetmap.josm.gui.util.GuiHelper;
+
+/**
+ * Keeps the validation errors of a data layer up to date while editing.
+ * <p>
+ * The changes of the data set are collected and, after a short delay, the enabled tests are run on the changed
+ * primitives and on their spatial neighbours, so that tests comparing nearby primitives
+ * ({@code CrossingWays}, {@code UnconnectedWays}, ...) see both sides. The errors of the layer involving a changed
+ * primitive are then replaced by the new errors involving a changed primitive. Errors only involving unchanged
+ * primitives are kept as they are.
+ * <p>
+ * Enabled by the preference {@code validator.incremental}.
+ */
+public class IncrementalValidator implements DataSetListener {
+
+    /** The preference enabling the validation while editing */
+    public static final BooleanProperty PREF_INCREMENTAL = new BooleanProperty(ValidatorPreference.PREFIX + ".incremental", false);
+
+    /** Delay, in milliseconds, during which changes are collected before running the tests */
+    private static final int DELAY = 300;
+
+    private final OsmDataLayer layer;
+    private final Timer timer;
+
+    /** Primitives changed since the last run, guarded by {@code this} */
+    private Set<OsmPrimitive> changed = new HashSet<>();
+    /** Errors referring to primitives removed since the last run, guarded by {@code this} */
+    private Set<TestError> staleErrors = new HashSet<>();
+
+    private final Runnable validationTask = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                validatePendingChanges();
+            } catch (RuntimeException e) {
+                // the exception would be lost in the future of the worker
+                Main.error(e);
+            }
+        }
+    };
+
+    /**
+     * Constructs a new {@code IncrementalValidator}. It must be registered as listener of the data set of the layer
+     * before any error of the layer, see {@link #primitivesRemoved}.
+     * @param layer the data layer whose errors are updated
+     */
+    public IncrementalValidator(OsmDataLayer layer) {
+        this.layer = layer;
+        this.timer = new Timer(DELAY, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                Main.worker.submit(validationTask);
+            }
+        });
+        timer.setRepeats(false);
+    }
+
+    private void addChanged(Collection<? extends OsmPrimitive> primitives) {
+        if (!PREF_INCREMENTAL.get())
+            return;
+        synchronized (this) {
+            changed.addAll(primitives);
+        }
+        GuiHelper.runInEDT(new Runnable() {
+            @Override
+            public void run() {
+                timer.restart();
+            }
+        });
+    }
+
+    /**
+     * Runs the tests on the primitives changed since the last run and updates the errors of the layer.
+     * The tests are shared with the other validations, {@link ValidationRunner} serializes the runs.
+     */
+    void validatePendingChanges() {
+        Set<OsmPrimitive> changedPrimitives;
+        final Set<TestError> stale;
+        synchronized (this) {
+            if (changed.isEmpty() && staleErrors.isEmpty())
+                return;
+            changedPrimitives = changed;
+            stale = staleErrors;
+            changed = new HashSet<>();
+            staleErrors = new HashSet<>();
+        }
+        final Set<OsmPrimitive> dirty = getAffectedPrimitives(changedPrimitives);
+        final List<TestError> newErrors = new ArrayList<>();
+        Collection<OsmPrimitive> validated = getPrimitivesToValidate(dirty);
+        if (!validated.isEmpty()) {
+            OsmValidator.initializeTests();
+            Collection<Test> tests = OsmValidator.getEnabledTests(false);
+            boolean useIgnore = Main.pref.getBoolean(ValidatorPreference.PREF_USE_IGNORE, true);
+            for (TestError error : ValidationRunner.runTests(tests, validated, false, true, null)) {
+                // errors only involving neighbours are incomplete, the ones of the layer are kept instead
+                if (!Collections.disjoint(error.getPrimitives(), dirty)
+                        && !(useIgnore && isIgnored(error))) {
+                    newErrors.add(error);
+                }
+            }
+        }
+        GuiHelper.runInEDTAndWait(new Runnable() {
+            @Override
+            public void run() {
+                updateErrors(dirty, stale, newErrors);
+            }
+        });
+    }
+
+    private static boolean isIgnored(TestError error) {
+        for (String state : new String[] {error.getIgnoreState(), error.getIgnoreGroup(), error.getIgnoreSubGroup()}) {
+            if (state != null && OsmValidator.hasIgnoredError(state))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Replies the changed primitives and the primitives whose errors may depend on them: the ways of changed nodes
+     * and the relations of changed primitives.
+     */
+    private static Set<OsmPrimitive> getAffectedPrimitives(Collection<OsmPrimitive> changed) {
+        Set<OsmPrimitive> result = new HashSet<>(changed);
+        for (OsmPrimitive p : changed) {
+            if (p.getDataSet() == null)
+                continue;
+            for (OsmPrimitive referrer : p.getReferrers()) {
+                if (referrer instanceof Way) {
+                    result.add(referrer);
+                    result.addAll(OsmPrimitive.getFilteredList(referrer.getReferrers(), Relation.class));
+                } else if (referrer instanceof Relation) {
+                    result.add(referrer);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Replies the usable affected primitives, the nodes of the affected ways and their spatial neighbours.
+     */
+    private Collection<OsmPrimitive> getPrimitivesToValidate(Collection<OsmPrimitive> dirty) {
+        DataSet ds = layer.data;
+        double distance = Main.pref.getDouble(ValidatorPreference.PREFIX + ".incremental.neighbour_distance", 20.0);
+        Set<OsmPrimitive> result = new LinkedHashSet<>();
+        for (OsmPrimitive p : dirty) {
+            if (!p.isUsable() || p.getDataSet() != ds)
+                continue;
+            result.add(p);
+            if (p instanceof Way) {
+                result.addAll(((Way) p).getNodes());
+            }
+            // relations can be huge, their neighbours are not searched
+            if (p instanceof Relation || (p instanceof Node && ((Node) p).getCoor() == null)
+                    || (p instanceof Way && ((Way) p).getNodesCount() == 0))
+                continue;
+            BBox bbox = p.getBBox();
+            double lat = Math.toRadians(bbox.getCenter().lat());
+            // metres to degrees, using the longitude scale which is the largest of both
+            double extra = distance / (111320 * Math.max(0.01, Math.cos(lat)));
+            BBox search = new BBox(bbox);
+            search.addPrimitive(p, extra);
+            for (Way w : ds.searchWays(search)) {
+                if (w.isUsable()) {
+                    result.add(w);
+                }
+            }
+            for (Node n : ds.searchNodes(search)) {
+                if (n.isUsable()) {
+                    result.add(n);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void updateErrors(Set<OsmPrimitive> dirty, Set<TestError> stale, List<TestError> newErrors) {
+        Set<TestError> removed = new HashSet<>();
+        for (TestError error : layer.validationErrors) {
+            if (stale.contains(error) || !Collections.disjoint(error.getPrimitives(), dirty)) {
+                removed.add(error);
+            }
+        }
+        if (removed.isEmpty() && newErrors.isEmpty())
+            return;
+        ValidatorTreePanel tree = Main.map != null ? Main.map.validatorDialog.tree : null;
+        if (tree != null && tree.getErrors() == layer.validationErrors) {
+            tree.updateErrors(removed, newErrors);
+            if (!layer.validationErrors.isEmpty()) {
+                OsmValidator.initializeErrorLayer();
+            }
+            Main.map.mapView.repaint();
+        } else {
+            layer.validationErrors.removeAll(removed);
+            layer.validationErrors.addAll(newErrors);
+        }
+    }
+
+    @Override
+    public void primitivesAdded(PrimitivesAddedEvent event) {
+        addChanged(event.getPrimitives());
+    }
+
+    /**
+     * Remembers the errors referring to the removed primitives. This listener must be called before the ones of the
+     * errors, which forget the removed primitives.
+     */
+    @Override
+    public void primitivesRemoved(PrimitivesRemovedEvent event) {
+        if (!PREF_INCREMENTAL.get())
+            return;
+        Set<OsmPrimitive> removed = new HashSet<>(event.getPrimitives());
+        List<TestError> errors = new ArrayList<>();
+        for (TestError error : new ArrayList<>(layer.validationErrors)) {
+            if (!Collections.disjoint(error.getPrimitives(), removed)) {
+                errors.add(error);
+            }
+        }
+        synchronized (this) {
+            staleErrors.addAll(errors);
+        }
+        addChanged(event.getPrimitives());
+    }
+
+    @Override
+    public void tagsChanged(TagsChangedEvent event) {
+        addChanged(event.getPrimitives());
+    }
+
+    @Override
+    public void nodeMoved(NodeMovedEvent event) {
+        addChanged(event.getPrimitives());
+    }
+
+    @Override
+    public void wayNodesChanged(WayNodesChangedEvent event) {
+        addChanged(event.getPrimitives());
+    }
+
+    @Override
+    public void relationMembersChanged(RelationMembersChangedEvent event) {
+        addChanged(event.getPrimitives());
+    }
+
+    @Override
+    public void otherDatasetChange(AbstractDatasetChangedEvent event) {
+        // Changes of primitive ids or of the data source do not affect the errors
+    }
+
+    @Override
+    public void dataChanged(DataChangedEvent event) {
+        if (event.getEvents() != null) {
+            for (AbstractDatasetChangedEvent e : event.getEvents()) {
+                e.fire(this);
+            }
+        } else {
+            addChanged(event.getDataset().allPrimitives());
+        }
+    }
+}
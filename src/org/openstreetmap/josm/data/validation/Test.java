@@ -89,7 +89,7 @@ public class Test extends AbstractVisitor {
     /**
      * A test that forwards all primitives to {@link #check(OsmPrimitive)}.
      */
-    public abstract static class TagTest extends Test {
+    public abstract static class TagTest extends Test implements Cloneable {
         /**
          * Constructs a new {@code TagTest} with given name and description.
          * @param name The test name
@@ -113,6 +113,39 @@ public class Test extends AbstractVisitor {
          */
         public abstract void check(final OsmPrimitive p);
 
+        /**
+         * Determines if {@link #check(OsmPrimitive)} only depends on the checked primitive and on data that is not
+         * modified while the test runs. Disjoint parts of the data can then be checked concurrently by copies of this test.
+         * @return {@code true} if primitives can be checked concurrently, {@code false} by default
+         */
+        public boolean isConcurrentCheckSupported() {
+            return false;
+        }
+
+        /**
+         * Visits the given primitives with a shallow copy of this test. The copy shares the state of this test,
+         * which must have been started, except its list of errors and its progress monitor.
+         * @param primitives The primitives to be tested
+         * @return the errors found by the copy, in the order of the primitives
+         */
+        List<TestError> visitWithCopy(Collection<OsmPrimitive> primitives) {
+            TagTest copy;
+            try {
+                copy = (TagTest) clone();
+            } catch (CloneNotSupportedException e) {
+                throw new AssertionError(e);
+            }
+            copy.errors = new ArrayList<>();
+            copy.progressMonitor = NullProgressMonitor.INSTANCE;
+            copy.visit(primitives);
+            for (TestError error : copy.errors) {
+                if (error.getTester() == copy) {
+                    error.setTester(this);
+                }
+            }
+            return copy.errors;
+        }
+
         @Override
         public void visit(Node n) {
             check(n);
@@ -137,6 +170,15 @@ public class Test extends AbstractVisitor {
         this.startTime = -1;
     }
 
+    /**
+     * Determines if this test can run concurrently with other tests. Tests which do not use state shared with other
+     * tests, or only thread-safe shared state, can return {@code true}. The other tests are run one after the other.
+     * @return {@code true} if this test can run concurrently with other tests, {@code false} by default
+     */
+    public boolean isConcurrentRunSupported() {
+        return false;
+    }
+
     /**
      * Start the test using a given progress monitor
      *
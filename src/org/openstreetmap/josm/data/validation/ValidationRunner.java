@@ -0,0 +1,265 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.validation;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.validation.Test.TagTest;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+
+/**
+ * Runs validation tests on a collection of primitives, using several threads if several processors are available.
+ * <p>
+ * Tests supporting it ({@link Test#isConcurrentRunSupported()}) run concurrently, each in its own task. The other
+ * tests run one after the other in a single task. The primitives checked by a {@link TagTest} supporting concurrent
+ * checks ({@link TagTest#isConcurrentCheckSupported()}) are split into chunks, each checked by a copy of the test.
+ * <p>
+ * The errors of the chunks are merged in the order of the primitives and the errors of the tests are returned in the
+ * order of the tests, so that the result is the same as with a sequential run. Sequential execution can be forced by
+ * setting the preference {@code validator.numberOfThreads} to 1.
+ */
+public final class ValidationRunner {
+
+    /** Minimal number of primitives checked by one task of a test checking chunks concurrently. */
+    private static final int MIN_CHUNK_SIZE = 1000;
+
+    private static final int NUMBER_OF_THREADS = Main.pref.getInteger("validator.numberOfThreads",
+            Runtime.getRuntime().availableProcessors());
+
+    private static ExecutorService pool;
+
+    /** Serializes the runs, as the instances of the tests are shared by all validations */
+    private static final Object RUN_LOCK = new Object();
+
+    private ValidationRunner() {
+        // Hide default constructor for utils classes
+    }
+
+    private static synchronized ExecutorService getPool() {
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(NUMBER_OF_THREADS, new ThreadFactory() {
+                private int count;
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "validator-" + (++count));
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return pool;
+    }
+
+    /**
+     * Configures the given tests and runs them on the given primitives. Tests must be initialized.
+     * Runs are serialized: this method waits until the runs of other threads are finished.
+     * @param tests the tests to run
+     * @param primitives the primitives to validate
+     * @param beforeUpload the value passed to {@link Test#setBeforeUpload}
+     * @param partialSelection the value passed to {@link Test#setPartialSelection}
+     * @param monitor the progress monitor, with at least {@code tests.size() * primitives.size()} free ticks. Can be null
+     * @return the errors found by the tests, in the order of the tests. Incomplete if the monitor has been canceled
+     */
+    public static List<TestError> runTests(Collection<Test> tests, Collection<OsmPrimitive> primitives,
+            boolean beforeUpload, boolean partialSelection, ProgressMonitor monitor) {
+        synchronized (RUN_LOCK) {
+            for (Test test : tests) {
+                test.setBeforeUpload(beforeUpload);
+                test.setPartialSelection(partialSelection);
+            }
+            return runTests(tests, primitives, monitor);
+        }
+    }
+
+    /**
+     * Runs the given tests on the given primitives. Tests must be initialized, and {@link Test#setBeforeUpload} and
+     * {@link Test#setPartialSelection} must have been called as needed.
+     * Runs are serialized: this method waits until the runs of other threads are finished.
+     * @param tests the tests to run
+     * @param primitives the primitives to validate
+     * @param monitor the progress monitor, with at least {@code tests.size() * primitives.size()} free ticks. Can be null
+     * @return the errors found by the tests, in the order of the tests. Incomplete if the monitor has been canceled
+     */
+    public static List<TestError> runTests(Collection<Test> tests, Collection<OsmPrimitive> primitives, ProgressMonitor monitor) {
+        synchronized (RUN_LOCK) {
+            return runTestsLocked(tests, primitives, monitor);
+        }
+    }
+
+    private static List<TestError> runTestsLocked(Collection<Test> tests, Collection<OsmPrimitive> primitives, ProgressMonitor monitor) {
+        if (monitor == null) {
+            monitor = NullProgressMonitor.INSTANCE;
+        }
+        if (NUMBER_OF_THREADS <= 1) {
+            return runSequentially(tests, primitives, monitor);
+        }
+        return new ConcurrentRun(new ArrayList<>(tests), new ArrayList<>(primitives), monitor).run();
+    }
+
+    private static List<TestError> runSequentially(Collection<Test> tests, Collection<OsmPrimitive> primitives,
+            ProgressMonitor monitor) {
+        List<TestError> errors = new ArrayList<>(200);
+        int testCounter = 0;
+        for (Test test : tests) {
+            if (monitor.isCanceled())
+                break;
+            testCounter++;
+            monitor.setCustomText(tr("Test {0}/{1}: Starting {2}", testCounter, tests.size(), test.getName()));
+            errors.addAll(runTest(test, primitives, monitor.createSubTaskMonitor(primitives.size(), false)));
+        }
+        return errors;
+    }
+
+    private static List<TestError> runTest(Test test, Collection<OsmPrimitive> primitives, ProgressMonitor monitor) {
+        test.startTest(monitor);
+        test.visit(primitives);
+        test.endTest();
+        return test.getErrors();
+    }
+
+    /**
+     * A run of tests on several threads.
+     */
+    private static class ConcurrentRun {
+        private final List<Test> tests;
+        private final List<OsmPrimitive> primitives;
+        private final ProgressMonitor monitor;
+        /** The number of primitives checked by one task of a test checking chunks concurrently */
+        private final int chunkSize;
+        /** The errors of each test, set by the tasks */
+        private final List<List<TestError>> results;
+        private final List<Future<?>> futures = new ArrayList<>();
+
+        ConcurrentRun(List<Test> tests, List<OsmPrimitive> primitives, ProgressMonitor monitor) {
+            this.tests = tests;
+            this.primitives = primitives;
+            this.monitor = monitor;
+            this.chunkSize = Math.max(MIN_CHUNK_SIZE, primitives.size() / (4 * NUMBER_OF_THREADS));
+            this.results = new ArrayList<>(Collections.<List<TestError>>nCopies(tests.size(), null));
+        }
+
+        List<TestError> run() {
+            final List<Integer> exclusiveTests = new ArrayList<>();
+            final List<ProgressMonitor> exclusiveMonitors = new ArrayList<>();
+            List<Integer> chunkedTests = new ArrayList<>();
+            List<List<Future<List<TestError>>>> chunks = new ArrayList<>();
+            try {
+                for (int i = 0; i < tests.size(); i++) {
+                    Test test = tests.get(i);
+                    ProgressMonitor testMonitor = monitor.createSubTaskMonitor(primitives.size(), false);
+                    if (!test.isConcurrentRunSupported()) {
+                        exclusiveTests.add(i);
+                        exclusiveMonitors.add(testMonitor);
+                        continue;
+                    }
+                    if (test instanceof TagTest && ((TagTest) test).isConcurrentCheckSupported()
+                            && primitives.size() >= 2 * MIN_CHUNK_SIZE) {
+                        chunkedTests.add(i);
+                        chunks.add(submitChunks((TagTest) test, testMonitor));
+                    } else {
+                        submit(i, testMonitor);
+                    }
+                }
+                if (!exclusiveTests.isEmpty()) {
+                    futures.add(getPool().submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            for (int j = 0; j < exclusiveTests.size(); j++) {
+                                if (monitor.isCanceled())
+                                    return;
+                                int i = exclusiveTests.get(j);
+                                results.set(i, runTest(tests.get(i), primitives, exclusiveMonitors.get(j)));
+                            }
+                        }
+                    }));
+                }
+                for (int k = 0; k < chunkedTests.size(); k++) {
+                    TagTest test = (TagTest) tests.get(chunkedTests.get(k));
+                    List<Future<List<TestError>>> testChunks = chunks.get(k);
+                    for (int c = 0; c < testChunks.size(); c++) {
+                        List<TestError> errors = await(testChunks.get(c));
+                        if (errors != null) {
+                            test.errors.addAll(errors);
+                        }
+                        // the progress monitors are not thread-safe, the progress of the chunks is reported here
+                        test.progressMonitor.worked(Math.min(chunkSize, primitives.size() - c * chunkSize));
+                    }
+                    test.endTest();
+                    results.set(chunkedTests.get(k), test.getErrors());
+                }
+                for (Future<?> f : futures) {
+                    await(f);
+                }
+            } finally {
+                for (Future<?> f : futures) {
+                    f.cancel(true);
+                }
+            }
+            List<TestError> errors = new ArrayList<>(200);
+            for (List<TestError> result : results) {
+                if (result != null) {
+                    errors.addAll(result);
+                }
+            }
+            return errors;
+        }
+
+        private void submit(final int i, final ProgressMonitor testMonitor) {
+            futures.add(getPool().submit(new Runnable() {
+                @Override
+                public void run() {
+                    if (!monitor.isCanceled()) {
+                        results.set(i, runTest(tests.get(i), primitives, testMonitor));
+                    }
+                }
+            }));
+        }
+
+        private List<Future<List<TestError>>> submitChunks(final TagTest test, ProgressMonitor testMonitor) {
+            test.startTest(testMonitor);
+            test.progressMonitor.setTicksCount(primitives.size());
+            List<Future<List<TestError>>> result = new ArrayList<>();
+            for (int from = 0; from < primitives.size(); from += chunkSize) {
+                final List<OsmPrimitive> chunk = primitives.subList(from, Math.min(from + chunkSize, primitives.size()));
+                Future<List<TestError>> future = getPool().submit(new Callable<List<TestError>>() {
+                    @Override
+                    public List<TestError> call() {
+                        if (monitor.isCanceled())
+                            return null;
+                        return test.visitWithCopy(chunk);
+                    }
+                });
+                futures.add(future);
+                result.add(future);
+            }
+            return result;
+        }
+
+        private static <T> T await(Future<T> future) {
+            try {
+                return future.get();
+            } catch (InterruptedException | ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException)
+                    throw (RuntimeException) cause;
+                if (cause instanceof Error)
+                    throw (Error) cause;
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
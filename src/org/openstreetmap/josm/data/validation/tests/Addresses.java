@@ -219,4 +219,9 @@ public class Addresses extends Test {
         errors.add(new AddressError(HOUSE_NUMBER_TOO_FAR, errorList,
                 tr("House number too far from street")));
     }
+
+    @Override
+    public boolean isConcurrentRunSupported() {
+        return true;
+    }
 }
@@ -35,4 +35,9 @@ public class BarriersEntrances extends Test {
             errors.add(new TestError(this, Severity.WARNING, tr("Barrier entrance not set on a barrier"), BARRIER_ENTRANCE_WITHOUT_BARRIER, n));
         }
     }
+
+    @Override
+    public boolean isConcurrentRunSupported() {
+        return true;
+    }
 }
@@ -241,4 +241,9 @@ public class Coastlines extends Test {
 
         return false;
     }
+
+    @Override
+    public boolean isConcurrentRunSupported() {
+        return true;
+    }
 }
@@ -287,4 +287,9 @@ public abstract class CrossingWays extends Test {
         }
         return cells;
     }
+
+    @Override
+    public boolean isConcurrentRunSupported() {
+        return true;
+    }
 }
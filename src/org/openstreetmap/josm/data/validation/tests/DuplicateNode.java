@@ -423,4 +423,9 @@ public class DuplicateNode extends Test {
         // everything else is ok to merge
         return true;
     }
+
+    @Override
+    public boolean isConcurrentRunSupported() {
+        return true;
+    }
 }
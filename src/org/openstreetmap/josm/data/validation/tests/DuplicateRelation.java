@@ -310,4 +310,9 @@ public class DuplicateRelation extends Test {
         }
         return (relationsWithRelations <= 1);
     }
+
+    @Override
+    public boolean isConcurrentRunSupported() {
+        return true;
+    }
 }
@@ -313,4 +313,9 @@ public class DuplicateWay extends Test {
         }
         return (waysWithRelations <= 1);
     }
+
+    @Override
+    public boolean isConcurrentRunSupported() {
+        return true;
+    }
 }
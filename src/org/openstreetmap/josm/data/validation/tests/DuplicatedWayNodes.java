@@ -82,4 +82,9 @@ public class DuplicatedWayNodes extends Test {
     public boolean isFixable(TestError testError) {
         return testError.getTester() instanceof DuplicatedWayNodes;
     }
+
+    @Override
+    public boolean isConcurrentRunSupported() {
+        return true;
+    }
 }
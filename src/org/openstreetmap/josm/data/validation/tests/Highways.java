@@ -268,4 +268,9 @@ public class Highways extends Test {
         }
         return null;
     }
+
+    @Override
+    public boolean isConcurrentRunSupported() {
+        return true;
+    }
 }
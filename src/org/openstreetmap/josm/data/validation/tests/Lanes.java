@@ -83,4 +83,14 @@ public class Lanes extends Test.TagTest {
         checkNumberOfLanesByKey(p, "lanes:backward", tr("Number of lane dependent values inconsistent in backward direction"));
         checkNumberOfLanes(p);
     }
+
+    @Override
+    public boolean isConcurrentCheckSupported() {
+        return true;
+    }
+
+    @Override
+    public boolean isConcurrentRunSupported() {
+        return true;
+    }
 }
@@ -10,6 +10,7 @@ import java.io.Reader;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -28,6 +29,8 @@ import org.openstreetmap.josm.command.ChangePropertyCommand;
 import org.openstreetmap.josm.command.ChangePropertyKeyCommand;
 import org.openstreetmap.josm.command.Command;
 import org.openstreetmap.josm.command.SequenceCommand;
+import org.openstreetmap.josm.data.osm.AbstractPrimitive;
+import org.openstreetmap.josm.data.osm.KeyValueVisitor;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.OsmUtils;
 import org.openstreetmap.josm.data.osm.Tag;
@@ -38,12 +41,17 @@ import org.openstreetmap.josm.data.validation.TestError;
 import org.openstreetmap.josm.gui.mappaint.Environment;
 import org.openstreetmap.josm.gui.mappaint.MultiCascade;
 import org.openstreetmap.josm.gui.mappaint.mapcss.Condition;
+import org.openstreetmap.josm.gui.mappaint.mapcss.Condition.KeyCondition;
+import org.openstreetmap.josm.gui.mappaint.mapcss.Condition.KeyMatchType;
+import org.openstreetmap.josm.gui.mappaint.mapcss.Condition.SimpleKeyValueCondition;
 import org.openstreetmap.josm.gui.mappaint.mapcss.Expression;
 import org.openstreetmap.josm.gui.mappaint.mapcss.Instruction;
 import org.openstreetmap.josm.gui.mappaint.mapcss.MapCSSRule;
 import org.openstreetmap.josm.gui.mappaint.mapcss.MapCSSRule.Declaration;
 import org.openstreetmap.josm.gui.mappaint.mapcss.MapCSSStyleSource;
 import org.openstreetmap.josm.gui.mappaint.mapcss.Selector;
+import org.openstreetmap.josm.gui.mappaint.mapcss.Selector.AbstractSelector;
+import org.openstreetmap.josm.gui.mappaint.mapcss.Selector.ChildOrParentSelector;
 import org.openstreetmap.josm.gui.mappaint.mapcss.Selector.GeneralSelector;
 import org.openstreetmap.josm.gui.mappaint.mapcss.parsergen.MapCSSParser;
 import org.openstreetmap.josm.gui.mappaint.mapcss.parsergen.ParseException;
@@ -130,6 +138,108 @@ public class MapCSSTagChecker extends Test.TagTest {
 
     final MultiMap<String, TagCheck> checks = new MultiMap<>();
 
+    /**
+     * The index of the checks, built again whenever they change.
+     */
+    private volatile TagCheckIndex index = new TagCheckIndex(checks);
+
+    /**
+     * Index of the checks by the tag or the key a primitive must have to match them, like
+     * {@link MapCSSStyleSource.MapCSSRuleIndex} for the rules of a style. It is not modified
+     * once built, so that the primitives can be checked concurrently without locking.
+     */
+    static final class TagCheckIndex {
+        /* all checks, in the order of the sources */
+        final TagCheck[] checks;
+        /* checks with a selector requiring neither a key nor a tag */
+        private final BitSet remaining = new BitSet();
+        /* checks with a selector requiring a key, by key */
+        private final Map<String, BitSet> keyIndex = new HashMap<>();
+        /* checks with a selector requiring a tag, by key and value */
+        private final Map<String, Map<String, BitSet>> tagIndex = new HashMap<>();
+
+        TagCheckIndex(MultiMap<String, TagCheck> checks) {
+            List<TagCheck> all = new ArrayList<>();
+            for (Set<TagCheck> schecks : checks.values()) {
+                all.addAll(schecks);
+            }
+            this.checks = all.toArray(new TagCheck[all.size()]);
+            for (int i = 0; i < this.checks.length; i++) {
+                for (Selector selector : this.checks[i].rule.selectors) {
+                    add(selector, i);
+                }
+            }
+        }
+
+        private void add(Selector selector, int i) {
+            // the rightmost selector is matched against the checked primitive
+            while (selector instanceof ChildOrParentSelector) {
+                selector = ((ChildOrParentSelector) selector).right;
+            }
+            SimpleKeyValueCondition tag = null;
+            KeyCondition key = null;
+            if (selector instanceof AbstractSelector) {
+                for (Condition c : ((AbstractSelector) selector).getConditions()) {
+                    if (c instanceof SimpleKeyValueCondition) {
+                        tag = (SimpleKeyValueCondition) c;
+                    } else if (c instanceof KeyCondition && !((KeyCondition) c).negateResult
+                            && !KeyMatchType.REGEX.equals(((KeyCondition) c).matchType)) {
+                        // [key], [key?] and [key?!] all require the key
+                        key = (KeyCondition) c;
+                    }
+                }
+            }
+            if (tag != null) {
+                Map<String, BitSet> values = tagIndex.get(tag.k);
+                if (values == null) {
+                    values = new HashMap<>();
+                    tagIndex.put(tag.k, values);
+                }
+                getBits(values, tag.v).set(i);
+            } else if (key != null) {
+                getBits(keyIndex, key.label).set(i);
+            } else {
+                remaining.set(i);
+            }
+        }
+
+        private static BitSet getBits(Map<String, BitSet> map, String key) {
+            BitSet bits = map.get(key);
+            if (bits == null) {
+                bits = new BitSet();
+                map.put(key, bits);
+            }
+            return bits;
+        }
+
+        /**
+         * Replies the checks which might match the primitive, based on its tags.
+         * @param p the primitive
+         * @return the indexes of the candidate checks in {@link #checks}
+         */
+        BitSet getCandidates(OsmPrimitive p) {
+            final BitSet candidates = (BitSet) remaining.clone();
+            // visit the tags directly, p.getKeys() would create a new map for each primitive
+            p.visitKeys(new KeyValueVisitor() {
+                @Override
+                public void visitKeyValue(AbstractPrimitive primitive, String key, String value) {
+                    BitSet bits = keyIndex.get(key);
+                    if (bits != null) {
+                        candidates.or(bits);
+                    }
+                    Map<String, BitSet> values = tagIndex.get(key);
+                    if (values != null) {
+                        bits = values.get(value);
+                        if (bits != null) {
+                            candidates.or(bits);
+                        }
+                    }
+                }
+            });
+            return candidates;
+        }
+    }
+
     static class TagCheck implements Predicate<OsmPrimitive> {
         protected final GroupedMapCSSRule rule;
         protected final List<PrimitiveToTag> change = new ArrayList<>();
@@ -515,22 +625,24 @@ public class MapCSSTagChecker extends Test.TagTest {
      * @param includeOtherSeverity if {@code true}, errors of severity {@link Severity#OTHER} (info) will also be returned
      * @return all errors for the given primitive, with or without those of "info" severity
      */
-    public synchronized Collection<TestError> getErrorsForPrimitive(OsmPrimitive p, boolean includeOtherSeverity) {
+    public Collection<TestError> getErrorsForPrimitive(OsmPrimitive p, boolean includeOtherSeverity) {
         final ArrayList<TestError> r = new ArrayList<>();
         final Environment env = new Environment(p, new MultiCascade(), Environment.DEFAULT_LAYER, null);
-        for (Set<TagCheck> schecks : checks.values()) {
-            for (TagCheck check : schecks) {
-                if (Severity.OTHER.equals(check.getSeverity()) && !includeOtherSeverity) {
-                    continue;
-                }
-                final Selector selector = check.whichSelectorMatchesEnvironment(env);
-                if (selector != null) {
-                    check.rule.declaration.execute(env);
-                    final TestError error = check.getErrorForPrimitive(p, selector, env);
-                    if (error != null) {
-                        error.setTester(new MapCSSTagCheckerAndRule(check.rule));
-                        r.add(error);
-                    }
+        // the index is replaced, not modified, when the checks change
+        final TagCheckIndex currentIndex = index;
+        final BitSet candidates = currentIndex.getCandidates(p);
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            final TagCheck check = currentIndex.checks[i];
+            if (Severity.OTHER.equals(check.getSeverity()) && !includeOtherSeverity) {
+                continue;
+            }
+            final Selector selector = check.whichSelectorMatchesEnvironment(env);
+            if (selector != null) {
+                check.rule.declaration.execute(env);
+                final TestError error = check.getErrorForPrimitive(p, selector, env);
+                if (error != null) {
+                    error.setTester(new MapCSSTagCheckerAndRule(check.rule));
+                    r.add(error);
                 }
             }
         }
@@ -561,6 +673,7 @@ public class MapCSSTagChecker extends Test.TagTest {
             List<TagCheck> tagchecks = TagCheck.readMapCSS(new BufferedReader(UTFInputStreamReader.create(s)));
             checks.remove(url);
             checks.putAll(url, tagchecks);
+            index = new TagCheckIndex(checks);
             // Check assertions, useful for development of local files
             if (Main.pref.getBoolean("validator.check_assert_local_rules", false) && Utils.isLocalUrl(url)) {
                 for (String msg : checkAsserts(tagchecks)) {
@@ -573,6 +686,7 @@ public class MapCSSTagChecker extends Test.TagTest {
     @Override
     public synchronized void initialize() throws Exception {
         checks.clear();
+        index = new TagCheckIndex(checks);
         for (SourceEntry source : new ValidatorTagCheckerRulesPreference.RulePrefHelper().get()) {
             if (!source.active) {
                 continue;
@@ -660,4 +774,14 @@ public class MapCSSTagChecker extends Test.TagTest {
             return false;
         return true;
     }
+
+    @Override
+    public boolean isConcurrentCheckSupported() {
+        return true;
+    }
+
+    @Override
+    public boolean isConcurrentRunSupported() {
+        return true;
+    }
 }
@@ -101,4 +101,14 @@ public class NameMismatch extends Test.TagTest {
             }
         }
     }
+
+    @Override
+    public boolean isConcurrentCheckSupported() {
+        return true;
+    }
+
+    @Override
+    public boolean isConcurrentRunSupported() {
+        return true;
+    }
 }
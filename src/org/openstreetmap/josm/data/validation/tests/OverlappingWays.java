@@ -228,4 +228,9 @@ public class OverlappingWays extends Test {
             lastN = n;
         }
     }
+
+    @Override
+    public boolean isConcurrentRunSupported() {
+        return true;
+    }
 }
@@ -43,4 +43,9 @@ public class SelfIntersectingWay extends Test {
             }
         }
     }
+
+    @Override
+    public boolean isConcurrentRunSupported() {
+        return true;
+    }
 }
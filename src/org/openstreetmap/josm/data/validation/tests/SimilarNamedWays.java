@@ -149,4 +149,9 @@ public class SimilarNamedWays extends Test {
         // Step 7
         return d[n][m];
     }
+
+    @Override
+    public boolean isConcurrentRunSupported() {
+        return true;
+    }
 }
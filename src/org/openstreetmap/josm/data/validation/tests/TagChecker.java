@@ -762,4 +762,14 @@ public class TagChecker extends Test.TagTest {
             return code + type.ordinal() + 1;
         }
     }
+
+    @Override
+    public boolean isConcurrentCheckSupported() {
+        return true;
+    }
+
+    @Override
+    public boolean isConcurrentRunSupported() {
+        return true;
+    }
 }
@@ -200,4 +200,9 @@ public class TurnrestrictionTest extends Test {
             errors.add(new TestError(this, Severity.ERROR, msg, code, Arrays.asList(previous, current)));
         }
     }
+
+    @Override
+    public boolean isConcurrentRunSupported() {
+        return true;
+    }
 }
@@ -181,4 +181,9 @@ public class UnclosedWays extends Test {
             }
         }
     }
+
+    @Override
+    public boolean isConcurrentRunSupported() {
+        return true;
+    }
 }
@@ -472,4 +472,9 @@ public abstract class UnconnectedWays extends Test {
             }
         }
     }
+
+    @Override
+    public boolean isConcurrentRunSupported() {
+        return true;
+    }
 }
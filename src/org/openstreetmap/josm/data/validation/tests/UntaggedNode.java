@@ -116,4 +116,9 @@ public class UntaggedNode extends Test {
         }
         return false;
     }
+
+    @Override
+    public boolean isConcurrentRunSupported() {
+        return true;
+    }
 }
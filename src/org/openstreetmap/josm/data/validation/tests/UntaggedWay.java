@@ -157,4 +157,9 @@ public class UntaggedWay extends Test {
     public boolean isPrimitiveUsable(OsmPrimitive p) {
         return p.isUsable();
     }
+
+    @Override
+    public boolean isConcurrentRunSupported() {
+        return true;
+    }
 }
@@ -94,4 +94,9 @@ public class WayConnectedToArea extends Test {
                 Arrays.asList(w, p),
                 Arrays.asList(wayNode)));
     }
+
+    @Override
+    public boolean isConcurrentRunSupported() {
+        return true;
+    }
 }
@@ -50,4 +50,9 @@ public class WronglyOrderedWays extends Test {
     private void reportError(Way w, String msg, int type) {
         errors.add(new TestError(this, Severity.WARNING, msg, type, Collections.singletonList(w)));
     }
+
+    @Override
+    public boolean isConcurrentRunSupported() {
+        return true;
+    }
 }
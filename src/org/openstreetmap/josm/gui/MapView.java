@@ -10,6 +10,9 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.event.KeyEvent;
@@ -34,6 +37,7 @@ import javax.swing.ActionMap;
 import javax.swing.InputMap;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.Timer;
 
 import org.openstreetmap.josm.Main;
 import org.openstreetmap.josm.actions.AutoScaleAction;
@@ -52,6 +56,9 @@ import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.visitor.BoundingXYVisitor;
 import org.openstreetmap.josm.data.osm.visitor.paint.PaintColors;
 import org.openstreetmap.josm.data.osm.visitor.paint.relations.MultipolygonCache;
+import org.openstreetmap.josm.data.preferences.BooleanProperty;
+import org.openstreetmap.josm.data.preferences.IntegerProperty;
+import org.openstreetmap.josm.data.projection.Projection;
 import org.openstreetmap.josm.gui.layer.GpxLayer;
 import org.openstreetmap.josm.gui.layer.ImageryLayer;
 import org.openstreetmap.josm.gui.layer.Layer;
@@ -110,6 +117,17 @@ public class MapView extends NavigatableComponent implements PropertyChangeListe
         void editLayerChanged(OsmDataLayer oldLayer, OsmDataLayer newLayer);
     }
 
+    /**
+     * Whether the buffer of the unchanged layers is moved along when the view is panned,
+     * so that only the uncovered borders have to be painted.
+     */
+    public static final BooleanProperty PROP_TRANSLATE_BUFFER = new BooleanProperty("mappaint.translate-buffer", true);
+
+    /**
+     * The delay in milliseconds after the last pan, before the moved buffer is painted again as a whole.
+     */
+    public static final IntegerProperty PROP_TRANSLATE_BUFFER_REFRESH = new IntegerProperty("mappaint.translate-buffer.refresh-delay", 300);
+
     public boolean viewportFollowing = false;
 
     /**
@@ -224,6 +242,25 @@ public class MapView extends NavigatableComponent implements PropertyChangeListe
     private Rectangle lastClipBounds = new Rectangle();
     private MapMover mapMover;
 
+    // The view the buffer of the unchanged layers has been painted for, and how far it has been moved since
+    private BufferedImage translateBuffer;
+    private EastNorth bufferCenter;
+    private double bufferScale;
+    private Projection bufferProjection;
+    private int bufferOffsetX;
+    private int bufferOffsetY;
+    private boolean bufferOutdated;
+    private final Timer bufferRefreshTimer = new Timer(0, new ActionListener() {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            // the seams of the moved buffer are cleaned up once the view rests
+            if (bufferOffsetX != 0 || bufferOffsetY != 0) {
+                bufferOutdated = true;
+                repaint();
+            }
+        }
+    });
+
     /**
      * Constructs a new {@code MapView}.
      * @param contentPane The content pane used to register shortcuts in its
@@ -288,6 +325,7 @@ public class MapView extends NavigatableComponent implements PropertyChangeListe
         if (Shortcut.findShortcut(KeyEvent.VK_TAB, 0)!=null) {
             setFocusTraversalKeysEnabled(false);
         }
+        bufferRefreshTimer.setRepeats(false);
     }
 
     // remebered geometry of the component
@@ -575,8 +613,13 @@ public class MapView extends NavigatableComponent implements PropertyChangeListe
             canUseBuffer = !paintPreferencesChanged;
             paintPreferencesChanged = false;
         }
-        canUseBuffer = canUseBuffer && nonChangedLayers.size() <= nonChangedLayersCount &&
-        lastViewID == getViewID() && lastClipBounds.contains(g.getClipBounds());
+        canUseBuffer = canUseBuffer && !bufferOutdated && nonChangedLayers.size() <= nonChangedLayersCount &&
+        lastClipBounds.contains(g.getClipBounds());
+        bufferOutdated = false;
+        boolean viewChanged = lastViewID != getViewID();
+        if (viewChanged && !canTranslateBuffer()) {
+            canUseBuffer = false;
+        }
         if (canUseBuffer) {
             for (int i=0; i<nonChangedLayers.size(); i++) {
                 if (visibleLayers.get(i) != nonChangedLayers.get(i)) {
@@ -606,7 +649,14 @@ public class MapView extends NavigatableComponent implements PropertyChangeListe
             for (int i=0; i<nonChangedLayersCount; i++) {
                 paintLayer(visibleLayers.get(i),g2, box);
             }
+            bufferCenter = getCenter();
+            bufferScale = getScale();
+            bufferProjection = getProjection();
+            bufferOffsetX = bufferOffsetY = 0;
         } else {
+            if (viewChanged) {
+                translateBuffer(g.getClip());
+            }
             // Maybe there were more unchanged layers then last time - draw them to buffer
             if (nonChangedLayers.size() != nonChangedLayersCount) {
                 Graphics2D g2 = nonChangedLayersBuffer.createGraphics();
@@ -694,6 +744,98 @@ public class MapView extends NavigatableComponent implements PropertyChangeListe
         super.paint(g);
     }
 
+    /**
+     * Replies true if the view has only been panned since the buffer of the unchanged layers was painted,
+     * by less than its size.
+     */
+    private boolean canTranslateBuffer() {
+        if (!PROP_TRANSLATE_BUFFER.get() || nonChangedLayersBuffer == null || bufferCenter == null
+                || bufferScale != getScale() || bufferProjection != getProjection()
+                || nonChangedLayersBuffer.getWidth() != getWidth() || nonChangedLayersBuffer.getHeight() != getHeight())
+            return false;
+        Point offset = getPanOffset(bufferCenter, center, bufferScale);
+        return Math.abs(offset.x - bufferOffsetX) < getWidth() && Math.abs(offset.y - bufferOffsetY) < getHeight();
+    }
+
+    /**
+     * Moves the buffer of the unchanged layers along with the view, and paints these layers
+     * on the uncovered borders only. The offset is rounded to whole pixels, it is measured from
+     * the view the buffer was painted for, so that the rounding errors do not add up while panning.
+     */
+    private void translateBuffer(Shape clip) {
+        Point offset = getPanOffset(bufferCenter, center, bufferScale);
+        int dx = offset.x - bufferOffsetX;
+        int dy = offset.y - bufferOffsetY;
+        bufferOffsetX = offset.x;
+        bufferOffsetY = offset.y;
+        bufferRefreshTimer.setInitialDelay(PROP_TRANSLATE_BUFFER_REFRESH.get());
+        bufferRefreshTimer.restart();
+        if (dx == 0 && dy == 0)
+            return;
+
+        int w = getWidth();
+        int h = getHeight();
+        if (translateBuffer == null || translateBuffer.getWidth() != w || translateBuffer.getHeight() != h) {
+            translateBuffer = new BufferedImage(w, h, BufferedImage.TYPE_3BYTE_BGR);
+        }
+        Graphics2D g2 = translateBuffer.createGraphics();
+        g2.setColor(PaintColors.getBackgroundColor());
+        g2.fillRect(0, 0, w, h);
+        g2.drawImage(nonChangedLayersBuffer, dx, dy, null);
+        g2.dispose();
+        BufferedImage swap = nonChangedLayersBuffer;
+        nonChangedLayersBuffer = translateBuffer;
+        translateBuffer = swap;
+
+        for (Rectangle border : getUncoveredBorders(dx, dy, w, h)) {
+            g2 = nonChangedLayersBuffer.createGraphics();
+            g2.setClip(clip);
+            g2.clip(border);
+            Bounds box = getLatLonBounds(border);
+            for (Layer layer : nonChangedLayers) {
+                paintLayer(layer, g2, box);
+            }
+            g2.dispose();
+        }
+    }
+
+    /**
+     * Replies the offset in whole pixels by which the content of the view moves when its center moves
+     * from {@code oldCenter} to {@code newCenter}.
+     * @param oldCenter the previous center of the view
+     * @param newCenter the new center of the view
+     * @param scale the scale of the view
+     * @return the offset of the content, positive to the right and to the bottom
+     */
+    static Point getPanOffset(EastNorth oldCenter, EastNorth newCenter, double scale) {
+        return new Point((int) Math.round((oldCenter.east() - newCenter.east()) / scale),
+                (int) Math.round((newCenter.north() - oldCenter.north()) / scale));
+    }
+
+    /**
+     * Replies the parts of a view which are not covered by its previous content anymore,
+     * once this content has been moved by the given offset: a column on the left or right side and a row
+     * at the top or the bottom.
+     * @param dx the horizontal offset of the content
+     * @param dy the vertical offset of the content
+     * @param width the width of the view
+     * @param height the height of the view
+     * @return the uncovered parts of the view, not overlapping
+     */
+    static List<Rectangle> getUncoveredBorders(int dx, int dy, int width, int height) {
+        List<Rectangle> borders = new ArrayList<>(2);
+        Rectangle column = new Rectangle(dx > 0 ? 0 : Math.max(width + dx, 0), 0, Math.min(Math.abs(dx), width), height);
+        if (!column.isEmpty()) {
+            borders.add(column);
+        }
+        Rectangle row = new Rectangle(Math.max(dx, 0), dy > 0 ? 0 : Math.max(height + dy, 0),
+                width - Math.abs(dx), Math.min(Math.abs(dy), height));
+        if (!row.isEmpty()) {
+            borders.add(row);
+        }
+        return borders;
+    }
+
     /**
      * Set the new dimension to the view.
      */
@@ -950,6 +1092,7 @@ public class MapView extends NavigatableComponent implements PropertyChangeListe
         if (mapMover != null) {
             mapMover.destroy();
         }
+        bufferRefreshTimer.stop();
         activeLayer = null;
         changedLayer = null;
         editLayer = null;
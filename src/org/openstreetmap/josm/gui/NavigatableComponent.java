@@ -248,6 +248,10 @@ public class NavigatableComponent extends JComponent implements Helpful {
         return center;
     }
 
+    /**
+     * Replies the scale factor in x or y-units per pixel, used to convert between screen and projected coordinates.
+     * @return the scale factor
+     */
     public double getScale() {
         return scale;
     }
@@ -260,18 +264,18 @@ public class NavigatableComponent extends JComponent implements Helpful {
      */
     public EastNorth getEastNorth(int x, int y) {
         return new EastNorth(
-                center.east() + (x - getWidth()/2.0)*scale,
-                center.north() - (y - getHeight()/2.0)*scale);
+                center.east() + (x - getWidth()/2.0)*getScale(),
+                center.north() - (y - getHeight()/2.0)*getScale());
     }
 
     public ProjectionBounds getProjectionBounds() {
         return new ProjectionBounds(
                 new EastNorth(
-                        center.east() - getWidth()/2.0*scale,
-                        center.north() - getHeight()/2.0*scale),
+                        center.east() - getWidth()/2.0*getScale(),
+                        center.north() - getHeight()/2.0*getScale()),
                         new EastNorth(
-                                center.east() + getWidth()/2.0*scale,
-                                center.north() + getHeight()/2.0*scale));
+                                center.east() + getWidth()/2.0*getScale(),
+                                center.north() + getHeight()/2.0*getScale()));
     }
 
     /* FIXME: replace with better method - used by MapSlider */
@@ -285,11 +289,11 @@ public class NavigatableComponent extends JComponent implements Helpful {
     public Bounds getRealBounds() {
         return new Bounds(
                 getProjection().eastNorth2latlon(new EastNorth(
-                        center.east() - getWidth()/2.0*scale,
-                        center.north() - getHeight()/2.0*scale)),
+                        center.east() - getWidth()/2.0*getScale(),
+                        center.north() - getHeight()/2.0*getScale())),
                         getProjection().eastNorth2latlon(new EastNorth(
-                                center.east() + getWidth()/2.0*scale,
-                                center.north() + getHeight()/2.0*scale)));
+                                center.east() + getWidth()/2.0*getScale(),
+                                center.north() + getHeight()/2.0*getScale())));
     }
 
     /**
@@ -336,6 +340,7 @@ public class NavigatableComponent extends JComponent implements Helpful {
     }
 
     public AffineTransform getAffineTransform() {
+        double scale = getScale();
         return new AffineTransform(
                 1.0/scale, 0.0, 0.0, -1.0/scale, getWidth()/2.0 - center.east()/scale, getHeight()/2.0 + center.north()/scale);
     }
@@ -349,8 +354,8 @@ public class NavigatableComponent extends JComponent implements Helpful {
     public Point2D getPoint2D(EastNorth p) {
         if (null == p)
             return new Point();
-        double x = (p.east()-center.east())/scale + getWidth()/2;
-        double y = (center.north()-p.north())/scale + getHeight()/2;
+        double x = (p.east()-center.east())/getScale() + getWidth()/2;
+        double y = (center.north()-p.north())/getScale() + getHeight()/2;
         return new Point2D.Double(x, y);
     }
 
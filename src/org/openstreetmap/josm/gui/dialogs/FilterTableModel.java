@@ -29,6 +29,7 @@ import org.openstreetmap.josm.data.osm.FilterMatcher;
 import org.openstreetmap.josm.data.osm.FilterWorker;
 import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.gui.layer.OsmDataLayer;
 
 /**
  *
@@ -111,6 +112,7 @@ public class FilterTableModel extends AbstractTableModel {
         }
 
         if (Main.isDisplayingMapView() && changed) {
+            clearRenderCache();
             Main.map.mapView.repaint();
             Main.map.filterDialog.updateDialogHeader();
         }
@@ -173,11 +175,23 @@ public class FilterTableModel extends AbstractTableModel {
         DataSet ds = Main.main.getCurrentDataSet();
         if (ds != null) {
             FilterWorker.clearFilterFlags(ds.allPrimitives());
+            clearRenderCache();
         }
         disabledCount = 0;
         disabledAndHiddenCount = 0;
     }
 
+    /**
+     * The disabled state of primitives is not reported by dataset events, so the cached
+     * rendering of the data layer must be discarded explicitly.
+     */
+    private static void clearRenderCache() {
+        OsmDataLayer layer = Main.main.getEditLayer();
+        if (layer != null) {
+            layer.clearRenderCache();
+        }
+    }
+
     private void loadPrefs() {
         List<FilterPreferenceEntry> entries = Main.pref.getListOfStructs("filters.entries", null, FilterPreferenceEntry.class);
         if (entries != null) {
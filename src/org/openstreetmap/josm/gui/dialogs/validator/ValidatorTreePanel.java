@@ -6,6 +6,7 @@ import static org.openstreetmap.josm.tools.I18n.tr;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -332,6 +333,37 @@ public class ValidatorTreePanel extends JTree implements Destroyable {
         }
     }
 
+    /**
+     * Removes and adds some errors of the current error list, without touching the other ones
+     * @param removed The validation errors to remove
+     * @param added The validation errors to add
+     */
+    public void updateErrors(Collection<TestError> removed, Collection<TestError> added) {
+        if (errors == null)
+            return;
+        DataSet ds = Main.main.getCurrentDataSet();
+        if (!removed.isEmpty()) {
+            Set<TestError> toRemove = new HashSet<>(removed);
+            for (TestError error : errors) {
+                if (ds != null && toRemove.contains(error)) {
+                    ds.removeDataSetListener(error);
+                }
+            }
+            errors.removeAll(toRemove);
+        }
+        for (TestError error : added) {
+            if (!error.getIgnored()) {
+                errors.add(error);
+                if (ds != null) {
+                    ds.addDataSetListener(error);
+                }
+            }
+        }
+        if (isVisible()) {
+            buildTree();
+        }
+    }
+
     /**
      * Returns the errors of the tree
      * @return the errors of the tree
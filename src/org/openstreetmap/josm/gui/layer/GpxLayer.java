@@ -12,9 +12,7 @@ import java.io.File;
 import java.text.DateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.Date;
-import java.util.LinkedList;
 import java.util.List;
 
 import javax.swing.Action;
@@ -279,9 +277,10 @@ public class GpxLayer extends Layer {
         lastTracks.clear();
         lastTracks.addAll(data.tracks);
 
-        LinkedList<WayPoint> visibleSegments = listVisibleSegments(box);
+        drawHelper.readPreferences(getName());
+        ensureTrackVisibilityLength();
+        List<WayPoint> visibleSegments = drawHelper.listVisiblePoints(mv, trackVisibility);
         if(!visibleSegments.isEmpty()) {
-            drawHelper.readPreferences(getName());
             drawHelper.drawAll(g, mv, visibleSegments);
             if (Main.map.mapView.getActiveLayer() == this) {
                 drawHelper.drawColorBar(g, mv);
@@ -290,40 +289,6 @@ public class GpxLayer extends Layer {
 
     }
 
-    private LinkedList<WayPoint> listVisibleSegments(Bounds box) {
-        WayPoint last = null;
-        LinkedList<WayPoint> visibleSegments = new LinkedList<>();
-
-        ensureTrackVisibilityLength();
-        for (Collection<WayPoint> segment : data.getLinesIterable(trackVisibility)) {
-
-            for(WayPoint pt : segment)
-            {
-                Bounds b = new Bounds(pt.getCoor());
-                // last should never be null when this is true!
-                if(pt.drawLine) {
-                    b.extend(last.getCoor());
-                }
-                if(b.intersects(box))
-                {
-                    if(last != null && (visibleSegments.isEmpty()
-                            || visibleSegments.getLast() != last)) {
-                        if(last.drawLine) {
-                            WayPoint l = new WayPoint(last);
-                            l.drawLine = false;
-                            visibleSegments.add(l);
-                        } else {
-                            visibleSegments.add(last);
-                        }
-                    }
-                    visibleSegments.add(pt);
-                }
-                last = pt;
-            }
-        }
-        return visibleSegments;
-    }
-
     @Override
     public void visitBoundingBox(BoundingXYVisitor v) {
         v.visit(data.recalculateBounds());
@@ -357,6 +322,7 @@ public class GpxLayer extends Layer {
     public void projectionChanged(Projection oldValue, Projection newValue) {
         if (newValue == null) return;
         data.resetEastNorthCache();
+        drawHelper.dataChanged();
     }
 
     @Override
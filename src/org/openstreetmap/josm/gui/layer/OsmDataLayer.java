@@ -68,9 +68,12 @@ import org.openstreetmap.josm.data.osm.event.DataSetListenerAdapter.Listener;
 import org.openstreetmap.josm.data.osm.visitor.AbstractVisitor;
 import org.openstreetmap.josm.data.osm.visitor.BoundingXYVisitor;
 import org.openstreetmap.josm.data.osm.visitor.paint.MapRendererFactory;
+import org.openstreetmap.josm.data.osm.visitor.paint.RenderTileCache;
 import org.openstreetmap.josm.data.osm.visitor.paint.Rendering;
+import org.openstreetmap.josm.data.osm.visitor.paint.StyledMapRenderer;
 import org.openstreetmap.josm.data.osm.visitor.paint.relations.MultipolygonCache;
 import org.openstreetmap.josm.data.projection.Projection;
+import org.openstreetmap.josm.data.validation.IncrementalValidator;
 import org.openstreetmap.josm.data.validation.TestError;
 import org.openstreetmap.josm.gui.ExtendedDialog;
 import org.openstreetmap.josm.gui.MapView;
@@ -110,6 +113,11 @@ public class OsmDataLayer extends ModifiableLayer implements Listener, Selection
      */
     public final List<TestError> validationErrors = new ArrayList<>();
 
+    /**
+     * Keeps {@link #validationErrors} up to date while editing, if enabled.
+     */
+    private final IncrementalValidator incrementalValidator;
+
     protected void setRequiresSaveToFile(boolean newValue) {
         boolean oldValue = requiresSaveToFile;
         requiresSaveToFile = newValue;
@@ -222,6 +230,12 @@ public class OsmDataLayer extends ModifiableLayer implements Listener, Selection
      */
     private ConflictCollection conflicts;
 
+    /**
+     * the cached rendering of the data, created on first paint if the preference {@code mappaint.tilecache} is enabled.
+     * Unless {@code mappaint.tilecache.async} is disabled, its tiles are rendered in the background
+     */
+    private RenderTileCache renderCache;
+
     /**
      * a paint texture for non-downloaded area
      */
@@ -263,6 +277,9 @@ public class OsmDataLayer extends ModifiableLayer implements Listener, Selection
         this.data = data;
         this.setAssociatedFile(associatedFile);
         conflicts = new ConflictCollection();
+        // registered before the listeners of the validation errors
+        incrementalValidator = new IncrementalValidator(this);
+        data.addDataSetListener(incrementalValidator);
         data.addDataSetListener(new DataSetListenerAdapter(this));
         data.addDataSetListener(MultipolygonCache.getInstance());
         DataSet.addSelectionListener(this);
@@ -327,10 +344,53 @@ public class OsmDataLayer extends ModifiableLayer implements Listener, Selection
         }
 
         Rendering painter = MapRendererFactory.getInstance().createActiveRenderer(g, mv, inactive);
-        painter.render(data, virtual, box);
+        if (painter instanceof StyledMapRenderer && Main.pref.getBoolean("mappaint.tilecache", false)) {
+            boolean async = Main.pref.getBoolean("mappaint.tilecache.async", true);
+            if (renderCache != null && renderCache.isAsynchronous() != async) {
+                destroyRenderCache();
+            }
+            if (renderCache == null) {
+                renderCache = async ? new RenderTileCache(data, new Runnable() {
+                    @Override
+                    public void run() {
+                        GuiHelper.runInEDT(new Runnable() {
+                            @Override
+                            public void run() {
+                                // paint the layer again, instead of the buffer of the unchanged layers
+                                isChanged = true;
+                                if (Main.isDisplayingMapView()) {
+                                    Main.map.mapView.repaint();
+                                }
+                            }
+                        });
+                    }
+                }) : new RenderTileCache(data);
+            }
+            renderCache.paint(g, mv, inactive, virtual);
+        } else {
+            destroyRenderCache();
+            painter.render(data, virtual, box);
+        }
         Main.map.conflictDialog.paintConflicts(g, mv);
     }
 
+    /**
+     * Discards the cached rendering of this layer, e.g. because the filters changed the
+     * disabled state of primitives, which is not reported by dataset events.
+     */
+    public void clearRenderCache() {
+        if (renderCache != null) {
+            renderCache.clear();
+        }
+    }
+
+    private void destroyRenderCache() {
+        if (renderCache != null) {
+            renderCache.destroy();
+            renderCache = null;
+        }
+    }
+
     @Override public String getToolTipText() {
         int nodes = new FilteredCollection<>(data.getNodes(), OsmPrimitive.nonDeletedPredicate).size();
         int ways = new FilteredCollection<>(data.getWays(), OsmPrimitive.nonDeletedPredicate).size();
@@ -691,6 +751,8 @@ public class OsmDataLayer extends ModifiableLayer implements Listener, Selection
     @Override
     public void destroy() {
         DataSet.removeSelectionListener(this);
+        data.removeDataSetListener(incrementalValidator);
+        destroyRenderCache();
     }
 
     @Override
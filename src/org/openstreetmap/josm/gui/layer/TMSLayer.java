@@ -14,6 +14,7 @@ import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
 import java.awt.image.ImageObserver;
 import java.io.File;
 import java.io.IOException;
@@ -49,6 +50,8 @@ import org.openstreetmap.gui.jmapviewer.Tile;
 import org.openstreetmap.gui.jmapviewer.interfaces.CachedTileLoader;
 import org.openstreetmap.gui.jmapviewer.interfaces.TileCache;
 import org.openstreetmap.gui.jmapviewer.interfaces.TileClearController;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileJob;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileJobPriority;
 import org.openstreetmap.gui.jmapviewer.interfaces.TileLoaderListener;
 import org.openstreetmap.gui.jmapviewer.interfaces.TileSource;
 import org.openstreetmap.gui.jmapviewer.tilesources.BingAerialTileSource;
@@ -63,6 +66,7 @@ import org.openstreetmap.josm.data.coor.EastNorth;
 import org.openstreetmap.josm.data.coor.LatLon;
 import org.openstreetmap.josm.data.imagery.ImageryInfo;
 import org.openstreetmap.josm.data.imagery.ImageryInfo.ImageryType;
+import org.openstreetmap.josm.data.imagery.TMSCachedTileLoader;
 import org.openstreetmap.josm.data.osm.visitor.BoundingXYVisitor;
 import org.openstreetmap.josm.data.preferences.BooleanProperty;
 import org.openstreetmap.josm.data.preferences.IntegerProperty;
@@ -108,6 +112,12 @@ public class TMSLayer extends ImageryLayer implements ImageObserver, TileLoaderL
     //public static final BooleanProperty PROP_DRAW_DEBUG = new BooleanProperty(PREFERENCE_PREFIX + ".draw_debug", false);
     public static final BooleanProperty PROP_ADD_TO_SLIPPYMAP_CHOOSER = new BooleanProperty(PREFERENCE_PREFIX + ".add_to_slippymap_chooser", true);
     public static final IntegerProperty PROP_TMS_JOBS = new IntegerProperty("tmsloader.maxjobs", 25);
+    public static final IntegerProperty PROP_TMS_JOBS_PER_HOST = new IntegerProperty("tmsloader.maxjobsperhost", 8);
+    /** Size of the decoded tile images kept in memory, in megabytes */
+    public static final IntegerProperty PROP_MEMORY_CACHE_SIZE = new IntegerProperty(PREFERENCE_PREFIX + ".memory_cache_size", 64);
+    /** Size of the encoded tile images kept in memory once their decoded image has been released, in megabytes */
+    public static final IntegerProperty PROP_MEMORY_CACHE_COMPRESSED_SIZE =
+            new IntegerProperty(PREFERENCE_PREFIX + ".memory_cache_compressed_size", 32);
     public static final StringProperty PROP_TILECACHE_DIR;
 
     static {
@@ -133,6 +143,16 @@ public class TMSLayer extends ImageryLayer implements ImageObserver, TileLoaderL
         public OsmTileLoader makeTileLoader(TileLoaderListener listener) {
             String cachePath = TMSLayer.PROP_TILECACHE_DIR.get();
             if (cachePath != null && !cachePath.isEmpty()) {
+                if (TMSCachedTileLoader.PROP_ENABLED.get()) {
+                    try {
+                        TMSCachedTileLoader loader = new TMSCachedTileLoader(listener, new File(cachePath));
+                        loader.headers.put("User-Agent", Version.getInstance().getFullAgentString());
+                        return loader;
+                    } catch (IOException e) {
+                        // the pack file is used by another instance of JOSM, fall back to a file per tile
+                        Main.warn(e);
+                    }
+                }
                 try {
                     OsmFileCacheTileLoader loader = new OsmFileCacheTileLoader(listener, new File(cachePath));
                     loader.headers.put("User-Agent", Version.getInstance().getFullAgentString());
@@ -154,6 +174,61 @@ public class TMSLayer extends ImageryLayer implements ImageObserver, TileLoaderL
 
     private Set<Tile> tileRequestsOutstanding = new HashSet<>();
 
+    /**
+     * The tiles being loaded for the view, with a margin of one tile.
+     */
+    private static final class LoadingView {
+        final TileSource source;
+        final int zoom;
+        final int x0, x1, y0, y1;
+        final double centerX, centerY;
+
+        LoadingView(TileSet ts) {
+            source = ts.source;
+            zoom = ts.zoom;
+            x0 = ts.x0 - 1;
+            y0 = ts.y0 - 1;
+            x1 = ts.x1 + 2;
+            y1 = ts.y1 + 2;
+            centerX = (ts.x0 + ts.x1 + 1) / 2.0;
+            centerY = (ts.y0 + ts.y1 + 1) / 2.0;
+        }
+    }
+
+    private volatile LoadingView loadingView;
+
+    /**
+     * Loads the tiles of the view first, from its center, and cancels the jobs of the tiles which left it.
+     */
+    private final TileJobPriority jobPriority = new TileJobPriority() {
+        @Override
+        public double getPriority(Tile tile) {
+            LoadingView view = loadingView;
+            if (view == null)
+                return 0;
+            if (tile.getSource() != view.source)
+                return Double.POSITIVE_INFINITY;
+            int dz = tile.getZoom() - view.zoom;
+            // center of the tile, in tiles of the zoom level of the view
+            double scale = Math.pow(2, -dz);
+            double x = (tile.getXtile() + 0.5) * scale;
+            double y = (tile.getYtile() + 0.5) * scale;
+            if (x < view.x0 || x > view.x1 || y < view.y0 || y > view.y1)
+                return Double.POSITIVE_INFINITY;
+            double dx = x - view.centerX;
+            double dy = y - view.centerY;
+            // the tiles of the zoom level of the view first
+            return Math.abs(dz) * 1e6 + dx * dx + dy * dy;
+        }
+
+        @Override
+        public void jobCancelled(TileJob job) {
+            synchronized (TMSLayer.this) {
+                tileRequestsOutstanding.remove(job.getTile());
+            }
+        }
+    };
+
     @Override
     public synchronized void tileLoadingFinished(Tile tile, boolean success) {
         if (tile.hasError()) {
@@ -161,7 +236,7 @@ public class TMSLayer extends ImageryLayer implements ImageObserver, TileLoaderL
             tile.setImage(null);
         }
         if (sharpenLevel != 0 && success) {
-            tile.setImage(sharpenImage(tile.getImage()));
+            tile.setProcessedImage(sharpenImage(tile.getImage()));
         }
         tile.setLoaded(true);
         needRedraw = true;
@@ -410,7 +485,8 @@ public class TMSLayer extends ImageryLayer implements ImageObserver, TileLoaderL
 
         currentZoomLevel = getBestZoom();
 
-        tileCache = new MemoryTileCache();
+        tileCache = new MemoryTileCache(PROP_MEMORY_CACHE_SIZE.get() * 1024L * 1024L,
+                PROP_MEMORY_CACHE_COMPRESSED_SIZE.get() * 1024L * 1024L);
 
         tileLoader = loaderFactory.makeTileLoader(this);
         if (tileLoader == null) {
@@ -472,6 +548,7 @@ public class TMSLayer extends ImageryLayer implements ImageObserver, TileLoaderL
      */
     public static void setMaxWorkers() {
         JobDispatcher.setMaxWorkers(PROP_TMS_JOBS.get());
+        JobDispatcher.setMaxWorkersPerHost(PROP_TMS_JOBS_PER_HOST.get());
         JobDispatcher.getInstance().setLIFO(true);
     }
 
@@ -679,7 +756,7 @@ public class TMSLayer extends ImageryLayer implements ImageObserver, TileLoaderL
             Main.debug("zoomChanged(): " + currentZoomLevel);
         }
         needRedraw = true;
-        JobDispatcher.getInstance().cancelOutstandingJobs();
+        JobDispatcher.getInstance().cancelOutstandingJobs(jobPriority);
         tileRequestsOutstanding.clear();
     }
 
@@ -806,7 +883,7 @@ public class TMSLayer extends ImageryLayer implements ImageObserver, TileLoaderL
         if (tileRequestsOutstanding.contains(tile))
             return false;
         tileRequestsOutstanding.add(tile);
-        JobDispatcher.getInstance().addJob(tileLoader.createTileLoaderJob(tile));
+        JobDispatcher.getInstance().addJob(tileLoader.createTileLoaderJob(tile), jobPriority);
         return true;
     }
 
@@ -981,6 +1058,10 @@ public class TMSLayer extends ImageryLayer implements ImageObserver, TileLoaderL
                 if (Main.isDebugEnabled()) {
                     Main.debug("missed tile: " + tile);
                 }
+                // until it is loaded, show the tile built from the cached tiles of other zoom levels
+                if (border == null && tile.hasPlaceholder()) {
+                    drawImageInside(g, tile.getImage(), tileToRect(tile), null);
+                }
                 missedTiles.add(tile);
                 continue;
             }
@@ -1092,6 +1173,7 @@ public class TMSLayer extends ImageryLayer implements ImageObserver, TileLoaderL
     private class TileSet {
         int x0, x1, y0, y1;
         int zoom;
+        final TileSource source = tileSource;
         int tileMax = -1;
 
         /**
@@ -1205,6 +1287,7 @@ public class TMSLayer extends ImageryLayer implements ImageObserver, TileLoaderL
         void loadAllTiles(boolean force) {
             if (!autoLoad && !force)
                 return;
+            loadingView = new LoadingView(this);
             for (Tile t : this.allTilesCreate()) {
                 loadTile(t, false);
             }
@@ -1213,6 +1296,7 @@ public class TMSLayer extends ImageryLayer implements ImageObserver, TileLoaderL
         void loadAllErrorTiles(boolean force) {
             if (!autoLoad && !force)
                 return;
+            loadingView = new LoadingView(this);
             for (Tile t : this.allTilesCreate()) {
                 if (t.hasError()) {
                     loadTile(t, true);
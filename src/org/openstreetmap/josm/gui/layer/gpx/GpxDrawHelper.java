@@ -11,13 +11,18 @@ import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.RenderingHints;
 import java.awt.Stroke;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.ProjectionBounds;
 import org.openstreetmap.josm.data.coor.LatLon;
 import org.openstreetmap.josm.data.gpx.GpxData;
+import org.openstreetmap.josm.data.gpx.GpxLineIndex;
 import org.openstreetmap.josm.data.gpx.WayPoint;
 import org.openstreetmap.josm.gui.MapView;
 import org.openstreetmap.josm.tools.ColorScale;
@@ -49,6 +54,11 @@ public class GpxDrawHelper {
     private double minTrackDurationForTimeColoring;
 
     private int hdopfactor;
+    /** don't draw the points which move the lines less than x pixels **/
+    private double simplifyTolerance;
+
+    /** level of detail indexes of the lines, built when they are drawn **/
+    private final Map<Collection<WayPoint>, GpxLineIndex> lineIndexes = new IdentityHashMap<>();
 
     private static final double PHI = Math.toRadians(15);
 
@@ -171,6 +181,7 @@ public class GpxDrawHelper {
         hdopfactor = Main.pref.getInteger("hdop.factor", 25);
         minTrackDurationForTimeColoring = Main.pref.getInteger("draw.rawgps.date-coloring-min-dt", 60);
         largePointAlpha = Main.pref.getInteger("draw.rawgps.large.alpha", -1) & 0xFF;
+        simplifyTolerance = Main.pref.getDouble("draw.rawgps.simplify-tolerance", 0.5);
 
         neutralColor = getColor(layerName, true);
         velocityScale.setNoDataColor(neutralColor);
@@ -182,6 +193,109 @@ public class GpxDrawHelper {
     }
 
 
+    /**
+     * Replies the distance, in east/north units, below which points may be skipped when drawing the lines.
+     * @param scale the scale of the view
+     * @return the simplification tolerance, 0 if all points have to be drawn
+     */
+    double getSimplifyTolerance(double scale) {
+        // points and arrows are drawn for every point, and the hdop circles differ from point to point
+        if (large || !lines || direction || hdopCircle)
+            return 0;
+        return simplifyTolerance * scale;
+    }
+
+    /**
+     * Lists the points to draw in the view. The lines are simplified to the level of detail of
+     * the view, so that only the points which change the drawing by more than
+     * {@code draw.rawgps.simplify-tolerance} pixels are listed.
+     * @param mv the map view
+     * @param trackVisibility the visibility of the tracks, or {@code null} to list all tracks
+     * @return the points to draw, in line order
+     */
+    public List<WayPoint> listVisiblePoints(MapView mv, boolean[] trackVisibility) {
+        checkCache();
+        if (!computeCacheInSync) {
+            calculateColors();
+        }
+        ProjectionBounds view = mv.getProjectionBounds();
+        double tolerance = getSimplifyTolerance(mv.getScale());
+        List<WayPoint> visible = new ArrayList<>();
+        WayPoint last = null;
+        double lastEast = Double.NaN;
+        double lastNorth = Double.NaN;
+        for (Collection<WayPoint> segment : data.getLinesIterable(trackVisibility)) {
+            GpxLineIndex index = getLineIndex(segment);
+            ProjectionBounds b = index.getBounds();
+            if (b == null)
+                continue;
+            int[] level = index.getLevel(tolerance);
+            int count = level != null ? level.length : index.size();
+            boolean inView = intersects(b.minEast, b.minNorth, b.maxEast, b.maxNorth, view);
+            boolean first = true;
+            for (int k = 0; k < count; k++) {
+                int i = level != null ? level[k] : k;
+                double east = index.getEast(i);
+                double north = index.getNorth(i);
+                if (Double.isNaN(east) || Double.isNaN(north)) {
+                    continue;
+                }
+                WayPoint pt = index.get(i);
+                if (!inView && (!first || !pt.drawLine)) {
+                    // only the line from the previous segment may be visible
+                    break;
+                }
+                first = false;
+                // last should never be null when this is true!
+                boolean line = pt.drawLine && last != null;
+                if (intersects(line ? Math.min(east, lastEast) : east, line ? Math.min(north, lastNorth) : north,
+                        line ? Math.max(east, lastEast) : east, line ? Math.max(north, lastNorth) : north, view)) {
+                    if (last != null && (visible.isEmpty() || visible.get(visible.size() - 1) != last)) {
+                        if (last.drawLine) {
+                            WayPoint l = new WayPoint(last);
+                            l.drawLine = false;
+                            visible.add(l);
+                        } else {
+                            visible.add(last);
+                        }
+                    }
+                    visible.add(pt);
+                }
+                last = pt;
+                lastEast = east;
+                lastNorth = north;
+            }
+            if (!inView) {
+                int i = level != null ? level[level.length - 1] : lastValid(index);
+                last = index.get(i);
+                lastEast = index.getEast(i);
+                lastNorth = index.getNorth(i);
+            }
+        }
+        return visible;
+    }
+
+    private static int lastValid(GpxLineIndex index) {
+        int i = index.size() - 1;
+        while (Double.isNaN(index.getEast(i)) || Double.isNaN(index.getNorth(i))) {
+            i--;
+        }
+        return i;
+    }
+
+    private static boolean intersects(double minEast, double minNorth, double maxEast, double maxNorth, ProjectionBounds b) {
+        return minEast <= b.maxEast && maxEast >= b.minEast && minNorth <= b.maxNorth && maxNorth >= b.minNorth;
+    }
+
+    private GpxLineIndex getLineIndex(Collection<WayPoint> line) {
+        GpxLineIndex index = lineIndexes.get(line);
+        if (index == null) {
+            index = new GpxLineIndex(line);
+            lineIndexes.put(line, index);
+        }
+        return index;
+    }
+
     public void drawAll(Graphics2D g, MapView mv, List<WayPoint> visibleSegments) {
 
         checkCache();
@@ -210,6 +324,8 @@ public class GpxDrawHelper {
     }
 
     public void calculateColors() {
+        // the lines are split where they are not drawn
+        lineIndexes.clear();
         double minval = +1e10;
         double maxval = -1e10;
         WayPoint oldWp = null;
@@ -529,6 +645,7 @@ public class GpxDrawHelper {
 
     public void dataChanged() {
         computeCacheInSync = false;
+        lineIndexes.clear();
     }
 
     public void drawColorBar(Graphics2D g, MapView mv) {
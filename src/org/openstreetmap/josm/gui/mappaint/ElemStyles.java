@@ -51,6 +51,15 @@ public class ElemStyles {
         });
     }
 
+    /**
+     * Replies the index of the style cache. It changes whenever the cached styles are cleared,
+     * e.g. if a style has been reloaded or modified.
+     * @return the index of the style cache
+     */
+    public int getCacheIdx() {
+        return cacheIdx;
+    }
+
     public List<StyleSource> getStyleSources() {
         return Collections.<StyleSource>unmodifiableList(styleSources);
     }
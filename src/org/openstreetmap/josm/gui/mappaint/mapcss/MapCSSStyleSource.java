@@ -24,6 +24,8 @@ import java.util.zip.ZipFile;
 
 import org.openstreetmap.josm.Main;
 import org.openstreetmap.josm.data.Version;
+import org.openstreetmap.josm.data.osm.AbstractPrimitive;
+import org.openstreetmap.josm.data.osm.KeyValueVisitor;
 import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.Relation;
@@ -136,16 +138,20 @@ public class MapCSSStyleSource extends StyleSource {
          * that cannot match, based on the tags of the primitive
          */
         public Collection<MapCSSRule> getRuleCandidates(OsmPrimitive osm) {
-            List<MapCSSRule> ruleCandidates = new ArrayList<>(remaining);
-            for (Map.Entry<String,String> e : osm.getKeys().entrySet()) {
-                Map<String,Set<MapCSSRule>> v = index.get(e.getKey());
-                if (v != null) {
-                    Set<MapCSSRule> rs = v.get(e.getValue());
-                    if (rs != null)  {
-                        ruleCandidates.addAll(rs);
+            final List<MapCSSRule> ruleCandidates = new ArrayList<>(remaining);
+            // visit the tags directly, osm.getKeys() would create a new map for each primitive
+            osm.visitKeys(new KeyValueVisitor() {
+                @Override
+                public void visitKeyValue(AbstractPrimitive primitive, String key, String value) {
+                    Map<String,Set<MapCSSRule>> v = index.get(key);
+                    if (v != null) {
+                        Set<MapCSSRule> rs = v.get(value);
+                        if (rs != null)  {
+                            ruleCandidates.addAll(rs);
+                        }
                     }
                 }
-            }
+            });
             Collections.sort(ruleCandidates);
             return ruleCandidates;
         } 
@@ -5,12 +5,14 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.regex.PatternSyntaxException;
 
 import org.openstreetmap.josm.Main;
 import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.PreparedGeometryCache;
 import org.openstreetmap.josm.data.osm.Relation;
 import org.openstreetmap.josm.data.osm.RelationMember;
 import org.openstreetmap.josm.data.osm.Way;
@@ -217,15 +219,18 @@ public interface Selector {
         }
 
         private final class CrossingFinder extends AbstractFinder {
+            private final PreparedGeometryCache geometry;
+
             private CrossingFinder(Environment e) {
                 super(e);
                 CheckParameterUtil.ensureThat(e.osm instanceof Way, "Only ways are supported");
+                geometry = e.osm.getDataSet().getPreparedGeometryCache();
             }
 
             @Override
             public void visit(Way w) {
                 if (e.child == null && left.matches(new Environment().withPrimitive(w))) {
-                    if (e.osm instanceof Way && Geometry.PolygonIntersection.CROSSING.equals(Geometry.polygonIntersection(w.getNodes(), ((Way) e.osm).getNodes()))) {
+                    if (e.osm instanceof Way && Geometry.PolygonIntersection.CROSSING.equals(geometry.polygonIntersection(w, (Way) e.osm))) {
                         e.child = w;
                     }
                 }
@@ -233,16 +238,19 @@ public interface Selector {
         }
 
         private class ContainsFinder extends AbstractFinder {
+            private final PreparedGeometryCache geometry;
+
             private ContainsFinder(Environment e) {
                 super(e);
                 CheckParameterUtil.ensureThat(!(e.osm instanceof Node), "Nodes not supported");
+                geometry = e.osm.getDataSet().getPreparedGeometryCache();
             }
 
             @Override
             public void visit(Node n) {
                 if (e.child == null && left.matches(new Environment().withPrimitive(n))) {
-                    if (e.osm instanceof Way && Geometry.nodeInsidePolygon(n, ((Way) e.osm).getNodes())
-                            || e.osm instanceof Relation && ((Relation) e.osm).isMultipolygon() && Geometry.isNodeInsideMultiPolygon(n, (Relation) e.osm, null)) {
+                    if (e.osm instanceof Way && geometry.isNodeInsidePolygon(n, (Way) e.osm)
+                            || e.osm instanceof Relation && ((Relation) e.osm).isMultipolygon() && geometry.isNodeInsideMultiPolygon(n, (Relation) e.osm)) {
                         e.child = n;
                     }
                 }
@@ -251,8 +259,8 @@ public interface Selector {
             @Override
             public void visit(Way w) {
                 if (e.child == null && left.matches(new Environment().withPrimitive(w))) {
-                    if (e.osm instanceof Way && Geometry.PolygonIntersection.FIRST_INSIDE_SECOND.equals(Geometry.polygonIntersection(w.getNodes(), ((Way) e.osm).getNodes()))
-                            || e.osm instanceof Relation && ((Relation) e.osm).isMultipolygon() && Geometry.isPolygonInsideMultiPolygon(w.getNodes(), (Relation) e.osm, null)) {
+                    if (e.osm instanceof Way && Geometry.PolygonIntersection.FIRST_INSIDE_SECOND.equals(geometry.polygonIntersection(w, (Way) e.osm))
+                            || e.osm instanceof Relation && ((Relation) e.osm).isMultipolygon() && geometry.isPolygonInsideMultiPolygon(w, (Relation) e.osm)) {
                         e.child = w;
                     }
                 }
@@ -285,10 +293,11 @@ public interface Selector {
                             e.osm.getReferrers(), Predicates.hasTag("type", "multipolygon")), Relation.class);
                     final Relation multipolygon = multipolygons.iterator().next();
                     if (multipolygon == null) throw new NoSuchElementException();
+                    final Set<OsmPrimitive> members = multipolygon.getMemberPrimitives();
                     containsFinder = new ContainsFinder(new Environment().withPrimitive(multipolygon)) {
                         @Override
                         public boolean isPrimitiveUsable(OsmPrimitive p) {
-                            return super.isPrimitiveUsable(p) && !multipolygon.getMemberPrimitives().contains(p);
+                            return super.isPrimitiveUsable(p) && !members.contains(p);
                         }
                     };
                 } catch (NoSuchElementException ignore) {
@@ -0,0 +1,186 @@
+/* Generated By:JavaCC: Do not edit this line. MapCSSParserConstants.java */
+package org.openstreetmap.josm.gui.mappaint.mapcss.parsergen;
+
+
+/**
+ * Token literal values and constants.
+ * Generated by org.javacc.parser.OtherFilesGen#start()
+ */
+public interface MapCSSParserConstants {
+
+  /** End of File. */
+  int EOF = 0;
+  /** RegularExpression Id. */
+  int PP_AND = 1;
+  /** RegularExpression Id. */
+  int PP_NOT = 2;
+  /** RegularExpression Id. */
+  int PP_MEDIA = 3;
+  /** RegularExpression Id. */
+  int PP_NEWLINECHAR = 4;
+  /** RegularExpression Id. */
+  int PP_WHITESPACE = 5;
+  /** RegularExpression Id. */
+  int PP_COMMENT_START = 6;
+  /** RegularExpression Id. */
+  int PP_COMMENT_END = 7;
+  /** RegularExpression Id. */
+  int SET = 9;
+  /** RegularExpression Id. */
+  int IDENT = 10;
+  /** RegularExpression Id. */
+  int UINT = 11;
+  /** RegularExpression Id. */
+  int STRING = 12;
+  /** RegularExpression Id. */
+  int PREDEFINED = 13;
+  /** RegularExpression Id. */
+  int REGEX_CHAR_WITHOUT_STAR = 14;
+  /** RegularExpression Id. */
+  int REGEX = 15;
+  /** RegularExpression Id. */
+  int LBRACE = 16;
+  /** RegularExpression Id. */
+  int RBRACE = 17;
+  /** RegularExpression Id. */
+  int LPAR = 18;
+  /** RegularExpression Id. */
+  int RPAR = 19;
+  /** RegularExpression Id. */
+  int COMMA = 20;
+  /** RegularExpression Id. */
+  int COLON = 21;
+  /** RegularExpression Id. */
+  int PP_SOMETHING_ELSE = 22;
+  /** RegularExpression Id. */
+  int UFLOAT = 23;
+  /** RegularExpression Id. */
+  int H = 24;
+  /** RegularExpression Id. */
+  int HEXCOLOR = 25;
+  /** RegularExpression Id. */
+  int S = 26;
+  /** RegularExpression Id. */
+  int STAR = 27;
+  /** RegularExpression Id. */
+  int SLASH = 28;
+  /** RegularExpression Id. */
+  int LSQUARE = 29;
+  /** RegularExpression Id. */
+  int RSQUARE = 30;
+  /** RegularExpression Id. */
+  int GREATER_EQUAL = 31;
+  /** RegularExpression Id. */
+  int LESS_EQUAL = 32;
+  /** RegularExpression Id. */
+  int GREATER = 33;
+  /** RegularExpression Id. */
+  int LESS = 34;
+  /** RegularExpression Id. */
+  int EQUAL = 35;
+  /** RegularExpression Id. */
+  int EXCLAMATION = 36;
+  /** RegularExpression Id. */
+  int TILDE = 37;
+  /** RegularExpression Id. */
+  int DCOLON = 38;
+  /** RegularExpression Id. */
+  int SEMICOLON = 39;
+  /** RegularExpression Id. */
+  int PIPE = 40;
+  /** RegularExpression Id. */
+  int PIPE_Z = 41;
+  /** RegularExpression Id. */
+  int PLUS = 42;
+  /** RegularExpression Id. */
+  int MINUS = 43;
+  /** RegularExpression Id. */
+  int AMPERSAND = 44;
+  /** RegularExpression Id. */
+  int QUESTION = 45;
+  /** RegularExpression Id. */
+  int DOLLAR = 46;
+  /** RegularExpression Id. */
+  int CARET = 47;
+  /** RegularExpression Id. */
+  int FULLSTOP = 48;
+  /** RegularExpression Id. */
+  int ELEMENT_OF = 49;
+  /** RegularExpression Id. */
+  int CROSSING = 50;
+  /** RegularExpression Id. */
+  int COMMENT_START = 51;
+  /** RegularExpression Id. */
+  int UNEXPECTED_CHAR = 52;
+  /** RegularExpression Id. */
+  int COMMENT_END = 53;
+
+  /** Lexical state. */
+  int PREPROCESSOR = 0;
+  /** Lexical state. */
+  int PP_COMMENT = 1;
+  /** Lexical state. */
+  int DEFAULT = 2;
+  /** Lexical state. */
+  int COMMENT = 3;
+
+  /** Literal token values. */
+  String[] tokenImage = {
+    "<EOF>",
+    "\"and\"",
+    "\"not\"",
+    "\"@media\"",
+    "<PP_NEWLINECHAR>",
+    "<PP_WHITESPACE>",
+    "\"/*\"",
+    "\"*/\"",
+    "<token of kind 8>",
+    "\"set\"",
+    "<IDENT>",
+    "<UINT>",
+    "<STRING>",
+    "<PREDEFINED>",
+    "<REGEX_CHAR_WITHOUT_STAR>",
+    "<REGEX>",
+    "\"{\"",
+    "\"}\"",
+    "\"(\"",
+    "\")\"",
+    "\",\"",
+    "\":\"",
+    "<PP_SOMETHING_ELSE>",
+    "<UFLOAT>",
+    "<H>",
+    "<HEXCOLOR>",
+    "<S>",
+    "\"*\"",
+    "\"/\"",
+    "\"[\"",
+    "\"]\"",
+    "\">=\"",
+    "\"<=\"",
+    "\">\"",
+    "\"<\"",
+    "\"=\"",
+    "\"!\"",
+    "\"~\"",
+    "\"::\"",
+    "\";\"",
+    "\"|\"",
+    "\"|z\"",
+    "\"+\"",
+    "\"-\"",
+    "\"&\"",
+    "\"?\"",
+    "\"$\"",
+    "\"^\"",
+    "\".\"",
+    "\"\\u2208\"",
+    "\"\\u29c9\"",
+    "\"/*\"",
+    "<UNEXPECTED_CHAR>",
+    "\"*/\"",
+    "<token of kind 54>",
+  };
+
+}
@@ -17,6 +17,7 @@ import javax.swing.JLabel;
 import javax.swing.JPanel;
 
 import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.validation.IncrementalValidator;
 import org.openstreetmap.josm.data.validation.OsmValidator;
 import org.openstreetmap.josm.data.validation.Test;
 import org.openstreetmap.josm.data.validation.tests.MapCSSTagChecker;
@@ -48,6 +49,7 @@ public class ValidatorTestsPreference implements SubPreferenceSetting {
     private JCheckBox prefUseLayer;
     private JCheckBox prefOtherUpload;
     private JCheckBox prefOther;
+    private JCheckBox prefIncremental;
 
     /** The list of all tests */
     private Collection<Test> allTests;
@@ -73,6 +75,10 @@ public class ValidatorTestsPreference implements SubPreferenceSetting {
         prefOtherUpload.setToolTipText(tr("Show the informational tests in the upload check windows."));
         testPanel.add(prefOtherUpload, GBC.eol());
 
+        prefIncremental = new JCheckBox(tr("Validate while editing."), IncrementalValidator.PREF_INCREMENTAL.get());
+        prefIncremental.setToolTipText(tr("Run the tests on the modified elements and their neighbours after each change."));
+        testPanel.add(prefIncremental, GBC.eol());
+
         ActionListener otherUploadEnabled = new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
@@ -124,6 +130,7 @@ public class ValidatorTestsPreference implements SubPreferenceSetting {
         ValidatorPreference.PREF_OTHER.put(prefOther.isSelected());
         Main.pref.put(ValidatorPreference.PREF_OTHER_UPLOAD, prefOtherUpload.isSelected());
         Main.pref.put(ValidatorPreference.PREF_LAYER, prefUseLayer.isSelected());
+        IncrementalValidator.PREF_INCREMENTAL.put(prefIncremental.isSelected());
         return false;
     }
 
@@ -16,11 +16,13 @@ import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
 import org.openstreetmap.josm.data.osm.PrimitiveId;
+import org.openstreetmap.josm.data.osm.PrimitiveIdMap;
 import org.openstreetmap.josm.data.osm.Relation;
 import org.openstreetmap.josm.data.osm.RelationMember;
 import org.openstreetmap.josm.data.osm.RelationMemberData;
 import org.openstreetmap.josm.data.osm.SimplePrimitiveId;
 import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.tools.LongList;
 
 /**
  * Abstract Reader, allowing other implementations than OsmReader (PbfReader in PBF plugin for example)
@@ -38,12 +40,14 @@ public abstract class AbstractReader {
 
     /** the map from external ids to read OsmPrimitives. External ids are
      * longs too, but in contrast to internal ids negative values are used
-     * to identify primitives unknown to the OSM server
+     * to identify primitives unknown to the OSM server. A {@link PrimitiveIdMap} is used
+     * to avoid allocating a key and an entry object per parsed primitive.
      */
-    protected final Map<PrimitiveId, OsmPrimitive> externalIdMap = new HashMap<>();
+    protected final Map<PrimitiveId, OsmPrimitive> externalIdMap = new PrimitiveIdMap<>();
 
     /**
-     * Data structure for the remaining way objects
+     * Data structure for the remaining way objects. Use a {@link LongList} for the node ids,
+     * it does not box them.
      */
     protected final Map<Long, Collection<Long>> ways = new HashMap<>();
 
@@ -0,0 +1,169 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.openstreetmap.josm.Main;
+
+/**
+ * Shared parts of {@link ParallelBZip2InputStream} and {@link ParallelBZip2OutputStream}: the thread pool, the
+ * constants of the bzip2 format and the helpers to handle its bit stream.
+ */
+final class BZip2Blocks {
+
+    /** Number of threads compressing or decompressing blocks, 1 disables the parallel streams */
+    static final int NUMBER_OF_THREADS = Main.pref.getInteger("bzip2.numberOfThreads",
+            Runtime.getRuntime().availableProcessors());
+
+    /** Magic number at the beginning of each block, the BCD of pi */
+    static final long BLOCK_MAGIC = 0x314159265359L;
+    /** Magic number at the end of each stream, the BCD of sqrt(pi) */
+    static final long END_OF_STREAM_MAGIC = 0x177245385090L;
+    static final int MAGIC_BITS = 48;
+    static final long MAGIC_MASK = (1L << MAGIC_BITS) - 1;
+
+    private static final int[] CRC_TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int c = i << 24;
+            for (int j = 0; j < 8; j++) {
+                c = (c & 0x80000000) != 0 ? (c << 1) ^ 0x04c11db7 : c << 1;
+            }
+            CRC_TABLE[i] = c;
+        }
+    }
+
+    private static ExecutorService pool;
+
+    private BZip2Blocks() {
+        // Hide default constructor for utils classes
+    }
+
+    static synchronized ExecutorService getPool() {
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(NUMBER_OF_THREADS, new ThreadFactory() {
+                private int count;
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "bzip2-" + (++count));
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return pool;
+    }
+
+    /**
+     * Replies the bzip2 CRC of the given data, the one stored with each block.
+     * @param data the uncompressed data of a block
+     * @param length the length of the data
+     * @return the CRC
+     */
+    static int computeCRC(byte[] data, int length) {
+        int crc = 0xffffffff;
+        for (int i = 0; i < length; i++) {
+            crc = (crc << 8) ^ CRC_TABLE[((crc >>> 24) ^ data[i]) & 0xff];
+        }
+        return ~crc;
+    }
+
+    /**
+     * Replies the CRC of a stream after a block.
+     * @param combinedCRC the CRC of the stream before the block
+     * @param blockCRC the CRC of the block
+     * @return the CRC of the stream
+     */
+    static int combineCRC(int combinedCRC, int blockCRC) {
+        return ((combinedCRC << 1) | (combinedCRC >>> 31)) ^ blockCRC;
+    }
+
+    /**
+     * A growable sequence of bits, most significant bit first.
+     */
+    static final class BitBuffer {
+        private byte[] data;
+        private long length;
+
+        BitBuffer(int capacity) {
+            data = new byte[Math.max(16, capacity)];
+        }
+
+        /**
+         * Appends the {@code n} lower bits of the given value.
+         */
+        void write(long value, int n) {
+            ensureCapacity(length + n);
+            while (n > 0) {
+                int free = 8 - (int) (length & 7);
+                int take = Math.min(free, n);
+                int bits = (int) (value >>> (n - take)) & ((1 << take) - 1);
+                data[(int) (length >>> 3)] |= bits << (free - take);
+                length += take;
+                n -= take;
+            }
+        }
+
+        void append(BitBuffer other) {
+            long full = other.length >>> 3;
+            ensureCapacity(length + other.length);
+            for (int i = 0; i < full; i++) {
+                write(other.data[i] & 0xff, 8);
+            }
+            int rest = (int) (other.length & 7);
+            if (rest > 0) {
+                write((other.data[(int) full] & 0xff) >>> (8 - rest), rest);
+            }
+        }
+
+        /**
+         * Reads {@code n} bits at the given position.
+         */
+        long read(long position, int n) {
+            long result = 0;
+            for (int i = 0; i < n; i++) {
+                long p = position + i;
+                result = (result << 1) | ((data[(int) (p >>> 3)] >>> (7 - (int) (p & 7))) & 1);
+            }
+            return result;
+        }
+
+        /**
+         * Forgets the bits after the given length.
+         */
+        void truncate(long newLength) {
+            int from = (int) (newLength >>> 3);
+            int rest = (int) (newLength & 7);
+            int end = (int) ((length + 7) >>> 3);
+            if (rest > 0) {
+                data[from] &= (byte) (0xff << (8 - rest));
+                from++;
+            }
+            Arrays.fill(data, from, Math.max(from, end), (byte) 0);
+            length = newLength;
+        }
+
+        long length() {
+            return length;
+        }
+
+        /**
+         * Replies the bits, padded with zeros to a byte boundary.
+         */
+        byte[] toByteArray() {
+            return Arrays.copyOf(data, (int) ((length + 7) >>> 3));
+        }
+
+        private void ensureCapacity(long bits) {
+            long bytes = (bits + 7) >>> 3;
+            if (bytes > data.length) {
+                data = Arrays.copyOf(data, (int) Math.max(bytes, 2L * data.length));
+            }
+        }
+    }
+}
@@ -17,6 +17,9 @@ import org.openstreetmap.josm.tools.Utils;
 
 /**
  * An enum representing the compression type of a resource.
+ * <p>
+ * Bzip2 data is compressed and decompressed on several threads, see {@link ParallelBZip2InputStream} and
+ * {@link ParallelBZip2OutputStream}, unless the preference {@code bzip2.numberOfThreads} is set to 1.
  */
 public enum Compression {
     /**
@@ -59,7 +62,7 @@ public enum Compression {
     public InputStream getUncompressedInputStream(InputStream in) throws IOException {
         switch (this) {
             case BZIP2:
-                return Utils.getBZip2InputStream(in);
+                return ParallelBZip2InputStream.isEnabled() ? new ParallelBZip2InputStream(in) : Utils.getBZip2InputStream(in);
             case GZIP:
                 return Utils.getGZipInputStream(in);
             case ZIP:
@@ -97,6 +100,8 @@ public enum Compression {
     public OutputStream getCompressedOutputStream(OutputStream out) throws IOException {
         switch (this) {
             case BZIP2:
+                if (ParallelBZip2InputStream.isEnabled())
+                    return new ParallelBZip2OutputStream(out);
                 out.write('B');
                 out.write('Z');
                 return new CBZip2OutputStream(out);
@@ -7,21 +7,26 @@ import static org.openstreetmap.josm.tools.I18n.trn;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
-import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
-import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorCompletionService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.openstreetmap.josm.Main;
 import org.openstreetmap.josm.data.osm.DataSet;
@@ -58,12 +63,26 @@ import org.openstreetmap.josm.tools.CheckParameterUtil;
  */
 public class MultiFetchServerObjectReader extends OsmServerReader{
     /**
-     * the max. number of primitives retrieved in one step. Assuming IDs with 7 digits,
-     * this leads to a max. request URL of ~ 1600 Bytes ((7 digits +  1 Separator) * 200),
+     * the default max. length of a request URL. The number of primitives retrieved in one step is
+     * computed from it, see {@link #extractIdPackage(Set)}. This is ~ 240 IDs with 7 digits,
      * which should be safe according to the
      * <a href="http://www.boutell.com/newfaq/misc/urllength.html">WWW FAQ</a>.
      */
-    private static final int MAX_IDS_PER_REQUEST = 200;
+    private static final int DEFAULT_MAX_URL_LENGTH = 2000;
+
+    /**
+     * the max. number of concurrent requests for servers other than openstreetmap.org,
+     * which are limited to {@link OsmApi#MAX_DOWNLOAD_THREADS}.
+     */
+    private static final int MAX_THREADS = 8;
+
+    /** the executor shared by all readers, its idle threads are stopped */
+    private static ThreadPoolExecutor executor;
+
+    /** HTTP status replied when the rate limit of the server is exceeded */
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    /** HTTP status replied by openstreetmap.org when the download quota is exceeded */
+    private static final int HTTP_BANDWIDTH_LIMIT_EXCEEDED = 509;
 
     private Set<Long> nodes;
     private Set<Long> ways;
@@ -231,25 +250,27 @@ public class MultiFetchServerObjectReader extends OsmServerReader{
     }
 
     /**
-     * extracts a subset of max {@link #MAX_IDS_PER_REQUEST} ids from <code>ids</code> and
-     * replies the subset. The extracted subset is removed from <code>ids</code>.
+     * extracts a subset of ids from <code>ids</code> and replies the subset. The extracted subset is
+     * removed from <code>ids</code>. The size of the subset is limited by the max. length of a request URL,
+     * given by the preference {@code osm-server.max-url-length}.
      *
      * @param ids a set of ids
      * @return the subset of ids
      */
     protected Set<Long> extractIdPackage(Set<Long> ids) {
-        HashSet<Long> pkg = new HashSet<>();
-        if (ids.isEmpty())
-            return pkg;
-        if (ids.size() > MAX_IDS_PER_REQUEST) {
-            Iterator<Long> it = ids.iterator();
-            for (int i=0; i<MAX_IDS_PER_REQUEST; i++) {
-                pkg.add(it.next());
+        Set<Long> pkg = new LinkedHashSet<>();
+        // the longest request prefix is "relations?relations="
+        int remaining = Main.pref.getInteger("osm-server.max-url-length", DEFAULT_MAX_URL_LENGTH)
+                - OsmApi.getOsmApi().getBaseUrl().length() - 20;
+        Iterator<Long> it = ids.iterator();
+        while (it.hasNext()) {
+            Long id = it.next();
+            remaining -= Long.toString(id).length() + 1;
+            if (remaining < 0 && !pkg.isEmpty()) {
+                break;
             }
-            ids.removeAll(pkg);
-        } else {
-            pkg.addAll(ids);
-            ids.clear();
+            pkg.add(id);
+            it.remove();
         }
         return pkg;
     }
@@ -315,9 +336,50 @@ public class MultiFetchServerObjectReader extends OsmServerReader{
         visitor.merge();
     }
 
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private int count;
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "multi-fetch-" + (++count));
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+
+    /**
+     * Replies the max. number of concurrent requests, given by the preference {@code osm.download.threads}.
+     * @return the max. number of concurrent requests
+     */
+    protected static int getMaxConcurrency() {
+        int threadsNumber = Main.pref.getInteger("osm.download.threads", OsmApi.MAX_DOWNLOAD_THREADS);
+        // the usage policy of openstreetmap.org limits the number of download threads
+        int max = OsmApi.getOsmApi().getBaseUrl().matches(".*openstreetmap.org/api.*") ? OsmApi.MAX_DOWNLOAD_THREADS : MAX_THREADS;
+        return Math.min(Math.max(threadsNumber, 1), max);
+    }
+
+    private static boolean isThrottled(Throwable t) {
+        if (t instanceof OsmApiException) {
+            int code = ((OsmApiException) t).getResponseCode();
+            return code == HTTP_TOO_MANY_REQUESTS || code == HTTP_BANDWIDTH_LIMIT_EXCEEDED;
+        }
+        return false;
+    }
+
     /**
      * fetches a set of ids of a given {@link OsmPrimitiveType} from the server
      *
+     * The packages of ids are fetched by concurrent requests, and the fetched primitives are merged
+     * as soon as each request completes. The number of concurrent requests adapts to the server, see
+     * {@link AdaptiveConcurrency}: packages refused because of the rate limits of the server are fetched again later.
+     *
      * @param ids the set of ids
      * @param type The primitive type. Must be one of {@link OsmPrimitiveType#NODE NODE}, {@link OsmPrimitiveType#WAY WAY}, {@link OsmPrimitiveType#RELATION RELATION}
      * @throws OsmTransferException if an error occurs while communicating with the API server
@@ -333,36 +395,57 @@ public class MultiFetchServerObjectReader extends OsmServerReader{
         progressMonitor.setTicksCount(ids.size());
         progressMonitor.setTicks(0);
         // The complete set containg all primitives to fetch
-        Set<Long> toFetch = new HashSet<>(ids);
-        // Build a list of fetchers that will  download smaller sets containing only MAX_IDS_PER_REQUEST (200) primitives each.
-        // we will run up to MAX_DOWNLOAD_THREADS concurrent fetchers.
-        int threadsNumber = Main.pref.getInteger("osm.download.threads", OsmApi.MAX_DOWNLOAD_THREADS);
-        threadsNumber = Math.min(Math.max(threadsNumber, 1), OsmApi.MAX_DOWNLOAD_THREADS);
-        Executor exec = Executors.newFixedThreadPool(threadsNumber);
-        CompletionService<FetchResult> ecs = new ExecutorCompletionService<>(exec);
-        List<Future<FetchResult>> jobs = new ArrayList<>();
-        while (!toFetch.isEmpty()) {
-            jobs.add(ecs.submit(new Fetcher(type, extractIdPackage(toFetch), progressMonitor)));
-        }
-        // Run the fetchers
-        for (int i = 0; i < jobs.size() && !isCanceled(); i++) {
-            progressMonitor.subTask(msg + "... " + progressMonitor.getTicks() + "/" + progressMonitor.getTicksCount());
-            try {
-                FetchResult result = ecs.take().get();
-                if (result.missingPrimitives != null) {
-                    missingPrimitives.addAll(result.missingPrimitives);
+        Set<Long> toFetch = new LinkedHashSet<>(ids);
+        // The packages refused by the server because of its rate limits
+        Deque<Fetcher> throttled = new ArrayDeque<>();
+        AdaptiveConcurrency concurrency = new AdaptiveConcurrency(getMaxConcurrency());
+        int maxRetries = Math.max(Main.pref.getInteger("osm-server.max-num-retries", OsmApi.DEFAULT_MAX_NUM_RETRIES), 0);
+        CompletionService<FetchResult> ecs = new ExecutorCompletionService<>(getExecutor());
+        Map<Future<FetchResult>, Fetcher> jobs = new HashMap<>();
+        try {
+            while ((!toFetch.isEmpty() || !throttled.isEmpty() || !jobs.isEmpty()) && !isCanceled()) {
+                // Run up to the current limit of concurrent fetchers
+                while (jobs.size() < concurrency.getLimit() && (!toFetch.isEmpty() || !throttled.isEmpty())) {
+                    Fetcher fetcher = !throttled.isEmpty() ? throttled.remove() : new Fetcher(type, extractIdPackage(toFetch), progressMonitor);
+                    jobs.put(ecs.submit(fetcher), fetcher);
                 }
-                if (result.dataSet != null && !isCanceled()) {
-                    rememberNodesOfIncompleteWaysToLoad(result.dataSet);
-                    merge(result.dataSet);
+                progressMonitor.subTask(msg + "... " + progressMonitor.getTicks() + "/" + progressMonitor.getTicksCount());
+                Future<FetchResult> job = ecs.take();
+                Fetcher fetcher = jobs.remove(job);
+                try {
+                    FetchResult result = job.get();
+                    concurrency.succeeded(fetcher.getDuration(), fetcher.pkg.size());
+                    if (result == null) {
+                        continue;
+                    }
+                    if (result.missingPrimitives != null) {
+                        missingPrimitives.addAll(result.missingPrimitives);
+                    }
+                    if (result.dataSet != null && !isCanceled()) {
+                        rememberNodesOfIncompleteWaysToLoad(result.dataSet);
+                        merge(result.dataSet);
+                    }
+                } catch (ExecutionException e) {
+                    if (isThrottled(e.getCause()) && fetcher.attempts++ < maxRetries) {
+                        concurrency.throttled();
+                        Main.info(tr("Server is busy, retrying in {0} ms with {1} concurrent requests.",
+                                concurrency.getBackoff(), concurrency.getLimit()));
+                        throttled.add(fetcher);
+                        long end = System.currentTimeMillis() + concurrency.getBackoff();
+                        while (System.currentTimeMillis() < end && !isCanceled()) {
+                            Thread.sleep(100);
+                        }
+                    } else {
+                        Main.error(e);
+                    }
                 }
-            } catch (InterruptedException | ExecutionException e) {
-                Main.error(e);
             }
-        }
-        // Cancel requests if the user choosed to
-        if (isCanceled()) {
-            for (Future<FetchResult> job : jobs) {
+        } catch (InterruptedException e) {
+            Main.error(e);
+            Thread.currentThread().interrupt();
+        } finally {
+            // Cancel requests if the user choosed to
+            for (Future<FetchResult> job : jobs.keySet()) {
                 job.cancel(true);
             }
         }
@@ -390,6 +473,9 @@ public class MultiFetchServerObjectReader extends OsmServerReader{
         try {
             missingPrimitives = new HashSet<>();
             if (isCanceled()) return null;
+            // initialize the API once, before the concurrent requests
+            OsmApi.getOsmApi().initialize(progressMonitor);
+            if (isCanceled()) return null;
             fetchPrimitives(ways,OsmPrimitiveType.WAY, progressMonitor);
             if (isCanceled()) return null;
             fetchPrimitives(nodes,OsmPrimitiveType.NODE, progressMonitor);
@@ -415,6 +501,70 @@ public class MultiFetchServerObjectReader extends OsmServerReader{
         return missingPrimitives;
     }
 
+    /**
+     * Adapts the number of concurrent requests to the server.
+     * <p>
+     * The limit is halved when the server refuses a request because of its rate limits (HTTP 429 or 509), and the
+     * following requests wait for an increasing delay. Otherwise the limit grows by one after each successful request,
+     * up to the max. number of requests, unless the request took much longer per primitive than the fastest one
+     * seen so far: the server is slowing down, the limit is decreased by one.
+     */
+    protected static class AdaptiveConcurrency {
+        private final int max;
+        private int limit;
+        private double minCost = Double.MAX_VALUE;
+        private int throttles;
+
+        /**
+         * Constructs a new {@code AdaptiveConcurrency}.
+         * @param max the max. number of concurrent requests, also the initial limit
+         */
+        public AdaptiveConcurrency(int max) {
+            this.max = max;
+            this.limit = max;
+        }
+
+        /**
+         * Replies the current max. number of concurrent requests.
+         * @return the current max. number of concurrent requests
+         */
+        public int getLimit() {
+            return limit;
+        }
+
+        /**
+         * Replies the delay before the next request after the server refused one.
+         * @return the delay in milliseconds
+         */
+        public long getBackoff() {
+            return throttles == 0 ? 0 : Math.min(30000, 500L << Math.min(throttles - 1, 6));
+        }
+
+        /**
+         * Records a successful request.
+         * @param duration the duration of the request in milliseconds
+         * @param count the number of primitives requested
+         */
+        public void succeeded(long duration, int count) {
+            throttles = 0;
+            double cost = (double) duration / Math.max(count, 1);
+            minCost = Math.min(minCost, cost);
+            if (duration > 100 && cost > 2 * minCost) {
+                limit = Math.max(1, limit - 1);
+            } else if (limit < max) {
+                limit++;
+            }
+        }
+
+        /**
+         * Records a request refused because of the rate limits of the server.
+         */
+        public void throttled() {
+            throttles++;
+            limit = Math.max(1, limit / 2);
+        }
+    }
+
     /**
      * The class holding the results given by {@link Fetcher}.
      * It is only a wrapper of the resulting {@link DataSet} and the collection of {@link PrimitiveId} that could not have been loaded.
@@ -452,6 +602,8 @@ public class MultiFetchServerObjectReader extends OsmServerReader{
         private final Set<Long> pkg;
         private final OsmPrimitiveType type;
         private final ProgressMonitor progressMonitor;
+        private long duration;
+        private int attempts;
 
         /**
          * Constructs a {@code Fetcher}
@@ -473,7 +625,20 @@ public class MultiFetchServerObjectReader extends OsmServerReader{
 
         @Override
         public FetchResult call() throws Exception {
-            return fetch(progressMonitor);
+            long start = System.currentTimeMillis();
+            try {
+                return fetch(progressMonitor);
+            } finally {
+                duration = System.currentTimeMillis() - start;
+            }
+        }
+
+        /**
+         * Replies the duration of the last call.
+         * @return the duration of the last call in milliseconds
+         */
+        public long getDuration() {
+            return duration;
         }
 
         /**
@@ -6,6 +6,7 @@ import static org.openstreetmap.josm.tools.I18n.trn;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -509,6 +510,21 @@ public class OsmApi extends OsmConnection {
      * @throws OsmTransferException if something is wrong
      */
     public Collection<IPrimitive> uploadDiff(Collection<? extends IPrimitive> list, ProgressMonitor monitor) throws OsmTransferException {
+        return uploadDiff(list, null, monitor);
+    }
+
+    /**
+     * Uploads a list of changes in "diff" form to the server, with a request prepared beforehand.
+     *
+     * @param list the list of changed OSM Primitives
+     * @param diffUploadRequest the request built by {@link #createDiffUploadRequest(Collection)} for {@code list},
+     * or {@code null} to build it now
+     * @param  monitor the progress monitor
+     * @return list of processed primitives
+     * @throws OsmTransferException if something is wrong
+     */
+    public Collection<IPrimitive> uploadDiff(Collection<? extends IPrimitive> list, byte[] diffUploadRequest, ProgressMonitor monitor)
+            throws OsmTransferException {
         try {
             monitor.beginTask("", list.size() * 2);
             if (changeset == null)
@@ -518,18 +534,17 @@ public class OsmApi extends OsmConnection {
 
             // prepare upload request
             //
-            OsmChangeBuilder changeBuilder = new OsmChangeBuilder(changeset);
-            monitor.subTask(tr("Preparing upload request..."));
-            changeBuilder.start();
-            changeBuilder.append(list);
-            changeBuilder.finish();
-            String diffUploadRequest = changeBuilder.getDocument();
+            if (diffUploadRequest == null) {
+                monitor.subTask(tr("Preparing upload request..."));
+                diffUploadRequest = createDiffUploadRequest(list);
+            }
 
             // Upload to the server
             //
             monitor.indeterminateSubTask(
                     trn("Uploading {0} object...", "Uploading {0} objects...", list.size(), list.size()));
-            String diffUploadResponse = sendRequest("POST", "changeset/" + changeset.getId() + "/upload", diffUploadRequest,monitor);
+            String diffUploadResponse = sendRequest("POST", "changeset/" + changeset.getId() + "/upload", diffUploadRequest,
+                    monitor, true, false, true);
 
             // Process the response from the server
             //
@@ -548,6 +563,29 @@ public class OsmApi extends OsmConnection {
         }
     }
 
+    /**
+     * Builds the osmChange document uploading a list of changes to the current changeset.
+     * <p>
+     * The document is encoded in UTF-8 and sent as is by {@link #uploadDiff(Collection, byte[], ProgressMonitor)}.
+     * It does not depend on the connection, so it can be built on another thread while a previous upload is running.
+     *
+     * @param list the list of changed OSM Primitives
+     * @return the osmChange document
+     * @throws OsmTransferException if no changeset is present
+     */
+    public byte[] createDiffUploadRequest(Collection<? extends IPrimitive> list) throws OsmTransferException {
+        Changeset cs = changeset;
+        if (cs == null)
+            throw new OsmTransferException(tr("No changeset present for diff upload."));
+        ByteArrayOutputStream request = new ByteArrayOutputStream(256 * list.size() + 256);
+        OsmChangeBuilder changeBuilder = new OsmChangeBuilder(cs, null,
+                new BufferedWriter(new OutputStreamWriter(request, StandardCharsets.UTF_8)));
+        changeBuilder.start();
+        changeBuilder.append(list);
+        changeBuilder.finish();
+        return request.toByteArray();
+    }
+
     private void sleepAndListen(int retry, ProgressMonitor monitor) throws OsmTransferCanceledException {
         Main.info(tr("Waiting 10 seconds ... "));
         for (int i=0; i < 10; i++) {
@@ -608,6 +646,30 @@ public class OsmApi extends OsmConnection {
      *    been exhausted), or rewrapping a Java exception.
      */
     protected final String sendRequest(String requestMethod, String urlSuffix,String requestBody, ProgressMonitor monitor, boolean doAuthenticate, boolean fastFail) throws OsmTransferException {
+        return sendRequest(requestMethod, urlSuffix, requestBody == null ? null : requestBody.getBytes(StandardCharsets.UTF_8),
+                monitor, doAuthenticate, fastFail, false);
+    }
+
+    /**
+     * Generic method for sending requests to the OSM API, with a body already encoded in UTF-8.
+     *
+     * @param requestMethod The http method used when talking with the server.
+     * @param urlSuffix The suffix to add at the server url
+     * @param requestBody the body of the HTTP request, if any.
+     * @param monitor the progress monitor
+     * @param doAuthenticate  set to true, if the request sent to the server shall include authentication
+     * credentials;
+     * @param fastFail true to request a short timeout
+     * @param streaming true to stream the body to the server, instead of buffering it once more in the connection.
+     * The request is sent again without streaming if the server asks for authentication.
+     *
+     * @return the body of the HTTP response, if and only if the response code was "200 OK".
+     * @throws OsmTransferException if the HTTP return code was not 200 (and retries have
+     *    been exhausted), or rewrapping a Java exception.
+     * @see #sendRequest(String, String, String, ProgressMonitor, boolean, boolean)
+     */
+    private String sendRequest(String requestMethod, String urlSuffix, byte[] requestBody, ProgressMonitor monitor,
+            boolean doAuthenticate, boolean fastFail, boolean streaming) throws OsmTransferException {
         StringBuilder responseBody = new StringBuilder();
         int retries = fastFail ? 0 : getMaxRetries();
 
@@ -615,7 +677,9 @@ public class OsmApi extends OsmConnection {
             try {
                 url = new URL(new URL(getBaseUrl()), urlSuffix);
                 Main.info(requestMethod + " " + url + "... ");
-                Main.debug(requestBody);
+                if (Main.isDebugEnabled() && requestBody != null) {
+                    Main.debug(new String(requestBody, StandardCharsets.UTF_8));
+                }
                 // fix #5369, see http://www.tikalk.com/java/forums/httpurlconnection-disable-keep-alive
                 activeConnection = Utils.openHttpConnection(url, false);
                 activeConnection.setConnectTimeout(fastFail ? 1000 : Main.pref.getInteger("socket.timeout.connect",15)*1000);
@@ -630,6 +694,9 @@ public class OsmApi extends OsmConnection {
                 if ("PUT".equals(requestMethod) || "POST".equals(requestMethod) || "DELETE".equals(requestMethod)) {
                     activeConnection.setDoOutput(true);
                     activeConnection.setRequestProperty("Content-type", "text/xml");
+                    if (streaming && requestBody != null) {
+                        activeConnection.setFixedLengthStreamingMode(requestBody.length);
+                    }
                     try (OutputStream out = activeConnection.getOutputStream()) {
                         // It seems that certain bits of the Ruby API are very unhappy upon
                         // receipt of a PUT/POST message without a Content-length header,
@@ -638,10 +705,8 @@ public class OsmApi extends OsmConnection {
                         // we use the output stream, we create an output stream for PUT/POST
                         // even if there is no payload.
                         if (requestBody != null) {
-                            try (BufferedWriter bwr = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
-                                bwr.write(requestBody);
-                                bwr.flush();
-                            }
+                            out.write(requestBody);
+                            out.flush();
                         }
                     }
                 }
@@ -650,6 +715,13 @@ public class OsmApi extends OsmConnection {
                 Main.info(activeConnection.getResponseMessage());
                 int retCode = activeConnection.getResponseCode();
 
+                if (streaming && retCode == HttpURLConnection.HTTP_UNAUTHORIZED) {
+                    // the authentication requested by the server can't be answered in streaming mode
+                    activeConnection.disconnect();
+                    streaming = false;
+                    continue;
+                }
+
                 if (retCode >= 500) {
                     if (retries-- > 0) {
                         sleepAndListen(retries, monitor);
@@ -0,0 +1,32 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.openstreetmap.josm.gui.layer.OsmDataLayer;
+
+/**
+ * OSM data exporter writing the compact binary format of JOSM, see {@link OsmBinaryWriter}.
+ */
+public class OsmBinaryExporter extends OsmExporter {
+
+    /**
+     * Constructs a new {@code OsmBinaryExporter}.
+     */
+    public OsmBinaryExporter() {
+        super(OsmBinaryImporter.FILE_FILTER);
+    }
+
+    @Override
+    protected void doSave(File file, OsmDataLayer layer) throws IOException {
+        try (OsmBinaryWriter w = new OsmBinaryWriter(getOutputStream(file))) {
+            layer.data.getReadLock().lock();
+            try {
+                w.write(layer.data);
+            } finally {
+                layer.data.getReadLock().unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.io.InputStream;
+
+import org.openstreetmap.josm.actions.ExtensionFileFilter;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+
+/**
+ * OSM data importer for the compact binary format of JOSM, see {@link OsmBinaryWriter}.
+ */
+public class OsmBinaryImporter extends OsmImporter {
+
+    /**
+     * File filter used to load/save JOSM binary OSM files.
+     */
+    public static final ExtensionFileFilter FILE_FILTER = new ExtensionFileFilter(
+            "osmbin", "osmbin", tr("JOSM binary OSM files") + " (*.osmbin)");
+
+    /**
+     * Constructs a new {@code OsmBinaryImporter}.
+     */
+    public OsmBinaryImporter() {
+        super(FILE_FILTER);
+    }
+
+    @Override
+    protected DataSet parseDataSet(InputStream in, ProgressMonitor progressMonitor) throws IllegalDataException {
+        return OsmBinaryReader.parseDataSet(in, progressMonitor);
+    }
+}
@@ -0,0 +1,392 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.DataSource;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.NodeData;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.PrimitiveData;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationData;
+import org.openstreetmap.josm.data.osm.RelationMemberData;
+import org.openstreetmap.josm.data.osm.User;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.WayData;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.tools.CheckParameterUtil;
+import org.openstreetmap.josm.tools.LongList;
+
+/**
+ * Reads the compact binary format of JOSM written by {@link OsmBinaryWriter}.
+ */
+public class OsmBinaryReader extends AbstractReader {
+
+    private static final OsmPrimitiveType[] TYPES = OsmPrimitiveType.values();
+
+    /** Number of primitives read between two progress updates */
+    private static final int PROGRESS_STEP = 10000;
+
+    private final Input in;
+    private final List<String> strings = new ArrayList<>();
+    private final Map<Long, User> osmUsers = new HashMap<>();
+    private final Map<String, User> localUsers = new HashMap<>();
+
+    private long lastId;
+    private long lastTimestamp;
+    private long lastLat;
+    private long lastLon;
+
+    private volatile boolean cancel;
+
+    /**
+     * Exception thrown after user cancelation.
+     */
+    private static final class ParsingCanceledException extends RuntimeException implements ImportCancelException {
+        ParsingCanceledException(String msg) {
+            super(msg);
+        }
+    }
+
+    protected OsmBinaryReader(InputStream source) {
+        this.in = new Input(source);
+    }
+
+    /**
+     * Reads an input stream through a buffer.
+     */
+    private static final class Input {
+        private final InputStream stream;
+        private final byte[] buffer = new byte[64 * 1024];
+        private int pos;
+        private int limit;
+
+        Input(InputStream stream) {
+            this.stream = stream;
+        }
+
+        private boolean fill() throws IOException {
+            limit = stream.read(buffer);
+            pos = 0;
+            return limit > 0;
+        }
+
+        int read() throws IOException {
+            if (pos >= limit && !fill())
+                throw new EOFException();
+            return buffer[pos++] & 0xff;
+        }
+
+        void read(byte[] b) throws IOException {
+            int off = 0;
+            while (off < b.length) {
+                if (pos >= limit && !fill())
+                    throw new EOFException();
+                int n = Math.min(b.length - off, limit - pos);
+                System.arraycopy(buffer, pos, b, off, n);
+                pos += n;
+                off += n;
+            }
+        }
+    }
+
+    protected void parse(ProgressMonitor progressMonitor) throws IOException, IllegalDataException {
+        byte[] magic = new byte[OsmBinaryWriter.MAGIC.length];
+        in.read(magic);
+        if (!Arrays.equals(magic, OsmBinaryWriter.MAGIC))
+            throw new IllegalDataException(tr("Not a JOSM binary OSM file"));
+        int version = readVarInt();
+        if (version != OsmBinaryWriter.FORMAT_VERSION)
+            throw new IllegalDataException(tr("Unsupported version: {0}", version));
+        int flags = readVarInt();
+        ds.setUploadDiscouraged((flags & OsmBinaryWriter.FLAG_UPLOAD_DISCOURAGED) != 0);
+        ds.setVersion(readString());
+
+        int dataSources = readVarInt();
+        for (int i = 0; i < dataSources; i++) {
+            Bounds bounds = new Bounds(readDouble(), readDouble(), readDouble(), readDouble());
+            ds.dataSources.add(new DataSource(bounds, readString()));
+        }
+
+        int count = readVarInt();
+        progressMonitor.setTicksCount(count / PROGRESS_STEP + 3);
+        lastId = 0;
+        for (int i = 0; i < count; i++) {
+            checkProgress(progressMonitor, i);
+            NodeData nd = new NodeData();
+            if ((readCommon(nd) & OsmBinaryWriter.FLAG_COORDINATES) != 0) {
+                lastLat += readSignedVarLong();
+                lastLon += readSignedVarLong();
+                nd.setCoor(new LatLon(OsmBinaryWriter.fromFixedPoint(lastLat), OsmBinaryWriter.fromFixedPoint(lastLon)));
+            }
+            Node n = new Node(nd.getId(), nd.getVersion());
+            n.setVisible(nd.isVisible());
+            n.load(nd);
+            readTags(n);
+            externalIdMap.put(nd.getPrimitiveId(), n);
+        }
+        progressMonitor.worked(1);
+
+        count = readVarInt();
+        lastId = 0;
+        for (int i = 0; i < count; i++) {
+            checkProgress(progressMonitor, i);
+            WayData wd = new WayData();
+            readCommon(wd);
+            Way w = new Way(wd.getId(), wd.getVersion());
+            w.setVisible(wd.isVisible());
+            w.load(wd);
+            readTags(w);
+            externalIdMap.put(wd.getPrimitiveId(), w);
+            int size = readVarInt();
+            LongList nodeIds = new LongList(size);
+            long ref = 0;
+            for (int j = 0; j < size; j++) {
+                ref += readSignedVarLong();
+                nodeIds.add(ref);
+            }
+            // like OsmReader, the nodes of deleted ways are dropped
+            ways.put(wd.getUniqueId(), w.isDeleted() ? new LongList(0) : nodeIds);
+        }
+        progressMonitor.worked(1);
+
+        count = readVarInt();
+        lastId = 0;
+        for (int i = 0; i < count; i++) {
+            checkProgress(progressMonitor, i);
+            RelationData rd = new RelationData();
+            readCommon(rd);
+            Relation r = new Relation(rd.getId(), rd.getVersion());
+            r.setVisible(rd.isVisible());
+            r.load(rd);
+            readTags(r);
+            externalIdMap.put(rd.getPrimitiveId(), r);
+            int size = readVarInt();
+            Collection<RelationMemberData> members = new ArrayList<>(size);
+            long ref = 0;
+            for (int j = 0; j < size; j++) {
+                int type = in.read();
+                if (type >= TYPES.length)
+                    throw new IllegalDataException(tr("Illegal value for attribute ''type'' on member {0} in relation {1}. Got {2}.",
+                            j, rd.getUniqueId(), type));
+                ref += readSignedVarLong();
+                members.add(new RelationMemberData(readString(), TYPES[type], ref));
+            }
+            relations.put(rd.getUniqueId(), members);
+        }
+        progressMonitor.worked(1);
+    }
+
+    private void checkProgress(ProgressMonitor progressMonitor, int i) {
+        if (i % PROGRESS_STEP == PROGRESS_STEP - 1) {
+            if (cancel)
+                throw new ParsingCanceledException(tr("Reading was canceled"));
+            progressMonitor.worked(1);
+        }
+    }
+
+    private int readCommon(PrimitiveData current) throws IOException, IllegalDataException {
+        int flags = readVarInt();
+        lastId += readSignedVarLong();
+        if (lastId == 0)
+            throw new IllegalDataException(tr("Illegal object with ID=0."));
+        current.setId(lastId);
+        current.setVersion(readVarInt());
+        int changeset = readVarInt();
+        if (changeset > 0 && !current.isNew()) {
+            current.setChangesetId(changeset);
+        }
+        if ((flags & OsmBinaryWriter.FLAG_TIMESTAMP) != 0) {
+            lastTimestamp += readSignedVarLong();
+            current.setTimestamp(new Date(lastTimestamp * 1000));
+        }
+        if ((flags & OsmBinaryWriter.FLAG_OSM_USER) != 0) {
+            long uid = readSignedVarLong();
+            List<String> names = readNames();
+            User user = osmUsers.get(uid);
+            if (user == null) {
+                user = User.createOsmUser(uid, names.isEmpty() ? null : names.get(0));
+                addNames(user, names);
+                osmUsers.put(uid, user);
+            }
+            current.setUser(user);
+        } else if ((flags & OsmBinaryWriter.FLAG_LOCAL_USER) != 0) {
+            List<String> names = readNames();
+            String name = names.isEmpty() ? "" : names.get(0);
+            User user = localUsers.get(name);
+            if (user == null) {
+                user = User.createLocalUser(name);
+                addNames(user, names);
+                localUsers.put(name, user);
+            }
+            current.setUser(user);
+        }
+        current.setVisible((flags & OsmBinaryWriter.FLAG_VISIBLE) != 0);
+        if ((flags & OsmBinaryWriter.FLAG_DELETED) != 0) {
+            current.setDeleted(true);
+        }
+        current.setModified((flags & OsmBinaryWriter.FLAG_MODIFIED) != 0);
+        return flags;
+    }
+
+    private List<String> readNames() throws IOException, IllegalDataException {
+        int count = readVarInt();
+        List<String> names = new ArrayList<>(Math.min(count, 16));
+        for (int i = 0; i < count; i++) {
+            names.add(readString());
+        }
+        return names;
+    }
+
+    private static void addNames(User user, List<String> names) {
+        for (int i = 1; i < names.size(); i++) {
+            user.addName(names.get(i));
+        }
+    }
+
+    private void readTags(OsmPrimitive p) throws IOException, IllegalDataException {
+        int count = readVarInt();
+        if (count == 0)
+            return;
+        // keeps the order of the tags, so that a saved file is written again identically
+        Map<String, String> map = new LinkedHashMap<>(2 * count);
+        for (int i = 0; i < count; i++) {
+            String key = readString();
+            map.put(key, readString());
+        }
+        p.setKeys(map);
+    }
+
+    private String readString() throws IOException, IllegalDataException {
+        int ref = readVarInt();
+        if (ref == OsmBinaryWriter.STRING_NULL)
+            return null;
+        if (ref >= OsmBinaryWriter.STRING_TABLE) {
+            int index = ref - OsmBinaryWriter.STRING_TABLE;
+            if (index >= strings.size())
+                throw new IllegalDataException(tr("Invalid string reference {0}", index));
+            return strings.get(index);
+        }
+        byte[] bytes = new byte[readVarInt()];
+        in.read(bytes);
+        String s = new String(bytes, StandardCharsets.UTF_8);
+        if (ref == OsmBinaryWriter.STRING_NEW) {
+            strings.add(s);
+        }
+        return s;
+    }
+
+    private double readDouble() throws IOException {
+        long bits = 0;
+        for (int i = 0; i < 8; i++) {
+            bits = (bits << 8) | in.read();
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    private int readVarInt() throws IOException, IllegalDataException {
+        long value = readVarLong();
+        if (value > Integer.MAX_VALUE)
+            throw new IllegalDataException(tr("Invalid value {0}", value));
+        return (int) value;
+    }
+
+    private long readSignedVarLong() throws IOException, IllegalDataException {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private long readVarLong() throws IOException, IllegalDataException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IllegalDataException(tr("Malformed variable length integer"));
+    }
+
+    protected DataSet doParseDataSet(ProgressMonitor progressMonitor) throws IllegalDataException {
+        if (progressMonitor == null) {
+            progressMonitor = NullProgressMonitor.INSTANCE;
+        }
+        ProgressMonitor.CancelListener cancelListener = new ProgressMonitor.CancelListener() {
+            @Override public void operationCanceled() {
+                cancel = true;
+            }
+        };
+        progressMonitor.addCancelListener(cancelListener);
+        try {
+            progressMonitor.beginTask(tr("Prepare OSM data..."));
+            progressMonitor.subTask(tr("Parsing OSM data..."));
+            parse(progressMonitor);
+            progressMonitor.subTask(tr("Preparing data set..."));
+            prepareDataSet();
+            return getDataSet();
+        } catch (EOFException e) {
+            throw new IllegalDataException(tr("Unexpected end of file"), e);
+        } catch (IOException e) {
+            throw new IllegalDataException(e);
+        } catch (ParsingCanceledException e) {
+            throw new IllegalDataException(e.getMessage(), e);
+        } finally {
+            progressMonitor.finishTask();
+            progressMonitor.removeCancelListener(cancelListener);
+        }
+    }
+
+    /**
+     * Parse the given input source and return the dataset.
+     *
+     * @param source the source input stream. Must not be null.
+     * @param progressMonitor  the progress monitor. If null, {@link NullProgressMonitor#INSTANCE} is assumed
+     *
+     * @return the dataset with the parsed data
+     * @throws IllegalDataException if an error was found while parsing the data from the source
+     * @throws IllegalArgumentException if source is null
+     */
+    public static DataSet parseDataSet(InputStream source, ProgressMonitor progressMonitor) throws IllegalDataException {
+        CheckParameterUtil.ensureParameterNotNull(source, "source");
+        return new OsmBinaryReader(source).doParseDataSet(progressMonitor);
+    }
+
+    /**
+     * Parse the given file and return the dataset.
+     *
+     * @param file the file. Must not be null.
+     * @param progressMonitor  the progress monitor. If null, {@link NullProgressMonitor#INSTANCE} is assumed
+     *
+     * @return the dataset with the parsed data
+     * @throws IOException if the file cannot be read
+     * @throws IllegalDataException if an error was found while parsing the data from the file
+     * @throws IllegalArgumentException if file is null
+     */
+    public static DataSet parseDataSet(File file, ProgressMonitor progressMonitor) throws IOException, IllegalDataException {
+        CheckParameterUtil.ensureParameterNotNull(file, "file");
+        try (InputStream in = new FileInputStream(file)) {
+            return parseDataSet(in, progressMonitor);
+        }
+    }
+}
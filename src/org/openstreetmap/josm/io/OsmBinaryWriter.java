@@ -0,0 +1,318 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openstreetmap.josm.data.osm.AbstractPrimitive;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.DataSource;
+import org.openstreetmap.josm.data.osm.KeyValueVisitor;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.User;
+import org.openstreetmap.josm.data.osm.Way;
+
+/**
+ * Writes a data set in the compact binary format of JOSM, read by {@link OsmBinaryReader}.
+ * <p>
+ * The format stores the same information than the {@code .osm} files written by {@link OsmWriter} for a data layer,
+ * including the state specific to JOSM (modified and deleted flags, negative ids, data sources, upload flag), but
+ * avoids the cost of XML:
+ * <ul>
+ * <li>numbers are written as variable length integers, ids, coordinates, timestamps and referenced ids as deltas
+ * to the previous value;</li>
+ * <li>coordinates are written as fixed point numbers with a precision of {@code 1e-9} degree;</li>
+ * <li>strings (tag keys and values, roles, user names) are written once and then referenced by their index in a
+ * string table.</li>
+ * </ul>
+ * Primitives are written sorted by id: nodes, then ways, then relations.
+ */
+public class OsmBinaryWriter implements Closeable {
+
+    /** Magic bytes at the beginning of a file */
+    static final byte[] MAGIC = {'J', 'O', 'S', 'M', 'B', 'I', 'N'};
+    /** Version of the format */
+    static final int FORMAT_VERSION = 1;
+
+    /** Multiplier converting degrees to the fixed point coordinates */
+    static final double COORDINATE_SCALE = 1e9;
+
+    /** Maximal length of the strings added to the string table, longer strings are rarely repeated */
+    static final int MAX_TABLE_STRING_LENGTH = 256;
+
+    /** String reference: new string added to the table */
+    static final int STRING_NEW = 0;
+    /** String reference: string not added to the table */
+    static final int STRING_INLINE = 1;
+    /** String reference: null string */
+    static final int STRING_NULL = 2;
+    /** First string reference to the table */
+    static final int STRING_TABLE = 3;
+
+    static final int FLAG_UPLOAD_DISCOURAGED = 0x01;
+
+    static final int FLAG_MODIFIED = 0x01;
+    static final int FLAG_DELETED = 0x02;
+    static final int FLAG_VISIBLE = 0x04;
+    static final int FLAG_TIMESTAMP = 0x08;
+    static final int FLAG_OSM_USER = 0x10;
+    static final int FLAG_LOCAL_USER = 0x20;
+    static final int FLAG_COORDINATES = 0x40;
+
+    private static final Comparator<OsmPrimitive> BY_ID = new Comparator<OsmPrimitive>() {
+        @Override
+        public int compare(OsmPrimitive o1, OsmPrimitive o2) {
+            return Long.compare(o1.getUniqueId(), o2.getUniqueId());
+        }
+    };
+
+    private final OutputStream out;
+    private final Map<String, Integer> strings = new HashMap<>();
+
+    /** Keys and values of the primitive being written */
+    private final List<String> tags = new ArrayList<>();
+    private final KeyValueVisitor tagCollector = new KeyValueVisitor() {
+        @Override
+        public void visitKeyValue(AbstractPrimitive primitive, String key, String value) {
+            tags.add(key);
+            tags.add(value);
+        }
+    };
+
+    private long lastId;
+    private long lastTimestamp;
+    private long lastLat;
+    private long lastLon;
+
+    /**
+     * Constructs a new {@code OsmBinaryWriter}.
+     * @param out the output stream. Buffered by the writer
+     */
+    public OsmBinaryWriter(OutputStream out) {
+        this.out = new BufferedOutputStream(out, 64 * 1024);
+    }
+
+    /**
+     * Writes the given data set. The caller should hold its read lock.
+     * @param ds the data set
+     * @throws IOException if an I/O error occurs
+     */
+    public void write(DataSet ds) throws IOException {
+        out.write(MAGIC);
+        writeVarInt(FORMAT_VERSION);
+        writeVarInt(ds.isUploadDiscouraged() ? FLAG_UPLOAD_DISCOURAGED : 0);
+        writeString(ds.getVersion());
+
+        writeVarInt(ds.dataSources.size());
+        for (DataSource s : ds.dataSources) {
+            writeDouble(s.bounds.getMinLat());
+            writeDouble(s.bounds.getMinLon());
+            writeDouble(s.bounds.getMaxLat());
+            writeDouble(s.bounds.getMaxLon());
+            writeString(s.origin);
+        }
+
+        List<Node> nodes = sortById(ds.getNodes());
+        writeVarInt(nodes.size());
+        lastId = 0;
+        for (Node n : nodes) {
+            writeCommon(n, n.getCoor() != null ? FLAG_COORDINATES : 0);
+            if (n.getCoor() != null) {
+                long lat = toFixedPoint(n.getCoor().lat());
+                long lon = toFixedPoint(n.getCoor().lon());
+                writeSignedVarLong(lat - lastLat);
+                writeSignedVarLong(lon - lastLon);
+                lastLat = lat;
+                lastLon = lon;
+            }
+            writeTags(n);
+        }
+
+        List<Way> ways = sortById(ds.getWays());
+        writeVarInt(ways.size());
+        lastId = 0;
+        for (Way w : ways) {
+            writeCommon(w, 0);
+            writeTags(w);
+            writeVarInt(w.getNodesCount());
+            long lastRef = 0;
+            for (int i = 0; i < w.getNodesCount(); i++) {
+                long ref = w.getNodeId(i);
+                writeSignedVarLong(ref - lastRef);
+                lastRef = ref;
+            }
+        }
+
+        List<Relation> relations = sortById(ds.getRelations());
+        writeVarInt(relations.size());
+        lastId = 0;
+        for (Relation r : relations) {
+            writeCommon(r, 0);
+            writeTags(r);
+            writeVarInt(r.getMembersCount());
+            long lastRef = 0;
+            for (RelationMember m : r.getMembers()) {
+                long ref = m.getUniqueId();
+                out.write(m.getType().ordinal());
+                writeSignedVarLong(ref - lastRef);
+                writeString(m.getRole());
+                lastRef = ref;
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Replies the primitives to write, sorted by id. Like in {@link OsmWriter}, incomplete primitives and new deleted
+     * primitives are skipped.
+     */
+    private static <T extends OsmPrimitive> List<T> sortById(Collection<T> primitives) {
+        List<T> result = new ArrayList<>(primitives.size());
+        for (T p : primitives) {
+            if (!p.isIncomplete() && (!p.isNewOrUndeleted() || !p.isDeleted())) {
+                result.add(p);
+            }
+        }
+        Collections.sort(result, BY_ID);
+        return result;
+    }
+
+    private void writeCommon(OsmPrimitive p, int flags) throws IOException {
+        if (p.isModified()) {
+            flags |= FLAG_MODIFIED;
+        }
+        if (p.isDeleted()) {
+            flags |= FLAG_DELETED;
+        }
+        if (p.isVisible()) {
+            flags |= FLAG_VISIBLE;
+        }
+        if (!p.isTimestampEmpty()) {
+            flags |= FLAG_TIMESTAMP;
+        }
+        User user = p.getUser();
+        if (user != null && user.isOsmUser()) {
+            flags |= FLAG_OSM_USER;
+        } else if (user != null && user.isLocalUser()) {
+            flags |= FLAG_LOCAL_USER;
+        }
+        writeVarInt(flags);
+        writeSignedVarLong(p.getUniqueId() - lastId);
+        lastId = p.getUniqueId();
+        writeVarInt(p.getVersion());
+        writeVarInt(p.isNew() ? 0 : p.getChangesetId());
+        if (!p.isTimestampEmpty()) {
+            long timestamp = p.getTimestamp().getTime() / 1000;
+            writeSignedVarLong(timestamp - lastTimestamp);
+            lastTimestamp = timestamp;
+        }
+        if ((flags & FLAG_OSM_USER) != 0) {
+            writeSignedVarLong(user.getId());
+            writeNames(user);
+        } else if ((flags & FLAG_LOCAL_USER) != 0) {
+            writeNames(user);
+        }
+    }
+
+    /**
+     * Writes the names of a user one by one, {@link User#getName()} would join the aliases into a single name.
+     */
+    private void writeNames(User user) throws IOException {
+        List<String> names = user.getNames();
+        Collections.sort(names);
+        writeVarInt(names.size());
+        for (String name : names) {
+            writeString(name);
+        }
+    }
+
+    private void writeTags(OsmPrimitive p) throws IOException {
+        tags.clear();
+        p.visitKeys(tagCollector);
+        writeVarInt(tags.size() / 2);
+        for (String s : tags) {
+            writeString(s);
+        }
+    }
+
+    private void writeString(String s) throws IOException {
+        if (s == null) {
+            writeVarInt(STRING_NULL);
+            return;
+        }
+        Integer index = strings.get(s);
+        if (index != null) {
+            writeVarInt(STRING_TABLE + index);
+            return;
+        }
+        if (s.length() <= MAX_TABLE_STRING_LENGTH) {
+            strings.put(s, strings.size());
+            writeVarInt(STRING_NEW);
+        } else {
+            writeVarInt(STRING_INLINE);
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeDouble(double d) throws IOException {
+        long bits = Double.doubleToLongBits(d);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (bits >>> shift));
+        }
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        writeVarLong(value & 0xffffffffL);
+    }
+
+    private void writeSignedVarLong(long value) throws IOException {
+        // zigzag encoding, small negative values use few bytes too
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * Replies the fixed point value of a coordinate.
+     * @param degrees the coordinate, in degrees
+     * @return the fixed point value
+     */
+    static long toFixedPoint(double degrees) {
+        return Math.round(degrees * COORDINATE_SCALE);
+    }
+
+    /**
+     * Replies the coordinate of a fixed point value.
+     * @param value the fixed point value
+     * @return the coordinate, in degrees
+     */
+    static double fromFixedPoint(long value) {
+        return value / COORDINATE_SCALE;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
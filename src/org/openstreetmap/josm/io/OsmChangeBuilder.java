@@ -5,6 +5,7 @@ import static org.openstreetmap.josm.tools.I18n.tr;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Collection;
 
 import org.openstreetmap.josm.data.osm.Changeset;
@@ -31,8 +32,18 @@ public class OsmChangeBuilder {
     }
 
     public OsmChangeBuilder(Changeset changeset, String apiVersion) {
+        this(changeset, apiVersion, null);
+    }
+
+    /**
+     * Constructs a new {@code OsmChangeBuilder} writing the document to the given writer.
+     * @param changeset the changeset
+     * @param apiVersion the API version, or {@code null} for the default API version
+     * @param out the writer receiving the document, or {@code null} to build it in memory, see {@link #getDocument()}
+     */
+    public OsmChangeBuilder(Changeset changeset, String apiVersion, Writer out) {
         this.apiVersion = apiVersion == null ? DEFAULT_API_VERSION : apiVersion;
-        writer = new PrintWriter(swriter = new StringWriter());
+        writer = new PrintWriter(out != null ? out : (swriter = new StringWriter()));
         osmwriter = OsmWriterFactory.createOsmWriter(writer, false, apiVersion);
         osmwriter.setChangeset(changeset);
         osmwriter.setIsOsmChange(true);
@@ -127,9 +138,14 @@ public class OsmChangeBuilder {
             writer.println(">");
         }
         writer.println("</osmChange>");
+        writer.flush();
     }
 
+    /**
+     * Replies the document built in memory.
+     * @return the document, or {@code null} if it has been written to the writer given to the constructor
+     */
     public String getDocument() {
-        return swriter.toString();
+        return swriter != null ? swriter.toString() : null;
     }
 }
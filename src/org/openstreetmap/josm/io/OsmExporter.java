@@ -58,6 +58,28 @@ public class OsmExporter extends FileExporter {
         return Compression.getCompressedFileOutputStream(file);
     }
 
+    /**
+     * Writes the data of the layer to the given file.
+     * @param file the file to write to
+     * @param layer the layer to save
+     * @throws IOException if an I/O error occurs
+     */
+    protected void doSave(File file, OsmDataLayer layer) throws IOException {
+        // create outputstream and wrap it with gzip or bzip, if necessary
+        try (
+            OutputStream out = getOutputStream(file);
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            OsmWriter w = OsmWriterFactory.createOsmWriter(new PrintWriter(writer), false, layer.data.getVersion());
+        ) {
+            layer.data.getReadLock().lock();
+            try {
+                w.writeLayer(layer);
+            } finally {
+                layer.data.getReadLock().unlock();
+            }
+        }
+    }
+
     private void save(File file, OsmDataLayer layer, boolean noBackup) {
         File tmpFile = null;
         try {
@@ -69,19 +91,7 @@ public class OsmExporter extends FileExporter {
                 Utils.copyFile(file, tmpFile);
             }
 
-            // create outputstream and wrap it with gzip or bzip, if necessary
-            try (
-                OutputStream out = getOutputStream(file);
-                Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
-                OsmWriter w = OsmWriterFactory.createOsmWriter(new PrintWriter(writer), false, layer.data.getVersion());
-            ) {
-                layer.data.getReadLock().lock();
-                try {
-                    w.writeLayer(layer);
-                } finally {
-                    layer.data.getReadLock().unlock();
-                }
-            }
+            doSave(file, layer);
             if (noBackup || !Main.pref.getBoolean("save.keepbackup", false)) {
                 if (tmpFile != null) {
                     tmpFile.delete();
@@ -85,9 +85,15 @@ public class OsmImporter extends FileImporter {
      * @param pm handler for progress monitoring and canceling
      */
     protected void importData(InputStream in, final File associatedFile, ProgressMonitor pm) throws IllegalDataException {
-        final OsmImporterData data = loadLayer(in, associatedFile,
-                associatedFile == null ? OsmDataLayer.createNewName() : associatedFile.getName(), pm);
+        addLayer(loadLayer(in, associatedFile,
+                associatedFile == null ? OsmDataLayer.createNewName() : associatedFile.getName(), pm));
+    }
 
+    /**
+     * Adds a loaded layer to the map view and runs its post layer task.
+     * @param data the loaded layer data
+     */
+    protected void addLayer(final OsmImporterData data) {
         // FIXME: remove UI stuff from IO subsystem
         GuiHelper.runInEDT(new Runnable() {
             @Override
@@ -111,13 +117,24 @@ public class OsmImporter extends FileImporter {
         if (dataSet == null) {
             throw new IllegalDataException(tr("Invalid dataset"));
         }
+        return createLayerData(dataSet, associatedFile, layerName);
+    }
+
+    /**
+     * Creates the layer data of a parsed data set.
+     * @param dataSet the parsed data set
+     * @param associatedFile filename of data (can be <code>null</code> if the stream does not come from a file)
+     * @param layerName name of generated layer
+     * @return the layer data
+     */
+    protected OsmImporterData createLayerData(final DataSet dataSet, final File associatedFile, final String layerName) {
         OsmDataLayer layer = createLayer(dataSet, associatedFile, layerName);
         Runnable postLayerTask = createPostLayerTask(dataSet, associatedFile, layerName, layer);
         return new OsmImporterData(layer, postLayerTask);
     }
 
     protected DataSet parseDataSet(InputStream in, ProgressMonitor progressMonitor) throws IllegalDataException {
-        return OsmReader.parseDataSet(in, progressMonitor);
+        return ParallelOsmReader.parseDataSet(in, progressMonitor);
     }
 
     protected OsmDataLayer createLayer(final DataSet dataSet, final File associatedFile, final String layerName) {
@@ -3,8 +3,10 @@ package org.openstreetmap.josm.io;
 
 import static org.openstreetmap.josm.tools.I18n.tr;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -38,6 +40,7 @@ import org.openstreetmap.josm.data.osm.WayData;
 import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.tools.CheckParameterUtil;
+import org.openstreetmap.josm.tools.LongList;
 import org.openstreetmap.josm.tools.date.DateUtils;
 
 /**
@@ -51,7 +54,7 @@ public class OsmReader extends AbstractReader {
 
     protected XMLStreamReader parser;
 
-    protected boolean cancel;
+    protected volatile boolean cancel;
 
     /** Used by plugins to register themselves as data postprocessors. */
     private static List<OsmServerReadPostprocessor> postprocessors;
@@ -107,6 +110,17 @@ public class OsmReader extends AbstractReader {
         parser.close();
     }
 
+    /**
+     * Parses the OSM data read from the given reader.
+     * @param reader the reader. It is not closed by this method
+     * @throws XMLStreamException if the data is not well-formed or not valid OSM data
+     * @throws IOException if an I/O error occurs
+     */
+    protected void parse(Reader reader) throws XMLStreamException, IOException {
+        setParser(XMLInputFactory.newInstance().createXMLStreamReader(reader));
+        parse();
+    }
+
     protected void parseRoot() throws XMLStreamException {
         if ("osm".equals(parser.getLocalName())) {
             parseOsm();
@@ -228,7 +242,7 @@ public class OsmReader extends AbstractReader {
         w.load(wd);
         externalIdMap.put(wd.getPrimitiveId(), w);
 
-        Collection<Long> nodeIds = new ArrayList<>();
+        LongList nodeIds = new LongList();
         while (true) {
             int event = parser.next();
             if (event == XMLStreamConstants.START_ELEMENT) {
@@ -248,7 +262,7 @@ public class OsmReader extends AbstractReader {
         }
         if (w.isDeleted() && !nodeIds.isEmpty()) {
             Main.info(tr("Deleted way {0} contains nodes", w.getUniqueId()));
-            nodeIds = new ArrayList<>();
+            nodeIds = new LongList(0);
         }
         ways.put(wd.getUniqueId(), nodeIds);
         return w;
@@ -533,7 +547,7 @@ public class OsmReader extends AbstractReader {
         return 0; // should not happen
     }
 
-    private static class OsmParsingException extends XMLStreamException {
+    static class OsmParsingException extends XMLStreamException {
 
         public OsmParsingException(String msg, Location location) {
             super(msg); /* cannot use super(msg, location) because it messes with the message preventing localization */
@@ -561,7 +575,7 @@ public class OsmReader extends AbstractReader {
     /**
      * Exception thrown after user cancelation.
      */
-    private static final class OsmParsingCanceledException extends OsmParsingException implements ImportCancelException {
+    static final class OsmParsingCanceledException extends OsmParsingException implements ImportCancelException {
         /**
          * Constructs a new {@code OsmParsingCanceledException}.
          * @param msg The error message
@@ -588,9 +602,7 @@ public class OsmReader extends AbstractReader {
             progressMonitor.indeterminateSubTask(tr("Parsing OSM data..."));
 
             try (InputStreamReader ir = UTFInputStreamReader.create(source)) {
-                XMLStreamReader parser = XMLInputFactory.newInstance().createXMLStreamReader(ir);
-                setParser(parser);
-                parse();
+                parse(ir);
             }
             progressMonitor.worked(1);
 
@@ -7,13 +7,26 @@ import static org.openstreetmap.josm.tools.I18n.trn;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.openstreetmap.josm.data.osm.Changeset;
 import org.openstreetmap.josm.data.osm.IPrimitive;
+import org.openstreetmap.josm.data.osm.IRelation;
+import org.openstreetmap.josm.data.osm.IWay;
 import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.PrimitiveId;
+import org.openstreetmap.josm.data.osm.SimplePrimitiveId;
+import org.openstreetmap.josm.data.preferences.BooleanProperty;
 import org.openstreetmap.josm.gui.io.UploadStrategySpecification;
 import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
@@ -27,6 +40,11 @@ import org.openstreetmap.josm.tools.CheckParameterUtil;
  * deleted. - All remaining objects with modified flag set are updated.
  */
 public class OsmServerWriter {
+    /**
+     * Determines if the request of the next chunk is prepared while the current chunk is uploaded.
+     */
+    public static final BooleanProperty PROP_PIPELINED_UPLOAD = new BooleanProperty("osm-server.upload.pipelined", true);
+
     /**
      * This list contains all successfully processed objects. The caller of
      * upload* has to check this after the call and update its dataset.
@@ -49,6 +67,9 @@ public class OsmServerWriter {
         }
     }
 
+    /** The thread building the requests of the next chunks, see {@link #uploadChangesInPipelinedChunks} */
+    private static ExecutorService serializer;
+
     private OsmApi api = OsmApi.getOsmApi();
     private boolean canceled = false;
 
@@ -178,6 +199,128 @@ public class OsmServerWriter {
         }
     }
 
+    /**
+     * Upload all changes in chunks, preparing the request of the next chunk while the current one is uploaded.
+     * <p>
+     * The chunks are uploaded one after the other, as with {@link #uploadChangesInChunks}. The osmChange document of
+     * chunk N+1 is built on a background thread while chunk N is sent to the server and its diff result is applied,
+     * unless chunk N+1 refers to new primitives of chunk N: their ids are only known once the diff result is applied.
+     *
+     * @param primitives the collection of primitives to upload
+     * @param progressMonitor  the progress monitor
+     * @param chunkSize the size of the individual upload chunks. &gt; 0 required.
+     * @throws IllegalArgumentException thrown if chunkSize &lt;= 0
+     * @throws OsmTransferException thrown if an exception occurs
+     */
+    protected void uploadChangesInPipelinedChunks(Collection<? extends IPrimitive> primitives, ProgressMonitor progressMonitor, int chunkSize) throws OsmTransferException, IllegalArgumentException {
+        if (chunkSize <=0)
+            throw new IllegalArgumentException(tr("Value >0 expected for parameter ''{0}'', got {1}", "chunkSize", chunkSize));
+        Future<byte[]> next = null;
+        try {
+            progressMonitor.beginTask(tr("Starting to upload in chunks..."));
+            List<List<IPrimitive>> chunks = new ArrayList<>();
+            List<IPrimitive> chunk = null;
+            for (IPrimitive p : primitives) {
+                if (chunk == null || chunk.size() == chunkSize) {
+                    chunk = new ArrayList<>(chunkSize);
+                    chunks.add(chunk);
+                }
+                chunk.add(p);
+            }
+            int numChunks = chunks.size();
+            for (int i = 0; i < numChunks; i++) {
+                if (canceled) return;
+                chunk = chunks.get(i);
+                byte[] request = next != null ? awaitRequest(next) : api.createDiffUploadRequest(chunk);
+                next = null;
+                if (i + 1 < numChunks && !refersToNewPrimitives(chunks.get(i + 1))) {
+                    next = prepareRequest(chunks.get(i + 1));
+                }
+                progressMonitor.setCustomText(
+                        trn("({0}/{1}) Uploading {2} object...",
+                                "({0}/{1}) Uploading {2} objects...",
+                                chunk.size(), i + 1, numChunks, chunk.size()));
+                processed.addAll(api.uploadDiff(chunk, request, progressMonitor.createSubTaskMonitor(ProgressMonitor.ALL_TICKS, false)));
+            }
+        } finally {
+            if (next != null) {
+                next.cancel(true);
+            }
+            progressMonitor.finishTask();
+        }
+    }
+
+    /**
+     * Determines if a chunk refers to new primitives not uploaded along with it.
+     * @param chunk the primitives of the chunk
+     * @return {@code true} if a way or a relation of the chunk refers to a new primitive of another chunk
+     */
+    private static boolean refersToNewPrimitives(List<IPrimitive> chunk) {
+        Set<PrimitiveId> ids = new HashSet<>();
+        for (IPrimitive p : chunk) {
+            ids.add(p.getPrimitiveId());
+        }
+        for (IPrimitive p : chunk) {
+            if (p instanceof IWay) {
+                IWay w = (IWay) p;
+                for (int i = 0; i < w.getNodesCount(); i++) {
+                    long id = w.getNodeId(i);
+                    if (id < 0 && !ids.contains(new SimplePrimitiveId(id, OsmPrimitiveType.NODE)))
+                        return true;
+                }
+            } else if (p instanceof IRelation) {
+                IRelation r = (IRelation) p;
+                for (int i = 0; i < r.getMembersCount(); i++) {
+                    long id = r.getMemberId(i);
+                    if (id < 0 && !ids.contains(new SimplePrimitiveId(id, r.getMemberType(i))))
+                        return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static synchronized ExecutorService getSerializer() {
+        if (serializer == null) {
+            serializer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "upload-serializer");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return serializer;
+    }
+
+    private Future<byte[]> prepareRequest(final List<IPrimitive> chunk) {
+        return getSerializer().submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws OsmTransferException {
+                return api.createDiffUploadRequest(chunk);
+            }
+        });
+    }
+
+    private static byte[] awaitRequest(Future<byte[]> future) throws OsmTransferException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OsmTransferCanceledException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof OsmTransferException)
+                throw (OsmTransferException) cause;
+            else if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            else if (cause instanceof Error)
+                throw (Error) cause;
+            throw new OsmTransferException(cause);
+        }
+    }
+
     /**
      * Send the dataset to the server.
      *
@@ -211,7 +354,11 @@ public class OsmServerWriter {
                 uploadChangesIndividually(primitives,monitor.createSubTaskMonitor(0,false));
                 break;
             case CHUNKED_DATASET_STRATEGY:
-                uploadChangesInChunks(primitives,monitor.createSubTaskMonitor(0,false), strategy.getChunkSize());
+                if (PROP_PIPELINED_UPLOAD.get()) {
+                    uploadChangesInPipelinedChunks(primitives,monitor.createSubTaskMonitor(0,false), strategy.getChunkSize());
+                } else {
+                    uploadChangesInChunks(primitives,monitor.createSubTaskMonitor(0,false), strategy.getChunkSize());
+                }
                 break;
             }
         } catch(OsmTransferException e) {
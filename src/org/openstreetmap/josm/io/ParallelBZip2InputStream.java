@@ -0,0 +1,364 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import static org.openstreetmap.josm.io.BZip2Blocks.BLOCK_MAGIC;
+import static org.openstreetmap.josm.io.BZip2Blocks.END_OF_STREAM_MAGIC;
+import static org.openstreetmap.josm.io.BZip2Blocks.MAGIC_BITS;
+import static org.openstreetmap.josm.io.BZip2Blocks.MAGIC_MASK;
+import static org.openstreetmap.josm.io.BZip2Blocks.NUMBER_OF_THREADS;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.tools.bzip2.CBZip2InputStream;
+import org.openstreetmap.josm.io.BZip2Blocks.BitBuffer;
+
+/**
+ * Decompresses bzip2 data on several threads.
+ * <p>
+ * The blocks of a bzip2 stream are independent, but they are not aligned on bytes and their length is not stored.
+ * The calling thread scans the bits of the input for the magic numbers starting the blocks and the end of the
+ * streams. Each block is copied into a stream of its own, decompressed by a worker thread with
+ * {@link CBZip2InputStream}, and the uncompressed blocks are read in order.
+ * <p>
+ * The magic number of a block may also appear by chance inside the compressed data of a block. The CRC of each
+ * block is checked, and a block failing the check is joined with the following one before being decompressed again.
+ * Concatenated streams, as written by {@link ParallelBZip2OutputStream} or by {@code pbzip2}, are supported. Unlike
+ * {@link CBZip2InputStream}, CRC errors are reported with an exception.
+ */
+public class ParallelBZip2InputStream extends InputStream {
+
+    /** Maximal number of times a block failing the CRC check is joined with the following one */
+    private static final int MAX_JOINS = 8;
+
+    private final InputStream in;
+    private final Scanner scanner;
+    private final Deque<Task> pending = new ArrayDeque<>();
+
+    private byte[] buffer = new byte[0];
+    private int position;
+    private int combinedCRC;
+    private boolean closed;
+
+    /**
+     * Constructs a new {@code ParallelBZip2InputStream}.
+     * @param in the compressed input, starting with the {@code BZh} header
+     * @throws IOException if the input is not in the bzip2 format or an I/O error occurs
+     */
+    public ParallelBZip2InputStream(InputStream in) throws IOException {
+        this.in = in instanceof BufferedInputStream ? in : new BufferedInputStream(in, 64 * 1024);
+        this.scanner = new Scanner(this.in);
+    }
+
+    /**
+     * Determines if bzip2 data is decompressed on several threads, see the preference {@code bzip2.numberOfThreads}.
+     * @return {@code true} if the parallel bzip2 streams should be used
+     */
+    public static boolean isEnabled() {
+        return NUMBER_OF_THREADS > 1;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position >= buffer.length && !fill())
+            return -1;
+        return buffer[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        if (position >= buffer.length && !fill())
+            return -1;
+        int n = Math.min(len, buffer.length - position);
+        System.arraycopy(buffer, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return buffer.length - position;
+    }
+
+    /**
+     * Makes the next uncompressed block the current buffer.
+     * @return {@code false} at the end of the data
+     */
+    private boolean fill() throws IOException {
+        if (closed)
+            throw new IOException("stream closed");
+        while (true) {
+            while (pending.size() < 2 * NUMBER_OF_THREADS && !scanner.done) {
+                Item item = scanner.next();
+                if (item != null) {
+                    pending.add(new Task(item));
+                }
+            }
+            if (pending.isEmpty())
+                return false;
+            Task task = pending.remove();
+            if (task.item.block == null) {
+                if (task.item.crc != combinedCRC)
+                    throw new IOException("BZip2 CRC error");
+                combinedCRC = 0;
+                continue;
+            }
+            byte[] data = await(task.future);
+            int joins = 0;
+            while (data == null) {
+                // the block has been cut at a magic number in its data, or is corrupted
+                Task next = pending.peek();
+                if (next == null && !scanner.done) {
+                    Item item = scanner.next();
+                    if (item != null) {
+                        pending.add(new Task(item));
+                    }
+                    continue;
+                }
+                if (next == null || next.item.block == null || ++joins > MAX_JOINS)
+                    throw new IOException("BZip2 CRC error");
+                pending.remove();
+                next.future.cancel(true);
+                task.item.block.append(next.item.block);
+                data = new Decoder(task.item).call();
+            }
+            combinedCRC = BZip2Blocks.combineCRC(combinedCRC, task.item.crc);
+            if (data.length > 0) {
+                buffer = data;
+                position = 0;
+                return true;
+            }
+        }
+    }
+
+    private static byte[] await(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            else if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            else if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            for (Task task : pending) {
+                if (task.future != null) {
+                    task.future.cancel(true);
+                }
+            }
+            pending.clear();
+            in.close();
+        }
+    }
+
+    /**
+     * A block, or the end of a stream.
+     */
+    private static final class Item {
+        /** The bits of the block, starting with its magic number, or {@code null} at the end of a stream */
+        private final BitBuffer block;
+        /** The block size of the stream, between 1 and 9 */
+        private final int level;
+        /** The CRC of the block or of the stream */
+        private final int crc;
+
+        private Item(BitBuffer block, int level, int crc) {
+            this.block = block;
+            this.level = level;
+            this.crc = crc;
+        }
+    }
+
+    private static final class Task {
+        private final Item item;
+        private final Future<byte[]> future;
+
+        private Task(Item item) {
+            this.item = item;
+            this.future = item.block != null ? BZip2Blocks.getPool().submit(new Decoder(item)) : null;
+        }
+    }
+
+    /**
+     * Decompresses one block, by wrapping it into a stream of its own.
+     */
+    private static final class Decoder implements Callable<byte[]> {
+        private final Item item;
+
+        private Decoder(Item item) {
+            this.item = item;
+        }
+
+        /**
+         * Replies the uncompressed data, or {@code null} if the block is invalid.
+         */
+        @Override
+        public byte[] call() {
+            BitBuffer stream = new BitBuffer((int) (item.block.length() >>> 3) + 16);
+            stream.write('h', 8);
+            stream.write('0' + item.level, 8);
+            stream.append(item.block);
+            stream.write(END_OF_STREAM_MAGIC, MAGIC_BITS);
+            stream.write(item.crc & 0xffffffffL, 32);
+            try (InputStream bz = new CBZip2InputStream(new ByteArrayInputStream(stream.toByteArray()), false)) {
+                byte[] result = new byte[item.level * 100000];
+                int length = 0;
+                int n;
+                while ((n = bz.read(result, length, result.length - length)) > 0) {
+                    length += n;
+                    if (length == result.length) {
+                        result = Arrays.copyOf(result, 2 * result.length);
+                    }
+                }
+                if (BZip2Blocks.computeCRC(result, length) != item.crc)
+                    return null;
+                return Arrays.copyOf(result, length);
+            } catch (IOException | RuntimeException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Cuts the compressed input into blocks.
+     */
+    private static final class Scanner {
+        /** Maximal size of a compressed block, larger ones are invalid */
+        private static final int MAX_BLOCK_BYTES = 2 * 1024 * 1024;
+
+        private final InputStream in;
+        private boolean first = true;
+        private boolean done;
+
+        /** The block size of the current stream, -1 between two streams */
+        private int level = -1;
+        /** The last bits read */
+        private long register;
+        /** The number of bits read since the header of the current stream */
+        private long bitCount;
+        /** The current block, {@code null} before the first magic number of the stream */
+        private BitBuffer block;
+        /** The end of a stream found right after a block, replied after it */
+        private Item pendingEnd;
+
+        private Scanner(InputStream in) throws IOException {
+            this.in = in;
+            readHeader();
+        }
+
+        /**
+         * Replies the next item, or {@code null} at the end of the input.
+         */
+        private Item next() throws IOException {
+            if (pendingEnd != null) {
+                Item end = pendingEnd;
+                pendingEnd = null;
+                return end;
+            }
+            if (level < 0 && !readHeader()) {
+                done = true;
+                return null;
+            }
+            return scan();
+        }
+
+        private boolean readHeader() throws IOException {
+            int b = in.read();
+            if (b < 0 && !first)
+                return false;
+            int z = in.read();
+            int h = in.read();
+            int l = in.read();
+            if (b != 'B' || z != 'Z' || h != 'h' || l < '1' || l > '9')
+                throw new IOException(first ? "Stream is not in the BZip2 format" : "Garbage after a valid BZip2 stream");
+            first = false;
+            level = l - '0';
+            register = 0;
+            bitCount = 0;
+            block = null;
+            return true;
+        }
+
+        /**
+         * Reads until the next magic number, replies the block it ends or the end of the stream.
+         */
+        private Item scan() throws IOException {
+            while (true) {
+                int b = in.read();
+                if (b < 0)
+                    throw new EOFException("Unexpected end of BZip2 stream");
+                register = (register << 8) | b;
+                bitCount += 8;
+                if (block != null) {
+                    block.write(b, 8);
+                    if (block.length() > 8L * MAX_BLOCK_BYTES)
+                        throw new IOException("bad block header");
+                }
+                // the magic number may end after any bit of this byte, followed by the rest bits
+                for (int rest = 7; rest >= 0; rest--) {
+                    if (bitCount - rest < MAGIC_BITS)
+                        continue;
+                    long magic = (register >>> rest) & MAGIC_MASK;
+                    if (magic != BLOCK_MAGIC && magic != END_OF_STREAM_MAGIC)
+                        continue;
+                    Item result = null;
+                    if (block != null) {
+                        block.truncate(block.length() - rest - MAGIC_BITS);
+                        result = new Item(block, level, (int) block.read(MAGIC_BITS, 32));
+                        block = null;
+                    }
+                    int restBits = b & ((1 << rest) - 1);
+                    if (magic == BLOCK_MAGIC) {
+                        block = new BitBuffer(level * 100000 + 1024);
+                        block.write(BLOCK_MAGIC, MAGIC_BITS);
+                        block.write(restBits, rest);
+                        if (result != null)
+                            return result;
+                        break;
+                    }
+                    // end of the stream: the combined CRC follows, then the padding to a byte boundary
+                    long crc = restBits;
+                    int missing = 32 - rest;
+                    while (missing > 0) {
+                        int c = in.read();
+                        if (c < 0)
+                            throw new EOFException("Unexpected end of BZip2 stream");
+                        int take = Math.min(8, missing);
+                        crc = (crc << take) | (c >>> (8 - take));
+                        missing -= take;
+                    }
+                    level = -1;
+                    Item end = new Item(null, 0, (int) crc);
+                    if (result == null)
+                        return end;
+                    pendingEnd = end;
+                    return result;
+                }
+            }
+        }
+    }
+}
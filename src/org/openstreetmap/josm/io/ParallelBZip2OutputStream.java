@@ -0,0 +1,147 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import static org.openstreetmap.josm.io.BZip2Blocks.NUMBER_OF_THREADS;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.tools.bzip2.CBZip2OutputStream;
+
+/**
+ * Compresses data in the bzip2 format on several threads.
+ * <p>
+ * The data is cut into chunks of the size of a bzip2 block, and each chunk is compressed by a worker thread with
+ * {@link CBZip2OutputStream} into a complete bzip2 stream. The streams are written in order: the result is a
+ * concatenation of bzip2 streams, like the files written by {@code pbzip2}, which is read by {@code bzip2},
+ * {@link org.apache.tools.bzip2.CBZip2InputStream} and {@link ParallelBZip2InputStream}.
+ * <p>
+ * The {@code BZ} magic is written by this stream, unlike with {@link CBZip2OutputStream}.
+ */
+public class ParallelBZip2OutputStream extends OutputStream {
+
+    /** Size of the uncompressed chunks, a little less than a block of level 9 to fit in one block */
+    static final int CHUNK_SIZE = 900000 - 1000;
+
+    private final OutputStream out;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    private byte[] chunk = new byte[CHUNK_SIZE];
+    private int length;
+    private boolean written;
+    private boolean closed;
+
+    /**
+     * Constructs a new {@code ParallelBZip2OutputStream}.
+     * @param out the output stream receiving the compressed data
+     */
+    public ParallelBZip2OutputStream(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (closed)
+            throw new IOException("stream closed");
+        if (length == chunk.length) {
+            submit();
+        }
+        chunk[length++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed)
+            throw new IOException("stream closed");
+        while (len > 0) {
+            if (length == chunk.length) {
+                submit();
+            }
+            int n = Math.min(len, chunk.length - length);
+            System.arraycopy(b, off, chunk, length, n);
+            length += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void submit() throws IOException {
+        final byte[] data = length == chunk.length ? chunk : Arrays.copyOf(chunk, length);
+        pending.add(BZip2Blocks.getPool().submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                ByteArrayOutputStream result = new ByteArrayOutputStream(data.length / 4);
+                result.write('B');
+                result.write('Z');
+                try (CBZip2OutputStream bz = new CBZip2OutputStream(result)) {
+                    bz.write(data, 0, data.length);
+                }
+                return result.toByteArray();
+            }
+        }));
+        written = true;
+        chunk = new byte[CHUNK_SIZE];
+        length = 0;
+        while (pending.size() > 2 * NUMBER_OF_THREADS) {
+            out.write(await(pending.remove()));
+        }
+    }
+
+    private static byte[] await(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            else if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            else if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Writes the chunks already compressed. The current chunk is not cut, so that the compression ratio does not
+     * depend on the flushes.
+     */
+    @Override
+    public void flush() throws IOException {
+        while (!pending.isEmpty() && pending.peek().isDone()) {
+            out.write(await(pending.remove()));
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            if (length > 0 || !written) {
+                submit();
+            }
+            while (!pending.isEmpty()) {
+                out.write(await(pending.remove()));
+            }
+        } finally {
+            for (Future<byte[]> f : pending) {
+                f.cancel(true);
+            }
+            out.close();
+        }
+    }
+}
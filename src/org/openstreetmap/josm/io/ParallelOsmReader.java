@@ -0,0 +1,567 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.PrimitiveData;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+
+/**
+ * Parser for OSM data which spreads the work of parsing large files over several threads.
+ *
+ * The input is processed by a pipeline of three stages:
+ * <ol>
+ * <li>the calling thread cuts the character stream into chunks of complete top level elements
+ * (nodes, ways, relations, ...). This only needs a cheap scan for the element boundaries;</li>
+ * <li>a pool of worker threads parses the chunks with the ordinary {@link OsmReader} code,
+ * each chunk on its own into its own primitives;</li>
+ * <li>the calling thread collects the parsed chunks in document order and finally resolves way
+ * nodes and relation members in a single {@link DataSet#beginUpdate()}/{@link DataSet#endUpdate()} pass.</li>
+ * </ol>
+ * The resulting data set is the same as the one of {@link OsmReader#parseDataSet(InputStream, ProgressMonitor)},
+ * including the messages of parsing errors and the positions they refer to. New primitives (negative ids in the
+ * file) are given their unique ids when the chunks are merged, so these ids are assigned in document order as well.
+ *
+ * Documents which fit into a single chunk are parsed on the calling thread, and so is everything
+ * if the preference {@code osm.reader.numberOfThreads} is set to 1.
+ */
+public class ParallelOsmReader extends OsmReader {
+
+    /** The default number of characters after which a chunk is cut. */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private static final int NUMBER_OF_THREADS = Main.pref.getInteger("osm.reader.numberOfThreads",
+            Runtime.getRuntime().availableProcessors());
+
+    private static ExecutorService pool;
+
+    private final int chunkSize;
+
+    /**
+     * Constructs a new {@code ParallelOsmReader}.
+     * @param chunkSize the number of characters after which a chunk is cut
+     */
+    protected ParallelOsmReader(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    private static synchronized ExecutorService getPool() {
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(NUMBER_OF_THREADS, new ThreadFactory() {
+                private int count;
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "osm-reader-" + (++count));
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return pool;
+    }
+
+    @Override
+    protected void parse(Reader reader) throws XMLStreamException, IOException {
+        if (NUMBER_OF_THREADS <= 1) {
+            super.parse(reader);
+            return;
+        }
+        Chunker chunker = new Chunker(reader, chunkSize);
+        Chunk chunk = chunker.next();
+        if (chunk.last) {
+            merge(new ChunkReader(chunk).call());
+            return;
+        }
+        Deque<Future<ChunkReader>> pending = new ArrayDeque<>();
+        try {
+            while (chunk != null) {
+                checkCanceled();
+                pending.add(getPool().submit(new ChunkReader(chunk)));
+                if (pending.size() > 2 * NUMBER_OF_THREADS) {
+                    merge(await(pending.remove()));
+                }
+                try {
+                    chunk = chunker.next();
+                } catch (IOException e) {
+                    // report errors in the chunks before first, as the sequential reader would do
+                    while (!pending.isEmpty()) {
+                        await(pending.remove());
+                    }
+                    throw e;
+                }
+            }
+            while (!pending.isEmpty()) {
+                merge(await(pending.remove()));
+            }
+        } finally {
+            for (Future<ChunkReader> f : pending) {
+                f.cancel(true);
+            }
+        }
+    }
+
+    private void checkCanceled() throws XMLStreamException {
+        if (cancel) {
+            cancel = false;
+            throw new OsmParsingCanceledException(tr("Reading was canceled"), null);
+        }
+    }
+
+    private static ChunkReader await(Future<ChunkReader> future) throws XMLStreamException, IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof XMLStreamException)
+                throw (XMLStreamException) cause;
+            else if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            else if (cause instanceof Error)
+                throw (Error) cause;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Adds the primitives parsed from one chunk to the primitives parsed so far.
+     * Must be called in document order, later primitives replace earlier ones with the same id.
+     */
+    private void merge(ChunkReader reader) {
+        for (OsmPrimitive p : reader.newPrimitives) {
+            renumber(p);
+        }
+        DataSet chunkData = reader.getDataSet();
+        ds.setVersion(chunkData.getVersion());
+        ds.setUploadDiscouraged(chunkData.isUploadDiscouraged());
+        ds.dataSources.addAll(chunkData.dataSources);
+        externalIdMap.putAll(reader.externalIdMap);
+        ways.putAll(reader.ways);
+        relations.putAll(reader.relations);
+        if (reader.uploadChangeset != null) {
+            uploadChangeset = reader.uploadChangeset;
+        }
+    }
+
+    /**
+     * Gives a new primitive a new unique id. The other attributes are kept, the primitive
+     * does not belong to a data set and has no way nodes or relation members yet.
+     */
+    private static void renumber(OsmPrimitive p) {
+        PrimitiveData data = p.save();
+        p.clearOsmMetadata();
+        p.load(data);
+    }
+
+    /**
+     * A part of the document which can be parsed on its own.
+     *
+     * Except for the first chunk, the text of a chunk consists of the document prolog including the start
+     * tag of the root element, followed by a run of complete top level elements and the end tag of the root.
+     */
+    private static final class Chunk {
+        private final String text;
+        private final boolean last;
+        /** the number of line breaks in the text preceding the content of the original document */
+        private final int prefixLines;
+        /** the length of the last line of the text preceding the content of the original document */
+        private final int prefixLastLineLength;
+        /** the position of the first character of the content in the original document */
+        private final int line;
+        private final int column;
+
+        private Chunk(String text, boolean last, int prefixLines, int prefixLastLineLength, int line, int column) {
+            this.text = text;
+            this.last = last;
+            this.prefixLines = prefixLines;
+            this.prefixLastLineLength = prefixLastLineLength;
+            this.line = line;
+            this.column = column;
+        }
+
+        /**
+         * Translates a position within the chunk text into the position within the original document.
+         */
+        private Location translate(final Location location) {
+            if (location == null || (prefixLines == 0 && prefixLastLineLength == 0))
+                return location;
+            final int l = location.getLineNumber();
+            final int c = location.getColumnNumber();
+            final int translatedLine;
+            final int translatedColumn;
+            if (l > prefixLines + 1) {
+                translatedLine = line + l - prefixLines - 1;
+                translatedColumn = c;
+            } else if (l == prefixLines + 1 && c > prefixLastLineLength) {
+                translatedLine = line;
+                translatedColumn = column + c - prefixLastLineLength - 1;
+            } else
+                // within the prolog, which is at the same position in the original document
+                return location;
+            return new Location() {
+                @Override
+                public int getLineNumber() {
+                    return translatedLine;
+                }
+
+                @Override
+                public int getColumnNumber() {
+                    return translatedColumn;
+                }
+
+                @Override
+                public int getCharacterOffset() {
+                    return -1;
+                }
+
+                @Override
+                public String getPublicId() {
+                    return location.getPublicId();
+                }
+
+                @Override
+                public String getSystemId() {
+                    return location.getSystemId();
+                }
+            };
+        }
+    }
+
+    /**
+     * Cuts a character stream into {@link Chunk}s.
+     *
+     * The scanner only knows as much about XML as needed to find the boundaries of the top level elements:
+     * tags, quoted attribute values, comments, CDATA sections, processing instructions and the document type
+     * declaration. Malformed input is passed on unchanged, the error is reported when parsing the chunk.
+     */
+    private static final class Chunker {
+        private final Reader reader;
+        private final int chunkSize;
+        private final char[] buffer = new char[8192];
+        private int pos;
+        private int len;
+        private boolean eof;
+
+        private StringBuilder text = new StringBuilder();
+        private int line = 1;
+        private int column = 1;
+        private boolean lastWasCR;
+
+        /** the prolog including the start tag of the root element, {@code null} until read */
+        private String prefix;
+        private int prefixLines;
+        private int prefixLastLineLength;
+        private String rootName;
+        private int depth;
+        private boolean done;
+
+        private Chunker(Reader reader, int chunkSize) {
+            this.reader = reader;
+            this.chunkSize = chunkSize;
+        }
+
+        private int read() throws IOException {
+            if (pos == len) {
+                if (eof)
+                    return -1;
+                len = reader.read(buffer);
+                pos = 0;
+                if (len <= 0) {
+                    len = 0;
+                    eof = true;
+                    return -1;
+                }
+            }
+            char c = buffer[pos++];
+            text.append(c);
+            if (c == '\n') {
+                if (!lastWasCR) {
+                    line++;
+                }
+                column = 1;
+            } else if (c == '\r') {
+                line++;
+                column = 1;
+            } else {
+                column++;
+            }
+            lastWasCR = c == '\r';
+            return c;
+        }
+
+        /**
+         * Replies the next chunk, or {@code null} if the stream is exhausted.
+         */
+        private Chunk next() throws IOException {
+            if (done)
+                return null;
+            boolean first = prefix == null;
+            int startLine = line;
+            int startColumn = column;
+            while (true) {
+                int c = read();
+                if (c == -1) {
+                    // end of stream before the end of the root element, the parser reports the error
+                    return createChunk(first, true, false, startLine, startColumn);
+                } else if (c != '<') {
+                    continue;
+                }
+                int tagStart = text.length() - 1;
+                c = read();
+                if (c == '?') {
+                    skipUntil("?>");
+                } else if (c == '!') {
+                    skipDeclaration();
+                } else if (c == '/') {
+                    skipTag(read());
+                    if (--depth == 0) {
+                        return readRest(first, startLine, startColumn);
+                    }
+                } else {
+                    boolean empty = skipTag(c);
+                    if (prefix == null) {
+                        rootName = readName(tagStart + 1);
+                        prefix = text.toString();
+                        prefixLines = 0;
+                        prefixLastLineLength = 0;
+                        for (int i = 0; i < prefix.length(); i++) {
+                            char p = prefix.charAt(i);
+                            if (p == '\n' || p == '\r') {
+                                if (p == '\r' || i == 0 || prefix.charAt(i - 1) != '\r') {
+                                    prefixLines++;
+                                }
+                                prefixLastLineLength = 0;
+                            } else {
+                                prefixLastLineLength++;
+                            }
+                        }
+                        if (empty)
+                            return readRest(first, startLine, startColumn);
+                        depth = 1;
+                        continue;
+                    }
+                    if (!empty) {
+                        depth++;
+                    }
+                }
+                if (depth == 1 && prefix != null && text.length() >= chunkSize)
+                    return createChunk(first, false, true, startLine, startColumn);
+            }
+        }
+
+        /**
+         * Reads everything after the end of the root element into the current chunk.
+         */
+        private Chunk readRest(boolean first, int startLine, int startColumn) throws IOException {
+            while (read() != -1) {
+                // the parser checks the trailing content
+            }
+            return createChunk(first, true, false, startLine, startColumn);
+        }
+
+        private Chunk createChunk(boolean first, boolean last, boolean closeRoot, int startLine, int startColumn) {
+            StringBuilder sb;
+            if (first || prefix == null) {
+                sb = text;
+            } else {
+                sb = new StringBuilder(prefix.length() + text.length() + rootName.length() + 3);
+                sb.append(prefix).append(text);
+            }
+            if (closeRoot) {
+                sb.append("</").append(rootName).append('>');
+            }
+            Chunk chunk = first || prefix == null
+                    ? new Chunk(sb.toString(), last, 0, 0, 1, 1)
+                    : new Chunk(sb.toString(), last, prefixLines, prefixLastLineLength, startLine, startColumn);
+            text = new StringBuilder(Math.min(chunkSize, DEFAULT_CHUNK_SIZE) + 1024);
+            done = last;
+            return chunk;
+        }
+
+        private String readName(int start) {
+            int end = start;
+            while (end < text.length()) {
+                char c = text.charAt(end);
+                if (c == '/' || c == '>' || Character.isWhitespace(c)) {
+                    break;
+                }
+                end++;
+            }
+            return text.substring(start, end);
+        }
+
+        /**
+         * Skips the rest of a start or end tag, starting with the given character.
+         * @return {@code true} if the tag is an empty element tag
+         */
+        private boolean skipTag(int c) throws IOException {
+            int previous = -1;
+            while (c != -1 && c != '>') {
+                if (c == '"' || c == '\'') {
+                    int quote = c;
+                    do {
+                        c = read();
+                    } while (c != -1 && c != quote);
+                }
+                previous = c;
+                c = read();
+            }
+            return previous == '/';
+        }
+
+        /**
+         * Skips a comment, CDATA section or document type declaration, the {@code <!} has already been read.
+         */
+        private void skipDeclaration() throws IOException {
+            int c = read();
+            if (c == '-') {
+                skipUntil("-->");
+            } else if (c == '[') {
+                skipUntil("]]>");
+            } else {
+                // document type declaration, possibly with an internal subset
+                int brackets = 0;
+                while (c != -1 && (c != '>' || brackets > 0)) {
+                    if (c == '"' || c == '\'') {
+                        int quote = c;
+                        do {
+                            c = read();
+                        } while (c != -1 && c != quote);
+                    } else if (c == '[') {
+                        brackets++;
+                    } else if (c == ']') {
+                        brackets--;
+                    }
+                    c = read();
+                }
+            }
+        }
+
+        private void skipUntil(String end) throws IOException {
+            int matched = 0;
+            while (matched < end.length()) {
+                int c = read();
+                if (c == -1)
+                    return;
+                if (c == end.charAt(matched)) {
+                    matched++;
+                } else {
+                    matched = c == end.charAt(0) ? 1 : 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses a single chunk.
+     */
+    private final class ChunkReader extends OsmReader implements Callable<ChunkReader> {
+        private final Chunk chunk;
+        /** the new primitives in document order, their unique ids are assigned again when merging */
+        private final List<OsmPrimitive> newPrimitives = new ArrayList<>();
+
+        private ChunkReader(Chunk chunk) {
+            this.chunk = chunk;
+        }
+
+        @Override
+        public ChunkReader call() throws XMLStreamException {
+            setParser(new StreamReaderDelegate(XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(chunk.text))) {
+                @Override
+                public int next() throws XMLStreamException {
+                    if (ParallelOsmReader.this.cancel)
+                        throw new OsmParsingCanceledException(tr("Reading was canceled"), getLocation());
+                    try {
+                        return super.next();
+                    } catch (XMLStreamException e) {
+                        throw new ChunkParsingException(e, chunk.translate(e.getLocation()));
+                    }
+                }
+
+                @Override
+                public Location getLocation() {
+                    return chunk.translate(super.getLocation());
+                }
+            });
+            parse();
+            return this;
+        }
+
+        @Override
+        protected Node parseNode() throws XMLStreamException {
+            return addIfNew(super.parseNode());
+        }
+
+        @Override
+        protected Way parseWay() throws XMLStreamException {
+            return addIfNew(super.parseWay());
+        }
+
+        @Override
+        protected Relation parseRelation() throws XMLStreamException {
+            return addIfNew(super.parseRelation());
+        }
+
+        private <T extends OsmPrimitive> T addIfNew(T p) {
+            if (p.isNew()) {
+                newPrimitives.add(p);
+            }
+            return p;
+        }
+    }
+
+    /**
+     * An exception of the XML parser, with the position translated into the original document.
+     */
+    private static class ChunkParsingException extends XMLStreamException {
+        public ChunkParsingException(XMLStreamException e, Location location) {
+            super(e.getMessage(), e);
+            this.location = location;
+        }
+    }
+
+    /**
+     * Parse the given input source and return the dataset.
+     *
+     * @param source the source input stream. Must not be null.
+     * @param progressMonitor  the progress monitor. If null, {@link NullProgressMonitor#INSTANCE} is assumed
+     *
+     * @return the dataset with the parsed data
+     * @throws IllegalDataException thrown if the an error was found while parsing the data from the source
+     * @throws IllegalArgumentException thrown if source is null
+     */
+    public static DataSet parseDataSet(InputStream source, ProgressMonitor progressMonitor) throws IllegalDataException {
+        return new ParallelOsmReader(DEFAULT_CHUNK_SIZE).doParseDataSet(source, progressMonitor);
+    }
+}
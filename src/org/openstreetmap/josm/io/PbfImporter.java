@@ -0,0 +1,46 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.io.InputStream;
+
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.actions.ExtensionFileFilter;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.preferences.BooleanProperty;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+
+/**
+ * OSM data importer for the PBF format, see {@link PbfReader}.
+ */
+public class PbfImporter extends OsmImporter {
+
+    /**
+     * File filter used to load PBF files.
+     */
+    public static final ExtensionFileFilter FILE_FILTER = new ExtensionFileFilter(
+            "osm.pbf,pbf", "osm.pbf", tr("OSM PBF files") + " (*.osm.pbf *.pbf)");
+
+    /**
+     * Only loads the data within the current map view, if any. Useful to open a small part of a large extract.
+     */
+    public static final BooleanProperty PROP_CURRENT_VIEW_ONLY = new BooleanProperty("pbf.import.current-view-only", false);
+
+    /**
+     * Constructs a new {@code PbfImporter}.
+     */
+    public PbfImporter() {
+        super(FILE_FILTER);
+    }
+
+    @Override
+    protected DataSet parseDataSet(InputStream in, ProgressMonitor progressMonitor) throws IllegalDataException {
+        Bounds bounds = null;
+        if (PROP_CURRENT_VIEW_ONLY.get() && Main.isDisplayingMapView()) {
+            bounds = Main.map.mapView.getRealBounds();
+        }
+        return PbfReader.parseDataSet(in, progressMonitor, bounds);
+    }
+}
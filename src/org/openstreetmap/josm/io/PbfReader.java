@@ -0,0 +1,750 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.DataSource;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.NodeData;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.PrimitiveData;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationData;
+import org.openstreetmap.josm.data.osm.RelationMemberData;
+import org.openstreetmap.josm.data.osm.SimplePrimitiveId;
+import org.openstreetmap.josm.data.osm.User;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.WayData;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.tools.CheckParameterUtil;
+import org.openstreetmap.josm.tools.LongList;
+
+/**
+ * Parser for OSM data in the <a href="https://wiki.openstreetmap.org/wiki/PBF_Format">PBF format</a>.
+ * <p>
+ * The file is a sequence of independent blobs, each one usually compressed with zlib. The calling thread reads the
+ * blobs, a pool of worker threads decompresses and decodes them into primitives, and the calling thread collects the
+ * decoded blocks in file order. Way nodes and relation members are finally resolved like by {@link OsmReader}.
+ * Everything is done on the calling thread if the preference {@code pbf.reader.numberOfThreads} is set to 1.
+ * <p>
+ * Optionally, only the data within given bounds is kept: the nodes within the bounds, the ways referring to at least
+ * one of them and the relations referring to at least one kept primitive. The other nodes of the kept ways and the
+ * other members of the kept relations are incomplete. This assumes the usual order of the file: nodes, then ways,
+ * then relations.
+ */
+public class PbfReader extends AbstractReader {
+
+    private static final int NUMBER_OF_THREADS = Main.pref.getInteger("pbf.reader.numberOfThreads",
+            Runtime.getRuntime().availableProcessors());
+
+    /** Maximal sizes given by the specification of the format */
+    private static final int MAX_HEADER_SIZE = 64 * 1024;
+    private static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+
+    private static final Collection<String> SUPPORTED_FEATURES = Arrays.asList("OsmSchema-V0.6", "DenseNodes");
+
+    private static final OsmPrimitiveType[] MEMBER_TYPES = {
+        OsmPrimitiveType.NODE, OsmPrimitiveType.WAY, OsmPrimitiveType.RELATION};
+
+    private static ExecutorService pool;
+
+    private final Bounds bounds;
+    private boolean headerRead;
+    private boolean missingVersion;
+
+    private volatile boolean cancel;
+
+    /**
+     * Constructs a new {@code PbfReader}.
+     * @param bounds the bounds of the data to keep, or {@code null} to keep everything
+     */
+    protected PbfReader(Bounds bounds) {
+        this.bounds = bounds;
+    }
+
+    private static synchronized ExecutorService getPool() {
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(NUMBER_OF_THREADS, new ThreadFactory() {
+                private int count;
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "pbf-reader-" + (++count));
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return pool;
+    }
+
+    /**
+     * Exception thrown after user cancelation.
+     */
+    private static final class PbfParsingCanceledException extends RuntimeException implements ImportCancelException {
+        PbfParsingCanceledException(String msg) {
+            super(msg);
+        }
+    }
+
+    protected void parse(InputStream source) throws IOException, IllegalDataException {
+        DataInputStream in = new DataInputStream(source);
+        Deque<Future<Block>> pending = new ArrayDeque<>();
+        try {
+            while (true) {
+                if (cancel)
+                    throw new PbfParsingCanceledException(tr("Reading was canceled"));
+                int headerSize;
+                try {
+                    headerSize = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (headerSize < 0 || headerSize > MAX_HEADER_SIZE)
+                    throw new IllegalDataException(tr("Invalid blob header size {0}", headerSize));
+                byte[] header = new byte[headerSize];
+                in.readFully(header);
+                String type = null;
+                int dataSize = -1;
+                ProtobufParser p = new ProtobufParser(header);
+                while (p.next()) {
+                    switch (p.getField()) {
+                    case 1: type = p.readString(); break;
+                    case 3: dataSize = p.readInt(); break;
+                    default: p.skip();
+                    }
+                }
+                if (dataSize < 0 || dataSize > MAX_BLOB_SIZE)
+                    throw new IllegalDataException(tr("Invalid blob size {0}", dataSize));
+                byte[] blob = new byte[dataSize];
+                in.readFully(blob);
+                if ("OSMHeader".equals(type)) {
+                    parseHeader(decompress(blob));
+                } else if ("OSMData".equals(type)) {
+                    if (!headerRead)
+                        throw new IllegalDataException(tr("Missing OSMHeader block"));
+                    if (NUMBER_OF_THREADS <= 1) {
+                        merge(new BlockDecoder(blob).call());
+                        continue;
+                    }
+                    pending.add(getPool().submit(new BlockDecoder(blob)));
+                    if (pending.size() > 2 * NUMBER_OF_THREADS) {
+                        merge(await(pending.remove()));
+                    }
+                }
+                // other blob types are skipped, as required by the specification
+            }
+            while (!pending.isEmpty()) {
+                merge(await(pending.remove()));
+            }
+        } finally {
+            for (Future<Block> f : pending) {
+                f.cancel(true);
+            }
+        }
+        if (missingVersion) {
+            // the server would reject the changes of primitives without version
+            ds.setUploadDiscouraged(true);
+        }
+    }
+
+    private static Block await(Future<Block> future) throws IOException, IllegalDataException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IllegalDataException)
+                throw (IllegalDataException) cause;
+            else if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            else if (cause instanceof Error)
+                throw (Error) cause;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private void parseHeader(byte[] data) throws IllegalDataException {
+        Bounds bbox = null;
+        String source = null;
+        String writingProgram = null;
+        ProtobufParser p = new ProtobufParser(data);
+        while (p.next()) {
+            switch (p.getField()) {
+            case 1:
+                bbox = parseHeaderBBox(p.readMessage());
+                break;
+            case 4:
+                String feature = p.readString();
+                if (!SUPPORTED_FEATURES.contains(feature))
+                    throw new IllegalDataException(tr("Unsupported PBF feature: {0}", feature));
+                break;
+            case 16:
+                writingProgram = p.readString();
+                break;
+            case 17:
+                source = p.readString();
+                break;
+            default:
+                p.skip();
+            }
+        }
+        ds.setVersion("0.6");
+        String origin = source != null ? source : writingProgram;
+        if (bounds != null) {
+            ds.dataSources.add(new DataSource(bounds, origin));
+        } else if (bbox != null) {
+            ds.dataSources.add(new DataSource(bbox, origin));
+        }
+        headerRead = true;
+    }
+
+    private static Bounds parseHeaderBBox(ProtobufParser p) throws IllegalDataException {
+        double left = 0, right = 0, top = 0, bottom = 0;
+        while (p.next()) {
+            switch (p.getField()) {
+            case 1: left = p.readSignedVarint() / 1e9; break;
+            case 2: right = p.readSignedVarint() / 1e9; break;
+            case 3: top = p.readSignedVarint() / 1e9; break;
+            case 4: bottom = p.readSignedVarint() / 1e9; break;
+            default: p.skip();
+            }
+        }
+        return new Bounds(bottom, left, top, right);
+    }
+
+    /**
+     * Replies the uncompressed data of a blob.
+     */
+    private static byte[] decompress(byte[] blob) throws IllegalDataException {
+        byte[] raw = null;
+        byte[] zlib = null;
+        int rawSize = -1;
+        ProtobufParser p = new ProtobufParser(blob);
+        while (p.next()) {
+            switch (p.getField()) {
+            case 1: raw = p.readBytes(); break;
+            case 2: rawSize = p.readInt(); break;
+            case 3: zlib = p.readBytes(); break;
+            case 4:
+            case 5:
+            case 6:
+            case 7:
+                throw new IllegalDataException(tr("Unsupported PBF compression"));
+            default: p.skip();
+            }
+        }
+        if (raw != null)
+            return raw;
+        if (zlib == null || rawSize < 0 || rawSize > MAX_BLOB_SIZE)
+            throw new IllegalDataException(tr("Invalid PBF blob"));
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(zlib);
+            byte[] result = new byte[rawSize];
+            int n = 0;
+            while (n < rawSize && !inflater.finished()) {
+                int read = inflater.inflate(result, n, rawSize - n);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                n += read;
+            }
+            if (n != rawSize)
+                throw new IllegalDataException(tr("Invalid PBF blob"));
+            return result;
+        } catch (DataFormatException e) {
+            throw new IllegalDataException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Adds the primitives of a decoded block. Must be called in file order.
+     */
+    private void merge(Block block) {
+        missingVersion |= block.missingVersion;
+        for (Node n : block.nodes) {
+            if (bounds == null || (n.getCoor() != null && bounds.contains(n.getCoor()))) {
+                externalIdMap.put(n.getPrimitiveId(), n);
+            }
+        }
+        for (int i = 0; i < block.ways.size(); i++) {
+            Way w = block.ways.get(i);
+            Collection<Long> nodeIds = block.wayNodes.get(i);
+            if (bounds == null || containsAny(nodeIds)) {
+                externalIdMap.put(w.getPrimitiveId(), w);
+                ways.put(w.getUniqueId(), nodeIds);
+            }
+        }
+        for (int i = 0; i < block.relations.size(); i++) {
+            Relation r = block.relations.get(i);
+            Collection<RelationMemberData> members = block.relationMembers.get(i);
+            if (bounds == null || containsAnyMember(members)) {
+                externalIdMap.put(r.getPrimitiveId(), r);
+                relations.put(r.getUniqueId(), members);
+            }
+        }
+    }
+
+    private boolean containsAny(Collection<Long> nodeIds) {
+        for (Long id : nodeIds) {
+            if (externalIdMap.containsKey(new SimplePrimitiveId(id, OsmPrimitiveType.NODE)))
+                return true;
+        }
+        return false;
+    }
+
+    private boolean containsAnyMember(Collection<RelationMemberData> members) {
+        for (RelationMemberData m : members) {
+            if (externalIdMap.containsKey(new SimplePrimitiveId(m.getMemberId(), m.getMemberType())))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * The primitives decoded from one {@code OSMData} blob.
+     */
+    private static final class Block {
+        private final List<Node> nodes = new ArrayList<>();
+        private final List<Way> ways = new ArrayList<>();
+        private final List<Collection<Long>> wayNodes = new ArrayList<>();
+        private final List<Relation> relations = new ArrayList<>();
+        private final List<Collection<RelationMemberData>> relationMembers = new ArrayList<>();
+        private boolean missingVersion;
+    }
+
+    /**
+     * Decodes an {@code OSMData} blob, a {@code PrimitiveBlock} message.
+     */
+    private static final class BlockDecoder implements Callable<Block> {
+        private final byte[] blob;
+        private final Block block = new Block();
+        private final Map<Long, User> users = new HashMap<>();
+        private String[] strings;
+        private long granularity = 100;
+        private long dateGranularity = 1000;
+        private long latOffset;
+        private long lonOffset;
+
+        private BlockDecoder(byte[] blob) {
+            this.blob = blob;
+        }
+
+        @Override
+        public Block call() throws IllegalDataException {
+            byte[] data = decompress(blob);
+            // the string table and the granularities may follow the groups, they are read first
+            List<ProtobufParser> groups = new ArrayList<>();
+            ProtobufParser p = new ProtobufParser(data);
+            while (p.next()) {
+                switch (p.getField()) {
+                case 1: parseStringTable(p.readMessage()); break;
+                case 2: groups.add(p.readMessage()); break;
+                case 17: granularity = p.readInt(); break;
+                case 18: dateGranularity = p.readInt(); break;
+                case 19: latOffset = p.readVarint(); break;
+                case 20: lonOffset = p.readVarint(); break;
+                default: p.skip();
+                }
+            }
+            if (strings == null) {
+                strings = new String[0];
+            }
+            for (ProtobufParser group : groups) {
+                while (group.next()) {
+                    switch (group.getField()) {
+                    case 1: parseNode(group.readMessage()); break;
+                    case 2: parseDenseNodes(group.readMessage()); break;
+                    case 3: parseWay(group.readMessage()); break;
+                    case 4: parseRelation(group.readMessage()); break;
+                    default: group.skip();
+                    }
+                }
+            }
+            return block;
+        }
+
+        private void parseStringTable(ProtobufParser p) throws IllegalDataException {
+            List<String> result = new ArrayList<>();
+            while (p.next()) {
+                if (p.getField() == 1) {
+                    result.add(p.readString());
+                } else {
+                    p.skip();
+                }
+            }
+            strings = result.toArray(new String[result.size()]);
+        }
+
+        private String getString(long index) throws IllegalDataException {
+            if (index < 0 || index >= strings.length)
+                throw new IllegalDataException(tr("Invalid string reference {0}", index));
+            return strings[(int) index];
+        }
+
+        private LatLon getLatLon(long lat, long lon) {
+            // a division keeps the decimal values of the file exact, like the parsing of XML
+            return new LatLon((latOffset + granularity * lat) / 1e9, (lonOffset + granularity * lon) / 1e9);
+        }
+
+        private void parseNode(ProtobufParser p) throws IllegalDataException {
+            NodeData nd = new NodeData();
+            LongList keys = new LongList();
+            LongList values = new LongList();
+            long lat = 0;
+            long lon = 0;
+            boolean hasInfo = false;
+            while (p.next()) {
+                switch (p.getField()) {
+                case 1: nd.setId(p.readSignedVarint()); break;
+                case 2: readPacked(p, false, keys); break;
+                case 3: readPacked(p, false, values); break;
+                case 4: parseInfo(p.readMessage(), nd); hasInfo = true; break;
+                case 8: lat = p.readSignedVarint(); break;
+                case 9: lon = p.readSignedVarint(); break;
+                default: p.skip();
+                }
+            }
+            if (!hasInfo) {
+                block.missingVersion = true;
+            }
+            nd.setCoor(getLatLon(lat, lon));
+            Node n = new Node(nd.getId(), nd.getVersion());
+            n.setVisible(nd.isVisible());
+            n.load(nd);
+            setKeys(n, keys, values);
+            block.nodes.add(n);
+        }
+
+        private void parseDenseNodes(ProtobufParser p) throws IllegalDataException {
+            LongList ids = new LongList();
+            LongList lats = new LongList();
+            LongList lons = new LongList();
+            LongList keysVals = new LongList();
+            ProtobufParser denseInfo = null;
+            while (p.next()) {
+                switch (p.getField()) {
+                case 1: readPacked(p, true, ids); break;
+                case 5: denseInfo = p.readMessage(); break;
+                case 8: readPacked(p, true, lats); break;
+                case 9: readPacked(p, true, lons); break;
+                case 10: readPacked(p, false, keysVals); break;
+                default: p.skip();
+                }
+            }
+            int count = ids.size();
+            if (lats.size() != count || lons.size() != count)
+                throw new IllegalDataException(tr("Invalid dense nodes"));
+            LongList versions = new LongList();
+            LongList timestamps = new LongList();
+            LongList changesets = new LongList();
+            LongList uids = new LongList();
+            LongList userSids = new LongList();
+            LongList visibles = new LongList();
+            if (denseInfo != null) {
+                while (denseInfo.next()) {
+                    switch (denseInfo.getField()) {
+                    case 1: readPacked(denseInfo, false, versions); break;
+                    case 2: readPacked(denseInfo, true, timestamps); break;
+                    case 3: readPacked(denseInfo, true, changesets); break;
+                    case 4: readPacked(denseInfo, true, uids); break;
+                    case 5: readPacked(denseInfo, true, userSids); break;
+                    case 6: readPacked(denseInfo, false, visibles); break;
+                    default: denseInfo.skip();
+                    }
+                }
+            }
+            if (versions.size() < count) {
+                block.missingVersion = true;
+            }
+            long id = 0, lat = 0, lon = 0, timestamp = 0, changeset = 0, uid = 0, userSid = 0;
+            int kv = 0;
+            for (int i = 0; i < count; i++) {
+                id += ids.getLong(i);
+                lat += lats.getLong(i);
+                lon += lons.getLong(i);
+                NodeData nd = new NodeData();
+                nd.setId(id);
+                nd.setCoor(getLatLon(lat, lon));
+                if (i < versions.size()) {
+                    nd.setVersion((int) versions.getLong(i));
+                }
+                if (i < timestamps.size()) {
+                    timestamp += timestamps.getLong(i);
+                    setTimestamp(nd, timestamp);
+                }
+                if (i < changesets.size()) {
+                    changeset += changesets.getLong(i);
+                    nd.setChangesetId((int) changeset);
+                }
+                if (i < uids.size() && i < userSids.size()) {
+                    uid += uids.getLong(i);
+                    userSid += userSids.getLong(i);
+                    nd.setUser(getUser(uid, userSid));
+                }
+                if (i < visibles.size()) {
+                    nd.setVisible(visibles.getLong(i) != 0);
+                }
+                Node n = new Node(nd.getId(), nd.getVersion());
+                n.setVisible(nd.isVisible());
+                n.load(nd);
+                if (kv < keysVals.size() && keysVals.getLong(kv) != 0) {
+                    Map<String, String> tags = new HashMap<>();
+                    while (kv + 1 < keysVals.size() && keysVals.getLong(kv) != 0) {
+                        tags.put(getString(keysVals.getLong(kv)), getString(keysVals.getLong(kv + 1)));
+                        kv += 2;
+                    }
+                    n.setKeys(tags);
+                }
+                // skips the delimiter of the tags of this node
+                kv++;
+                block.nodes.add(n);
+            }
+        }
+
+        private void parseWay(ProtobufParser p) throws IllegalDataException {
+            WayData wd = new WayData();
+            LongList keys = new LongList();
+            LongList values = new LongList();
+            LongList refs = new LongList();
+            boolean hasInfo = false;
+            while (p.next()) {
+                switch (p.getField()) {
+                case 1: wd.setId(p.readVarint()); break;
+                case 2: readPacked(p, false, keys); break;
+                case 3: readPacked(p, false, values); break;
+                case 4: parseInfo(p.readMessage(), wd); hasInfo = true; break;
+                case 8: readPacked(p, true, refs); break;
+                default: p.skip();
+                }
+            }
+            if (!hasInfo) {
+                block.missingVersion = true;
+            }
+            Way w = new Way(wd.getId(), wd.getVersion());
+            w.setVisible(wd.isVisible());
+            w.load(wd);
+            setKeys(w, keys, values);
+            LongList nodeIds = new LongList(refs.size());
+            long ref = 0;
+            for (int i = 0; i < refs.size(); i++) {
+                ref += refs.getLong(i);
+                nodeIds.add(ref);
+            }
+            block.ways.add(w);
+            block.wayNodes.add(nodeIds);
+        }
+
+        private void parseRelation(ProtobufParser p) throws IllegalDataException {
+            RelationData rd = new RelationData();
+            LongList keys = new LongList();
+            LongList values = new LongList();
+            LongList roles = new LongList();
+            LongList memberIds = new LongList();
+            LongList types = new LongList();
+            boolean hasInfo = false;
+            while (p.next()) {
+                switch (p.getField()) {
+                case 1: rd.setId(p.readVarint()); break;
+                case 2: readPacked(p, false, keys); break;
+                case 3: readPacked(p, false, values); break;
+                case 4: parseInfo(p.readMessage(), rd); hasInfo = true; break;
+                case 8: readPacked(p, false, roles); break;
+                case 9: readPacked(p, true, memberIds); break;
+                case 10: readPacked(p, false, types); break;
+                default: p.skip();
+                }
+            }
+            if (!hasInfo) {
+                block.missingVersion = true;
+            }
+            if (roles.size() != memberIds.size() || types.size() != memberIds.size())
+                throw new IllegalDataException(tr("Invalid members of relation {0}", rd.getUniqueId()));
+            Relation r = new Relation(rd.getId(), rd.getVersion());
+            r.setVisible(rd.isVisible());
+            r.load(rd);
+            setKeys(r, keys, values);
+            List<RelationMemberData> members = new ArrayList<>(memberIds.size());
+            long ref = 0;
+            for (int i = 0; i < memberIds.size(); i++) {
+                ref += memberIds.getLong(i);
+                long type = types.getLong(i);
+                if (type < 0 || type >= MEMBER_TYPES.length)
+                    throw new IllegalDataException(tr("Illegal value for attribute ''type'' on member {0} in relation {1}. Got {2}.",
+                            ref, rd.getUniqueId(), type));
+                members.add(new RelationMemberData(getString(roles.getLong(i)), MEMBER_TYPES[(int) type], ref));
+            }
+            block.relations.add(r);
+            block.relationMembers.add(members);
+        }
+
+        private void parseInfo(ProtobufParser p, PrimitiveData current) throws IllegalDataException {
+            long uid = -1;
+            long userSid = -1;
+            boolean hasVersion = false;
+            while (p.next()) {
+                switch (p.getField()) {
+                case 1: current.setVersion(p.readInt()); hasVersion = true; break;
+                case 2: setTimestamp(current, p.readVarint()); break;
+                case 3: current.setChangesetId((int) p.readVarint()); break;
+                case 4: uid = p.readInt(); break;
+                case 5: userSid = p.readVarint(); break;
+                case 6: current.setVisible(p.readVarint() != 0); break;
+                default: p.skip();
+                }
+            }
+            if (!hasVersion || current.getVersion() <= 0) {
+                current.setVersion(0);
+                block.missingVersion = true;
+            }
+            if (userSid >= 0) {
+                current.setUser(getUser(uid, userSid));
+            }
+        }
+
+        private void setTimestamp(PrimitiveData current, long timestamp) {
+            if (timestamp > 0) {
+                current.setTimestamp(new Date(timestamp * dateGranularity));
+            }
+        }
+
+        /**
+         * Replies the user of the given id and name. The users are looked up in the registry of {@link User}, which
+         * is thread-safe, so that the blocks decoded at the same time share the users. The users of a block are
+         * remembered, as most primitives of a block have been edited by a few users.
+         */
+        private User getUser(long uid, long userSid) throws IllegalDataException {
+            String name = getString(userSid);
+            if (uid <= 0)
+                return name.isEmpty() ? null : User.createLocalUser(name);
+            User user = users.get(uid);
+            if (user == null) {
+                user = User.createOsmUser(uid, name);
+                users.put(uid, user);
+            }
+            return user;
+        }
+
+        private void setKeys(OsmPrimitive p, LongList keys, LongList values) throws IllegalDataException {
+            if (keys.isEmpty())
+                return;
+            if (keys.size() != values.size())
+                throw new IllegalDataException(tr("Invalid tags of {0}", p.getPrimitiveId()));
+            Map<String, String> tags = new HashMap<>(2 * keys.size());
+            for (int i = 0; i < keys.size(); i++) {
+                tags.put(getString(keys.getLong(i)), getString(values.getLong(i)));
+            }
+            p.setKeys(tags);
+        }
+    }
+
+    /**
+     * Reads a repeated field, packed or not.
+     */
+    private static void readPacked(ProtobufParser p, boolean signed, LongList result) throws IllegalDataException {
+        if (p.getWireType() == ProtobufParser.WIRE_LENGTH_DELIMITED) {
+            ProtobufParser packed = p.readMessage();
+            while (packed.hasRemaining()) {
+                result.add(signed ? packed.readSignedVarint() : packed.readVarint());
+            }
+        } else {
+            result.add(signed ? p.readSignedVarint() : p.readVarint());
+        }
+    }
+
+    protected DataSet doParseDataSet(InputStream source, ProgressMonitor progressMonitor) throws IllegalDataException {
+        if (progressMonitor == null) {
+            progressMonitor = NullProgressMonitor.INSTANCE;
+        }
+        ProgressMonitor.CancelListener cancelListener = new ProgressMonitor.CancelListener() {
+            @Override public void operationCanceled() {
+                cancel = true;
+            }
+        };
+        progressMonitor.addCancelListener(cancelListener);
+        try {
+            progressMonitor.beginTask(tr("Prepare OSM data..."), 2);
+            progressMonitor.indeterminateSubTask(tr("Parsing OSM data..."));
+            parse(source);
+            progressMonitor.worked(1);
+
+            progressMonitor.indeterminateSubTask(tr("Preparing data set..."));
+            prepareDataSet();
+            progressMonitor.worked(1);
+            return getDataSet();
+        } catch (EOFException e) {
+            throw new IllegalDataException(tr("Unexpected end of file"), e);
+        } catch (IOException e) {
+            throw new IllegalDataException(e);
+        } catch (PbfParsingCanceledException e) {
+            throw new IllegalDataException(e.getMessage(), e);
+        } finally {
+            progressMonitor.finishTask();
+            progressMonitor.removeCancelListener(cancelListener);
+        }
+    }
+
+    /**
+     * Parse the given input source and return the dataset.
+     *
+     * @param source the source input stream. Must not be null.
+     * @param progressMonitor  the progress monitor. If null, {@link NullProgressMonitor#INSTANCE} is assumed
+     *
+     * @return the dataset with the parsed data
+     * @throws IllegalDataException if an error was found while parsing the data from the source
+     * @throws IllegalArgumentException if source is null
+     */
+    public static DataSet parseDataSet(InputStream source, ProgressMonitor progressMonitor) throws IllegalDataException {
+        return parseDataSet(source, progressMonitor, null);
+    }
+
+    /**
+     * Parse the given input source and return the dataset, keeping only the data within the given bounds.
+     *
+     * @param source the source input stream. Must not be null.
+     * @param progressMonitor  the progress monitor. If null, {@link NullProgressMonitor#INSTANCE} is assumed
+     * @param bounds the bounds of the data to keep, or {@code null} to keep everything
+     *
+     * @return the dataset with the parsed data
+     * @throws IllegalDataException if an error was found while parsing the data from the source
+     * @throws IllegalArgumentException if source is null
+     */
+    public static DataSet parseDataSet(InputStream source, ProgressMonitor progressMonitor, Bounds bounds)
+            throws IllegalDataException {
+        CheckParameterUtil.ensureParameterNotNull(source, "source");
+        return new PbfReader(bounds).doParseDataSet(source, progressMonitor);
+    }
+}
@@ -0,0 +1,171 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal parser of the protocol buffers wire format, as used by the PBF format of OSM data.
+ * <p>
+ * A parser reads the fields of one message within a byte array, without copying it. Nested messages and packed
+ * repeated fields are read by parsers on the same array.
+ */
+final class ProtobufParser {
+
+    static final int WIRE_VARINT = 0;
+    static final int WIRE_FIXED64 = 1;
+    static final int WIRE_LENGTH_DELIMITED = 2;
+    static final int WIRE_FIXED32 = 5;
+
+    private final byte[] data;
+    private int pos;
+    private final int limit;
+    private int tag;
+
+    /**
+     * Constructs a new {@code ProtobufParser} reading a part of a byte array.
+     * @param data the data
+     * @param offset the offset of the message in the array
+     * @param length the length of the message
+     */
+    ProtobufParser(byte[] data, int offset, int length) {
+        this.data = data;
+        this.pos = offset;
+        this.limit = offset + length;
+    }
+
+    /**
+     * Constructs a new {@code ProtobufParser} reading a whole byte array.
+     * @param data the data
+     */
+    ProtobufParser(byte[] data) {
+        this(data, 0, data.length);
+    }
+
+    /**
+     * Reads the key of the next field.
+     * @return {@code false} at the end of the message
+     * @throws IllegalDataException if the data is malformed
+     */
+    boolean next() throws IllegalDataException {
+        if (pos >= limit)
+            return false;
+        tag = (int) readVarint();
+        return true;
+    }
+
+    /**
+     * Replies the number of the current field.
+     * @return the number of the current field
+     */
+    int getField() {
+        return tag >>> 3;
+    }
+
+    /**
+     * Replies the wire type of the current field.
+     * @return the wire type of the current field
+     */
+    int getWireType() {
+        return tag & 7;
+    }
+
+    /**
+     * Determines if there is data left to read, for instance in a packed field.
+     * @return {@code true} if there is data left to read
+     */
+    boolean hasRemaining() {
+        return pos < limit;
+    }
+
+    long readVarint() throws IllegalDataException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (pos >= limit)
+                throw new IllegalDataException(tr("Unexpected end of protocol buffer message"));
+            byte b = data[pos++];
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0)
+                return value;
+        }
+        throw new IllegalDataException(tr("Malformed variable length integer"));
+    }
+
+    int readInt() throws IllegalDataException {
+        return (int) readVarint();
+    }
+
+    /**
+     * Reads a {@code sint32} or {@code sint64} value, zigzag encoded.
+     * @return the value
+     * @throws IllegalDataException if the data is malformed
+     */
+    long readSignedVarint() throws IllegalDataException {
+        long value = readVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads the current length delimited field as a nested message, or as the values of a packed repeated field.
+     * @return a parser of the field
+     * @throws IllegalDataException if the data is malformed
+     */
+    ProtobufParser readMessage() throws IllegalDataException {
+        int length = readLength();
+        ProtobufParser result = new ProtobufParser(data, pos, length);
+        pos += length;
+        return result;
+    }
+
+    byte[] readBytes() throws IllegalDataException {
+        int length = readLength();
+        byte[] result = new byte[length];
+        System.arraycopy(data, pos, result, 0, length);
+        pos += length;
+        return result;
+    }
+
+    String readString() throws IllegalDataException {
+        int length = readLength();
+        String result = new String(data, pos, length, StandardCharsets.UTF_8);
+        pos += length;
+        return result;
+    }
+
+    private int readLength() throws IllegalDataException {
+        long length = readVarint();
+        if (length < 0 || length > limit - pos)
+            throw new IllegalDataException(tr("Invalid length {0} in protocol buffer message", length));
+        return (int) length;
+    }
+
+    /**
+     * Skips the value of the current field.
+     * @throws IllegalDataException if the data is malformed or the wire type is unsupported
+     */
+    void skip() throws IllegalDataException {
+        switch (getWireType()) {
+        case WIRE_VARINT:
+            readVarint();
+            break;
+        case WIRE_FIXED64:
+            skipBytes(8);
+            break;
+        case WIRE_LENGTH_DELIMITED:
+            skipBytes(readLength());
+            break;
+        case WIRE_FIXED32:
+            skipBytes(4);
+            break;
+        default:
+            throw new IllegalDataException(tr("Unsupported wire type {0} in protocol buffer message", getWireType()));
+        }
+    }
+
+    private void skipBytes(int n) throws IllegalDataException {
+        if (n > limit - pos)
+            throw new IllegalDataException(tr("Unexpected end of protocol buffer message"));
+        pos += n;
+    }
+}
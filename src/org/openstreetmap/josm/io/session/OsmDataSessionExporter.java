@@ -34,10 +34,12 @@ import javax.swing.JRadioButton;
 import javax.swing.SwingConstants;
 
 import org.openstreetmap.josm.actions.SaveAction;
+import org.openstreetmap.josm.data.preferences.BooleanProperty;
 import org.openstreetmap.josm.gui.layer.Layer;
 import org.openstreetmap.josm.gui.layer.OsmDataLayer;
 import org.openstreetmap.josm.gui.util.GuiHelper;
 import org.openstreetmap.josm.gui.widgets.JosmTextField;
+import org.openstreetmap.josm.io.OsmBinaryWriter;
 import org.openstreetmap.josm.io.OsmWriter;
 import org.openstreetmap.josm.io.OsmWriterFactory;
 import org.openstreetmap.josm.io.session.SessionWriter.ExportSupport;
@@ -47,6 +49,11 @@ import org.w3c.dom.Element;
 
 public class OsmDataSessionExporter implements SessionLayerExporter {
 
+    /**
+     * Includes the data of the layers in the session file in the compact binary format of JOSM instead of XML.
+     */
+    public static final BooleanProperty PROP_BINARY = new BooleanProperty("session.osm.binary", false);
+
     private OsmDataLayer layer;
     private JRadioButton link, include;
     private JCheckBox export;
@@ -192,9 +199,14 @@ public class OsmDataSessionExporter implements SessionLayerExporter {
         layerEl.appendChild(file);
 
         if (requiresZip()) {
-            String zipPath = "layers/" + String.format("%02d", support.getLayerIndex()) + "/data.osm";
+            boolean binary = PROP_BINARY.get();
+            String zipPath = "layers/" + String.format("%02d", support.getLayerIndex()) + (binary ? "/data.osmbin" : "/data.osm");
             file.appendChild(support.createTextNode(zipPath));
-            addDataFile(support.getOutputStreamZip(zipPath));
+            if (binary) {
+                addBinaryDataFile(support.getOutputStreamZip(zipPath));
+            } else {
+                addDataFile(support.getOutputStreamZip(zipPath));
+            }
         } else {
             URI uri = layer.getAssociatedFile().toURI();
             URL url = null;
@@ -219,4 +231,20 @@ public class OsmDataSessionExporter implements SessionLayerExporter {
             layer.data.getReadLock().unlock();
         }
     }
+
+    /**
+     * Writes the data of the layer in the compact binary format of JOSM.
+     * @param out the output stream, left open
+     * @throws IOException if an I/O error occurs
+     */
+    protected void addBinaryDataFile(OutputStream out) throws IOException {
+        // not closed, it would close the zip stream
+        OsmBinaryWriter w = new OsmBinaryWriter(out);
+        layer.data.getReadLock().lock();
+        try {
+            w.write(layer.data);
+        } finally {
+            layer.data.getReadLock().unlock();
+        }
+    }
 }
@@ -15,6 +15,7 @@ import javax.xml.xpath.XPathFactory;
 import org.openstreetmap.josm.gui.layer.Layer;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.io.IllegalDataException;
+import org.openstreetmap.josm.io.OsmBinaryImporter;
 import org.openstreetmap.josm.io.OsmImporter;
 import org.openstreetmap.josm.io.session.SessionReader.ImportSupport;
 import org.w3c.dom.Element;
@@ -36,7 +37,7 @@ public class OsmDataSessionImporter implements SessionLayerImporter {
                 throw new IllegalDataException(tr("File name expected for layer no. {0}", support.getLayerIndex()));
             }
 
-            OsmImporter importer = new OsmImporter();
+            OsmImporter importer = fileStr.endsWith(".osmbin") ? new OsmBinaryImporter() : new OsmImporter();
             try (InputStream in = support.getInputStream(fileStr)) {
                 OsmImporter.OsmImporterData importData = importer.loadLayer(in, support.getFile(fileStr), support.getLayerName(), progressMonitor);
 
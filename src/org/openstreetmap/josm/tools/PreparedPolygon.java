@@ -0,0 +1,202 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.tools;
+
+import java.awt.geom.Area;
+import java.awt.geom.Rectangle2D;
+import java.util.List;
+
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.tools.Geometry.PolygonIntersection;
+
+/**
+ * A polygon prepared to be tested repeatedly against nodes and other polygons.
+ * <p>
+ * The projected coordinates of the edges are kept in arrays, indexed by horizontal bands, so that a point
+ * is only tested against the edges of its band. The bounds of the polygon rule out most tests at once,
+ * and its {@link Area} is built once. The results are the same as those of
+ * {@link Geometry#nodeInsidePolygon(Node, List)} and {@link Geometry#polygonIntersection(List, List)}.
+ * <p>
+ * The polygon does not follow the changes of its nodes or of the projection, it has to be prepared again.
+ */
+public final class PreparedPolygon {
+
+    /** Minimal number of edges to index the edges by bands */
+    private static final int MIN_INDEXED_EDGES = 16;
+    /** Maximal number of bands */
+    private static final int MAX_BANDS = 1024;
+
+    private final List<Node> nodes;
+    private final Rectangle2D bounds;
+    private Area area;
+
+    /** The edges, from the old point to the new point as in {@link Geometry#nodeInsidePolygon(Node, List)} */
+    private final double[] oldY;
+    private final double[] newY;
+    /** The edges, from the lower point p1 to the upper point p2 */
+    private final double[] x1;
+    private final double[] y1;
+    private final double[] x2;
+    private final double[] y2;
+    private final int edgeCount;
+
+    /** The edges crossing each band, band b holding bandEdges[bandStart[b]] to bandEdges[bandStart[b+1]-1] */
+    private final int bands;
+    private final int[] bandStart;
+    private final int[] bandEdges;
+
+    /**
+     * Prepares a polygon.
+     * @param nodes the nodes of the polygon, the polygon is closed whether the last node repeats the first one or not
+     */
+    public PreparedPolygon(List<Node> nodes) {
+        this(nodes, null);
+    }
+
+    /**
+     * Prepares a polygon whose area is already known.
+     * @param nodes the nodes of the polygon, the polygon is closed whether the last node repeats the first one or not
+     * @param area the area of the polygon, as returned by {@link Geometry#getArea(List)}, or {@code null}
+     */
+    public PreparedPolygon(List<Node> nodes, Area area) {
+        this.nodes = nodes;
+        this.area = area;
+        int n = nodes.size();
+        oldY = new double[n];
+        newY = new double[n];
+        x1 = new double[n];
+        y1 = new double[n];
+        x2 = new double[n];
+        y2 = new double[n];
+        Rectangle2D b = null;
+        int count = 0;
+        if (n >= 2) {
+            Node oldPoint = nodes.get(n - 1);
+            for (Node newPoint : nodes) {
+                EastNorth en = newPoint.getEastNorth();
+                if (en != null) {
+                    if (b == null) {
+                        b = new Rectangle2D.Double(en.getX(), en.getY(), 0, 0);
+                    } else {
+                        b.add(en.getX(), en.getY());
+                    }
+                }
+                // skip duplicate points
+                if (newPoint.equals(oldPoint)) {
+                    continue;
+                }
+                EastNorth o = oldPoint.getEastNorth();
+                if (en != null && o != null) {
+                    oldY[count] = o.getY();
+                    newY[count] = en.getY();
+                    // order points so p1.y <= p2.y
+                    EastNorth p1 = en.getY() > o.getY() ? o : en;
+                    EastNorth p2 = en.getY() > o.getY() ? en : o;
+                    x1[count] = p1.getX();
+                    y1[count] = p1.getY();
+                    x2[count] = p2.getX();
+                    y2[count] = p2.getY();
+                    count++;
+                }
+                oldPoint = newPoint;
+            }
+        } else if (n == 1 && nodes.get(0).getEastNorth() != null) {
+            EastNorth en = nodes.get(0).getEastNorth();
+            b = new Rectangle2D.Double(en.getX(), en.getY(), 0, 0);
+        }
+        bounds = b;
+        edgeCount = count;
+
+        // index the edges by the bands their y range overlaps
+        bands = count >= MIN_INDEXED_EDGES && bounds.getHeight() > 0 ? Math.min(MAX_BANDS, count / 4) : 1;
+        bandStart = new int[bands + 1];
+        for (int e = 0; e < count; e++) {
+            for (int band = getBand(y1[e]); band <= getBand(y2[e]); band++) {
+                bandStart[band + 1]++;
+            }
+        }
+        for (int band = 0; band < bands; band++) {
+            bandStart[band + 1] += bandStart[band];
+        }
+        bandEdges = new int[bandStart[bands]];
+        int[] next = new int[bands];
+        for (int e = 0; e < count; e++) {
+            for (int band = getBand(y1[e]); band <= getBand(y2[e]); band++) {
+                bandEdges[bandStart[band] + next[band]++] = e;
+            }
+        }
+    }
+
+    private int getBand(double y) {
+        if (bands == 1)
+            return 0;
+        int band = (int) ((y - bounds.getMinY()) / bounds.getHeight() * bands);
+        return Math.max(0, Math.min(bands - 1, band));
+    }
+
+    /**
+     * Replies the nodes of this polygon.
+     * @return the nodes of this polygon
+     */
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Replies the projected bounds of this polygon.
+     * @return the bounds, or {@code null} if no node has coordinates
+     */
+    public Rectangle2D getBounds() {
+        return bounds;
+    }
+
+    /**
+     * Replies the area of this polygon, built on first use.
+     * @return the area of this polygon
+     */
+    public synchronized Area getArea() {
+        if (area == null) {
+            area = Geometry.getArea(nodes);
+        }
+        return area;
+    }
+
+    /**
+     * Tests if a node is inside this polygon, in the same way as {@link Geometry#nodeInsidePolygon(Node, List)}.
+     * @param point the node to test
+     * @return true if the node is inside this polygon
+     */
+    public boolean contains(Node point) {
+        if (nodes.size() < 2 || edgeCount == 0)
+            return false;
+        EastNorth en = point.getEastNorth();
+        double px = en.getX();
+        double py = en.getY();
+        // an edge is only crossed if it spans the y coordinate of the point
+        if (py <= bounds.getMinY() || py > bounds.getMaxY())
+            return false;
+        boolean inside = false;
+        int band = getBand(py);
+        for (int k = bandStart[band]; k < bandStart[band + 1]; k++) {
+            int e = bandEdges[k];
+            if ((newY[e] < py) == (py <= oldY[e])
+                    && (px - x1[e]) * (y2[e] - y1[e]) < (x2[e] - x1[e]) * (py - y1[e])) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * Tests how this polygon and another one intersect, in the same way as {@link Geometry#polygonIntersection(List, List)}.
+     * @param other the other polygon
+     * @return the intersection kind, {@code FIRST_INSIDE_SECOND} meaning this polygon is inside the other one
+     */
+    public PolygonIntersection intersection(PreparedPolygon other) {
+        if (bounds == null || other.bounds == null
+                || bounds.getMaxX() < other.bounds.getMinX() || other.bounds.getMaxX() < bounds.getMinX()
+                || bounds.getMaxY() < other.bounds.getMinY() || other.bounds.getMaxY() < bounds.getMinY())
+            return PolygonIntersection.OUTSIDE;
+        return Geometry.polygonIntersection(getArea(), other.getArea());
+    }
+}
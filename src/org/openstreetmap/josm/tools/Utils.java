@@ -51,6 +51,7 @@ import java.util.zip.ZipInputStream;
 import org.apache.tools.bzip2.CBZip2InputStream;
 import org.openstreetmap.josm.Main;
 import org.openstreetmap.josm.data.Version;
+import org.openstreetmap.josm.io.Compression;
 
 /**
  * Basic utils, that can be useful in different parts of the program.
@@ -673,7 +674,7 @@ public final class Utils {
             case "application/x-gzip":
                 return getGZipInputStream(in);
             case "application/x-bzip2":
-                return getBZip2InputStream(in);
+                return Compression.BZIP2.getUncompressedInputStream(in);
             }
         }
         return in;
@@ -0,0 +1,27 @@
+//
+// This file was generated by the JavaTM Architecture for XML Binding(JAXB) Reference Implementation, v2.2.8-b130911.1802 
+// See <a href="http://java.sun.com/xml/jaxb">http://java.sun.com/xml/jaxb</a> 
+// Any modifications to this file will be lost upon recompilation of the source schema. 
+// Generated on: 2026.10.18 at 05:16:13 PM UTC 
+//
+
+
+package org.w3._2001.xmlschema;
+
+import java.util.Calendar;
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+
+public class Adapter1
+    extends XmlAdapter<String, Calendar>
+{
+
+
+    public Calendar unmarshal(String value) {
+        return (javax.xml.bind.DatatypeConverter.parseDate(value));
+    }
+
+    public String marshal(Calendar value) {
+        return (org.openstreetmap.josm.data.imagery.WmsCache.printDate(value));
+    }
+
+}
@@ -0,0 +1,135 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.actions.search;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openstreetmap.josm.actions.search.SearchCompiler.Match;
+import org.openstreetmap.josm.benchmark.BenchmarkData;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.TagIndex;
+
+/**
+ * Evaluates compiled search expressions against all primitives of the reference city.
+ * One operation is the search of all primitives. The {@link #search} variant only evaluates the candidates
+ * replied from the {@link TagIndex} of the dataset, as the search action does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SearchCompilerBenchmark {
+
+    /**
+     * The primitives of the reference city and their tag index.
+     */
+    @State(Scope.Benchmark)
+    public static class Primitives {
+        Collection<OsmPrimitive> all;
+        TagIndex index;
+
+        /**
+         * Reads the reference city and builds its tag index.
+         * @throws Exception if an error occurs
+         */
+        @Setup
+        public void setUp() throws Exception {
+            BenchmarkData.init();
+            DataSet ds = BenchmarkData.getDataSet(BenchmarkData.CITY);
+            all = ds.allPrimitives();
+            index = ds.getTagIndex();
+            // the index is built on first use
+            index.getPrimitivesWithKey("highway");
+        }
+    }
+
+    /**
+     * A search expression without regular expressions.
+     */
+    @State(Scope.Benchmark)
+    public static class Expression {
+        /** The search expression */
+        @Param({"highway=residential", "building=* -type:node", "Stra\u00dfe", "highway=* AND name=\"\""})
+        public String expression;
+        Match match;
+
+        /**
+         * Compiles the expression.
+         * @throws Exception if an error occurs
+         */
+        @Setup
+        public void setUp() throws Exception {
+            BenchmarkData.init();
+            match = SearchCompiler.compile(expression, false, false);
+        }
+    }
+
+    /**
+     * A search expression with regular expressions.
+     */
+    @State(Scope.Benchmark)
+    public static class RegexExpression {
+        Match match;
+
+        /**
+         * Compiles the expression.
+         * @throws Exception if an error occurs
+         */
+        @Setup
+        public void setUp() throws Exception {
+            BenchmarkData.init();
+            match = SearchCompiler.compile("(highway=* OR railway=*) AND name~\"^[A-M].*\"", false, true);
+        }
+    }
+
+    private static int count(Match match, Collection<OsmPrimitive> primitives) {
+        int found = 0;
+        for (OsmPrimitive p : primitives) {
+            if (match.match(p)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Evaluates the expression against each primitive.
+     * @param primitives the primitives
+     * @param expression the expression
+     * @return the number of matching primitives
+     */
+    @Benchmark
+    public int match(Primitives primitives, Expression expression) {
+        return count(expression.match, primitives.all);
+    }
+
+    /**
+     * Evaluates the expression against the candidates of the tag index, or each primitive if it has none.
+     * @param primitives the primitives
+     * @param expression the expression
+     * @return the number of matching primitives
+     */
+    @Benchmark
+    public int search(Primitives primitives, Expression expression) {
+        Collection<OsmPrimitive> candidates = expression.match.getCandidates(primitives.index);
+        return count(expression.match, candidates != null ? candidates : primitives.all);
+    }
+
+    /**
+     * Evaluates the regular expression against each primitive.
+     * @param primitives the primitives
+     * @param expression the expression
+     * @return the number of matching primitives
+     */
+    @Benchmark
+    public int matchRegex(Primitives primitives, RegexExpression expression) {
+        return count(expression.match, primitives.all);
+    }
+}
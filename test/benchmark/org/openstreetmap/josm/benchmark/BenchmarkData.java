@@ -0,0 +1,111 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.gui.mappaint.MapPaintStyles;
+import org.openstreetmap.josm.gui.preferences.ToolbarPreferences;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.Compression;
+import org.openstreetmap.josm.io.IllegalDataException;
+import org.openstreetmap.josm.io.OsmReader;
+
+/**
+ * Reference datasets shared by the benchmarks. They are read once and must not be modified.
+ * <p>
+ * The benchmarks are run by JMH, see the <code>benchmark</code> target of the build. Each of them calls {@link #init()}
+ * in its setup, since JMH runs them in forked virtual machines.
+ */
+public final class BenchmarkData {
+
+    /** A city of about 60,000 inhabitants with detailed buildings and addresses */
+    public static final String CITY = "data_nodist/neubrandenburg.osm.bz2";
+    /** Bounds of the center of {@link #CITY} */
+    public static final Bounds CITY_CENTER = new Bounds(53.55, 13.25, 53.57, 13.28);
+    /** A small area with many turn restrictions */
+    public static final String RESTRICTION = "data_nodist/restriction.osm";
+    /** Large multipolygons */
+    public static final String MULTIPOLYGON = "data_nodist/multipolygon.osm";
+
+    private static final Map<String, byte[]> contents = new HashMap<>();
+    private static final Map<String, DataSet> dataSets = new HashMap<>();
+    private static boolean initialized;
+    private static boolean stylesRead;
+
+    private BenchmarkData() {
+        // Hide default constructor for utils classes
+    }
+
+    /**
+     * Initializes the performance test fixture, if not already done.
+     */
+    public static synchronized void init() {
+        if (!initialized) {
+            JOSMFixture.createPerformanceTestFixture().init();
+            // some validator tests need the main application
+            Main.toolbar = new ToolbarPreferences();
+            new MainApplication();
+            initialized = true;
+        }
+    }
+
+    /**
+     * Replies the uncompressed content of a reference file.
+     * @param file the path of the file, relative to the root of the project
+     * @return the uncompressed content of the file
+     * @throws IOException if the file cannot be read
+     */
+    public static synchronized byte[] getContent(String file) throws IOException {
+        byte[] content = contents.get(file);
+        if (content == null) {
+            try (InputStream is = Compression.getUncompressedFileInputStream(new File(file))) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int n;
+                while ((n = is.read(buffer)) > 0) {
+                    out.write(buffer, 0, n);
+                }
+                content = out.toByteArray();
+            }
+            contents.put(file, content);
+        }
+        return content;
+    }
+
+    /**
+     * Replies the data set of a reference file.
+     * @param file the path of the file, relative to the root of the project
+     * @return the data set
+     * @throws IOException if the file cannot be read
+     * @throws IllegalDataException if the file is not a valid OSM file
+     */
+    public static synchronized DataSet getDataSet(String file) throws IOException, IllegalDataException {
+        DataSet ds = dataSets.get(file);
+        if (ds == null) {
+            ds = OsmReader.parseDataSet(new ByteArrayInputStream(getContent(file)), NullProgressMonitor.INSTANCE);
+            dataSets.put(file, ds);
+        }
+        return ds;
+    }
+
+    /**
+     * Reads the map paint styles configured in the benchmark preferences, if not already done.
+     */
+    public static synchronized void readStyles() {
+        if (!stylesRead) {
+            MapPaintStyles.readFromPreferences();
+            stylesRead = true;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.gpx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openstreetmap.josm.benchmark.BenchmarkData;
+import org.openstreetmap.josm.data.ProjectionBounds;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.coor.LatLon;
+
+/**
+ * Lists the points to draw a long track, with and without {@link GpxLineIndex}. One operation is one point of the track.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GpxLineIndexBenchmark {
+
+    private static final int POINTS = 200000;
+
+    private List<WayPoint> track;
+    private GpxLineIndex index;
+    private double tolerance;
+
+    /**
+     * Creates the track and its index.
+     */
+    @Setup
+    public void setUp() {
+        BenchmarkData.init();
+        // a trace of about two days at 1 Hz
+        Random random = new Random(42);
+        track = new ArrayList<>(POINTS);
+        double lat = 48;
+        double lon = 11;
+        for (int i = 0; i < POINTS; i++) {
+            WayPoint wpt = new WayPoint(new LatLon(lat, lon));
+            wpt.drawLine = i > 0;
+            track.add(wpt);
+            lat += (random.nextDouble() - 0.45) * 2e-5;
+            lon += (random.nextDouble() - 0.45) * 2e-5;
+        }
+        index = new GpxLineIndex(track);
+        // the projected size of a pixel when the whole track is shown on 1000 pixels
+        EastNorth first = track.get(0).getEastNorth();
+        EastNorth last = track.get(POINTS - 1).getEastNorth();
+        tolerance = first.distance(last) / 1000 / 2;
+    }
+
+    /**
+     * Builds the index.
+     * @return the bounds of the track
+     */
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public ProjectionBounds build() {
+        return new GpxLineIndex(track).getBounds();
+    }
+
+    /**
+     * Lists the points of an overview from the index.
+     * @return a value depending on the listed points
+     */
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public double overview() {
+        double sum = 0;
+        int[] level = index.getLevel(tolerance);
+        int count = level != null ? level.length : index.size();
+        for (int k = 0; k < count; k++) {
+            int i = level != null ? level[k] : k;
+            sum += index.getEast(i) + index.getNorth(i);
+        }
+        return sum;
+    }
+
+    /**
+     * Lists all points of the track, as without index.
+     * @return a value depending on the listed points
+     */
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public double overviewAll() {
+        double sum = 0;
+        for (WayPoint wpt : track) {
+            LatLon c = wpt.getCoor();
+            if (Double.isNaN(c.lat()) || Double.isNaN(c.lon())) {
+                continue;
+            }
+            EastNorth en = wpt.getEastNorth();
+            sum += en.east() + en.north();
+        }
+        return sum;
+    }
+}
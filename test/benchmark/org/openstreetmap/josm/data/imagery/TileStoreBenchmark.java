@@ -0,0 +1,191 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.imagery;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Loads and stores tiles in a {@link TileStore}, compared with a file per tile like
+ * {@link org.openstreetmap.gui.jmapviewer.OsmFileCacheTileLoader}. One operation is one tile.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TileStoreBenchmark {
+
+    private static final int TILES = 2000;
+    private static final int TILE_SIZE = 16 * 1024;
+    private static final int OPERATIONS = 1000;
+
+    /**
+     * A temporary directory and the content of the tiles.
+     */
+    public abstract static class Tiles {
+        protected final Random random = new Random(42);
+        protected final byte[] data = new byte[TILE_SIZE];
+        protected File dir;
+
+        /**
+         * Creates the temporary directory.
+         * @throws IOException if an I/O error occurs
+         */
+        protected void createDirectory() throws IOException {
+            random.nextBytes(data);
+            dir = Files.createTempDirectory("josm-tiles").toFile();
+            dir.deleteOnExit();
+        }
+
+        protected File register(File file) {
+            file.deleteOnExit();
+            return file;
+        }
+
+        protected TileStore createStore(long maxBytes) throws IOException {
+            register(new File(dir, TileStore.PACK_FILENAME));
+            register(new File(dir, TileStore.INDEX_FILENAME));
+            return new TileStore(dir, maxBytes);
+        }
+    }
+
+    /**
+     * A store holding all tiles.
+     */
+    @State(Scope.Benchmark)
+    public static class FullStore extends Tiles {
+        TileStore store;
+
+        /**
+         * Stores all tiles.
+         * @throws IOException if an I/O error occurs
+         */
+        @Setup
+        public void setUp() throws IOException {
+            createDirectory();
+            store = createStore(Long.MAX_VALUE);
+            for (int i = 0; i < TILES; i++) {
+                store.put(key(i), data, null, Long.MAX_VALUE);
+            }
+            store.flush();
+        }
+    }
+
+    /**
+     * A file per tile.
+     */
+    @State(Scope.Benchmark)
+    public static class TileFiles extends Tiles {
+
+        /**
+         * Writes all tiles.
+         * @throws IOException if an I/O error occurs
+         */
+        @Setup
+        public void setUp() throws IOException {
+            createDirectory();
+            for (int i = 0; i < TILES; i++) {
+                try (OutputStream out = new FileOutputStream(register(getTileFile(i)))) {
+                    out.write(data);
+                }
+            }
+        }
+
+        File getTileFile(int i) {
+            return new File(dir, "16_" + i + "_" + (i / 7) + ".png");
+        }
+    }
+
+    /**
+     * An empty store whose budget holds a quarter of the tiles.
+     */
+    @State(Scope.Benchmark)
+    public static class EvictingStore extends Tiles {
+        TileStore store;
+        int next;
+
+        /**
+         * Creates the empty store.
+         * @throws IOException if an I/O error occurs
+         */
+        @Setup
+        public void setUp() throws IOException {
+            createDirectory();
+            store = createStore(TILES / 4 * (TILE_SIZE + 64L));
+        }
+    }
+
+    static String key(int i) {
+        return "16/" + i + "/" + (i / 7) + "@Benchmark";
+    }
+
+    /**
+     * Loads random tiles from the store.
+     * @param tiles the store
+     * @return the length of the loaded tiles
+     */
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int get(FullStore tiles) {
+        int length = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            length += tiles.store.get(key(tiles.random.nextInt(TILES))).getData().length;
+        }
+        return length;
+    }
+
+    /**
+     * Loads random tiles from their files.
+     * @param tiles the files
+     * @return the length of the loaded tiles
+     * @throws IOException if an I/O error occurs
+     */
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int getFiles(TileFiles tiles) throws IOException {
+        int length = 0;
+        byte[] buffer = new byte[TILE_SIZE];
+        for (int i = 0; i < OPERATIONS; i++) {
+            File file = tiles.getTileFile(tiles.random.nextInt(TILES));
+            // the tags file is looked up too
+            if (!file.exists() || new File(tiles.dir, file.getName() + ".tags").exists())
+                throw new IOException("missing tile");
+            try (InputStream in = new FileInputStream(file)) {
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    length += n;
+                }
+            }
+            file.lastModified();
+        }
+        return length;
+    }
+
+    /**
+     * Stores new tiles, evicting the older ones.
+     * @param tiles the store
+     * @return the size of the store
+     * @throws IOException if an I/O error occurs
+     */
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int putEvict(EvictingStore tiles) throws IOException {
+        for (int i = 0; i < OPERATIONS; i++) {
+            tiles.store.put(key(tiles.next++), tiles.data, null, Long.MAX_VALUE);
+        }
+        return tiles.store.size();
+    }
+}
@@ -0,0 +1,75 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openstreetmap.josm.benchmark.BenchmarkData;
+import org.openstreetmap.josm.data.coor.LatLon;
+
+/**
+ * Merges a download onto a dataset whose nodes have all been moved meanwhile, so that each node yields a conflict.
+ * The ways of the download are merged too. One operation is one merge, building the datasets included.
+ * The time per primitive should not grow with the number of conflicts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DataSetMergerBenchmark {
+
+    private static final int NODES_PER_WAY = 10;
+
+    /** The number of conflicting nodes */
+    @Param({"5000", "20000", "80000"})
+    public int nodes;
+
+    /**
+     * Initializes the fixture.
+     */
+    @Setup
+    public void setUp() {
+        BenchmarkData.init();
+    }
+
+    private DataSet createDataSet(int version, boolean moved) {
+        DataSet ds = new DataSet();
+        List<Node> wayNodes = new ArrayList<>(NODES_PER_WAY);
+        for (int i = 1; i <= nodes; i++) {
+            Node n = new Node(i, version);
+            n.setCoor(new LatLon(48 + i * 1e-5, moved ? 11.0001 : 11));
+            n.setModified(moved);
+            ds.addPrimitive(n);
+            wayNodes.add(n);
+            if (wayNodes.size() == NODES_PER_WAY) {
+                Way w = new Way(i, version);
+                w.setNodes(wayNodes);
+                w.put("highway", version == 1 ? "residential" : "service");
+                ds.addPrimitive(w);
+                wayNodes.clear();
+            }
+        }
+        return ds;
+    }
+
+    /**
+     * Merges the download.
+     * @return the number of conflicts
+     */
+    @Benchmark
+    public int merge() {
+        DataSet my = createDataSet(1, true);
+        DataSet their = createDataSet(2, false);
+        DataSetMerger merger = new DataSetMerger(my, their);
+        merger.merge();
+        return merger.getConflicts().size();
+    }
+}
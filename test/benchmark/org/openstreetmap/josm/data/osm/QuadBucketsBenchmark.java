@@ -0,0 +1,73 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openstreetmap.josm.benchmark.BenchmarkData;
+
+/**
+ * Searches {@link QuadBuckets} with random boxes within the reference city. One operation is one search.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QuadBucketsBenchmark {
+
+    private static final int SEARCHES = 1000;
+
+    /** The searched primitives, nodes or ways */
+    @Param({"nodes", "ways"})
+    public String primitives;
+
+    private final QuadBuckets<OsmPrimitive> buckets = new QuadBuckets<>();
+    private final BBox[] boxes = new BBox[SEARCHES];
+
+    /**
+     * Fills the buckets and chooses the searched boxes.
+     * @throws Exception if an error occurs
+     */
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkData.init();
+        DataSet ds = BenchmarkData.getDataSet(BenchmarkData.CITY);
+        buckets.clear();
+        if ("nodes".equals(primitives)) {
+            buckets.addAll(ds.getNodes());
+        } else {
+            buckets.addAll(ds.getWays());
+        }
+        BBox bounds = BenchmarkData.CITY_CENTER.toBBox();
+        Random random = new Random(42);
+        for (int i = 0; i < SEARCHES; i++) {
+            // boxes of 50 m to 1 km
+            double size = 0.0005 + random.nextDouble() * 0.0095;
+            double lon = bounds.getTopLeftLon() + random.nextDouble() * (bounds.getBottomRightLon() - bounds.getTopLeftLon());
+            double lat = bounds.getBottomRightLat() + random.nextDouble() * (bounds.getTopLeftLat() - bounds.getBottomRightLat());
+            boxes[i] = new BBox(lon, lat, lon + size, lat + size);
+        }
+    }
+
+    /**
+     * Searches the buckets with each box.
+     * @return the number of primitives found
+     */
+    @Benchmark
+    @OperationsPerInvocation(SEARCHES)
+    public int search() {
+        int found = 0;
+        for (BBox box : boxes) {
+            found += buckets.search(box).size();
+        }
+        return found;
+    }
+}
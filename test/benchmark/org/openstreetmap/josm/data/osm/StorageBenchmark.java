@@ -0,0 +1,67 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openstreetmap.josm.benchmark.BenchmarkData;
+
+/**
+ * Looks up primitives by id in a {@link Storage}, the way {@link DataSet#getPrimitiveById} does.
+ * One operation is the lookup of all primitives of the reference city; one lookup out of ten misses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StorageBenchmark {
+
+    private Map<PrimitiveId, OsmPrimitive> map;
+    private PrimitiveId[] ids;
+
+    /**
+     * Fills the storage and chooses the looked up ids.
+     * @throws Exception if an error occurs
+     */
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkData.init();
+        Storage<OsmPrimitive> storage = new Storage<>(new Storage.PrimitiveIdHash(), true);
+        List<PrimitiveId> keys = new ArrayList<>();
+        for (OsmPrimitive p : BenchmarkData.getDataSet(BenchmarkData.CITY).allPrimitives()) {
+            storage.add(p);
+            keys.add(new SimplePrimitiveId(p.getUniqueId(), p.getType()));
+            if (keys.size() % 10 == 0) {
+                keys.add(new SimplePrimitiveId(-p.getUniqueId() - 1, p.getType()));
+            }
+        }
+        Collections.shuffle(keys, new Random(42));
+        map = storage.foreignKey(new Storage.PrimitiveIdHash());
+        ids = keys.toArray(new PrimitiveId[keys.size()]);
+    }
+
+    /**
+     * Looks up each id.
+     * @return the number of primitives found
+     */
+    @Benchmark
+    public int get() {
+        int found = 0;
+        for (PrimitiveId id : ids) {
+            if (map.get(id) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,81 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.visitor.paint;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openstreetmap.josm.benchmark.BenchmarkData;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.gui.NavigatableComponent;
+
+/**
+ * Renders a reference dataset with {@link StyledMapRenderer}. One operation is one frame.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StyledMapRendererBenchmark {
+
+    private static final int IMG_WIDTH = 1400;
+    private static final int IMG_HEIGHT = 1050;
+
+    /** The name of the rendered area */
+    @Param({"restriction", "multipolygon", "city", "cityCenter"})
+    public String area;
+
+    private Bounds bounds;
+    private DataSet ds;
+    private NavigatableComponent nc;
+    private Graphics2D g;
+
+    /**
+     * Reads the styles and the dataset of the rendered area.
+     * @throws Exception if an error occurs
+     */
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkData.init();
+        BenchmarkData.readStyles();
+        switch (area) {
+        case "restriction":
+            ds = BenchmarkData.getDataSet(BenchmarkData.RESTRICTION);
+            bounds = new Bounds(51.12, 14.147472381591795, 51.128, 14.162492752075195);
+            break;
+        case "multipolygon":
+            ds = BenchmarkData.getDataSet(BenchmarkData.MULTIPOLYGON);
+            bounds = new Bounds(60, -180, 85, -122);
+            break;
+        case "city":
+            ds = BenchmarkData.getDataSet(BenchmarkData.CITY);
+            bounds = new Bounds(53.51, 13.20, 53.59, 13.34);
+            break;
+        default:
+            ds = BenchmarkData.getDataSet(BenchmarkData.CITY);
+            bounds = BenchmarkData.CITY_CENTER;
+        }
+        g = new BufferedImage(IMG_WIDTH, IMG_HEIGHT, BufferedImage.TYPE_3BYTE_BGR).createGraphics();
+        nc = new NavigatableComponent();
+        nc.setBounds(0, 0, IMG_WIDTH, IMG_HEIGHT);
+        nc.zoomTo(bounds);
+    }
+
+    /**
+     * Renders one frame.
+     * @return the graphics rendered to
+     */
+    @Benchmark
+    public Graphics2D render() {
+        new StyledMapRenderer(g, nc, false).render(ds, true, bounds);
+        return g;
+    }
+}
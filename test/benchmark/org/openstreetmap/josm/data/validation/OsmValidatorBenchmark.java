@@ -0,0 +1,60 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.validation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openstreetmap.josm.benchmark.BenchmarkData;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.validation.tests.MultipolygonTest;
+import org.openstreetmap.josm.data.validation.tests.PowerLines;
+import org.openstreetmap.josm.data.validation.tests.UntaggedWay;
+
+/**
+ * Runs the enabled validator tests on the reference city. One operation is one complete validation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OsmValidatorBenchmark {
+
+    private List<Test> tests;
+    private List<OsmPrimitive> primitives;
+
+    /**
+     * Initializes the enabled tests.
+     * @throws Exception if an error occurs
+     */
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkData.init();
+        // value of OsmValidator#initializeGridDetail for the Mercator projection of the fixture
+        OsmValidator.griddetail = 0.01;
+        OsmValidator.initializeTests();
+        tests = new ArrayList<>();
+        for (Test test : OsmValidator.getEnabledTests(false)) {
+            // these tests need a map view, which cannot be created in headless mode
+            if (!(test instanceof MultipolygonTest || test instanceof PowerLines || test instanceof UntaggedWay)) {
+                tests.add(test);
+            }
+        }
+        primitives = new ArrayList<>(BenchmarkData.getDataSet(BenchmarkData.CITY).allPrimitives());
+    }
+
+    /**
+     * Validates the reference city.
+     * @return the number of errors
+     */
+    @Benchmark
+    public int validate() {
+        return ValidationRunner.runTests(tests, primitives, null).size();
+    }
+}
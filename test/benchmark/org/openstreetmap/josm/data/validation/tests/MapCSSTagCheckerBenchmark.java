@@ -0,0 +1,54 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.validation.tests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openstreetmap.josm.benchmark.BenchmarkData;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+
+/**
+ * Checks all primitives of the reference city with the default validator rules.
+ * One operation is the check of all of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MapCSSTagCheckerBenchmark {
+
+    private MapCSSTagChecker checker;
+    private List<OsmPrimitive> primitives;
+
+    /**
+     * Reads the default validator rules.
+     * @throws Exception if an error occurs
+     */
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkData.init();
+        checker = new MapCSSTagChecker();
+        checker.initialize();
+        primitives = new ArrayList<>(BenchmarkData.getDataSet(BenchmarkData.CITY).allPrimitives());
+    }
+
+    /**
+     * Checks each primitive.
+     * @return the number of errors
+     */
+    @Benchmark
+    public int getErrorsForPrimitive() {
+        int errors = 0;
+        for (OsmPrimitive p : primitives) {
+            errors += checker.getErrorsForPrimitive(p, true).size();
+        }
+        return errors;
+    }
+}
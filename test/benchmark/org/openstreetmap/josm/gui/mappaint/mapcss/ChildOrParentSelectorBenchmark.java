@@ -0,0 +1,67 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.mappaint.mapcss;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openstreetmap.josm.benchmark.BenchmarkData;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.gui.mappaint.Environment;
+
+/**
+ * Matches some typical element-of and crossing selectors of the validator rules against the primitives
+ * of the reference city. One operation is the match of all of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ChildOrParentSelectorBenchmark {
+
+    /** The matched selector */
+    @Param({"node[amenity] ∈ area[building]", "area[building] ∈ *[landuse]", "way[highway] ⧉ way[railway]"})
+    public String selector;
+
+    private Selector compiled;
+    private List<OsmPrimitive> primitives;
+
+    /**
+     * Compiles the selector and lists the primitives.
+     * @throws Exception if an error occurs
+     */
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkData.init();
+        MapCSSStyleSource source = new MapCSSStyleSource(selector + " {}");
+        source.loadStyleSource();
+        compiled = source.rules.get(0).selector;
+        DataSet ds = BenchmarkData.getDataSet(BenchmarkData.CITY);
+        primitives = new ArrayList<OsmPrimitive>(ds.getNodes());
+        primitives.addAll(ds.getWays());
+        primitives.addAll(ds.getRelations());
+    }
+
+    /**
+     * Matches the selector against each primitive.
+     * @return the number of matching primitives
+     */
+    @Benchmark
+    public int matches() {
+        int found = 0;
+        for (OsmPrimitive p : primitives) {
+            if (compiled.matches(new Environment().withPrimitive(p))) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
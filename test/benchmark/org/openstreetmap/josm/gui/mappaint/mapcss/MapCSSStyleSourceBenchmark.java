@@ -0,0 +1,74 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.mappaint.mapcss;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openstreetmap.josm.benchmark.BenchmarkData;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.gui.mappaint.MapPaintStyles;
+import org.openstreetmap.josm.gui.mappaint.MultiCascade;
+import org.openstreetmap.josm.gui.mappaint.StyleSource;
+
+/**
+ * Applies the default map paint style to the tagged primitives of the reference city.
+ * One operation is the style computation of all of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MapCSSStyleSourceBenchmark {
+
+    /** Length of 100 pixels in meters, as in an usual editing zoom */
+    private static final double SCALE = 50;
+
+    private MapCSSStyleSource source;
+    private List<OsmPrimitive> primitives;
+
+    /**
+     * Reads the default style and the tagged primitives.
+     * @throws Exception if an error occurs
+     */
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkData.init();
+        BenchmarkData.readStyles();
+        for (StyleSource s : MapPaintStyles.getStyles().getStyleSources()) {
+            if (s instanceof MapCSSStyleSource && s.active) {
+                source = (MapCSSStyleSource) s;
+                break;
+            }
+        }
+        if (source == null)
+            throw new IllegalStateException("No active MapCSS style");
+        primitives = new ArrayList<>();
+        for (OsmPrimitive p : BenchmarkData.getDataSet(BenchmarkData.CITY).allPrimitives()) {
+            if (p.isTagged()) {
+                primitives.add(p);
+            }
+        }
+    }
+
+    /**
+     * Computes the style of each primitive.
+     * @return the number of style layers
+     */
+    @Benchmark
+    public int apply() {
+        int layers = 0;
+        for (OsmPrimitive p : primitives) {
+            MultiCascade mc = new MultiCascade();
+            source.apply(mc, p, SCALE, null, false);
+            layers += mc.getLayers().size();
+        }
+        return layers;
+    }
+}
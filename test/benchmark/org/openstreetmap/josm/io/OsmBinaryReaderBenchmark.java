@@ -0,0 +1,54 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openstreetmap.josm.benchmark.BenchmarkData;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+
+/**
+ * Parses the reference city, written by {@link OsmBinaryWriter}, with {@link OsmBinaryReader}.
+ * One operation is one complete file, to compare with {@link OsmReaderBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OsmBinaryReaderBenchmark {
+
+    private byte[] content;
+
+    /**
+     * Writes the reference city in the binary format.
+     * @throws Exception if an error occurs
+     */
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkData.init();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OsmBinaryWriter w = new OsmBinaryWriter(out)) {
+            w.write(OsmReader.parseDataSet(new ByteArrayInputStream(BenchmarkData.getContent(BenchmarkData.CITY)),
+                    NullProgressMonitor.INSTANCE));
+        }
+        content = out.toByteArray();
+    }
+
+    /**
+     * Parses the reference city.
+     * @return the data set
+     * @throws IllegalDataException if the content is invalid
+     */
+    @Benchmark
+    public DataSet parseDataSet() throws IllegalDataException {
+        return OsmBinaryReader.parseDataSet(new ByteArrayInputStream(content), NullProgressMonitor.INSTANCE);
+    }
+}
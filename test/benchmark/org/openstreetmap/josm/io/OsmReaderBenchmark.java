@@ -0,0 +1,47 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openstreetmap.josm.benchmark.BenchmarkData;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+
+/**
+ * Parses the reference city with {@link OsmReader}. One operation is one complete file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OsmReaderBenchmark {
+
+    private byte[] content;
+
+    /**
+     * Reads the reference city.
+     * @throws Exception if an error occurs
+     */
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkData.init();
+        content = BenchmarkData.getContent(BenchmarkData.CITY);
+    }
+
+    /**
+     * Parses the reference city.
+     * @return the data set
+     * @throws IllegalDataException if the content is invalid
+     */
+    @Benchmark
+    public DataSet parseDataSet() throws IllegalDataException {
+        return OsmReader.parseDataSet(new ByteArrayInputStream(content), NullProgressMonitor.INSTANCE);
+    }
+}
@@ -0,0 +1,68 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.tools.LongList;
+
+/**
+ * Compares the heap needed by the reader bookkeeping of primitive ids, using either
+ * the generic collections or {@link PrimitiveIdMap} and {@link LongList}.
+ */
+public class PrimitiveIdMapPerformanceTest {
+
+    private static final int NODES = 1000000;
+    private static final int NODES_PER_WAY = 10;
+
+    @BeforeClass
+    public static void init() {
+        JOSMFixture.createPerformanceTestFixture().init();
+    }
+
+    private static long usedMemory() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static long measure(Map<PrimitiveId, OsmPrimitive> idMap, Map<Long, Collection<Long>> ways, boolean compact) {
+        Node[] nodes = new Node[NODES];
+        for (int i = 0; i < NODES; i++) {
+            nodes[i] = new Node(i + 1);
+        }
+        long before = usedMemory();
+        for (Node n : nodes) {
+            idMap.put(new SimplePrimitiveId(n.getUniqueId(), OsmPrimitiveType.NODE), n);
+        }
+        for (int w = 0; w < NODES / NODES_PER_WAY; w++) {
+            Collection<Long> nodeIds = compact ? new LongList() : new ArrayList<Long>();
+            for (int i = 0; i < NODES_PER_WAY; i++) {
+                nodeIds.add((long) w * NODES_PER_WAY + i + 1);
+            }
+            ways.put((long) w + 1, nodeIds);
+        }
+        long used = usedMemory() - before;
+        // keep everything reachable until measured
+        assertTrue(idMap.size() == nodes.length && !ways.isEmpty());
+        return used;
+    }
+
+    @Test
+    public void testMemory() {
+        long generic = measure(new HashMap<PrimitiveId, OsmPrimitive>(), new HashMap<Long, Collection<Long>>(), false);
+        System.out.println("HashMap/ArrayList: " + generic / NODES + " bytes per node");
+        long compact = measure(new PrimitiveIdMap<OsmPrimitive>(), new HashMap<Long, Collection<Long>>(), true);
+        System.out.println("PrimitiveIdMap/LongList: " + compact / NODES + " bytes per node");
+        assertTrue(compact < generic);
+    }
+}
@@ -0,0 +1,73 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.data.osm.DataSet;
+
+/**
+ * Compares the throughput of {@link OsmReader} and {@link ParallelOsmReader}.
+ */
+public class ParallelOsmReaderPerformanceTest {
+
+    private static final int NODES = 500000;
+    private static final int NODES_PER_WAY = 10;
+    private static final int RUNS = 3;
+
+    private static byte[] data;
+
+    /**
+     * Prepares a synthetic document.
+     */
+    @BeforeClass
+    public static void init() {
+        JOSMFixture.createPerformanceTestFixture().init();
+        StringBuilder sb = new StringBuilder("<?xml version='1.0' encoding='UTF-8'?>\n<osm version='0.6' generator='test'>\n");
+        for (int i = 1; i <= NODES; i++) {
+            sb.append("  <node id='").append(i).append("' version='1' changeset='1' timestamp='2014-01-01T00:00:00Z'")
+              .append(" user='test' uid='1' lat='").append(i % 1000 / 1000.0).append("' lon='").append(i / 1000 / 1000.0)
+              .append("'>\n    <tag k='ref' v='").append(i).append("'/>\n  </node>\n");
+        }
+        for (int w = 0; w < NODES / NODES_PER_WAY; w++) {
+            sb.append("  <way id='").append(w + 1).append("' version='1' changeset='1' timestamp='2014-01-01T00:00:00Z'>\n");
+            for (int i = 1; i <= NODES_PER_WAY; i++) {
+                sb.append("    <nd ref='").append(w * NODES_PER_WAY + i).append("'/>\n");
+            }
+            sb.append("    <tag k='highway' v='residential'/>\n  </way>\n");
+        }
+        sb.append("</osm>\n");
+        data = sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long measure(OsmReader reader) throws IllegalDataException {
+        long start = System.nanoTime();
+        DataSet ds = reader.doParseDataSet(new ByteArrayInputStream(data), null);
+        long time = System.nanoTime() - start;
+        assertEquals(NODES, ds.getNodes().size());
+        assertEquals(NODES / NODES_PER_WAY, ds.getWays().size());
+        return time;
+    }
+
+    /**
+     * Parses the document with both readers and prints the throughput.
+     * @throws IllegalDataException if an error occurs
+     */
+    @Test
+    public void testThroughput() throws IllegalDataException {
+        long sequential = Long.MAX_VALUE;
+        long parallel = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            sequential = Math.min(sequential, measure(new OsmReader()));
+            parallel = Math.min(parallel, measure(new ParallelOsmReader(ParallelOsmReader.DEFAULT_CHUNK_SIZE)));
+        }
+        double mb = data.length / 1e6;
+        System.out.println(String.format("OsmReader: %.1f MB/s", mb / (sequential / 1e9)));
+        System.out.println(String.format("ParallelOsmReader: %.1f MB/s", mb / (parallel / 1e9)));
+    }
+}
@@ -0,0 +1,236 @@
+// License: GPL. For details, see Readme.txt file.
+package org.openstreetmap.gui.jmapviewer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileJob;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileJobPriority;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileSource;
+import org.openstreetmap.gui.jmapviewer.tilesources.AbstractOsmTileSource;
+
+/**
+ * Unit tests of {@link JobDispatcher} class.
+ */
+public class JobDispatcherTest {
+
+    private final List<String> done = Collections.synchronizedList(new ArrayList<String>());
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private JobDispatcher dispatcher;
+
+    /**
+     * Creates a dispatcher with one worker thread.
+     */
+    @Before
+    public void setUp() {
+        JobDispatcher.setMaxWorkers(1);
+        dispatcher = new JobDispatcher();
+    }
+
+    /**
+     * Restores the default limits.
+     */
+    @After
+    public void tearDown() {
+        JobDispatcher.setMaxWorkers(8);
+        JobDispatcher.setMaxWorkersPerHost(8);
+    }
+
+    private static TileSource createSource(String name, String url) {
+        return new AbstractOsmTileSource(name, url) {
+            @Override
+            public TileUpdate getTileUpdate() {
+                return TileUpdate.None;
+            }
+        };
+    }
+
+    private class Job implements TileJob {
+        private final Tile tile;
+        private final String name;
+
+        Job(Tile tile, String name) {
+            this.tile = tile;
+            this.name = name;
+        }
+
+        @Override
+        public Tile getTile() {
+            return tile;
+        }
+
+        @Override
+        public void run() {
+            done.add(name);
+        }
+    }
+
+    /**
+     * Keeps the worker thread busy until {@link #release} is counted down.
+     */
+    private void blockWorker() throws InterruptedException {
+        dispatcher.addJob(new TileJob() {
+            @Override
+            public Tile getTile() {
+                return null;
+            }
+
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+    }
+
+    private void awaitDone(int count) throws InterruptedException {
+        long end = System.currentTimeMillis() + 10000;
+        while (done.size() < count && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(50);
+    }
+
+    /**
+     * Priority by distance from (5, 5), the tiles of a column greater than 7 are not needed anymore.
+     */
+    private static class Priority implements TileJobPriority {
+        private final List<String> cancelled = Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        public double getPriority(Tile tile) {
+            if (tile.getXtile() > 7)
+                return Double.POSITIVE_INFINITY;
+            return Math.abs(tile.getXtile() - 5) + Math.abs(tile.getYtile() - 5);
+        }
+
+        @Override
+        public void jobCancelled(TileJob job) {
+            cancelled.add(job.getTile().getXtile() + "," + job.getTile().getYtile());
+        }
+    }
+
+    /**
+     * Checks that the jobs of a client are run by priority, and that the jobs of tiles not needed anymore are cancelled.
+     * @throws InterruptedException if interrupted
+     */
+    @Test
+    public void testPriority() throws InterruptedException {
+        TileSource source = createSource("Test", "http://tiles.example.com");
+        Priority priority = new Priority();
+        blockWorker();
+        Tile tile = null;
+        for (int x : new int[] {9, 2, 5, 6, 8, 4}) {
+            tile = new Tile(source, x, 5, 10);
+            dispatcher.addJob(new Job(tile, "x" + x), priority);
+        }
+        // already queued
+        dispatcher.addJob(new Job(tile, "duplicate"), priority);
+        release.countDown();
+        awaitDone(4);
+        assertEquals(Arrays.asList("x5", "x6", "x4", "x2"), done);
+        Collections.sort(priority.cancelled);
+        assertEquals(Arrays.asList("8,5", "9,5"), priority.cancelled);
+    }
+
+    /**
+     * Checks that the clients are served in turn, and that the jobs of a client can be cancelled.
+     * @throws InterruptedException if interrupted
+     */
+    @Test
+    public void testFairness() throws InterruptedException {
+        TileSource source1 = createSource("Test1", "http://tiles1.example.com");
+        TileSource source2 = createSource("Test2", "http://tiles2.example.com");
+        Priority priority1 = new Priority();
+        Priority priority2 = new Priority();
+        Priority priority3 = new Priority();
+        blockWorker();
+        for (int y = 0; y < 5; y++) {
+            dispatcher.addJob(new Job(new Tile(source1, 5, 5 + y, 10), "a" + y), priority1);
+        }
+        for (int y = 0; y < 2; y++) {
+            dispatcher.addJob(new Job(new Tile(source2, 5, 5 + y, 10), "b" + y), priority2);
+        }
+        dispatcher.addJob(new Job(new Tile(source2, 1, 1, 10), "c"), priority3);
+        dispatcher.cancelOutstandingJobs(priority3);
+        assertEquals(Collections.singletonList("1,1"), priority3.cancelled);
+        release.countDown();
+        awaitDone(7);
+        assertEquals(Arrays.asList("a0", "b0", "a1", "b1", "a2", "a3", "a4"), done);
+    }
+
+    private static void updateMax(AtomicInteger max, int value) {
+        int current;
+        while ((current = max.get()) < value && !max.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+    /**
+     * Checks that the jobs of a host do not run more often than the limit at the same time.
+     * @throws InterruptedException if interrupted
+     */
+    @Test
+    public void testHostLimit() throws InterruptedException {
+        JobDispatcher.setMaxWorkers(6);
+        JobDispatcher.setMaxWorkersPerHost(2);
+        final TileSource source1 = createSource("Test1", "http://tiles1.example.com");
+        final TileSource source2 = createSource("Test2", "http://tiles2.example.com");
+        final AtomicInteger running1 = new AtomicInteger();
+        final AtomicInteger max1 = new AtomicInteger();
+        final AtomicInteger max = new AtomicInteger();
+        final AtomicInteger running = new AtomicInteger();
+        final CountDownLatch finished = new CountDownLatch(20);
+        for (int i = 0; i < 20; i++) {
+            final TileSource source = i % 2 == 0 ? source1 : source2;
+            dispatcher.addJob(new TileJob() {
+                private final Tile tile = new Tile(source, 1, 1, 10);
+
+                @Override
+                public Tile getTile() {
+                    return tile;
+                }
+
+                @Override
+                public void run() {
+                    updateMax(max, running.incrementAndGet());
+                    if (source == source1) {
+                        updateMax(max1, running1.incrementAndGet());
+                    }
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    if (source == source1) {
+                        running1.decrementAndGet();
+                    }
+                    running.decrementAndGet();
+                    finished.countDown();
+                }
+            }, null);
+        }
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        assertTrue(max1.get() <= 2);
+        assertTrue(max.get() <= 4);
+        assertTrue(max.get() >= 2);
+    }
+}
@@ -0,0 +1,173 @@
+// License: GPL. For details, see Readme.txt file.
+package org.openstreetmap.gui.jmapviewer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+import org.openstreetmap.gui.jmapviewer.interfaces.TileSource;
+import org.openstreetmap.gui.jmapviewer.tilesources.AbstractOsmTileSource;
+
+/**
+ * Unit tests of {@link MemoryTileCache} class.
+ */
+public class MemoryTileCacheTest {
+
+    /** Size of a decoded 256x256 tile */
+    private static final long TILE_BYTES = 256 * 256 * 4;
+
+    private final TileSource source = new AbstractOsmTileSource("Test", "http://tiles.example.com") {
+        @Override
+        public TileUpdate getTileUpdate() {
+            return TileUpdate.None;
+        }
+    };
+
+    private static byte[] png(Color color) throws IOException {
+        BufferedImage image = new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, 256, 256);
+        g.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private Tile loadedTile(MemoryTileCache cache, int x, int y, int zoom, Color color) throws IOException {
+        Tile tile = new Tile(source, x, y, zoom);
+        cache.addTile(tile);
+        tile.loadImage(png(color));
+        tile.setLoaded(true);
+        // the image is accounted for on the next access
+        assertSame(tile, cache.getTile(source, x, y, zoom));
+        return tile;
+    }
+
+    /**
+     * Checks that the decoded images are released beyond the budget, and decoded again on demand.
+     * @throws IOException if an I/O error occurs
+     */
+    @Test
+    public void testReleaseAndRestore() throws IOException {
+        MemoryTileCache cache = new MemoryTileCache(2 * TILE_BYTES, Long.MAX_VALUE);
+        Tile[] tiles = new Tile[4];
+        for (int i = 0; i < 4; i++) {
+            tiles[i] = loadedTile(cache, i, 0, 10, Color.RED);
+            assertTrue(cache.getBytes() <= 2 * TILE_BYTES);
+        }
+        assertEquals(4, cache.getTileCount());
+        assertNull(tiles[0].image);
+        assertNull(tiles[1].image);
+        assertNotNull(tiles[3].image);
+        assertTrue(cache.getCompressedBytes() > 0);
+        // not decoded on retrieval, but by the tile loader
+        assertSame(tiles[0], cache.getTile(source, 0, 0, 10));
+        assertNull(tiles[0].image);
+        assertFalse(tiles[0].isLoaded());
+        assertTrue(tiles[0].restoreImage());
+        tiles[0].finishLoading();
+        assertEquals(Color.RED.getRGB(), tiles[0].image.getRGB(10, 10));
+        // accounted for on the next access, releasing the least recently used one
+        assertSame(tiles[0], cache.getTile(source, 0, 0, 10));
+        assertTrue(tiles[0].isLoaded());
+        assertNull(tiles[2].image);
+        assertEquals(2 * TILE_BYTES, cache.getBytes());
+        // a loaded tile is not decoded again
+        assertFalse(tiles[0].restoreImage());
+    }
+
+    /**
+     * Checks that the released tiles are deleted beyond the budget of the encoded images,
+     * and that the tiles without encoded image are deleted at once.
+     * @throws IOException if an I/O error occurs
+     */
+    @Test
+    public void testCompressedEviction() throws IOException {
+        MemoryTileCache cache = new MemoryTileCache(TILE_BYTES, 0);
+        loadedTile(cache, 0, 0, 10, Color.RED);
+        loadedTile(cache, 1, 0, 10, Color.RED);
+        assertNull(cache.getTile(source, 0, 0, 10));
+        assertEquals(0, cache.getCompressedBytes());
+
+        cache.setMaxBytes(TILE_BYTES, Long.MAX_VALUE);
+        Tile tile = new Tile(source, 2, 0, 10);
+        cache.addTile(tile);
+        tile.setImage(new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB));
+        tile.setLoaded(true);
+        cache.getTile(source, 2, 0, 10);
+        assertEquals(2, cache.getTileCount());
+        assertEquals(TILE_BYTES, cache.getBytes());
+
+        // the image of the last tile cannot be decoded again
+        cache.setMaxBytes(0, Long.MAX_VALUE);
+        assertNull(cache.getTile(source, 2, 0, 10));
+        assertEquals(1, cache.getTileCount());
+        assertEquals(0, cache.getBytes());
+        assertTrue(cache.getCompressedBytes() > 0);
+    }
+
+    /**
+     * Checks that the limit on the number of tiles is kept.
+     * @throws IOException if an I/O error occurs
+     */
+    @Test
+    public void testCacheSize() throws IOException {
+        MemoryTileCache cache = new MemoryTileCache();
+        cache.setCacheSize(3);
+        for (int i = 0; i < 5; i++) {
+            loadedTile(cache, i, 0, 10, Color.RED);
+        }
+        assertEquals(3, cache.getTileCount());
+        assertNull(cache.getTile(source, 1, 0, 10));
+        Tile tile = cache.getTile(source, 4, 0, 10);
+        assertNotNull(tile.image);
+        // the encoded images are not kept without a memory budget
+        assertNull(tile.getImageData());
+    }
+
+    /**
+     * Checks that a tile shows the cached tiles of a higher zoom level, or an upscaled
+     * tile of a lower zoom level, until it is loaded.
+     * @throws IOException if an I/O error occurs
+     */
+    @Test
+    public void testPlaceholder() throws IOException {
+        MemoryTileCache cache = new MemoryTileCache(100 * TILE_BYTES, Long.MAX_VALUE);
+        loadedTile(cache, 2, 2, 10, Color.RED);
+        loadedTile(cache, 3, 2, 10, Color.GREEN);
+        loadedTile(cache, 2, 3, 10, Color.BLUE);
+        loadedTile(cache, 3, 3, 10, Color.BLACK);
+
+        Tile parent = new Tile(source, 1, 1, 9);
+        assertFalse(parent.hasPlaceholder());
+        parent.loadPlaceholderFromCache(cache);
+        assertTrue(parent.hasPlaceholder());
+        assertEquals(Color.RED.getRGB(), parent.image.getRGB(10, 10));
+        assertEquals(Color.GREEN.getRGB(), parent.image.getRGB(200, 10));
+        assertEquals(Color.BLUE.getRGB(), parent.image.getRGB(10, 200));
+        assertEquals(Color.BLACK.getRGB(), parent.image.getRGB(200, 200));
+
+        Tile child = new Tile(source, 7, 6, 11);
+        child.loadPlaceholderFromCache(cache);
+        assertTrue(child.hasPlaceholder());
+        assertEquals(Color.BLACK.getRGB(), child.image.getRGB(128, 128));
+
+        Tile missing = new Tile(source, 100, 100, 11);
+        missing.loadPlaceholderFromCache(cache);
+        assertFalse(missing.hasPlaceholder());
+        assertSame(Tile.LOADING_IMAGE, missing.image);
+    }
+}
@@ -1,11 +1,18 @@
 package org.openstreetmap.josm.actions.search;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Way;
 
 public class SearchCompilerTest {
 
@@ -62,4 +69,48 @@ public class SearchCompilerTest {
         Assert.assertFalse(c4.match(newPrimitive("start_date", "2000")));
 
     }
+
+    /**
+     * Checks that the candidates replied from the tag index include all matching primitives,
+     * and that the expressions which cannot use the index scan all primitives.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testCandidates() throws Exception {
+        DataSet ds = new DataSet();
+        Node n1 = new Node(new LatLon(0, 0));
+        n1.put("highway", "bus_stop");
+        n1.put("name", "Main Street");
+        Node n2 = new Node(new LatLon(0, 1));
+        n2.put("railway", "level_crossing");
+        Node n3 = new Node(new LatLon(1, 1));
+        Way w = new Way();
+        w.setNodes(Arrays.asList(n1, n2));
+        w.put("highway", "residential");
+        w.put("name", "Main Street");
+        List<OsmPrimitive> all = Arrays.<OsmPrimitive>asList(n1, n2, n3, w);
+        for (OsmPrimitive p : all) {
+            ds.addPrimitive(p);
+        }
+
+        String[] indexed = {"highway=bus_stop", "highway=*", "*=residential", "name=Main", "highway=* AND -name=foo",
+                "highway=bus_stop OR railway=*", "parent highway=residential", "child railway=*", "highway=* AND name=\"\""};
+        for (String expression : indexed) {
+            SearchCompiler.Match m = SearchCompiler.compile(expression, false, false);
+            Collection<OsmPrimitive> candidates = m.getCandidates(ds.getTagIndex());
+            Assert.assertNotNull(expression, candidates);
+            for (OsmPrimitive p : all) {
+                if (m.match(p)) {
+                    Assert.assertTrue(expression + " " + p, candidates.contains(p));
+                }
+            }
+        }
+        Assert.assertEquals(1, SearchCompiler.compile("highway=bus_stop AND highway=*", false, false)
+                .getCandidates(ds.getTagIndex()).size());
+
+        String[] scanned = {"-highway=*", "Main", "untagged", "highway=* OR type:node", "child type:way"};
+        for (String expression : scanned) {
+            Assert.assertNull(expression, SearchCompiler.compile(expression, false, false).getCandidates(ds.getTagIndex()));
+        }
+    }
 }
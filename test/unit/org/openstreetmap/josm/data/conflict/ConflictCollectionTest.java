@@ -0,0 +1,88 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.conflict;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+
+/**
+ * Unit tests of {@link ConflictCollection} class.
+ */
+public class ConflictCollectionTest {
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void setUp() {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    /**
+     * Checks the lookups while conflicts are added and removed.
+     */
+    @Test
+    public void testLookups() {
+        ConflictCollection conflicts = new ConflictCollection();
+        Node my1 = new Node(1);
+        Node their1 = new Node(1);
+        Node my2 = new Node(2);
+        Node their2 = new Node(2);
+        conflicts.add(my1, their1);
+        conflicts.add(new Conflict<OsmPrimitive>(my2, their2));
+        assertEquals(2, conflicts.size());
+        assertSame(their1, conflicts.getConflictForMy(my1).getTheir());
+        assertSame(my2, conflicts.getConflictForTheir(their2).getMy());
+        // lookups are by identity, not by id
+        assertFalse(conflicts.hasConflictForMy(their1));
+        assertFalse(conflicts.hasConflictForTheir(my2));
+
+        conflicts.removeForMy(my1);
+        assertNull(conflicts.getConflictForMy(my1));
+        assertNull(conflicts.getConflictForTheir(their1));
+        assertTrue(conflicts.hasConflictForMy(my2));
+
+        conflicts.removeForTheir(their2);
+        assertTrue(conflicts.isEmpty());
+        assertFalse(conflicts.hasConflictForMy(my2));
+    }
+
+    /**
+     * Checks that the lookups follow the changes made through the list and its iterator.
+     */
+    @Test
+    public void testListChanges() {
+        ConflictCollection conflicts = new ConflictCollection();
+        Node my1 = new Node(1);
+        Node my2 = new Node(2);
+        Node their = new Node(3);
+        conflicts.add(my1, their);
+        Iterator<Conflict<?>> it = conflicts.iterator();
+        it.next();
+        it.remove();
+        assertFalse(conflicts.hasConflictForTheir(their));
+
+        // several conflicts with the same "their" primitive, the first one is replied
+        conflicts.get().add(new Conflict<OsmPrimitive>(my1, their));
+        conflicts.get().add(0, new Conflict<OsmPrimitive>(my2, their));
+        assertSame(my2, conflicts.getConflictForTheir(their).getMy());
+        conflicts.remove(my2);
+        assertSame(my1, conflicts.getConflictForTheir(their).getMy());
+        assertNull(conflicts.getConflictForMy(my2));
+
+        conflicts.get().clear();
+        assertFalse(conflicts.hasConflictForTheir(their));
+        conflicts.add(my2, their);
+        assertSame(my2, conflicts.getConflictForTheir(their).getMy());
+    }
+}
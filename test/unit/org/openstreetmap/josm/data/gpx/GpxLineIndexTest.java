@@ -0,0 +1,107 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.gpx;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.data.coor.LatLon;
+
+/**
+ * Unit tests of {@link GpxLineIndex} class.
+ */
+public class GpxLineIndexTest {
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void setUp() {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    private static WayPoint point(double lat, double lon, boolean drawLine) {
+        WayPoint wpt = new WayPoint(new LatLon(lat, lon));
+        wpt.drawLine = drawLine;
+        return wpt;
+    }
+
+    private static List<WayPoint> randomWalk(int n) {
+        Random random = new Random(42);
+        List<WayPoint> line = new ArrayList<>(n);
+        double lat = 48;
+        double lon = 11;
+        for (int i = 0; i < n; i++) {
+            line.add(point(lat, lon, i > 0));
+            lat += (random.nextDouble() - 0.3) * 1e-4;
+            lon += (random.nextDouble() - 0.5) * 1e-4;
+        }
+        return line;
+    }
+
+    private static double distance(GpxLineIndex index, int i, int a, int b) {
+        double dx = index.getEast(b) - index.getEast(a);
+        double dy = index.getNorth(b) - index.getNorth(a);
+        double px = index.getEast(i) - index.getEast(a);
+        double py = index.getNorth(i) - index.getNorth(a);
+        double l2 = dx * dx + dy * dy;
+        double t = l2 > 0 ? Math.max(0, Math.min(1, (px * dx + py * dy) / l2)) : 0;
+        return Math.hypot(px - t * dx, py - t * dy);
+    }
+
+    /**
+     * Checks that the simplified lines stay within the tolerance, with fewer points for larger tolerances.
+     */
+    @Test
+    public void testLevels() {
+        GpxLineIndex index = new GpxLineIndex(randomWalk(20000));
+        assertEquals(20000, index.size());
+        assertNotNull(index.getBounds());
+        assertNull(index.getLevel(0));
+        int previous = index.size();
+        double scale = index.getBounds().maxEast - index.getBounds().minEast;
+        for (double tolerance = scale / 100000; tolerance < scale; tolerance *= 4) {
+            int[] level = index.getLevel(tolerance);
+            if (level == null)
+                continue;
+            assertTrue(level.length <= previous);
+            previous = level.length;
+            assertEquals(0, level[0]);
+            assertEquals(index.size() - 1, level[level.length - 1]);
+            for (int k = 1; k < level.length; k++) {
+                assertTrue(level[k - 1] < level[k]);
+                for (int i = level[k - 1] + 1; i < level[k]; i++) {
+                    assertTrue(distance(index, i, level[k - 1], level[k]) <= tolerance * (1 + 1e-6));
+                }
+            }
+        }
+        assertEquals(2, index.getLevel(Double.MAX_VALUE).length);
+    }
+
+    /**
+     * Checks that the ends of the parts of the line are kept, and that the points without coordinates are left out.
+     */
+    @Test
+    public void testSplitLine() {
+        List<WayPoint> line = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            line.add(point(48, 11 + i * 1e-3, i != 0 && i != 4));
+        }
+        line.add(5, point(Double.NaN, Double.NaN, true));
+        GpxLineIndex index = new GpxLineIndex(line);
+        assertTrue(Double.isNaN(index.getEast(5)));
+        assertArrayEquals(new int[] {0, 3, 4, 10}, index.getLevel(Double.MAX_VALUE));
+        assertEquals(line.get(10), index.get(10));
+
+        assertNull(new GpxLineIndex(new ArrayList<WayPoint>()).getBounds());
+    }
+}
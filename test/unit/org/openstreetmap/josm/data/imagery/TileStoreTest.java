@@ -0,0 +1,233 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.imagery;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Unit tests of {@link TileStore} class.
+ */
+public class TileStoreTest {
+
+    private File dir;
+    private TileStore store;
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void init() {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    /**
+     * Creates a store in a temporary directory.
+     * @throws IOException if an I/O error occurs
+     */
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("josm-tiles").toFile();
+        store = new TileStore(dir, 1024 * 1024);
+    }
+
+    /**
+     * Closes the store and deletes its directory.
+     * @throws IOException if an I/O error occurs
+     */
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+        Utils.deleteDirectory(dir);
+    }
+
+    private static String key(int i) {
+        return "18/" + i + "/" + (2 * i) + "@Test";
+    }
+
+    private static byte[] data(int i, int length) {
+        byte[] data = new byte[length];
+        for (int j = 0; j < length; j++) {
+            data[j] = (byte) (i + j);
+        }
+        return data;
+    }
+
+    private void reopen() throws IOException {
+        store.close();
+        store = new TileStore(dir, store.getMaxBytes());
+    }
+
+    /**
+     * Checks that the stored tiles are read back, with their metadata.
+     * @throws IOException if an I/O error occurs
+     */
+    @Test
+    public void testPutGet() throws IOException {
+        Map<String, String> metadata = Collections.singletonMap("etag", "\"abc\"");
+        store.put(key(1), data(1, 1000), metadata, 1234);
+        store.put(key(2), data(2, 2000), null, 5678);
+        TileStore.Entry entry = store.get(key(1));
+        assertArrayEquals(data(1, 1000), entry.getData());
+        assertEquals(metadata, entry.getMetadata());
+        assertEquals(1234, entry.getExpires());
+        assertTrue(entry.isExpired(1234));
+        assertFalse(entry.isExpired(1233));
+        assertTrue(store.get(key(2)).getMetadata().isEmpty());
+        assertNull(store.get(key(3)));
+        // replaced
+        store.put(key(1), data(3, 10), null, 1);
+        assertArrayEquals(data(3, 10), store.get(key(1)).getData());
+        // validated
+        store.touch(key(1), 999);
+        assertEquals(999, store.get(key(1)).getExpires());
+        store.remove(key(2));
+        assertNull(store.get(key(2)));
+        assertEquals(1, store.size());
+    }
+
+    /**
+     * Checks that the least recently used tiles are evicted to stay within the byte budget.
+     * @throws IOException if an I/O error occurs
+     */
+    @Test
+    public void testEviction() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            store.put(key(i), data(i, 250 * 1024), null, Long.MAX_VALUE);
+            if (i > 0) {
+                // keep the first tile in use
+                assertNotNull(store.get(key(0)));
+            }
+            assertTrue(store.getLiveBytes() <= store.getMaxBytes());
+        }
+        assertEquals(4, store.size());
+        assertNotNull(store.get(key(9)));
+        assertNotNull(store.get(key(0)));
+        assertNull(store.get(key(1)));
+        store.setMaxBytes(300 * 1024);
+        assertEquals(1, store.size());
+        assertNotNull(store.get(key(0)));
+    }
+
+    /**
+     * Checks that the tiles and their order of use are kept when the store is reopened.
+     * @throws IOException if an I/O error occurs
+     */
+    @Test
+    public void testReopen() throws IOException {
+        for (int i = 0; i < 4; i++) {
+            store.put(key(i), data(i, 250 * 1024), Collections.singletonMap("i", Integer.toString(i)), 100 + i);
+        }
+        store.get(key(0));
+        store.touch(key(1), 42);
+        reopen();
+        assertEquals(4, store.size());
+        assertEquals(42, store.get(key(1)).getExpires());
+        assertEquals("2", store.get(key(2)).getMetadata().get("i"));
+        store.put(key(4), data(4, 250 * 1024), null, 0);
+        // the order of use has been kept: the 4th tile is the least recently used one
+        assertNull(store.get(key(3)));
+        assertArrayEquals(data(0, 250 * 1024), store.get(key(0)).getData());
+    }
+
+    /**
+     * Checks that the tiles are found again without index, and that an interrupted write is discarded.
+     * @throws IOException if an I/O error occurs
+     */
+    @Test
+    public void testRecovery() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            store.put(key(i), data(i, 1000), null, 100 + i);
+        }
+        store.close();
+        assertTrue(new File(dir, TileStore.INDEX_FILENAME).delete());
+        File pack = new File(dir, TileStore.PACK_FILENAME);
+        long length = pack.length();
+        try (RandomAccessFile raf = new RandomAccessFile(pack, "rw")) {
+            // the beginning of a record
+            raf.setLength(length + 500);
+            raf.seek(length);
+            raf.writeInt(0x54494c45);
+            raf.writeInt(1000);
+        }
+        store = new TileStore(dir, 1024 * 1024);
+        assertEquals(5, store.size());
+        assertEquals(length, pack.length());
+        for (int i = 0; i < 5; i++) {
+            assertArrayEquals(data(i, 1000), store.get(key(i)).getData());
+            assertEquals(100 + i, store.get(key(i)).getExpires());
+        }
+        // records written after the last save of the index
+        store.flush();
+        store.put(key(5), data(5, 1000), null, 0);
+        store.put(key(1), data(6, 1000), null, 0);
+        byte[] index = Files.readAllBytes(new File(dir, TileStore.INDEX_FILENAME).toPath());
+        store.close();
+        Files.write(new File(dir, TileStore.INDEX_FILENAME).toPath(), index);
+        store = new TileStore(dir, 1024 * 1024);
+        assertEquals(6, store.size());
+        assertArrayEquals(data(6, 1000), store.get(key(1)).getData());
+        assertArrayEquals(data(5, 1000), store.get(key(5)).getData());
+    }
+
+    /**
+     * Checks that the space of replaced tiles is reclaimed.
+     * @throws IOException if an I/O error occurs
+     */
+    @Test
+    public void testCompaction() throws IOException {
+        store.setMaxBytes(50 * 1024 * 1024);
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 10; i++) {
+                store.put(key(i), data(round + i, 100 * 1024), null, round);
+            }
+        }
+        assertEquals(10, store.size());
+        assertTrue(store.getPackLength() < 2 * store.getLiveBytes() + 4 * 1024 * 1024 + 100);
+        store.compact();
+        assertEquals(store.getLiveBytes() + 8, store.getPackLength());
+        reopen();
+        for (int i = 0; i < 10; i++) {
+            assertArrayEquals(data(9 + i, 100 * 1024), store.get(key(i)).getData());
+        }
+    }
+
+    /**
+     * Checks the removal of the tiles of a source, and that a directory is used by a single store.
+     * @throws IOException if an I/O error occurs
+     */
+    @Test
+    public void testClear() throws IOException {
+        store.put(key(1), data(1, 10), null, 0);
+        store.put("1/2/3@Other", data(2, 10), null, 0);
+        assertEquals(1, store.clear("@Test"));
+        assertNull(store.get(key(1)));
+        assertNotNull(store.get("1/2/3@Other"));
+        try {
+            new TileStore(dir, 1024);
+            fail("IOException expected");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(1, store.clear(null));
+        assertEquals(0, store.size());
+    }
+}
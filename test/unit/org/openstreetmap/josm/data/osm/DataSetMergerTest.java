@@ -4,13 +4,18 @@ package org.openstreetmap.josm.data.osm;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.TreeMap;
 
 import org.junit.After;
 import org.junit.Before;
@@ -18,7 +23,11 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.openstreetmap.josm.JOSMFixture;
 import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.conflict.Conflict;
 import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataSetListenerAdapter;
 import org.openstreetmap.josm.data.projection.Projections;
 
 public class DataSetMergerTest {
@@ -996,4 +1005,124 @@ public class DataSetMergerTest {
         assertEquals(1, w.getNode(0).getId());
         assertEquals(2, w.getNode(1).getId());
     }
+
+    /**
+     * Fills a target and a source dataset of a few thousand nodes and some ways, yielding most kinds of merges.
+     */
+    private static void fillLargeDataSets(DataSet target, DataSet source) {
+        final int nodes = 3000;
+        List<Node> targetWayNodes = new ArrayList<>();
+        List<Node> sourceWayNodes = new ArrayList<>();
+        for (int i = 1; i <= nodes; i++) {
+            LatLon ll = new LatLon(i * 1e-4, 0);
+            LatLon moved = new LatLon(i * 1e-4, 1e-4);
+            Node t = new Node(i, 1);
+            t.setCoor(ll);
+            Node s = new Node(i, 2);
+            s.setCoor(moved);
+            switch (i % 6) {
+            case 0: // moved in the source
+                break;
+            case 1: // moved in both, a conflict
+                t.setCoor(new LatLon(i * 1e-4, -1e-4));
+                t.setModified(true);
+                break;
+            case 2: // the same in both, but modified in the target
+                s = new Node(i, 1);
+                s.setCoor(ll);
+                t.setModified(true);
+                break;
+            case 3: // deleted in the source
+                s.setDeleted(true);
+                break;
+            case 4: // only in the source
+                t = null;
+                break;
+            default: // new in both
+                t = new Node(ll);
+                s = new Node(ll);
+                s.put("new", "yes");
+                t.put("new", "yes");
+            }
+            if (t != null) {
+                target.addPrimitive(t);
+                targetWayNodes.add(t);
+            }
+            source.addPrimitive(s);
+            if (!s.isDeleted()) {
+                sourceWayNodes.add(s);
+            }
+            if (i % 10 == 0) {
+                Way tw = new Way(i, 1);
+                tw.setNodes(targetWayNodes);
+                tw.put("highway", "residential");
+                if (i % 30 == 0) {
+                    tw.put("name", "target");
+                    tw.setModified(true);
+                }
+                target.addPrimitive(tw);
+                Way sw = new Way(i, 2);
+                sw.setNodes(sourceWayNodes);
+                sw.put("highway", "service");
+                source.addPrimitive(sw);
+                targetWayNodes.clear();
+                sourceWayNodes.clear();
+            }
+        }
+    }
+
+    private static String describe(OsmPrimitive p) {
+        StringBuilder sb = new StringBuilder(p.getType().getAPIName());
+        sb.append(p.isNew() ? "new" : p.getId()).append(" v").append(p.getVersion())
+          .append(p.isDeleted() ? " deleted" : "").append(p.isModified() ? " modified" : "")
+          .append(' ').append(new TreeMap<>(p.getKeys()));
+        if (p instanceof Node) {
+            sb.append(' ').append(((Node) p).getCoor());
+        } else if (p instanceof Way) {
+            for (Node n : ((Way) p).getNodes()) {
+                sb.append(' ').append(n.isNew() ? n.getCoor() : n.getId());
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String describeMerge(int numberOfThreads, final List<AbstractDatasetChangedEvent> events) {
+        DataSet target = new DataSet();
+        DataSet source = new DataSet();
+        fillLargeDataSets(target, source);
+        target.addDataSetListener(new DataSetListenerAdapter(new DataSetListenerAdapter.Listener() {
+            @Override
+            public void processDatasetEvent(AbstractDatasetChangedEvent event) {
+                events.add(event);
+            }
+        }));
+        DataSetMerger merger = new DataSetMerger(target, source);
+        merger.numberOfThreads = numberOfThreads;
+        merger.merge();
+        List<String> result = new ArrayList<>();
+        for (OsmPrimitive p : target.allPrimitives()) {
+            result.add(describe(p));
+        }
+        Collections.sort(result);
+        for (Conflict<?> c : merger.getConflicts()) {
+            result.add("conflict " + describe(c.getMy()) + " / " + describe(c.getTheir()) + " " + c.isMyDeleted());
+        }
+        return result.toString();
+    }
+
+    /**
+     * Checks that a concurrent merge gives the same result and conflicts as a sequential one, and fires a single event.
+     */
+    @Test
+    public void testConcurrentMerge() {
+        List<AbstractDatasetChangedEvent> sequentialEvents = new ArrayList<>();
+        List<AbstractDatasetChangedEvent> concurrentEvents = new ArrayList<>();
+        String sequential = describeMerge(1, sequentialEvents);
+        String concurrent = describeMerge(4, concurrentEvents);
+        assertTrue(sequential.contains("conflict"));
+        assertEquals(sequential, concurrent);
+        assertEquals(1, concurrentEvents.size());
+        assertTrue(concurrentEvents.get(0) instanceof DataChangedEvent);
+        assertNull(((DataChangedEvent) concurrentEvents.get(0)).getEvents());
+    }
 }
@@ -0,0 +1,176 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.data.coor.LatLon;
+
+/**
+ * Unit tests of {@link DataSetSnapshot} class.
+ */
+public class DataSetSnapshotTest {
+
+    private static final int INITIAL_NODES = 100;
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void setUp() {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    private static DataSet createDataSet() {
+        DataSet ds = new DataSet();
+        for (int i = 0; i < INITIAL_NODES; i++) {
+            ds.addPrimitive(new Node(new LatLon(i / 1000.0, 0)));
+        }
+        return ds;
+    }
+
+    /**
+     * Checks that the snapshot is shared until the dataset is modified.
+     */
+    @Test
+    public void testShared() {
+        DataSet ds = createDataSet();
+        DataSetSnapshot snapshot = ds.getSnapshot();
+        assertEquals(INITIAL_NODES, snapshot.getNodes().size());
+        assertSame(snapshot, ds.getSnapshot());
+
+        Node n = new Node(new LatLon(1, 1));
+        ds.addPrimitive(n);
+        DataSetSnapshot updated = ds.getSnapshot();
+        assertNotSame(snapshot, updated);
+        assertEquals(INITIAL_NODES, snapshot.getNodes().size());
+        assertEquals(INITIAL_NODES + 1, updated.getNodes().size());
+        assertTrue(updated.allPrimitives().contains(n));
+    }
+
+    /**
+     * Checks that the snapshot of the last consistent state is replied while another thread modifies the dataset.
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    public void testStale() throws InterruptedException {
+        final DataSet ds = createDataSet();
+        final Node removed = ds.getNodes().iterator().next();
+        DataSetSnapshot snapshot = ds.getSnapshot();
+
+        final CountDownLatch modified = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                ds.beginUpdate();
+                try {
+                    ds.removePrimitive(removed);
+                    modified.countDown();
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    ds.endUpdate();
+                }
+            }
+        });
+        writer.start();
+        modified.await();
+        try {
+            // does not block, but replies the stale snapshot
+            assertSame(snapshot, ds.getSnapshot());
+            assertTrue(snapshot.getNodes().contains(removed));
+            assertNull(removed.getDataSet());
+        } finally {
+            release.countDown();
+            writer.join();
+        }
+        DataSetSnapshot updated = ds.getSnapshot();
+        assertEquals(INITIAL_NODES - 1, updated.getNodes().size());
+        assertFalse(updated.getNodes().contains(removed));
+    }
+
+    /**
+     * Takes snapshots while another thread keeps adding and removing ways, and checks that each of them is consistent.
+     * @throws Throwable if the test fails
+     */
+    @Test
+    public void testConcurrentWriter() throws Throwable {
+        final DataSet ds = createDataSet();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Way last = null;
+                    for (int i = 0; i < 2000; i++) {
+                        ds.beginUpdate();
+                        try {
+                            if (last != null && i % 3 == 0) {
+                                ds.removePrimitive(last);
+                                for (Node n : last.getNodes()) {
+                                    ds.removePrimitive(n);
+                                }
+                            }
+                            Node n1 = new Node(new LatLon(i / 1000.0, 1));
+                            Node n2 = new Node(new LatLon(i / 1000.0, 2));
+                            ds.addPrimitive(n1);
+                            ds.addPrimitive(n2);
+                            last = new Way();
+                            last.setNodes(Arrays.asList(n1, n2));
+                            ds.addPrimitive(last);
+                        } finally {
+                            ds.endUpdate();
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            }
+        });
+        writer.start();
+        int snapshots = 0;
+        try {
+            while (writer.isAlive()) {
+                checkConsistency(ds.getSnapshot());
+                snapshots++;
+            }
+        } finally {
+            writer.join();
+        }
+        if (failure.get() != null)
+            throw failure.get();
+        assertTrue(snapshots > 0);
+
+        DataSetSnapshot snapshot = ds.getSnapshot();
+        checkConsistency(snapshot);
+        assertEquals(ds.getNodes().size(), snapshot.getNodes().size());
+        assertEquals(ds.getWays().size(), snapshot.getWays().size());
+    }
+
+    private static void checkConsistency(DataSetSnapshot snapshot) {
+        Set<Node> nodes = new HashSet<>(snapshot.getNodes());
+        assertEquals(snapshot.getNodes().size(), nodes.size());
+        assertEquals(new HashSet<>(snapshot.getWays()).size(), snapshot.getWays().size());
+        assertEquals(INITIAL_NODES + 2 * snapshot.getWays().size(), nodes.size());
+        for (Way w : snapshot.getWays()) {
+            for (int i = 0; i < w.getNodesCount(); i++) {
+                assertTrue(nodes.contains(w.getNode(i)));
+            }
+        }
+    }
+}
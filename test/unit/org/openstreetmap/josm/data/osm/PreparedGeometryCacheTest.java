@@ -0,0 +1,169 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.tools.Geometry;
+import org.openstreetmap.josm.tools.Geometry.PolygonIntersection;
+
+/**
+ * Unit tests of {@link PreparedGeometryCache} class.
+ */
+public class PreparedGeometryCacheTest {
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void setUp() {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    private static Node node(DataSet ds, double lat, double lon) {
+        Node n = new Node(new LatLon(lat, lon));
+        ds.addPrimitive(n);
+        return n;
+    }
+
+    private static Way way(DataSet ds, Node... nodes) {
+        Way w = new Way();
+        for (Node n : nodes) {
+            w.addNode(n);
+        }
+        ds.addPrimitive(w);
+        return w;
+    }
+
+    /**
+     * A closed star-shaped way with many edges, around (0, 0).
+     */
+    private static Way star(DataSet ds, Random random, int edges, double radius) {
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < edges; i++) {
+            double r = radius * (0.3 + 0.7 * random.nextDouble());
+            double a = 2 * Math.PI * i / edges;
+            nodes.add(node(ds, r * Math.sin(a), r * Math.cos(a)));
+        }
+        nodes.add(nodes.get(0));
+        return way(ds, nodes.toArray(new Node[nodes.size()]));
+    }
+
+    /**
+     * Checks that the prepared tests give the same results as {@link Geometry}.
+     */
+    @Test
+    public void testSameAsGeometry() {
+        DataSet ds = new DataSet();
+        Random random = new Random(42);
+        Way star = star(ds, random, 200, 0.01);
+        PreparedGeometryCache cache = ds.getPreparedGeometryCache();
+        for (int i = 0; i < 2000; i++) {
+            Node n = node(ds, (random.nextDouble() - 0.5) * 0.025, (random.nextDouble() - 0.5) * 0.025);
+            assertEquals(Geometry.nodeInsidePolygon(n, star.getNodes()), cache.isNodeInsidePolygon(n, star));
+        }
+        for (int i = 0; i < 20; i++) {
+            Way small = star(ds, random, 5, 0.002);
+            // moves the small way somewhere around the star
+            double lat = (random.nextDouble() - 0.5) * 0.02;
+            double lon = (random.nextDouble() - 0.5) * 0.02;
+            for (Node n : new HashSet<>(small.getNodes())) {
+                n.setCoor(new LatLon(n.getCoor().lat() + lat, n.getCoor().lon() + lon));
+            }
+            assertEquals(Geometry.polygonIntersection(small.getNodes(), star.getNodes()), cache.polygonIntersection(small, star));
+        }
+        Way far = way(ds, node(ds, 1, 1), node(ds, 1, 1.001), node(ds, 1.001, 1.001), node(ds, 1, 1));
+        assertEquals(PolygonIntersection.OUTSIDE, cache.polygonIntersection(far, star));
+    }
+
+    /**
+     * Checks the tests against a multipolygon with a hole.
+     */
+    @Test
+    public void testMultipolygon() {
+        DataSet ds = new DataSet();
+        Node a = node(ds, 0, 0);
+        Way outer = way(ds, a, node(ds, 0, 0.01), node(ds, 0.01, 0.01), node(ds, 0.01, 0), a);
+        Node b = node(ds, 0.004, 0.004);
+        Way inner = way(ds, b, node(ds, 0.004, 0.006), node(ds, 0.006, 0.006), node(ds, 0.006, 0.004), b);
+        Relation mp = new Relation();
+        mp.put("type", "multipolygon");
+        mp.addMember(new RelationMember("outer", outer));
+        mp.addMember(new RelationMember("inner", inner));
+        ds.addPrimitive(mp);
+        PreparedGeometryCache cache = ds.getPreparedGeometryCache();
+
+        Node inside = node(ds, 0.002, 0.002);
+        Node inHole = node(ds, 0.005, 0.005);
+        assertTrue(cache.isNodeInsideMultiPolygon(inside, mp));
+        assertFalse(cache.isNodeInsideMultiPolygon(inHole, mp));
+        assertEquals(Geometry.isNodeInsideMultiPolygon(inside, mp, null), cache.isNodeInsideMultiPolygon(inside, mp));
+        assertEquals(Geometry.isNodeInsideMultiPolygon(inHole, mp, null), cache.isNodeInsideMultiPolygon(inHole, mp));
+
+        Node c = node(ds, 0.001, 0.001);
+        Way building = way(ds, c, node(ds, 0.001, 0.002), node(ds, 0.002, 0.002), node(ds, 0.002, 0.001), c);
+        assertTrue(cache.isPolygonInsideMultiPolygon(building, mp));
+        assertEquals(Geometry.isPolygonInsideMultiPolygon(building.getNodes(), mp, null), cache.isPolygonInsideMultiPolygon(building, mp));
+    }
+
+    /**
+     * Checks that the prepared geometry follows the moved nodes and the changed ways.
+     */
+    @Test
+    public void testInvalidation() {
+        DataSet ds = new DataSet();
+        Node a = node(ds, 0, 0);
+        Node b = node(ds, 0, 0.01);
+        Node c = node(ds, 0.01, 0.01);
+        Way triangle = way(ds, a, b, c, a);
+        Node n = node(ds, 0.002, 0.006);
+        PreparedGeometryCache cache = ds.getPreparedGeometryCache();
+        assertTrue(cache.isNodeInsidePolygon(n, triangle));
+
+        c.setCoor(new LatLon(0.001, 0.01));
+        assertFalse(cache.isNodeInsidePolygon(n, triangle));
+
+        Node d = node(ds, 0.01, 0);
+        triangle.setNodes(Arrays.asList(a, b, c, d, a));
+        assertTrue(cache.isNodeInsidePolygon(n, triangle));
+    }
+
+    /**
+     * Checks that the number of prepared ways is bounded, and that the dropped geometry is prepared again.
+     */
+    @Test
+    public void testBounded() {
+        Main.pref.putInteger("preparedgeometry.cache.size", 10);
+        try {
+            DataSet ds = new DataSet();
+            Random random = new Random(42);
+            PreparedGeometryCache cache = ds.getPreparedGeometryCache();
+            Node n = node(ds, 0, 0);
+            List<Way> stars = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                Way star = star(ds, random, 10, 0.01);
+                stars.add(star);
+                assertTrue(cache.isNodeInsidePolygon(n, star));
+            }
+            assertEquals(10, cache.size());
+            for (Way star : stars) {
+                assertTrue(cache.isNodeInsidePolygon(n, star));
+            }
+            assertEquals(10, cache.size());
+        } finally {
+            Main.pref.put("preparedgeometry.cache.size", null);
+        }
+    }
+}
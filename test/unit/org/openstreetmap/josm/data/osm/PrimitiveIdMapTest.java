@@ -0,0 +1,45 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link PrimitiveIdMap}.
+ */
+public class PrimitiveIdMapTest {
+
+    /**
+     * Compares random insertions and removals against a {@link HashMap}.
+     */
+    @Test
+    public void testAgainstHashMap() {
+        Map<PrimitiveId, String> expected = new HashMap<>();
+        PrimitiveIdMap<String> map = new PrimitiveIdMap<>();
+        Random random = new Random(42);
+        OsmPrimitiveType[] types = {OsmPrimitiveType.NODE, OsmPrimitiveType.WAY, OsmPrimitiveType.RELATION};
+        for (int i = 0; i < 100000; i++) {
+            PrimitiveId id = new SimplePrimitiveId(random.nextInt(2000) - 1000, types[random.nextInt(3)]);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(id), map.remove(id));
+            } else {
+                String value = Integer.toString(i);
+                assertEquals(expected.put(id, value), map.put(id, value));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        assertEquals(expected, map);
+        for (Map.Entry<PrimitiveId, String> e : expected.entrySet()) {
+            assertEquals(e.getValue(), map.get(e.getKey().getUniqueId(), e.getKey().getType()));
+        }
+        map.clear();
+        assertEquals(0, map.size());
+        assertNull(map.get(new SimplePrimitiveId(1, OsmPrimitiveType.NODE)));
+    }
+}
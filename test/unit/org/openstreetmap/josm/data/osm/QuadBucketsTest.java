@@ -5,6 +5,7 @@ import java.io.FileInputStream;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -86,4 +87,30 @@ public class QuadBucketsTest {
             removeAllTest(ds);
         }
     }
+
+    @Test
+    public void testSearchRelations() {
+        DataSet ds = new DataSet();
+        Node n1 = new Node(new LatLon(10, 10));
+        Node n2 = new Node(new LatLon(10.5, 10.5));
+        Relation r = new Relation();
+        ds.addPrimitive(n1);
+        ds.addPrimitive(n2);
+        ds.addPrimitive(r);
+        Assert.assertTrue(ds.searchRelations(new BBox(9.9, 9.9, 10.1, 10.1)).isEmpty());
+
+        r.addMember(new RelationMember("", n1));
+        Assert.assertEquals(Collections.singletonList(r), ds.searchRelations(new BBox(9.9, 9.9, 10.1, 10.1)));
+
+        n1.setCoor(new LatLon(20, 20));
+        Assert.assertTrue(ds.searchRelations(new BBox(9.9, 9.9, 10.1, 10.1)).isEmpty());
+        Assert.assertEquals(Collections.singletonList(r), ds.searchRelations(new BBox(19.9, 19.9, 20.1, 20.1)));
+
+        r.setMembers(Collections.singletonList(new RelationMember("", n2)));
+        Assert.assertTrue(ds.searchRelations(new BBox(19.9, 19.9, 20.1, 20.1)).isEmpty());
+        Assert.assertEquals(Collections.singletonList(r), ds.searchRelations(new BBox(10.4, 10.4, 10.6, 10.6)));
+
+        ds.removePrimitive(r);
+        Assert.assertTrue(ds.searchRelations(new BBox(10.4, 10.4, 10.6, 10.6)).isEmpty());
+    }
 }
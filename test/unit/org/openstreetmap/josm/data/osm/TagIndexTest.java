@@ -0,0 +1,70 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.data.coor.LatLon;
+
+/**
+ * Unit tests of {@link TagIndex} class.
+ */
+public class TagIndexTest {
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void setUp() {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    private static Node node(DataSet ds, String key, String value) {
+        Node n = new Node(new LatLon(0, 0));
+        n.put(key, value);
+        ds.addPrimitive(n);
+        return n;
+    }
+
+    /**
+     * Checks that the index is built from the dataset, then kept current through its changes.
+     */
+    @Test
+    public void testUpdates() {
+        DataSet ds = new DataSet();
+        Node n1 = node(ds, "highway", "bus_stop");
+        Node n2 = node(ds, "highway", "crossing");
+        Node n3 = node(ds, "railway", "crossing");
+        TagIndex index = ds.getTagIndex();
+
+        assertEquals(Collections.singletonList(n1), index.getPrimitives("highway", "bus_stop"));
+        assertEquals(new HashSet<>(Arrays.asList(n1, n2)), new HashSet<>(index.getPrimitivesWithKey("highway")));
+        assertEquals(new HashSet<>(Arrays.asList(n2, n3)), new HashSet<>(index.getPrimitivesWithValue("crossing")));
+        assertTrue(index.getPrimitives("highway", "primary").isEmpty());
+
+        // added primitives
+        Node n4 = node(ds, "highway", "bus_stop");
+        assertEquals(new HashSet<>(Arrays.asList(n1, n4)), new HashSet<>(index.getPrimitives("highway", "bus_stop")));
+
+        // changed and removed tags
+        n1.put("highway", "crossing");
+        n3.remove("railway");
+        n2.put("name", "Main Street");
+        assertEquals(Collections.singletonList(n4), index.getPrimitives("highway", "bus_stop"));
+        assertEquals(new HashSet<>(Arrays.asList(n1, n2)), new HashSet<>(index.getPrimitives("highway", "crossing")));
+        assertTrue(index.getPrimitivesWithKey("railway").isEmpty());
+        assertEquals(Collections.singletonList(n2), index.getPrimitivesWithKey("name"));
+
+        // removed primitives
+        ds.removePrimitive(n4);
+        assertTrue(index.getPrimitives("highway", "bus_stop").isEmpty());
+        assertEquals(2, index.getPrimitivesWithKey("highway").size());
+    }
+}
@@ -0,0 +1,67 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link User} class.
+ */
+public class UserTest {
+
+    private static final int THREADS = 8;
+    private static final int USERS = 1000;
+
+    /**
+     * Checks that there is only one user object per user id and per local name
+     * when users are created by several threads at the same time.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testConcurrentCreation() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<User[]>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                final String suffix = Integer.toString(t % 2);
+                futures.add(pool.submit(new Callable<User[]>() {
+                    @Override
+                    public User[] call() {
+                        User[] users = new User[2 * USERS];
+                        for (int i = 0; i < USERS; i++) {
+                            users[i] = User.createOsmUser(1000000 + i, "user" + i + "/" + suffix);
+                            users[USERS + i] = User.createLocalUser("concurrent local user " + i);
+                        }
+                        return users;
+                    }
+                }));
+            }
+            User[] expected = futures.get(0).get();
+            for (Future<User[]> f : futures) {
+                User[] users = f.get();
+                for (int i = 0; i < users.length; i++) {
+                    assertSame(expected[i], users[i]);
+                }
+            }
+            for (int i = 0; i < USERS; i++) {
+                assertSame(expected[i], User.getById(1000000 + i));
+                assertEquals(2, expected[i].getNames().size());
+                assertTrue(expected[i].getNames().containsAll(Arrays.asList("user" + i + "/0", "user" + i + "/1")));
+                assertEquals(Arrays.asList(expected[USERS + i]), User.getByName("concurrent local user " + i));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,340 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.osm.visitor.paint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.gui.NavigatableComponent;
+import org.openstreetmap.josm.gui.mappaint.MapPaintStyles;
+import org.openstreetmap.josm.gui.preferences.SourceEntry;
+import org.openstreetmap.josm.gui.preferences.map.MapPaintPreference.MapPaintPrefHelper;
+
+/**
+ * Unit tests of {@link RenderTileCache} class.
+ */
+public class RenderTileCacheTest {
+
+    private static final int WIDTH = 1200;
+    private static final int HEIGHT = 900;
+
+    private DataSet ds;
+    private NavigatableComponent nc;
+    private RenderTileCache cache;
+    private Graphics2D g;
+    private Node first;
+    private Node last;
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void init() {
+        JOSMFixture.createUnitTestFixture().init();
+        MapPaintStyles.readFromPreferences();
+    }
+
+    /**
+     * Creates a grid of roads spanning several tiles.
+     */
+    @Before
+    public void setUp() {
+        ds = new DataSet();
+        for (int i = 0; i < 10; i++) {
+            Way w = new Way();
+            for (int j = 0; j < 10; j++) {
+                Node n = new Node(new LatLon(50 + i * 0.001, 8 + j * 0.001));
+                ds.addPrimitive(n);
+                w.addNode(n);
+                if (first == null) {
+                    first = n;
+                }
+                last = n;
+            }
+            w.put("highway", "residential");
+            ds.addPrimitive(w);
+        }
+        nc = new NavigatableComponent();
+        nc.setBounds(0, 0, WIDTH, HEIGHT);
+        nc.zoomTo(new Bounds(50, 8, 50.009, 8.009));
+        g = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB).createGraphics();
+        cache = new RenderTileCache(ds);
+    }
+
+    private int paint() {
+        cache.paint(g, nc, false, false);
+        return cache.getTileCount();
+    }
+
+    /**
+     * Checks that the tiles are reused when panning.
+     */
+    @Test
+    public void testPan() {
+        int visible = paint();
+        assertTrue(visible > 1);
+        assertEquals(visible, paint());
+        EastNorth center = nc.getCenter();
+        nc.zoomTo(new EastNorth(center.east() + RenderTileCache.TILE_SIZE * nc.getScale(), center.north()));
+        int afterPan = paint();
+        assertTrue(afterPan > visible);
+        nc.zoomTo(center);
+        assertEquals(afterPan, paint());
+    }
+
+    /**
+     * Checks that dataset changes only invalidate the tiles around the changed primitives.
+     */
+    @Test
+    public void testInvalidation() {
+        int visible = paint();
+        first.setCoor(new LatLon(50.0001, 8.0001));
+        int afterMove = cache.getTileCount();
+        assertTrue(afterMove < visible);
+        assertTrue(afterMove > 0);
+        assertEquals(visible, paint());
+
+        // moving a node far away invalidates the tiles at its old position too
+        last.setCoor(new LatLon(49, 7));
+        assertTrue(cache.getTileCount() < afterMove);
+        paint();
+
+        // a zoom change discards everything
+        nc.zoomTo(nc.getCenter(), nc.getScale() / 2);
+        cache.paint(g, nc, false, false);
+        ds.beginUpdate();
+        try {
+            for (Node n : ds.getNodes()) {
+                n.put("name", "x");
+            }
+        } finally {
+            ds.endUpdate();
+        }
+        assertEquals(0, cache.getTileCount());
+    }
+
+    private static BufferedImage createImage() {
+        BufferedImage img = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, WIDTH, HEIGHT);
+        g.dispose();
+        return img;
+    }
+
+    // align the viewport to whole pixels of the projection, like the tiles
+    private void alignViewport() {
+        double scale = nc.getScale();
+        EastNorth center = nc.getCenter();
+        nc.zoomTo(new EastNorth(Math.round(center.east() / scale) * scale, Math.round(center.north() / scale) * scale));
+    }
+
+    private void assertSameAsDirectRendering() {
+        alignViewport();
+
+        BufferedImage direct = createImage();
+        Graphics2D g1 = direct.createGraphics();
+        new StyledMapRenderer(g1, nc, false).render(ds, false, nc.getRealBounds());
+        g1.dispose();
+
+        paint();
+        // painted from the cached tiles
+        BufferedImage tiled = createImage();
+        Graphics2D g2 = tiled.createGraphics();
+        cache.paint(g2, nc, false, false);
+        g2.dispose();
+
+        int different = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                if (!similar(direct.getRGB(x, y), tiled.getRGB(x, y))) {
+                    different++;
+                }
+            }
+        }
+        assertTrue(countPainted(direct) > 1000);
+        assertEquals(0, different);
+    }
+
+    /**
+     * Checks that the tiled rendering looks like the rendering of the whole viewport at once.
+     */
+    @Test
+    public void testSameAsDirectRendering() {
+        assertSameAsDirectRendering();
+    }
+
+    /**
+     * Checks that the labels of ways crossing tile borders and of nodes close to them are painted once, and not clipped.
+     * @throws IOException if the style cannot be written
+     */
+    @Test
+    public void testLabelsAtTileBorders() throws IOException {
+        File style = File.createTempFile("labels", ".mapcss");
+        style.deleteOnExit();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(style), StandardCharsets.UTF_8)) {
+            writer.write("way[highway] { width: 3; color: #ffffff; }\n"
+                    + "way[name] { text: auto; font-size: 14; text-color: #ffff00; }\n"
+                    + "node[name] { symbol-shape: circle; symbol-size: 8; symbol-fill-color: #ff0000; text: auto; font-size: 14; }\n");
+        }
+        List<SourceEntry> styles = MapPaintPrefHelper.INSTANCE.get();
+        MapPaintPrefHelper.INSTANCE.put(Collections.singleton(new SourceEntry(style.getPath(), "labels", "labels", true)));
+        MapPaintStyles.readFromPreferences();
+        try {
+            addNamedWays();
+            // a node whose label extends across the next tile border, further than the margin of the tiles
+            alignViewport();
+            long originX = Math.round(WIDTH / 2.0 - nc.getCenter().east() / nc.getScale());
+            int border = (int) ((originX % RenderTileCache.TILE_SIZE + RenderTileCache.TILE_SIZE) % RenderTileCache.TILE_SIZE);
+            if (border < 250) {
+                border += RenderTileCache.TILE_SIZE;
+            }
+            Node n = new Node(nc.getLatLon(border - 200, HEIGHT / 2 + 7));
+            n.put("name", "A node with a long name, close to the border of a tile");
+            ds.addPrimitive(n);
+            assertSameAsDirectRendering();
+        } finally {
+            MapPaintPrefHelper.INSTANCE.put(styles);
+            MapPaintStyles.readFromPreferences();
+        }
+    }
+
+    private void addNamedWays() {
+        for (int i = 0; i < 9; i++) {
+            Node n1 = new Node(new LatLon(50.0005 + i * 0.001, 8 + i * 0.0005));
+            Node n2 = new Node(new LatLon(50.0005 + i * 0.001, 8.009 - i * 0.0003));
+            ds.addPrimitive(n1);
+            ds.addPrimitive(n2);
+            Way w = new Way();
+            w.addNode(n1);
+            w.addNode(n2);
+            w.put("highway", "primary");
+            w.put("name", "Tile Border Street " + i);
+            ds.addPrimitive(w);
+        }
+    }
+
+    /**
+     * Checks that the cache forgets the primitives painted into the evicted tiles.
+     */
+    @Test
+    public void testEviction() {
+        Main.pref.putInteger("mappaint.tilecache.size", 16);
+        try {
+            paint();
+            assertTrue(cache.getPaintedPrimitiveCount() > 0);
+            EastNorth center = nc.getCenter();
+            // pan twice to empty areas, each of them replacing most of the tiles
+            for (int i = 1; i <= 2; i++) {
+                nc.zoomTo(new EastNorth(center.east() + i * 10 * RenderTileCache.TILE_SIZE * nc.getScale(), center.north()));
+                paint();
+            }
+            assertEquals(0, cache.getPaintedPrimitiveCount());
+        } finally {
+            Main.pref.put("mappaint.tilecache.size", null);
+        }
+    }
+
+    private static int countPainted(BufferedImage img) {
+        int painted = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                if (img.getRGB(x, y) != Color.BLACK.getRGB()) {
+                    painted++;
+                }
+            }
+        }
+        return painted;
+    }
+
+    /**
+     * Checks that an asynchronous cache does not render while painting, and paints the outdated tiles
+     * until they are rendered again.
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    public void testAsynchronous() throws InterruptedException {
+        final Semaphore rendered = new Semaphore(0);
+        RenderTileCache async = new RenderTileCache(ds, new Runnable() {
+            @Override
+            public void run() {
+                rendered.release();
+            }
+        });
+        try {
+            int visible = paint();
+
+            // the rendering thread waits for the read lock while the dataset is locked for writing
+            BufferedImage img = createImage();
+            Graphics2D g1 = img.createGraphics();
+            ds.beginUpdate();
+            try {
+                async.paint(g1, nc, false, false);
+                assertEquals(0, async.getTileCount());
+                assertEquals(visible, async.getPendingTileCount());
+            } finally {
+                ds.endUpdate();
+            }
+            assertEquals(0, countPainted(img));
+            assertTrue(rendered.tryAcquire(visible, 10, TimeUnit.SECONDS));
+            assertEquals(visible, async.getTileCount());
+            assertEquals(0, async.getPendingTileCount());
+            async.paint(g1, nc, false, false);
+            int painted = countPainted(img);
+            assertTrue(painted > 1000);
+
+            // the invalidated tiles are painted from their outdated rendering until they are rendered again
+            first.setCoor(new LatLon(50.0001, 8.0001));
+            int invalidated = visible - async.getTileCount();
+            assertTrue(invalidated > 0);
+            img = createImage();
+            g1 = img.createGraphics();
+            ds.beginUpdate();
+            try {
+                async.paint(g1, nc, false, false);
+                assertEquals(invalidated, async.getPendingTileCount());
+            } finally {
+                ds.endUpdate();
+            }
+            assertEquals(painted, countPainted(img));
+            assertTrue(rendered.tryAcquire(invalidated, 10, TimeUnit.SECONDS));
+            assertEquals(visible, async.getTileCount());
+            g1.dispose();
+        } finally {
+            async.destroy();
+        }
+    }
+
+    // antialiased pixels may differ by rounding, as the tiles are rendered to transparent images first
+    private static boolean similar(int rgb1, int rgb2) {
+        for (int shift = 0; shift < 32; shift += 8) {
+            if (Math.abs((rgb1 >> shift & 0xff) - (rgb2 >> shift & 0xff)) > 2)
+                return false;
+        }
+        return true;
+    }
+}
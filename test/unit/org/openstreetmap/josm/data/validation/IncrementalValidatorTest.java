@@ -0,0 +1,124 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.validation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.validation.tests.Coastlines;
+import org.openstreetmap.josm.data.validation.tests.CrossingWays;
+import org.openstreetmap.josm.data.validation.tests.MultipolygonTest;
+import org.openstreetmap.josm.data.validation.tests.PowerLines;
+import org.openstreetmap.josm.data.validation.tests.UntaggedWay;
+import org.openstreetmap.josm.gui.layer.OsmDataLayer;
+import org.openstreetmap.josm.gui.preferences.validator.ValidatorPreference;
+
+/**
+ * Unit tests of {@link IncrementalValidator} class.
+ */
+public class IncrementalValidatorTest {
+
+    /** Maximal time to wait for the validation of a change, in milliseconds */
+    private static final long TIMEOUT = 10000;
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void setUp() {
+        JOSMFixture.createUnitTestFixture().init();
+        // these tests need a map view or the main application
+        Main.pref.putCollection(ValidatorPreference.PREF_SKIP_TESTS, Arrays.asList(MultipolygonTest.class.getName(),
+                PowerLines.class.getName(), UntaggedWay.class.getName(), Coastlines.class.getName()));
+        OsmValidator.griddetail = 0.01;
+        OsmValidator.initializeTests();
+        IncrementalValidator.PREF_INCREMENTAL.put(true);
+    }
+
+    /**
+     * Restores the preferences.
+     */
+    @AfterClass
+    public static void tearDown() {
+        IncrementalValidator.PREF_INCREMENTAL.put(false);
+        Main.pref.putCollection(ValidatorPreference.PREF_SKIP_TESTS, null);
+    }
+
+    private static Way createWay(DataSet ds, LatLon... coors) {
+        Way w = new Way();
+        for (LatLon ll : coors) {
+            Node n = new Node(ll);
+            ds.addPrimitive(n);
+            w.addNode(n);
+        }
+        w.put("highway", "residential");
+        ds.addPrimitive(w);
+        return w;
+    }
+
+    private static int countCrossings(OsmDataLayer layer) {
+        int result = 0;
+        for (TestError e : layer.validationErrors) {
+            if (e.getTester() instanceof CrossingWays) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    private static void waitForWorker() throws Exception {
+        Main.worker.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).get();
+    }
+
+    /**
+     * Waits until the errors of the layer contain the given number of crossings.
+     */
+    private static void waitForCrossings(OsmDataLayer layer, int expected) throws Exception {
+        long end = System.currentTimeMillis() + TIMEOUT;
+        do {
+            // the changes are validated by the main worker after a short delay
+            Thread.sleep(500);
+            waitForWorker();
+        } while (countCrossings(layer) != expected && System.currentTimeMillis() < end);
+        assertEquals(expected, countCrossings(layer));
+    }
+
+    /**
+     * Checks that the errors are updated when ways are moved and removed.
+     * @throws Exception if an error occurs
+     */
+    @org.junit.Test
+    public void testCrossingWays() throws Exception {
+        DataSet ds = new DataSet();
+        OsmDataLayer layer = new OsmDataLayer(ds, "test", null);
+        try {
+            createWay(ds, new LatLon(50, 8), new LatLon(50, 8.01));
+            Way w2 = createWay(ds, new LatLon(50.001, 8.005), new LatLon(50.002, 8.005));
+            waitForCrossings(layer, 0);
+
+            // the unchanged way is found as neighbour of the moved one
+            w2.firstNode().setCoor(new LatLon(49.999, 8.005));
+            waitForCrossings(layer, 1);
+            TestError crossing = layer.validationErrors.get(layer.validationErrors.size() - 1);
+            assertTrue(crossing.getPrimitives().contains(w2));
+
+            ds.removePrimitive(w2);
+            waitForCrossings(layer, 0);
+        } finally {
+            layer.destroy();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.data.validation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.BeforeClass;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.validation.tests.Coastlines;
+import org.openstreetmap.josm.data.validation.tests.MultipolygonTest;
+import org.openstreetmap.josm.data.validation.tests.PowerLines;
+import org.openstreetmap.josm.data.validation.tests.UntaggedWay;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.Compression;
+import org.openstreetmap.josm.io.OsmReader;
+
+/**
+ * Unit tests of {@link ValidationRunner} class.
+ */
+public class ValidationRunnerTest {
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void setUp() {
+        JOSMFixture.createUnitTestFixture().init();
+        // force the concurrent run, whatever the number of processors
+        Main.pref.putInteger("validator.numberOfThreads", 4);
+        OsmValidator.griddetail = 0.01;
+        OsmValidator.initializeTests();
+    }
+
+    private static List<Test> getTests() {
+        List<Test> tests = new ArrayList<>();
+        for (Test test : OsmValidator.getEnabledTests(false)) {
+            // these tests need a map view or the main application
+            if (!(test instanceof MultipolygonTest || test instanceof PowerLines || test instanceof UntaggedWay
+                    || (test instanceof Coastlines && Main.main == null))) {
+                tests.add(test);
+            }
+        }
+        return tests;
+    }
+
+    private static List<String> describe(Collection<TestError> errors) {
+        List<String> result = new ArrayList<>();
+        for (TestError e : errors) {
+            StringBuilder sb = new StringBuilder(e.getTester().getClass().getName())
+                .append(' ').append(e.getSeverity())
+                .append(' ').append(e.getCode())
+                .append(' ').append(e.getMessage())
+                .append(' ').append(e.getDescription());
+            for (OsmPrimitive p : e.getPrimitives()) {
+                sb.append(' ').append(p.getPrimitiveId());
+            }
+            result.add(sb.toString());
+        }
+        return result;
+    }
+
+    /**
+     * Checks that the concurrent run finds the same errors, in the same order, as a sequential run.
+     * @throws Exception if an error occurs
+     */
+    @org.junit.Test
+    public void testSameResultAsSequentialRun() throws Exception {
+        DataSet ds;
+        try (InputStream is = Compression.ZIP.getUncompressedInputStream(
+                new FileInputStream(TestUtils.getRegressionDataFile(9632, "data.osm.zip")))) {
+            ds = OsmReader.parseDataSet(is, NullProgressMonitor.INSTANCE);
+        }
+        List<OsmPrimitive> primitives = new ArrayList<>(ds.allPrimitives());
+        List<Test> tests = getTests();
+
+        List<TestError> expected = new ArrayList<>();
+        for (Test test : tests) {
+            test.startTest(null);
+            test.visit(primitives);
+            test.endTest();
+            expected.addAll(test.getErrors());
+        }
+        assertTrue(!expected.isEmpty());
+
+        List<TestError> actual = ValidationRunner.runTests(tests, primitives, null);
+        assertEquals(describe(expected), describe(actual));
+        // errors found by copies of the tests are reported by the tests themselves
+        for (int i = 0; i < expected.size(); i++) {
+            if (tests.contains(expected.get(i).getTester())) {
+                assertSame(expected.get(i).getTester(), actual.get(i).getTester());
+            }
+        }
+    }
+
+    /**
+     * A test which does not tell whether it can run concurrently, like the tests of plugins.
+     */
+    private static class NotAuditedTest extends Test {
+        private static final AtomicInteger RUNNING = new AtomicInteger();
+        private static final AtomicInteger MAX_RUNNING = new AtomicInteger();
+
+        NotAuditedTest() {
+            super("not audited");
+        }
+
+        @Override
+        public void visit(Collection<OsmPrimitive> selection) {
+            int running = RUNNING.incrementAndGet();
+            try {
+                int max = MAX_RUNNING.get();
+                while (running > max && !MAX_RUNNING.compareAndSet(max, running)) {
+                    max = MAX_RUNNING.get();
+                }
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                RUNNING.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Checks that the tests are run one after the other, unless they support concurrent runs.
+     */
+    @org.junit.Test
+    public void testNotAuditedTestsRunSequentially() {
+        List<Test> tests = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            tests.add(new NotAuditedTest());
+        }
+        assertTrue(ValidationRunner.runTests(tests, new ArrayList<OsmPrimitive>(), null).isEmpty());
+        assertEquals(1, NotAuditedTest.MAX_RUNNING.get());
+    }
+
+    /**
+     * A test which may run concurrently with other tests, but not with itself.
+     */
+    private static class AuditedTest extends NotAuditedTest {
+        @Override
+        public boolean isConcurrentRunSupported() {
+            return true;
+        }
+    }
+
+    /**
+     * Checks that the runs of several threads sharing the same test instance are serialized.
+     * @throws InterruptedException if the test is interrupted
+     */
+    @org.junit.Test
+    public void testRunsAreSerialized() throws InterruptedException {
+        final List<Test> tests = new ArrayList<>();
+        tests.add(new AuditedTest());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            final boolean beforeUpload = i % 2 == 0;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 3; j++) {
+                        ValidationRunner.runTests(tests, new ArrayList<OsmPrimitive>(), beforeUpload, true, null);
+                    }
+                }
+            }));
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(1, NotAuditedTest.MAX_RUNNING.get());
+    }
+}
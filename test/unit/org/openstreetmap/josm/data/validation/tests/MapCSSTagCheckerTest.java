@@ -7,6 +7,8 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
 import java.io.StringReader;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
@@ -20,6 +22,8 @@ import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.Tag;
 import org.openstreetmap.josm.data.validation.Severity;
 import org.openstreetmap.josm.data.validation.tests.MapCSSTagChecker.TagCheck;
+import org.openstreetmap.josm.data.validation.tests.MapCSSTagChecker.TagCheckIndex;
+import org.openstreetmap.josm.tools.MultiMap;
 
 /**
  * JUnit Test of MapCSS TagChecker.
@@ -80,4 +84,38 @@ public class MapCSSTagCheckerTest {
         }
         assertTrue("not all assertions included in the tests are met", assertionErrors.isEmpty());
     }
+
+    /**
+     * Checks that the index replies the checks whose selectors require a tag or a key of the primitive,
+     * and the checks which cannot be indexed.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testIndex() throws Exception {
+        final List<TagCheck> checks = TagCheck.readMapCSS(new StringReader("" +
+                "*[natural=marsh] { throwWarning: \"0\"; }\n" +
+                "way[highway][!name] { throwWarning: \"1\"; }\n" +
+                "relation > way[oneway?] { throwWarning: \"2\"; }\n" +
+                "*[!fixme] { throwWarning: \"3\"; }\n" +
+                "node[amenity=bench], node[leisure=picnic_table] { throwWarning: \"4\"; }"));
+        final MultiMap<String, TagCheck> map = new MultiMap<>();
+        map.putAll("test", checks);
+        final TagCheckIndex index = new TagCheckIndex(map);
+        assertThat(index.checks.length, is(5));
+
+        final List<TagCheck> indexed = Arrays.asList(index.checks);
+        final Node n = new Node();
+        n.put("natural", "wood");
+        n.put("leisure", "picnic_table");
+        BitSet candidates = index.getCandidates(n);
+        assertThat(candidates.cardinality(), is(2));
+        assertTrue(candidates.get(indexed.indexOf(checks.get(3))));
+        assertTrue(candidates.get(indexed.indexOf(checks.get(4))));
+
+        n.put("natural", "marsh");
+        n.put("highway", "residential");
+        n.put("oneway", "no");
+        candidates = index.getCandidates(n);
+        assertThat(candidates.cardinality(), is(5));
+    }
 }
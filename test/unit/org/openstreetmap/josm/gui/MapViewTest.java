@@ -0,0 +1,94 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.data.coor.EastNorth;
+
+/**
+ * Unit tests of {@link MapView} class.
+ */
+public class MapViewTest {
+
+    private static final int WIDTH = 100;
+    private static final int HEIGHT = 50;
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void setUp() {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    /**
+     * Checks the offset of the content when the view is panned.
+     */
+    @Test
+    public void testPanOffset() {
+        EastNorth center = new EastNorth(1000, 2000);
+        assertEquals(new Point(0, 0), MapView.getPanOffset(center, center, 2));
+        // panning to the east and the north moves the content to the left and the bottom
+        assertEquals(new Point(-3, 2), MapView.getPanOffset(center, new EastNorth(1006, 2004), 2));
+        assertEquals(new Point(3, -2), MapView.getPanOffset(center, new EastNorth(994, 1996), 2));
+        // rounded to whole pixels
+        assertEquals(new Point(-3, -1), MapView.getPanOffset(center, new EastNorth(1005.2, 1997.4), 2));
+    }
+
+    /**
+     * Checks the uncovered borders for positive and negative offsets.
+     */
+    @Test
+    public void testUncoveredBorders() {
+        assertEquals(Collections.emptyList(), MapView.getUncoveredBorders(0, 0, WIDTH, HEIGHT));
+        assertEquals(Arrays.asList(new Rectangle(0, 0, 10, HEIGHT), new Rectangle(10, 0, 90, 20)),
+                MapView.getUncoveredBorders(10, 20, WIDTH, HEIGHT));
+        assertEquals(Arrays.asList(new Rectangle(90, 0, 10, HEIGHT), new Rectangle(0, 30, 90, 20)),
+                MapView.getUncoveredBorders(-10, -20, WIDTH, HEIGHT));
+        assertEquals(Arrays.asList(new Rectangle(0, 0, 10, HEIGHT), new Rectangle(10, 30, 90, 20)),
+                MapView.getUncoveredBorders(10, -20, WIDTH, HEIGHT));
+        assertEquals(Arrays.asList(new Rectangle(90, 0, 10, HEIGHT), new Rectangle(0, 0, 90, 20)),
+                MapView.getUncoveredBorders(-10, 20, WIDTH, HEIGHT));
+        assertEquals(Collections.singletonList(new Rectangle(0, 43, WIDTH, 7)),
+                MapView.getUncoveredBorders(0, -7, WIDTH, HEIGHT));
+        assertEquals(Collections.singletonList(new Rectangle(95, 0, 5, HEIGHT)),
+                MapView.getUncoveredBorders(-5, 0, WIDTH, HEIGHT));
+    }
+
+    /**
+     * Checks that the moved content and the uncovered borders cover each pixel of the view exactly once.
+     */
+    @Test
+    public void testCoverage() {
+        int[] offsets = {-WIDTH - 5, -WIDTH, -30, -1, 0, 1, 30, WIDTH, WIDTH + 5};
+        for (int dx : offsets) {
+            for (int dy : offsets) {
+                Rectangle view = new Rectangle(0, 0, WIDTH, HEIGHT);
+                Rectangle content = view.intersection(new Rectangle(dx, dy, WIDTH, HEIGHT));
+                List<Rectangle> borders = MapView.getUncoveredBorders(dx, dy, WIDTH, HEIGHT);
+                for (int x = 0; x < WIDTH; x++) {
+                    for (int y = 0; y < HEIGHT; y++) {
+                        int count = content.contains(x, y) ? 1 : 0;
+                        for (Rectangle border : borders) {
+                            assertTrue(view.contains(border));
+                            if (border.contains(x, y)) {
+                                count++;
+                            }
+                        }
+                        assertEquals("dx=" + dx + ", dy=" + dy + ", x=" + x + ", y=" + y, 1, count);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.gui.layer.gpx;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.gpx.GpxData;
+
+/**
+ * Unit tests of {@link GpxDrawHelper} class.
+ */
+public class GpxDrawHelperTest {
+
+    private static final double SCALE = 2;
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void setUp() {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    private static double getSimplifyTolerance(String key, boolean value) {
+        Main.pref.put(key, value);
+        try {
+            GpxDrawHelper helper = new GpxDrawHelper(new GpxData());
+            helper.readPreferences("test");
+            return helper.getSimplifyTolerance(SCALE);
+        } finally {
+            Main.pref.put(key, null);
+        }
+    }
+
+    /**
+     * Checks that the lines are only simplified if no point is drawn individually.
+     */
+    @Test
+    public void testSimplifyTolerance() {
+        assertEquals(0.5 * SCALE, getSimplifyTolerance("draw.rawgps.lines.local", true), 1e-9);
+        assertEquals(0, getSimplifyTolerance("draw.rawgps.lines.local", false), 0);
+        assertEquals(0, getSimplifyTolerance("draw.rawgps.large", true), 0);
+        assertEquals(0, getSimplifyTolerance("draw.rawgps.direction", true), 0);
+        assertEquals(0, getSimplifyTolerance("draw.rawgps.hdopcircle", true), 0);
+    }
+}
@@ -0,0 +1,186 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.SimplePrimitiveId;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.MultiFetchServerObjectReader.AdaptiveConcurrency;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests of the concurrent requests of {@link MultiFetchServerObjectReader} class, against a local stand-in of
+ * the OSM API. The functional tests against the test server are in {@code MultiFetchServerObjectReaderTest}.
+ */
+public class MultiFetchServerObjectReaderConcurrencyTest {
+
+    /** The first id of the nodes unknown to the server */
+    private static final long MISSING = 900000;
+
+    private HttpServer server;
+    private FakeApi api;
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void init() {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    /**
+     * Starts the local server.
+     * @throws IOException if the server cannot be started
+     */
+    @Before
+    public void setUp() throws IOException {
+        api = new FakeApi();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/", api);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        Main.pref.put("osm-server.url", "http://localhost:" + server.getAddress().getPort() + "/api");
+        Main.pref.putInteger("osm.download.threads", 4);
+        Main.pref.putInteger("osm-server.max-url-length", 300);
+    }
+
+    /**
+     * Stops the local server.
+     */
+    @After
+    public void tearDown() {
+        server.stop(0);
+        Main.pref.put("osm-server.url", null);
+        Main.pref.put("osm.download.threads", null);
+        Main.pref.put("osm-server.max-url-length", null);
+    }
+
+    /**
+     * A minimal OSM API replying nodes, refusing the first requests because of its rate limits.
+     */
+    private static class FakeApi implements HttpHandler {
+        private final List<String> urls = Collections.synchronizedList(new ArrayList<String>());
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger maxRunning = new AtomicInteger();
+        private final AtomicInteger throttled = new AtomicInteger(2);
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String url = exchange.getRequestURI().toString();
+            int code = 200;
+            StringBuilder response = new StringBuilder();
+            if (url.endsWith("/capabilities")) {
+                response.append("<osm version='0.6'><api><version minimum='0.6' maximum='0.6'/></api></osm>");
+            } else {
+                urls.add("http://localhost:" + exchange.getLocalAddress().getPort() + url);
+                int n = running.incrementAndGet();
+                while (maxRunning.get() < n) {
+                    maxRunning.compareAndSet(maxRunning.get(), n);
+                }
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                if (throttled.getAndDecrement() > 0) {
+                    code = 429;
+                } else {
+                    response.append("<osm version='0.6'>");
+                    for (String id : url.substring(url.indexOf("nodes=") + 6).split(",")) {
+                        if (Long.parseLong(id) >= MISSING) {
+                            code = 404;
+                            break;
+                        }
+                        response.append("<node id='").append(id).append("' version='1' changeset='1' lat='1' lon='2'/>");
+                    }
+                    response.append("</osm>");
+                }
+            }
+            byte[] bytes = code == 200 ? response.toString().getBytes(StandardCharsets.UTF_8) : new byte[0];
+            exchange.sendResponseHeaders(code, bytes.length > 0 ? bytes.length : -1);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Checks that all primitives are fetched by requests of limited length, despite the rate limits of the server.
+     * @throws OsmTransferException if an error occurs
+     */
+    @Test
+    public void testFetch() throws OsmTransferException {
+        MultiFetchServerObjectReader reader = new MultiFetchServerObjectReader();
+        for (long id = 1; id <= 1000; id++) {
+            reader.appendNode(new Node(id));
+        }
+        reader.appendNode(new Node(MISSING));
+        DataSet ds = reader.parseOsm(NullProgressMonitor.INSTANCE);
+        assertEquals(1000, ds.getNodes().size());
+        for (long id = 1; id <= 1000; id++) {
+            Node n = (Node) ds.getPrimitiveById(id, OsmPrimitiveType.NODE);
+            assertNotNull(n);
+            assertTrue(!n.isIncomplete());
+        }
+        assertEquals(Collections.singleton(new SimplePrimitiveId(MISSING, OsmPrimitiveType.NODE)), reader.getMissingPrimitives());
+        for (String url : api.urls) {
+            assertTrue(url, url.length() <= 300);
+        }
+        assertTrue(api.urls.size() > 20);
+        assertTrue(Integer.toString(api.maxRunning.get()), api.maxRunning.get() <= 4);
+    }
+
+    /**
+     * Checks the adaptation of the number of concurrent requests.
+     */
+    @Test
+    public void testAdaptiveConcurrency() {
+        AdaptiveConcurrency concurrency = new AdaptiveConcurrency(4);
+        assertEquals(4, concurrency.getLimit());
+        assertEquals(0, concurrency.getBackoff());
+        concurrency.throttled();
+        assertEquals(2, concurrency.getLimit());
+        concurrency.throttled();
+        assertEquals(1, concurrency.getLimit());
+        concurrency.throttled();
+        assertEquals(1, concurrency.getLimit());
+        assertEquals(2000, concurrency.getBackoff());
+        concurrency.succeeded(200, 100);
+        assertEquals(0, concurrency.getBackoff());
+        assertEquals(2, concurrency.getLimit());
+        concurrency.succeeded(300, 100);
+        concurrency.succeeded(300, 100);
+        assertEquals(4, concurrency.getLimit());
+        // the server slows down
+        concurrency.succeeded(1000, 100);
+        assertEquals(3, concurrency.getLimit());
+        // short requests do not decrease the limit
+        concurrency.succeeded(50, 10);
+        assertEquals(4, concurrency.getLimit());
+    }
+}
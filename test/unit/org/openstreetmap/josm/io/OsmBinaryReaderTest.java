@@ -0,0 +1,212 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.DataSource;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.User;
+import org.openstreetmap.josm.data.osm.Way;
+
+/**
+ * Unit tests of {@link OsmBinaryReader} and {@link OsmBinaryWriter} classes.
+ */
+public class OsmBinaryReaderTest {
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void init() {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    private static final String SAMPLE =
+            "<?xml version='1.0' encoding='UTF-8'?>\n" +
+            "<osm version='0.6' upload='false' generator='test'>\n" +
+            "  <bounds minlat='1' minlon='2' maxlat='3' maxlon='4' origin='test'/>\n" +
+            "  <bounds minlat='-1.5' minlon='-2.5' maxlat='0' maxlon='0'/>\n" +
+            "  <node id='1' version='1' changeset='1' lat='1.5' lon='2.5' user='a&amp;b' uid='3'" +
+            " timestamp='2014-01-01T00:00:00Z'>\n" +
+            "    <tag k='name' v='a'/>\n" +
+            "    <tag k='note' v='été'/>\n" +
+            "  </node>\n" +
+            "  <node id='2' version='2' changeset='1' lat='-1.123456789' lon='179.999999999' action='modify'" +
+            " timestamp='2013-01-01T00:00:00Z' user='c' uid='4'/>\n" +
+            "  <node id='-1' lat='1.7' lon='2.7'><tag k='name' v='new'/></node>\n" +
+            "  <node id='-2' lat='1.8' lon='2.8' action='modify'/>\n" +
+            "  <node id='5' version='1' changeset='1' visible='false'/>\n" +
+            "  <node id='6' version='3' changeset='1' lat='1' lon='2' action='delete'/>\n" +
+            "  <way id='10' version='1' changeset='1'>\n" +
+            "    <nd ref='1'/><nd ref='2'/><nd ref='-1'/><nd ref='3'/>\n" +
+            "    <tag k='highway' v='road'/>\n" +
+            "  </way>\n" +
+            "  <way id='-3' action='modify'>\n" +
+            "    <nd ref='-2'/><nd ref='-1'/><nd ref='1'/>\n" +
+            "    <tag k='name' v='a'/>\n" +
+            "  </way>\n" +
+            "  <relation id='20' version='1' changeset='1'>\n" +
+            "    <member type='way' ref='10' role='outer'/>\n" +
+            "    <member type='relation' ref='21' role=''/>\n" +
+            "    <member type='node' ref='4' role='label'/>\n" +
+            "    <member type='way' ref='-3' role='outer'/>\n" +
+            "  </relation>\n" +
+            "  <relation id='21' version='1' changeset='1' action='delete'/>\n" +
+            "</osm>\n";
+
+    /**
+     * Describes a primitive. The user is compared by id, as its names depend on the data read before in the session.
+     */
+    private static String describe(OsmPrimitive p) {
+        return p.getType() + " " + (p.isNew() ? "new" : Long.toString(p.getUniqueId())) + " v" + p.getVersion()
+                + " " + new TreeMap<>(p.getKeys()) + " " + (p.getUser() != null ? p.getUser().getId() : null) + " " + p.getTimestamp() + " " + p.getChangesetId()
+                + " m" + p.isModified() + " d" + p.isDeleted() + " v" + p.isVisible() + " i" + p.isIncomplete();
+    }
+
+    private static List<String> describe(DataSet ds) {
+        List<String> result = new ArrayList<>();
+        for (OsmPrimitive p : ds.allPrimitives()) {
+            StringBuilder sb = new StringBuilder(describe(p));
+            if (p instanceof Node) {
+                sb.append(' ').append(((Node) p).getCoor());
+            } else if (p instanceof Way) {
+                for (Node n : ((Way) p).getNodes()) {
+                    sb.append("\n  ").append(describe(n)).append(' ').append(n.getCoor());
+                }
+            } else if (p instanceof Relation) {
+                for (RelationMember m : ((Relation) p).getMembers()) {
+                    sb.append("\n  ").append(m.getRole()).append(' ').append(describe(m.getMember()));
+                }
+            }
+            result.add(sb.toString());
+        }
+        Collections.sort(result);
+        result.add(ds.getVersion() + " " + ds.isUploadDiscouraged());
+        for (DataSource src : ds.dataSources) {
+            result.add(src.bounds + " " + src.origin);
+        }
+        return result;
+    }
+
+    private static byte[] write(DataSet ds) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OsmBinaryWriter w = new OsmBinaryWriter(out)) {
+            w.write(ds);
+        }
+        return out.toByteArray();
+    }
+
+    private static void assertRoundTrip(DataSet expected) throws Exception {
+        byte[] data = write(expected);
+        assertEquals(describe(expected), describe(OsmBinaryReader.parseDataSet(new ByteArrayInputStream(data), null)));
+        File file = File.createTempFile("josm", ".osmbin");
+        try {
+            try (OutputStream out = new FileOutputStream(file)) {
+                out.write(data);
+            }
+            assertEquals(describe(expected), describe(OsmBinaryReader.parseDataSet(file, null)));
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Checks that the JOSM specific state is kept: negative ids, modified and deleted flags, data sources,
+     * upload flag and incomplete members.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testSample() throws Exception {
+        DataSet ds = OsmReader.parseDataSet(new ByteArrayInputStream(SAMPLE.getBytes(StandardCharsets.UTF_8)), null);
+        assertTrue(ds.isUploadDiscouraged());
+        assertRoundTrip(ds);
+    }
+
+    /**
+     * Checks that the aliases of a user are written one by one, and not as a single joined name.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testUserNames() throws Exception {
+        User user = User.createOsmUser(987654, "first");
+        user.addName("second");
+        DataSet ds = new DataSet();
+        Node n = new Node(new LatLon(1, 2));
+        n.setOsmId(1, 1);
+        n.setUser(user);
+        ds.addPrimitive(n);
+        Node read = OsmBinaryReader.parseDataSet(new ByteArrayInputStream(write(ds)), null).getNodes().iterator().next();
+        assertSame(user, read.getUser());
+        assertEquals(new HashSet<>(Arrays.asList("first", "second")), new HashSet<>(user.getNames()));
+    }
+
+    /**
+     * Compares a real world file with the result of {@link OsmReader} and checks that the binary file is smaller.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testRealData() throws Exception {
+        DataSet ds;
+        try (InputStream is = Compression.ZIP.getUncompressedInputStream(
+                new FileInputStream(TestUtils.getRegressionDataFile(9632, "data.osm.zip")))) {
+            ds = OsmReader.parseDataSet(is, null);
+        }
+        assertRoundTrip(ds);
+        // a second write of the read data set gives the same bytes
+        byte[] data = write(ds);
+        assertTrue(Arrays.equals(data, write(OsmBinaryReader.parseDataSet(new ByteArrayInputStream(data), null))));
+    }
+
+    /**
+     * Checks that invalid files are rejected.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testErrors() throws Exception {
+        byte[] data = write(OsmReader.parseDataSet(new ByteArrayInputStream(SAMPLE.getBytes(StandardCharsets.UTF_8)), null));
+        assertError(Arrays.copyOf(data, data.length - 3));
+        byte[] badMagic = data.clone();
+        badMagic[0] = '<';
+        assertError(badMagic);
+        byte[] badVersion = data.clone();
+        badVersion[OsmBinaryWriter.MAGIC.length] = OsmBinaryWriter.FORMAT_VERSION + 1;
+        assertError(badVersion);
+    }
+
+    private static void assertError(byte[] data) {
+        try {
+            OsmBinaryReader.parseDataSet(new ByteArrayInputStream(data), null);
+            fail("Exception expected");
+        } catch (IllegalDataException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,282 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.Changeset;
+import org.openstreetmap.josm.data.osm.IPrimitive;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.gui.io.UploadStrategy;
+import org.openstreetmap.josm.gui.io.UploadStrategySpecification;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests of {@link OsmServerWriter} class, against a local stand-in of the OSM API.
+ */
+public class OsmServerWriterTest {
+
+    private HttpServer server;
+    private FakeApi api;
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void init() {
+        JOSMFixture.createUnitTestFixture().init();
+    }
+
+    /**
+     * Starts the local server.
+     * @throws IOException if the server cannot be started
+     */
+    @Before
+    public void setUp() throws IOException {
+        api = new FakeApi();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/", api);
+        server.start();
+        Main.pref.put("osm-server.url", "http://localhost:" + server.getAddress().getPort() + "/api");
+        Main.pref.put("osm-server.auth-method", "basic");
+    }
+
+    /**
+     * Stops the local server.
+     */
+    @After
+    public void tearDown() {
+        server.stop(0);
+        Main.pref.put("osm-server.url", null);
+        Main.pref.put(OsmServerWriter.PROP_PIPELINED_UPLOAD.getKey(), null);
+    }
+
+    /**
+     * A minimal OSM API: it creates the changeset, assigns ids to the uploaded primitives and checks that the
+     * references of each upload are known.
+     */
+    private static class FakeApi implements HttpHandler {
+        private final List<String> uploads = Collections.synchronizedList(new ArrayList<String>());
+        private final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+        private final Set<String> known = new HashSet<>(Collections.singleton("node42"));
+        private long nextId = 1000;
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String path = exchange.getRequestURI().getPath();
+            byte[] body = readFully(exchange.getRequestBody());
+            String response;
+            if (path.endsWith("/capabilities")) {
+                response = "<osm version='0.6'><api><version minimum='0.6' maximum='0.6'/></api></osm>";
+            } else if (path.endsWith("/changeset/create")) {
+                response = "1";
+            } else if (path.endsWith("/changeset/1/upload")) {
+                uploads.add(new String(body, StandardCharsets.UTF_8));
+                response = processUpload(body);
+            } else {
+                response = "";
+                errors.add("Unexpected request " + exchange.getRequestMethod() + " " + path);
+            }
+            byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+
+        private synchronized String processUpload(byte[] body) {
+            final StringBuilder result = new StringBuilder("<diffResult version='0.6'>\n");
+            final Map<String, Long> created = new HashMap<>();
+            final List<String> references = new ArrayList<>();
+            try {
+                SAXParserFactory.newInstance().newSAXParser().parse(new ByteArrayInputStream(body), new DefaultHandler() {
+                    private String mode;
+
+                    @Override
+                    public void startElement(String uri, String localName, String qName, Attributes atts) {
+                        switch (qName) {
+                        case "create":
+                        case "modify":
+                        case "delete":
+                            mode = qName;
+                            break;
+                        case "node":
+                        case "way":
+                        case "relation":
+                            String id = atts.getValue("id");
+                            result.append("<").append(qName).append(" old_id='").append(id).append("'");
+                            if ("create".equals(mode)) {
+                                long newId = nextId++;
+                                created.put(qName + id, newId);
+                                result.append(" new_id='").append(newId).append("' new_version='1'");
+                            } else if ("modify".equals(mode)) {
+                                int version = Integer.parseInt(atts.getValue("version")) + 1;
+                                result.append(" new_id='").append(id).append("' new_version='").append(version).append("'");
+                            }
+                            result.append("/>\n");
+                            break;
+                        case "nd":
+                            references.add("node" + atts.getValue("ref"));
+                            break;
+                        case "member":
+                            references.add(atts.getValue("type") + atts.getValue("ref"));
+                            break;
+                        default:
+                        }
+                    }
+                });
+            } catch (IOException | SAXException | javax.xml.parsers.ParserConfigurationException e) {
+                errors.add(e.toString());
+            }
+            for (String ref : references) {
+                if (!known.contains(ref) && !created.containsKey(ref)) {
+                    errors.add("Unknown reference " + ref);
+                }
+            }
+            for (Map.Entry<String, Long> e : created.entrySet()) {
+                known.add(e.getKey().replaceAll("-?\\d+$", "") + e.getValue());
+            }
+            return result.append("</diffResult>\n").toString();
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) >= 0) {
+            result.write(buffer, 0, n);
+        }
+        return result.toByteArray();
+    }
+
+    /**
+     * Replies primitives to upload, in the order of an upload: new nodes, new ways, then a new relation.
+     */
+    private static List<OsmPrimitive> createPrimitives() {
+        List<OsmPrimitive> result = new ArrayList<>();
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            Node n = new Node(new LatLon(1 + i * 0.001, 2));
+            n.put("ref", Integer.toString(i));
+            nodes.add(n);
+            result.add(n);
+        }
+        Node existing = new Node(42, 3);
+        existing.setCoor(new LatLon(1, 1));
+        existing.setModified(true);
+        result.add(existing);
+        Relation r = new Relation();
+        for (int i = 0; i < 5; i++) {
+            Way w = new Way();
+            w.setNodes(nodes.subList(i * 6, i * 6 + 6));
+            w.addNode(existing);
+            w.put("highway", "residential");
+            result.add(w);
+            r.addMember(new RelationMember("part", w));
+        }
+        r.put("type", "route");
+        result.add(r);
+        return result;
+    }
+
+    private List<String> upload(boolean pipelined, List<OsmPrimitive> primitives) throws OsmTransferException {
+        OsmServerWriter.PROP_PIPELINED_UPLOAD.put(pipelined);
+        OsmServerWriter writer = new OsmServerWriter();
+        UploadStrategySpecification strategy = new UploadStrategySpecification()
+                .setStrategy(UploadStrategy.CHUNKED_DATASET_STRATEGY).setChunkSize(4);
+        writer.uploadOsm(strategy, primitives, new Changeset(), NullProgressMonitor.INSTANCE);
+        assertEquals(primitives.size(), writer.getProcessedPrimitives().size());
+        List<String> result = new ArrayList<>();
+        for (String upload : api.uploads) {
+            // the placeholder ids of new primitives differ from one run to the other
+            result.add(upload.replaceAll("id='-\\d+'", "id='new'"));
+        }
+        return result;
+    }
+
+    /**
+     * Checks that a pipelined upload sends the same requests as a sequential one, with the new ids of the previous
+     * chunks.
+     * @throws OsmTransferException if an error occurs
+     * @throws IOException if the server cannot be restarted
+     */
+    @Test
+    public void testPipelinedUpload() throws OsmTransferException, IOException {
+        List<OsmPrimitive> primitives = createPrimitives();
+        List<String> pipelined = upload(true, primitives);
+        assertEquals(api.errors.toString(), 0, api.errors.size());
+        assertEquals(10, pipelined.size());
+        for (IPrimitive p : primitives) {
+            assertFalse(p.isNew());
+            assertEquals(1, p.getChangesetId());
+        }
+        assertEquals(4, primitives.get(30).getVersion());
+
+        tearDown();
+        setUp();
+        List<String> sequential = upload(false, createPrimitives());
+        assertEquals(api.errors.toString(), 0, api.errors.size());
+        assertEquals(sequential, pipelined);
+    }
+
+    /**
+     * Checks the requests built ahead of the upload.
+     * @throws OsmTransferException if an error occurs
+     */
+    @Test
+    public void testCreateDiffUploadRequest() throws OsmTransferException {
+        Changeset cs = new Changeset(1);
+        cs.setOpen(true);
+        OsmApi osmApi = OsmApi.getOsmApi();
+        osmApi.setChangeset(cs);
+        try {
+            List<OsmPrimitive> primitives = createPrimitives();
+            OsmChangeBuilder builder = new OsmChangeBuilder(cs);
+            builder.start();
+            builder.append(primitives);
+            builder.finish();
+            String request = new String(osmApi.createDiffUploadRequest(primitives), StandardCharsets.UTF_8);
+            assertEquals(builder.getDocument(), request);
+            assertTrue(request.contains("<nd ref='42' />"));
+        } finally {
+            osmApi.setChangeset(null);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.apache.tools.bzip2.CBZip2InputStream;
+import org.apache.tools.bzip2.CBZip2OutputStream;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.Main;
+
+/**
+ * Unit tests of {@link ParallelBZip2InputStream} and {@link ParallelBZip2OutputStream} classes.
+ */
+public class ParallelBZip2InputStreamTest {
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void init() {
+        JOSMFixture.createUnitTestFixture().init();
+        // make sure the blocks are handled concurrently, whatever the number of processors
+        Main.pref.putInteger("bzip2.numberOfThreads", 4);
+    }
+
+    /**
+     * Replies text looking like an OSM file, spanning several bzip2 blocks.
+     */
+    private static byte[] createText(int size) {
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder(size + 100);
+        String[] keys = {"highway", "name", "building", "source", "addr:street", "landuse"};
+        while (sb.length() < size) {
+            sb.append("  <node id='").append(random.nextInt(100000000))
+              .append("' lat='").append(random.nextDouble() * 180 - 90)
+              .append("' lon='").append(random.nextDouble() * 360 - 180)
+              .append("'><tag k='").append(keys[random.nextInt(keys.length)])
+              .append("' v='").append(Long.toString(random.nextLong(), 36)).append("'/></node>\n");
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Replies data made of random bytes and long runs, spanning several bzip2 blocks.
+     */
+    private static byte[] createBinary(int size) {
+        Random random = new Random(7);
+        byte[] data = new byte[size];
+        int i = 0;
+        while (i < size) {
+            int n = Math.min(size - i, 1 + random.nextInt(5000));
+            if (random.nextBoolean()) {
+                for (int j = 0; j < n; j++) {
+                    data[i + j] = (byte) random.nextInt(4);
+                }
+            } else {
+                byte b = (byte) random.nextInt();
+                for (int j = 0; j < n; j++) {
+                    data[i + j] = b;
+                }
+            }
+            i += n;
+        }
+        return data;
+    }
+
+    private static byte[] compressParallel(byte[] data) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (OutputStream out = new ParallelBZip2OutputStream(result)) {
+            // odd writes, to cross the chunk boundaries anywhere
+            int i = 0;
+            while (i < data.length) {
+                int n = Math.min(data.length - i, 12345);
+                out.write(data, i, n);
+                i += n;
+                if (i < data.length) {
+                    out.write(data[i++]);
+                }
+            }
+        }
+        return result.toByteArray();
+    }
+
+    private static byte[] compressSingle(byte[] data, int blockSize) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        result.write('B');
+        result.write('Z');
+        try (OutputStream out = new CBZip2OutputStream(result, blockSize)) {
+            out.write(data);
+        }
+        return result.toByteArray();
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try (InputStream is = in) {
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            byte[] buffer = new byte[7777];
+            int n;
+            while ((n = is.read(buffer)) >= 0) {
+                result.write(buffer, 0, n);
+            }
+            return result.toByteArray();
+        }
+    }
+
+    private static byte[] decompressParallel(byte[] compressed) throws IOException {
+        return readFully(new ParallelBZip2InputStream(new ByteArrayInputStream(compressed)));
+    }
+
+    private static byte[] decompressSingle(byte[] compressed) throws IOException {
+        InputStream in = new ByteArrayInputStream(compressed);
+        assertEquals('B', in.read());
+        assertEquals('Z', in.read());
+        return readFully(new CBZip2InputStream(in, true));
+    }
+
+    /**
+     * Checks that the output of {@link ParallelBZip2OutputStream} is read by both bzip2 input streams.
+     * @throws IOException if an error occurs
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        for (byte[] data : new byte[][] {createText(3 * 1000 * 1000), createBinary(2 * 1000 * 1000)}) {
+            byte[] compressed = compressParallel(data);
+            assertArrayEquals(data, decompressParallel(compressed));
+            assertArrayEquals(data, decompressSingle(compressed));
+        }
+    }
+
+    /**
+     * Checks that a stream of several blocks written by {@link CBZip2OutputStream} is read in parallel.
+     * @throws IOException if an error occurs
+     */
+    @Test
+    public void testSingleStream() throws IOException {
+        byte[] text = createText(1000 * 1000);
+        assertArrayEquals(text, decompressParallel(compressSingle(text, 1)));
+        byte[] binary = createBinary(500 * 1000);
+        assertArrayEquals(binary, decompressParallel(compressSingle(binary, 1)));
+        // concatenation of streams of different block sizes
+        ByteArrayOutputStream concatenated = new ByteArrayOutputStream();
+        concatenated.write(compressSingle(text, 2));
+        concatenated.write(compressSingle(new byte[0], 9));
+        concatenated.write(compressSingle(binary, 9));
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(text);
+        expected.write(binary);
+        assertArrayEquals(expected.toByteArray(), decompressParallel(concatenated.toByteArray()));
+    }
+
+    /**
+     * Checks empty and tiny data.
+     * @throws IOException if an error occurs
+     */
+    @Test
+    public void testSmall() throws IOException {
+        byte[] empty = new byte[0];
+        assertArrayEquals(empty, decompressParallel(compressParallel(empty)));
+        assertArrayEquals(empty, decompressSingle(compressParallel(empty)));
+        assertArrayEquals(empty, decompressParallel(compressSingle(empty, 9)));
+        byte[] one = {'x'};
+        assertArrayEquals(one, decompressParallel(compressParallel(one)));
+        assertArrayEquals(one, decompressParallel(compressSingle(one, 9)));
+    }
+
+    private static void assertIOException(byte[] compressed) {
+        try {
+            decompressParallel(compressed);
+            fail("IOException expected");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Checks that invalid data is reported.
+     * @throws IOException if an error occurs
+     */
+    @Test
+    public void testCorrupted() throws IOException {
+        assertIOException("not bzip2".getBytes(StandardCharsets.UTF_8));
+        byte[] compressed = compressSingle(createText(300 * 1000), 1);
+        // truncated
+        byte[] truncated = new byte[compressed.length / 2];
+        System.arraycopy(compressed, 0, truncated, 0, truncated.length);
+        assertIOException(truncated);
+        // modified in the middle of a block
+        byte[] modified = compressed.clone();
+        modified[modified.length / 2] ^= 0x10;
+        assertIOException(modified);
+        // garbage after the end of the stream
+        byte[] garbage = new byte[compressed.length + 3];
+        System.arraycopy(compressed, 0, garbage, 0, compressed.length);
+        garbage[compressed.length] = 'a';
+        assertIOException(garbage);
+    }
+}
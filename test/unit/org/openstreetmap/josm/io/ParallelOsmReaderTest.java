@@ -0,0 +1,211 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.User;
+import org.openstreetmap.josm.data.osm.Way;
+
+/**
+ * Unit tests of {@link ParallelOsmReader} class.
+ */
+public class ParallelOsmReaderTest {
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void init() {
+        JOSMFixture.createUnitTestFixture().init();
+        // make sure the chunks are parsed concurrently, whatever the number of processors
+        Main.pref.putInteger("osm.reader.numberOfThreads", 4);
+    }
+
+    private static final String SAMPLE =
+            "<?xml version='1.0' encoding='UTF-8'?>\r\n" +
+            "<!-- a comment <node id='1'/> -->\r\n" +
+            "<osm version='0.6' upload='false' generator='test'>\r\n" +
+            "  <bounds minlat='1' minlon='2' maxlat='3' maxlon='4'/>\r\n" +
+            "  <node id='1' version='1' changeset='1' lat='1.5' lon='2.5' user='a&amp;b' uid='3'" +
+            " timestamp='2014-01-01T00:00:00Z'>\r\n" +
+            "    <tag k='name' v='a &gt; b /&gt;'/>\r\n" +
+            "    <tag k=\"note\" v=\"it's\"/>\r\n" +
+            "  </node>\r\n" +
+            "  <!-- </osm> -->\r\n" +
+            "  <node id='2' version='2' changeset='1' lat='1.6' lon='2.6' action='modify'/>\r\n" +
+            "  <node id='-1' lat='1.7' lon='2.7'><tag k='ref' v='new'/></node>\r\n" +
+            "  <unknown><![CDATA[ <node id='5'/> ]]></unknown>\r\n" +
+            "  <way id='10' version='1' changeset='1'>\r\n" +
+            "    <nd ref='1'/><nd ref='2'/><nd ref='-1'/><nd ref='3'/>\r\n" +
+            "    <tag k='highway' v='road'/>\r\n" +
+            "  </way>\r\n" +
+            "  <node id='2' version='3' changeset='2' lat='1.8' lon='2.8'/>\r\n" +
+            "  <relation id='20' version='1' changeset='1'>\r\n" +
+            "    <member type='way' ref='10' role='outer'/>\r\n" +
+            "    <member type='relation' ref='21' role=''/>\r\n" +
+            "    <member type='node' ref='4' role='label'/>\r\n" +
+            "  </relation>\r\n" +
+            "  <relation id='21' version='1' changeset='1' action='delete'/>\r\n" +
+            "</osm>\r\n";
+
+    private static String describe(OsmPrimitive p) {
+        return p.getType() + " " + (p.isNew() ? "new" : Long.toString(p.getUniqueId())) + " v" + p.getVersion()
+                + " " + new TreeMap<>(p.getKeys()) + " " + p.getUser() + " " + p.getTimestamp() + " " + p.getChangesetId()
+                + " m" + p.isModified() + " d" + p.isDeleted() + " v" + p.isVisible() + " i" + p.isIncomplete();
+    }
+
+    private static List<String> describe(DataSet ds) {
+        List<String> result = new ArrayList<>();
+        for (OsmPrimitive p : ds.allPrimitives()) {
+            StringBuilder sb = new StringBuilder(describe(p));
+            if (p instanceof Node) {
+                sb.append(' ').append(((Node) p).getCoor());
+            } else if (p instanceof Way) {
+                for (Node n : ((Way) p).getNodes()) {
+                    sb.append("\n  ").append(describe(n));
+                }
+            } else if (p instanceof Relation) {
+                for (RelationMember m : ((Relation) p).getMembers()) {
+                    sb.append("\n  ").append(m.getRole()).append(' ').append(describe(m.getMember()));
+                }
+            }
+            result.add(sb.toString());
+        }
+        Collections.sort(result);
+        result.add(ds.getVersion() + " " + ds.isUploadDiscouraged());
+        for (org.openstreetmap.josm.data.osm.DataSource src : ds.dataSources) {
+            result.add(src.bounds + " " + src.origin);
+        }
+        return result;
+    }
+
+    private static void assertSameResult(byte[] data, int chunkSize) throws IllegalDataException {
+        DataSet expected = OsmReader.parseDataSet(new ByteArrayInputStream(data), null);
+        DataSet actual = new ParallelOsmReader(chunkSize).doParseDataSet(new ByteArrayInputStream(data), null);
+        assertEquals(describe(expected), describe(actual));
+    }
+
+    private static String getErrorMessage(OsmReader reader, String data) {
+        try {
+            reader.doParseDataSet(new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8)), null);
+            fail("Exception expected");
+            return null;
+        } catch (IllegalDataException e) {
+            return e.getMessage();
+        }
+    }
+
+    private static void assertSameError(String data) {
+        String expected = getErrorMessage(new OsmReader(), data);
+        assertNotNull(expected);
+        for (int chunkSize : new int[] {1, 100, 1000}) {
+            assertEquals(expected, getErrorMessage(new ParallelOsmReader(chunkSize), data));
+        }
+    }
+
+    /**
+     * Non-regression test with a document cut into chunks at every possible element boundary.
+     * @throws IllegalDataException if an error occurs
+     */
+    @Test
+    public void testSample() throws IllegalDataException {
+        byte[] data = SAMPLE.getBytes(StandardCharsets.UTF_8);
+        for (int chunkSize = 1; chunkSize < data.length + 10; chunkSize += 7) {
+            assertSameResult(data, chunkSize);
+        }
+    }
+
+    /**
+     * Compares the result of a real world file with the one of {@link OsmReader}.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testRealData() throws Exception {
+        byte[] data;
+        try (InputStream is = Compression.ZIP.getUncompressedInputStream(
+                new FileInputStream(TestUtils.getRegressionDataFile(9632, "data.osm.zip")))) {
+            data = toByteArray(is);
+        }
+        assertSameResult(data, 64 * 1024);
+        assertSameResult(data, ParallelOsmReader.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Checks that new primitives get their unique ids in document order, and that the users are shared.
+     * @throws IllegalDataException if an error occurs
+     */
+    @Test
+    public void testNewPrimitives() throws IllegalDataException {
+        StringBuilder sb = new StringBuilder("<osm version='0.6'>\n");
+        for (int i = 1; i <= 1000; i++) {
+            sb.append("<node id='-").append(i).append("' lat='1' lon='2' user='u").append(i % 3)
+              .append("' uid='").append(100 + i % 3).append("'/>\n");
+        }
+        sb.append("</osm>\n");
+        byte[] data = sb.toString().getBytes(StandardCharsets.UTF_8);
+        DataSet ds = new ParallelOsmReader(200).doParseDataSet(new ByteArrayInputStream(data), null);
+        List<Node> nodes = new ArrayList<>(ds.getNodes());
+        assertEquals(1000, nodes.size());
+        Collections.sort(nodes, new Comparator<Node>() {
+            @Override
+            public int compare(Node n1, Node n2) {
+                return Long.compare(n2.getUniqueId(), n1.getUniqueId());
+            }
+        });
+        for (int i = 0; i < nodes.size(); i++) {
+            Node n = nodes.get(i);
+            assertEquals(100 + (i + 1) % 3, n.getUser().getId());
+            assertSame(User.getById(n.getUser().getId()), n.getUser());
+        }
+    }
+
+    /**
+     * Checks that errors are reported with the message and position of the sequential reader.
+     */
+    @Test
+    public void testErrors() {
+        // invalid OSM data
+        assertSameError(SAMPLE.replace("<way id='10' version='1'", "<way id='10'"));
+        assertSameError(SAMPLE.replace("ref='21'", "ref='x'"));
+        // malformed XML
+        assertSameError(SAMPLE.replace("<nd ref='2'/>", "<nd ref='2'>"));
+        assertSameError(SAMPLE.replace("</osm>", "</osm><osm/>"));
+        assertSameError(SAMPLE.substring(0, SAMPLE.indexOf("<relation")));
+        assertSameError(SAMPLE.replace("<osm version='0.6'", "<osm"));
+    }
+
+    private static byte[] toByteArray(InputStream is) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = is.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,331 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openstreetmap.josm.JOSMFixture;
+import org.openstreetmap.josm.Main;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.DataSource;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.User;
+import org.openstreetmap.josm.data.osm.Way;
+
+/**
+ * Unit tests of {@link PbfReader} class.
+ */
+public class PbfReaderTest {
+
+    /**
+     * Setup test.
+     */
+    @BeforeClass
+    public static void init() {
+        JOSMFixture.createUnitTestFixture().init();
+        // make sure the blocks are decoded concurrently, whatever the number of processors
+        Main.pref.putInteger("pbf.reader.numberOfThreads", 4);
+    }
+
+    /** The data of {@link #createSample}, as XML */
+    private static final String SAMPLE =
+            "<?xml version='1.0' encoding='UTF-8'?>\n" +
+            "<osm version='0.6' generator='test'>\n" +
+            "  <bounds minlat='1' minlon='2' maxlat='3' maxlon='4' origin='test'/>\n" +
+            "  <node id='1' version='1' changeset='7' lat='1.5' lon='2.5' user='a' uid='3'" +
+            " timestamp='2014-01-01T00:00:00Z'/>\n" +
+            "  <node id='2' version='2' changeset='8' lat='-1.6' lon='2.6' user='b' uid='4'" +
+            " timestamp='2014-01-01T00:01:00Z'>\n" +
+            "    <tag k='name' v='a'/>\n" +
+            "    <tag k='amenity' v='bench'/>\n" +
+            "  </node>\n" +
+            "  <node id='5' version='3' changeset='8' lat='1.7' lon='2.7' user='b' uid='4'" +
+            " timestamp='2014-01-01T00:01:00Z'/>\n" +
+            "  <node id='9' version='1' changeset='9' lat='20' lon='30' user='a' uid='3'" +
+            " timestamp='2013-01-01T00:00:00Z'><tag k='name' v='far'/></node>\n" +
+            "  <way id='10' version='4' changeset='9' user='a' uid='3' timestamp='2013-01-01T00:00:00Z'>\n" +
+            "    <nd ref='1'/><nd ref='2'/><nd ref='5'/><nd ref='6'/>\n" +
+            "    <tag k='highway' v='road'/>\n" +
+            "  </way>\n" +
+            "  <relation id='20' version='1' changeset='9' user='a' uid='3' timestamp='2013-01-01T00:00:00Z'>\n" +
+            "    <member type='way' ref='10' role='outer'/>\n" +
+            "    <member type='node' ref='9' role='label'/>\n" +
+            "    <member type='relation' ref='21' role=''/>\n" +
+            "  </relation>\n" +
+            "</osm>\n";
+
+    /**
+     * Minimal writer of the protocol buffers wire format.
+     */
+    private static class Message {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Message varint(long value) {
+            while ((value & ~0x7fL) != 0) {
+                out.write((int) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+            return this;
+        }
+
+        Message varint(int field, long value) {
+            return varint(field << 3).varint(value);
+        }
+
+        Message signed(int field, long value) {
+            return varint(field, (value << 1) ^ (value >> 63));
+        }
+
+        Message bytes(int field, byte[] value) {
+            varint((field << 3) | 2).varint(value.length);
+            out.write(value, 0, value.length);
+            return this;
+        }
+
+        Message string(int field, String value) {
+            return bytes(field, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        Message message(int field, Message value) {
+            return bytes(field, value.toByteArray());
+        }
+
+        Message packed(int field, boolean signed, long... values) {
+            Message m = new Message();
+            for (long v : values) {
+                m.varint(signed ? (v << 1) ^ (v >> 63) : v);
+            }
+            return message(field, m);
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+    }
+
+    private static void writeBlob(DataOutputStream out, String type, byte[] data, boolean compress) throws IOException {
+        Message blob = new Message();
+        if (compress) {
+            Deflater deflater = new Deflater();
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] buffer = new byte[data.length + 100];
+            int n = deflater.deflate(buffer);
+            deflater.end();
+            byte[] zlib = new byte[n];
+            System.arraycopy(buffer, 0, zlib, 0, n);
+            blob.varint(2, data.length).bytes(3, zlib);
+        } else {
+            blob.bytes(1, data);
+        }
+        byte[] blobBytes = blob.toByteArray();
+        byte[] header = new Message().string(1, type).varint(3, blobBytes.length).toByteArray();
+        out.writeInt(header.length);
+        out.write(header);
+        out.write(blobBytes);
+    }
+
+    private static Message info(int version, long timestamp, long changeset, int uid, int userSid) {
+        return new Message().varint(1, version).varint(2, timestamp).varint(3, changeset).varint(4, uid).varint(5, userSid);
+    }
+
+    private static final String[] STRINGS = {"", "a", "b", "name", "amenity", "bench", "highway", "road", "outer",
+        "label", "far"};
+
+    private static Message stringTable() {
+        Message m = new Message();
+        for (String s : STRINGS) {
+            m.string(1, s);
+        }
+        return m;
+    }
+
+    /**
+     * Replies the sample data in PBF format: dense nodes, a node, a way and a relation in three data blobs.
+     */
+    private static byte[] createSample(String feature) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        Message bbox = new Message().signed(1, 2000000000L).signed(2, 4000000000L).signed(3, 3000000000L).signed(4, 1000000000L);
+        Message header = new Message().message(1, bbox).string(4, "OsmSchema-V0.6").string(4, feature)
+                .string(16, "test").string(17, "test");
+        writeBlob(out, "OSMHeader", header.toByteArray(), false);
+
+        // dense nodes 1, 2 and 5, with a granularity of 1000 and a date granularity of 60 s
+        Message denseInfo = new Message()
+                .packed(1, false, 1, 2, 3)
+                .packed(2, true, 23142240, 1, 0)
+                .packed(3, true, 7, 1, 0)
+                .packed(4, true, 3, 1, 0)
+                .packed(5, true, 1, 1, 0);
+        Message dense = new Message()
+                .packed(1, true, 1, 1, 3)
+                .message(5, denseInfo)
+                .packed(8, true, 1500000, -3100000, 3300000)
+                .packed(9, true, 2500000, 100000, 100000)
+                .packed(10, false, 0, 3, 1, 4, 5, 0, 0);
+        Message block = new Message().message(1, stringTable()).message(2, new Message().message(2, dense))
+                .varint(17, 1000).varint(18, 60000);
+        writeBlob(out, "OSMData", block.toByteArray(), true);
+
+        // an unknown blob, skipped
+        writeBlob(out, "Unknown", new byte[] {1, 2, 3}, false);
+
+        Message node = new Message().signed(1, 9).packed(2, false, 3).packed(3, false, 10)
+                .message(4, info(1, 1356998400, 9, 3, 1)).signed(8, 200000000).signed(9, 300000000);
+        block = new Message().message(1, stringTable()).message(2, new Message().message(1, node));
+        writeBlob(out, "OSMData", block.toByteArray(), true);
+
+        Message way = new Message().varint(1, 10).packed(2, false, 6).packed(3, false, 7)
+                .message(4, info(4, 1356998400, 9, 3, 1)).packed(8, true, 1, 1, 3, 1);
+        Message relation = new Message().varint(1, 20).message(4, info(1, 1356998400, 9, 3, 1))
+                .packed(8, false, 8, 9, 0).packed(9, true, 10, -1, 12).packed(10, false, 1, 0, 2);
+        block = new Message().message(1, stringTable())
+                .message(2, new Message().message(3, way))
+                .message(2, new Message().message(4, relation));
+        writeBlob(out, "OSMData", block.toByteArray(), false);
+        return bytes.toByteArray();
+    }
+
+    private static String describe(OsmPrimitive p) {
+        return p.getType() + " " + (p.isNew() ? "new" : Long.toString(p.getUniqueId())) + " v" + p.getVersion()
+                + " " + new TreeMap<>(p.getKeys()) + " " + p.getUser() + " " + p.getTimestamp() + " " + p.getChangesetId()
+                + " m" + p.isModified() + " d" + p.isDeleted() + " v" + p.isVisible() + " i" + p.isIncomplete();
+    }
+
+    private static List<String> describe(DataSet ds) {
+        List<String> result = new ArrayList<>();
+        for (OsmPrimitive p : ds.allPrimitives()) {
+            StringBuilder sb = new StringBuilder(describe(p));
+            if (p instanceof Node) {
+                sb.append(' ').append(((Node) p).getCoor());
+            } else if (p instanceof Way) {
+                for (Node n : ((Way) p).getNodes()) {
+                    sb.append("\n  ").append(describe(n));
+                }
+            } else if (p instanceof Relation) {
+                for (RelationMember m : ((Relation) p).getMembers()) {
+                    sb.append("\n  ").append(m.getRole()).append(' ').append(describe(m.getMember()));
+                }
+            }
+            result.add(sb.toString());
+        }
+        Collections.sort(result);
+        result.add(ds.getVersion() + " " + ds.isUploadDiscouraged());
+        for (DataSource src : ds.dataSources) {
+            result.add(src.bounds + " " + src.origin);
+        }
+        return result;
+    }
+
+    /**
+     * Compares the result with the one of {@link OsmReader} for the same data.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testSample() throws Exception {
+        DataSet expected = OsmReader.parseDataSet(new ByteArrayInputStream(SAMPLE.getBytes(StandardCharsets.UTF_8)), null);
+        DataSet actual = PbfReader.parseDataSet(new ByteArrayInputStream(createSample("DenseNodes")), null);
+        assertEquals(describe(expected), describe(actual));
+    }
+
+    /**
+     * Checks that only the data within the given bounds is kept.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testBounds() throws Exception {
+        Bounds bounds = new Bounds(1.4, 2.4, 1.6, 2.6);
+        DataSet ds = PbfReader.parseDataSet(new ByteArrayInputStream(createSample("DenseNodes")), null, bounds);
+        assertFalse(((Node) ds.getPrimitiveById(1, OsmPrimitiveType.NODE)).isIncomplete());
+        assertTrue(ds.getPrimitiveById(2, OsmPrimitiveType.NODE).isIncomplete());
+        assertTrue(ds.getPrimitiveById(9, OsmPrimitiveType.NODE).isIncomplete());
+        Way way = (Way) ds.getPrimitiveById(10, OsmPrimitiveType.WAY);
+        assertEquals(4, way.getNodesCount());
+        assertFalse(way.isIncomplete());
+        assertFalse(ds.getPrimitiveById(20, OsmPrimitiveType.RELATION).isIncomplete());
+        assertEquals(8, ds.allPrimitives().size());
+        assertEquals(bounds, ds.dataSources.iterator().next().bounds);
+    }
+
+    /**
+     * Checks that the blocks decoded at the same time share the users.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testUsers() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeBlob(out, "OSMHeader", new Message().string(4, "OsmSchema-V0.6").toByteArray(), false);
+        for (int i = 0; i < 200; i++) {
+            Message group = new Message();
+            for (int j = 0; j < 10; j++) {
+                // users "a" and "b" known to the server, or local if the uid is not set
+                Message node = new Message().signed(1, 1 + 10 * i + j)
+                        .message(4, info(1, 1356998400, 9, j % 3 == 2 ? -1 : 1000 + j % 2, 1 + j % 2));
+                group.message(1, node);
+            }
+            writeBlob(out, "OSMData", new Message().message(1, stringTable()).message(2, group).toByteArray(), true);
+        }
+        DataSet ds = PbfReader.parseDataSet(new ByteArrayInputStream(bytes.toByteArray()), null);
+        assertEquals(2000, ds.getNodes().size());
+        Set<User> users = Collections.newSetFromMap(new IdentityHashMap<User, Boolean>());
+        for (Node n : ds.getNodes()) {
+            users.add(n.getUser());
+        }
+        assertEquals(4, users.size());
+        for (User user : users) {
+            if (user.isOsmUser()) {
+                assertSame(User.getById(user.getId()), user);
+            } else {
+                assertSame(User.createLocalUser(user.getName()), user);
+            }
+        }
+    }
+
+    /**
+     * Checks that invalid or unsupported files are rejected.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testErrors() throws Exception {
+        assertError(createSample("HistoricalInformation"));
+        byte[] data = createSample("DenseNodes");
+        byte[] truncated = new byte[data.length - 10];
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+        assertError(truncated);
+    }
+
+    private static void assertError(byte[] data) {
+        try {
+            PbfReader.parseDataSet(new ByteArrayInputStream(data), null);
+            fail("Exception expected");
+        } catch (IllegalDataException e) {
+            // expected
+        }
+    }
+}